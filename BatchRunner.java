@@ -0,0 +1,340 @@
+package cs1302.game;
+
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Replays scripted games without drawing anything, for regression tests and replays. Each
+ * line of the input is one game in the record format written by
+ * {@link cs1302.game.sim.SelfPlay}:
+ *
+ * <pre>
+ * &lt;moves&gt; [&lt;result&gt;]
+ * </pre>
+ *
+ * <p>
+ * where {@code <moves>} is the column of every move in order, one digit per move, with player
+ * {@code 0} moving first, and the optional {@code <result>} is the expected outcome: {@code 0}
+ * or {@code 1} for the winning player, {@code D} for a draw or {@code -} for an unfinished
+ * game. Blank lines and lines starting with {@code #} are skipped.
+ *
+ * <p>
+ * Every move goes through {@link ConnectFour#dropToken} and
+ * {@link ConnectFour#isLastDropConnectFour}, so the outcomes are the ones an interactive game
+ * would reach. The input is scanned byte by byte, columns and full columns are checked before
+ * each drop rather than caught as exceptions, and one {@code ConnectFour} object is reused for
+ * every game by undoing its drops, so replaying allocates nothing per move.
+ *
+ * <p>
+ * For each game, one line is written: its outcome in the same notation as {@code <result>};
+ * the outcome followed by {@code (line N expected R)} if it differs from the expected one; or
+ * {@code E line N: <reason>} if a move is impossible.
+ */
+public class BatchRunner {
+
+    /** The outcome codes, indexed by outcome. */
+    private static final char[] CODES = {'0', '1', 'D', '-'};
+
+    private static final int DRAW = 2;
+    private static final int UNFINISHED = 3;
+
+    private final ConnectFour game;
+    private final int cols;
+    private final boolean summaryOnly;
+    private final byte[] buffer = new byte[1 << 16];
+
+    private final long[] outcomes = new long[CODES.length];
+    private long games;
+    private long moves;
+    private long invalid;
+    private long mismatched;
+
+    /**
+     * Constructs a runner for games on a {@code rows}-by-{@code cols} grid.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param summaryOnly {@code true} to write nothing per game
+     * @throws IllegalArgumentException if the grid size is not supported
+     */
+    public BatchRunner(int rows, int cols, boolean summaryOnly) {
+        this.game = new ConnectFour(rows, cols);
+        this.game.setPlayerTokens(Token.RED, Token.YELLOW);
+        this.cols = cols;
+        this.summaryOnly = summaryOnly;
+    } // BatchRunner
+
+    /**
+     * Replay every game in {@code in} and write one line per game to {@code out}, which is
+     * flushed but not closed. The counts returned by the getters include every game replayed
+     * by this runner so far.
+     *
+     * @param in the scripted games
+     * @param out where to write the outcomes
+     * @throws IOException if reading or writing fails
+     */
+    public void run(InputStream in, Writer out) throws IOException {
+        long line = 0;
+        int player = 0;
+        int expected = -1;    // the expected outcome, or -1 if none was given
+        int field = 0;        // 0 while reading moves, 1 after the first space, 2 after more
+        boolean started = false;
+        boolean comment = false;
+        String error = null;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            for (int i = 0; i < n; i++) {
+                int b = buffer[i];
+                if (b == '\n') {
+                    line++;
+                    if (started && !comment) {
+                        finish(out, line, error, expected);
+                    } // if
+                    player = 0;
+                    expected = -1;
+                    field = 0;
+                    started = false;
+                    comment = false;
+                    error = null;
+                } else if (comment) {
+                    continue;
+                } else if (b == ' ' || b == '\t' || b == '\r') {
+                    if (started && field < 2) {
+                        field++;
+                    } // if
+                } else if (!started && b == '#') {
+                    comment = true;
+                } else {
+                    started = true;
+                    if (error != null) {
+                        continue;
+                    } else if (field == 0) {
+                        error = move(player, b - '0');
+                        player ^= 1;
+                    } else if (field == 1 && expected < 0) {
+                        expected = outcome(b);
+                        if (expected < 0) {
+                            error = "unknown result '" + (char) b + "'";
+                        } // if
+                    } else {
+                        error = "unexpected text after the result";
+                    } // if
+                } // if
+            } // for
+        } // while
+        if (started && !comment) {
+            finish(out, line + 1, error, expected);
+        } // if
+        out.flush();
+    } // run
+
+    /**
+     * Drop a token for {@code player} in {@code col} and check for a connect four, unless the
+     * move is impossible.
+     *
+     * @param player the player to move
+     * @param col the column, or a negative or large value for a character that is not a digit
+     * @return {@code null} if the move was made, or why it could not be
+     */
+    private String move(int player, int col) {
+        if (col < 0 || col > 9) {
+            return "a move must be a column digit";
+        } else if (col >= cols) {
+            return "column " + col + " is not in the grid";
+        } else if (game.getPhase() == GamePhase.OVER) {
+            return "moves after the end of the game";
+        } else if (game.isColumnFull(col)) {
+            return "column " + col + " is full";
+        } // if
+        game.dropToken(player, col);
+        game.isLastDropConnectFour();
+        moves++;
+        return null;
+    } // move
+
+    /**
+     * Return the outcome that a result character stands for.
+     *
+     * @param b the result character
+     * @return the outcome, or {@code -1} for an unknown character
+     */
+    private static int outcome(int b) {
+        for (int i = 0; i < CODES.length; i++) {
+            if (CODES[i] == b) {
+                return i;
+            } // if
+        } // for
+        return -1;
+    } // outcome
+
+    /**
+     * Record and write the outcome of the game that just ended, and clear the grid for the
+     * next one.
+     *
+     * @param out where to write the outcome
+     * @param line the number of the game's line, counting from {@code 1}
+     * @param error why the game was invalid, or {@code null}
+     * @param expected the expected outcome, or {@code -1}
+     * @throws IOException if writing fails
+     */
+    private void finish(Writer out, long line, String error, int expected) throws IOException {
+        games++;
+        int result = UNFINISHED;
+        if (game.getPhase() == GamePhase.OVER) {
+            boolean won = game.getLastDropConnectFour() != null;
+            result = won ? (game.getNumDropped() - 1) & 1 : DRAW;
+        } // if
+        while (game.canUndo()) {
+            game.undo();
+        } // while
+        if (error != null) {
+            invalid++;
+            if (!summaryOnly) {
+                out.write("E line " + line + ": " + error + "\n");
+            } // if
+            return;
+        } // if
+        outcomes[result]++;
+        if (expected >= 0 && expected != result) {
+            mismatched++;
+            if (!summaryOnly) {
+                out.write(CODES[result] + " (line " + line + " expected " + CODES[expected]
+                          + ")\n");
+            } // if
+        } else if (!summaryOnly) {
+            out.write(CODES[result]);
+            out.write('\n');
+        } // if
+    } // finish
+
+    /**
+     * Return the number of games replayed, including invalid ones.
+     *
+     * @return the game count
+     */
+    public long getGames() {
+        return games;
+    } // getGames
+
+    /**
+     * Return the number of moves made.
+     *
+     * @return the move count
+     */
+    public long getMoves() {
+        return moves;
+    } // getMoves
+
+    /**
+     * Return the number of valid games won by {@code player}.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return the win count
+     */
+    public long getWins(int player) {
+        return outcomes[player];
+    } // getWins
+
+    /**
+     * Return the number of valid games that ended in a draw.
+     *
+     * @return the draw count
+     */
+    public long getDraws() {
+        return outcomes[DRAW];
+    } // getDraws
+
+    /**
+     * Return the number of valid games whose moves ran out before the game ended.
+     *
+     * @return the unfinished game count
+     */
+    public long getUnfinished() {
+        return outcomes[UNFINISHED];
+    } // getUnfinished
+
+    /**
+     * Return the number of games with an impossible move or a malformed line.
+     *
+     * @return the invalid game count
+     */
+    public long getInvalid() {
+        return invalid;
+    } // getInvalid
+
+    /**
+     * Return the number of games whose outcome differed from the expected one.
+     *
+     * @return the mismatch count
+     */
+    public long getMismatched() {
+        return mismatched;
+    } // getMismatched
+
+    /**
+     * Replay scripted games from the command line and print their outcomes to standard output
+     * and a summary to standard error.
+     *
+     * <pre>
+     * usage: BatchRunner [--rows R] [--cols C] [--summary] [FILE | -]
+     * </pre>
+     *
+     * <p>
+     * Games are read from {@code FILE}, or from standard input if it is {@code -} or missing.
+     * With {@code --summary}, only the summary is printed. The exit status is {@code 1} if any
+     * game was invalid or did not have its expected outcome.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the games cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = 6;
+        int cols = 7;
+        boolean summaryOnly = false;
+        String inName = "-";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--rows":
+                rows = Integer.parseInt(args[++i]);
+                break;
+            case "--cols":
+                cols = Integer.parseInt(args[++i]);
+                break;
+            case "--summary":
+                summaryOnly = true;
+                break;
+            default:
+                inName = args[i];
+            } // switch
+        } // for
+        BatchRunner runner = new BatchRunner(rows, cols, summaryOnly);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        long start = System.nanoTime();
+        if (inName.equals("-")) {
+            runner.run(System.in, out);
+        } else {
+            try (InputStream in = new FileInputStream(inName)) {
+                runner.run(in, out);
+            } // try
+        } // if
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%,d games, %,d moves in %.3f s (%,.0f moves/s)%n", runner.getGames(),
+                          runner.getMoves(), seconds, runner.getMoves() / seconds);
+        System.err.printf("player 0 wins %,d, player 1 wins %,d, draws %,d, unfinished %,d%n",
+                          runner.getWins(0), runner.getWins(1), runner.getDraws(),
+                          runner.getUnfinished());
+        System.err.printf("invalid %,d, unexpected outcome %,d%n", runner.getInvalid(),
+                          runner.getMismatched());
+        if (runner.getInvalid() > 0 || runner.getMismatched() > 0) {
+            System.exit(1);
+        } // if
+    } // main
+
+} // BatchRunner
@@ -0,0 +1,318 @@
+package cs1302.game;
+
+/**
+ * {@code Bitboard} stores the tokens of a {@link cs1302.game.ConnectFour} grid as one bit mask
+ * per player. Bits are laid out column-major: column {@code c} owns the {@code rows + 1}
+ * consecutive bits that start at bit {@code c * (rows + 1)}, ordered from the bottom of the grid
+ * to the top. The extra bit at the top of each column is a sentinel that is never set, which
+ * keeps horizontal and diagonal shifts from wrapping from one column into the next. With this
+ * layout, a <em>connect four</em> in any direction is detected with a few shift-and-AND
+ * operations instead of a scan of the grid.
+ *
+ * <p>
+ * The largest supported grid (9-by-9) needs {@code 9 * 10 = 90} bits, which does not fit in a
+ * single {@code long}. Each player's mask is therefore kept as a low word (bits {@code 0-63})
+ * and a high word (bits {@code 64-127}). On grids that fit in 64 bits, the high word is always
+ * zero and costs one extra AND per test.
+ *
+ * <p>
+ * Row indices passed to this class use the same convention as {@link ConnectFour}: row
+ * {@code 0} is the top of the grid and row {@code rows - 1} is the bottom.
+ */
+public final class Bitboard {
+
+    private final int rows;     // number of grid rows
+    private final int cols;     // number of grid columns
+    private final int height;   // bits per column (rows plus the sentinel)
+    private final long[] low;   // bits 0-63 of each player's mask
+    private final long[] high;  // bits 64-127 of each player's mask
+
+    /**
+     * Constructs an empty {@code Bitboard} for a grid with {@code rows}-many rows and
+     * {@code cols}-many columns. The dimensions are assumed to have already been validated by
+     * {@link ConnectFour}.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     */
+    public Bitboard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.height = rows + 1;
+        this.low = new long[2];
+        this.high = new long[2];
+    } // Bitboard
+
+    /**
+     * Return the number of rows in the grid.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    } // getRows
+
+    /**
+     * Return the number of columns in the grid.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    } // getCols
+
+    /**
+     * Return the number of bits reserved for each column, including the sentinel bit.
+     *
+     * @return {@code rows + 1}
+     */
+    public int getHeight() {
+        return height;
+    } // getHeight
+
+    /**
+     * Return the bit index of the cell at {@code row} and {@code col}.
+     *
+     * @param row the cell's row index ({@code 0} is the top row)
+     * @param col the cell's column index
+     * @return the bit index of the cell
+     */
+    public int bitIndex(int row, int col) {
+        return col * height + (rows - 1 - row);
+    } // bitIndex
+
+    /**
+     * Mark the cell at {@code row} and {@code col} as holding a token for {@code player}.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @param row the cell's row index
+     * @param col the cell's column index
+     */
+    public void set(int player, int row, int col) {
+        int bit = bitIndex(row, col);
+        if (bit < 64) {
+            low[player] |= 1L << bit;
+        } else {
+            high[player] |= 1L << (bit - 64);
+        } // if
+    } // set
+
+    /**
+     * Remove any token from the cell at {@code row} and {@code col}.
+     *
+     * @param row the cell's row index
+     * @param col the cell's column index
+     */
+    public void clear(int row, int col) {
+        int bit = bitIndex(row, col);
+        if (bit < 64) {
+            long keep = ~(1L << bit);
+            low[0] &= keep;
+            low[1] &= keep;
+        } else {
+            long keep = ~(1L << (bit - 64));
+            high[0] &= keep;
+            high[1] &= keep;
+        } // if
+    } // clear
+
+    /**
+     * Return the player whose token is in the cell at {@code row} and {@code col}.
+     *
+     * @param row the cell's row index
+     * @param col the cell's column index
+     * @return {@code 0} or {@code 1} if the cell holds a token, otherwise {@code -1}
+     */
+    public int getPlayerAt(int row, int col) {
+        int bit = bitIndex(row, col);
+        long[] words = low;
+        if (bit >= 64) {
+            words = high;
+            bit -= 64;
+        } // if
+        if ((words[0] >>> bit & 1L) != 0) {
+            return 0;
+        } else if ((words[1] >>> bit & 1L) != 0) {
+            return 1;
+        } // if
+        return -1;
+    } // getPlayerAt
+
+    /**
+     * Return bits {@code 0-63} of {@code player}'s mask.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return the low word of the player's mask
+     */
+    public long getLow(int player) {
+        return low[player];
+    } // getLow
+
+    /**
+     * Return bits {@code 64-127} of {@code player}'s mask.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return the high word of the player's mask
+     */
+    public long getHigh(int player) {
+        return high[player];
+    } // getHigh
+
+    /**
+     * Replace {@code player}'s mask with the 128-bit mask made of {@code lo} and {@code hi}. The
+     * caller is responsible for the mask fitting the grid and not overlapping the other
+     * player's mask.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @param lo bits {@code 0-63} of the new mask
+     * @param hi bits {@code 64-127} of the new mask
+     */
+    public void setMask(int player, long lo, long hi) {
+        low[player] = lo;
+        high[player] = hi;
+    } // setMask
+
+    /**
+     * Return the {@code count} bits of the 128-bit mask made of {@code lo} and {@code hi} that
+     * start at bit {@code start}, as the low bits of a {@code long}.
+     *
+     * @param lo bits {@code 0-63} of the mask
+     * @param hi bits {@code 64-127} of the mask
+     * @param start the first bit index, from {@code 0} to {@code 127}
+     * @param count the number of bits, from {@code 1} to {@code 63}
+     * @return the selected bits
+     */
+    public static long bits(long lo, long hi, int start, int count) {
+        long word;
+        if (start == 0) {
+            word = lo;
+        } else if (start < 64) {
+            word = lo >>> start | hi << (64 - start);
+        } else {
+            word = hi >>> (start - 64);
+        } // if
+        return word & ((1L << count) - 1);
+    } // bits
+
+    /**
+     * Return bits {@code 0-63} of the 128-bit mask made of {@code lo} and {@code hi} reflected
+     * left to right, so that column {@code c} moves to column {@code cols - 1 - c}. Because each
+     * column is a contiguous block of {@code height} bits, the reflection moves whole columns
+     * with one shift and mask each and leaves the order of bits within a column alone.
+     *
+     * @param lo bits {@code 0-63} of the mask
+     * @param hi bits {@code 64-127} of the mask
+     * @param height bits per column, including the sentinel
+     * @param cols the number of columns
+     * @return the low word of the reflected mask
+     */
+    public static long mirrorLow(long lo, long hi, int height, int cols) {
+        long word = 0;
+        for (int col = 0; col < cols; col++) {
+            int to = (cols - 1 - col) * height;
+            if (to < 64) {
+                word |= bits(lo, hi, col * height, height) << to;
+            } // if
+        } // for
+        return word;
+    } // mirrorLow
+
+    /**
+     * Return bits {@code 64-127} of the 128-bit mask made of {@code lo} and {@code hi} reflected
+     * left to right; see {@link #mirrorLow}.
+     *
+     * @param lo bits {@code 0-63} of the mask
+     * @param hi bits {@code 64-127} of the mask
+     * @param height bits per column, including the sentinel
+     * @param cols the number of columns
+     * @return the high word of the reflected mask
+     */
+    public static long mirrorHigh(long lo, long hi, int height, int cols) {
+        long word = 0;
+        for (int col = 0; col < cols; col++) {
+            int to = (cols - 1 - col) * height;
+            if (to >= 64) {
+                word |= bits(lo, hi, col * height, height) << (to - 64);
+            } else if (to + height > 64) {
+                word |= bits(lo, hi, col * height, height) >>> (64 - to);
+            } // if
+        } // for
+        return word;
+    } // mirrorHigh
+
+    /**
+     * Return {@code true} if {@code player} has four tokens in a column.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return {@code true} if there is a vertical connect four
+     */
+    public boolean hasVertical(int player) {
+        return connected(low[player], high[player], 1);
+    } // hasVertical
+
+    /**
+     * Return {@code true} if {@code player} has four tokens in a row.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return {@code true} if there is a horizontal connect four
+     */
+    public boolean hasHorizontal(int player) {
+        return connected(low[player], high[player], height);
+    } // hasHorizontal
+
+    /**
+     * Return {@code true} if {@code player} has four tokens along either diagonal.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return {@code true} if there is a diagonal connect four
+     */
+    public boolean hasDiagonal(int player) {
+        long lo = low[player];
+        long hi = high[player];
+        return connected(lo, hi, height - 1) || connected(lo, hi, height + 1);
+    } // hasDiagonal
+
+    /**
+     * Return {@code true} if {@code player} has a <em>connect four</em> in any direction.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return {@code true} if there is a connect four
+     */
+    public boolean hasConnectFour(int player) {
+        return hasConnectFour(low[player], high[player], height);
+    } // hasConnectFour
+
+    /**
+     * Return {@code true} if the 128-bit mask made of {@code lo} and {@code hi} contains four
+     * set bits in a line on a board whose columns are {@code height} bits tall.
+     *
+     * @param lo bits {@code 0-63} of the mask
+     * @param hi bits {@code 64-127} of the mask
+     * @param height bits per column, including the sentinel
+     * @return {@code true} if the mask contains a connect four
+     */
+    public static boolean hasConnectFour(long lo, long hi, int height) {
+        return connected(lo, hi, 1)
+            || connected(lo, hi, height)
+            || connected(lo, hi, height - 1)
+            || connected(lo, hi, height + 1);
+    } // hasConnectFour
+
+    /**
+     * Return {@code true} if the mask contains four set bits, each {@code shift} bits apart.
+     * Computes {@code m = b & (b >> shift)} and then tests {@code m & (m >> 2 * shift)}, with the
+     * right shifts carried from the high word into the low word.
+     *
+     * @param lo bits {@code 0-63} of the mask
+     * @param hi bits {@code 64-127} of the mask
+     * @param shift the distance between neighbouring cells in the direction being tested
+     * @return {@code true} if four bits in that direction are all set
+     */
+    private static boolean connected(long lo, long hi, int shift) {
+        long mlo = lo & (lo >>> shift | hi << (64 - shift));
+        long mhi = hi & (hi >>> shift);
+        int twice = shift << 1;
+        return (mlo & (mlo >>> twice | mhi << (64 - twice)) | mhi & (mhi >>> twice)) != 0;
+    } // connected
+
+} // Bitboard
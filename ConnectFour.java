@@ -19,8 +19,8 @@ public class ConnectFour {
 
     //----------------------------------------------------------------------------------------------
     // INSTANCE VARIABLES: You should NOT modify the instance variable declarations below.
-    // You should also NOT add any additional instance variables. Static variables should
-    // also NOT be added.
+    // The only other instance variables allowed are the ENGINE STATE fields that follow, which
+    // are derived from these. Static variables should NOT be added.
     //----------------------------------------------------------------------------------------------
 
     private int rows;        // number of grid rows
@@ -32,6 +32,18 @@ public class ConnectFour {
     private int lastDropCol; // column index of the most recent drop
     private GamePhase phase; // current game phase
 
+    //----------------------------------------------------------------------------------------------
+    // ENGINE STATE: Derived from the variables above and kept in sync by dropToken.
+    //----------------------------------------------------------------------------------------------
+
+    private Bitboard board;  // per-player bit masks used to detect a connect four
+    private byte[] heights;  // number of tokens in each column
+    private long hash;       // Zobrist hash of the tokens in the grid
+    private long mirrorHash; // Zobrist hash of the grid reflected left to right
+    private byte[] history;  // move i as col | player << 4, plus 0x80 if it ended the game
+    private int undoFloor;   // number of drops that cannot be undone
+    private int redoLimit;   // number of drops in history, including undone ones
+
     //----------------------------------------------------------------------------------------------
     // CONSTRUCTOR
     //----------------------------------------------------------------------------------------------
@@ -88,6 +100,9 @@ public class ConnectFour {
         if (rowMinTest && rowMaxTest && colMinTest && colMaxTest) { //instantiating vars
 
             grid = new Token[rows][cols];
+            board = new Bitboard(rows, cols);
+            heights = new byte[cols];
+            history = new byte[rows * cols];
             numDropped = 0;
             lastDropRow = -1;
             lastDropCol = -1;
@@ -332,48 +347,67 @@ public class ConnectFour {
         //
         // replace the entire contents of this method with your implementation
         //
+        long start = GameMetrics.ENABLED ? System.nanoTime() : 0L;
+
         if ((col > cols - 1) || (col < 0)) {
 
+            rejected(GameMetrics.Rejection.COLUMN);
             throw new IndexOutOfBoundsException("Invalid column index.");
 
         } // invalid column index
 
         if ((player != 0) && (player != 1)) {
 
+            rejected(GameMetrics.Rejection.PLAYER);
             throw new IllegalArgumentException("Either Player 0 or Player 1 must be playing.");
 
         } // not one of the game players
 
         if (getPhase() == GamePhase.NEW || getPhase() == GamePhase.OVER) {
 
+            rejected(GameMetrics.Rejection.PHASE);
             throw new IllegalStateException("Game is in the wrong phase to drop a token.");
 
         } // throws IllegalStateException
 
-        if (!(this.grid[0][col] == null)) {
+        if (heights[col] == rows) {
 
+            rejected(GameMetrics.Rejection.FULL);
             throw new IllegalStateException("This column is full!");
 
         } // throws IllegalStateExcpetion
 
-        int emptyRow = 0;
+        int emptyRow = rows - 1 - heights[col];
+        heights[col]++;
 
-        for (int i = 0; i <= rows - 1; i++) {
+        grid[emptyRow][col] = this.player[player];
+        board.set(player, emptyRow, col);
+        hash ^= Zobrist.key(player, board.bitIndex(emptyRow, col));
+        mirrorHash ^= Zobrist.key(player, board.bitIndex(emptyRow, cols - 1 - col));
+        this.phase = GamePhase.PLAYABLE;
+        lastDropRow = emptyRow;
+        lastDropCol = col;
+        history[numDropped] = (byte) (col | player << 4);
+        numDropped++;
+        redoLimit = numDropped;
 
-            if (this.grid[i][col] == null) {
+        if (GameMetrics.ENABLED) {
 
-                emptyRow = i;
+            GameMetrics.dropped(start);
 
-            } //checking if an empty spot in desired column
+        } // record the drop
 
-        } // for loop
+        GameEvents.Drop event = new GameEvents.Drop();
+        if (event.shouldCommit()) {
 
+            event.player = player;
+            event.row = emptyRow;
+            event.column = col;
+            event.tokens = numDropped;
+            event.hash = hash;
+            event.commit();
 
-        grid[emptyRow][col] = this.player[player];
-        this.phase = GamePhase.PLAYABLE;
-        lastDropRow = emptyRow;
-        lastDropCol = col;
-        numDropped++;
+        } // emit a flight recorder event
 
     } // dropToken
 
@@ -396,15 +430,27 @@ public class ConnectFour {
      *     {@code false}
      */
     public boolean isLastDropConnectFour() {
+        long start = GameMetrics.ENABLED ? System.nanoTime() : 0L;
+        boolean wasOver = phase == GamePhase.OVER;
+
         if (isBoardFull()) {
-            phase = GamePhase.OVER;
+            setOver();
         }
 
-        if (checkDiagonals() || checkHorizontal() || checkVertical()) {
-            phase = GamePhase.OVER;
-            return true;
+        String check = checkDiagonals() ? "checkDiagonals"
+            : checkHorizontal() ? "checkHorizontal"
+            : checkVertical() ? "checkVertical" : null;
+        boolean win = check != null;
+        if (win) {
+            setOver();
         }
-        return false;
+
+        boolean ended = !wasOver && phase == GamePhase.OVER;
+        if (GameMetrics.ENABLED) {
+            GameMetrics.checked(start, ended, win);
+        }
+        recordWinCheck(check, ended);
+        return win;
     } // isLastDropConnectFour
 
 
@@ -415,92 +461,295 @@ public class ConnectFour {
     //----------------------------------------------------------------------------------------------
 
     /**
-     * Checks if the grid is full and returns true if it is.
+     * Checks if the grid is full and returns true if it is. Every successful drop fills exactly
+     * one cell, so the grid is full once {@code numDropped} reaches {@code rows * cols}.
      *
      * @return {@code true} if the board is full.
      */
     public boolean isBoardFull() {
 
-        int nullCounter = rows * cols;
+        return numDropped == rows * cols;
 
-        for (int n = 0; n <= rows - 1; n++) {
+    } // isBoardFull
 
-            for (int p = 0; p <= cols - 1; p++) {
+    /**
+     * Return whether there is a drop that {@link #undo} can take back. Every drop made with
+     * {@link #dropToken} or {@link #redo} can be undone; the tokens of a game loaded with
+     * {@link #readRecord} cannot. Neither can those of a game loaded with {@link #fromFile},
+     * unless its last drop happens to be the last token it replayed: the file's tokens are
+     * dropped row by row, so the history does not end with the file's last drop.
+     *
+     * @return {@code true} if {@code undo} will succeed
+     */
+    public boolean canUndo() {
 
-                if (grid[n][p] != null) {
+        return numDropped > undoFloor && (history[numDropped - 1] & 0x0F) == lastDropCol
+            && rows - heights[lastDropCol] == lastDropRow;
 
-                    nullCounter--;
+    } // canUndo
 
-                } // if space empty
+    /**
+     * Return whether there is an undone drop that {@link #redo} can play again. Dropping a new
+     * token with {@link #dropToken} discards every undone drop.
+     *
+     * @return {@code true} if {@code redo} will succeed
+     */
+    public boolean canRedo() {
 
-            } // going through columns
+        return redoLimit > numDropped;
 
-        } // going through rows
+    } // canRedo
 
-        if (nullCounter == 0) {
+    /**
+     * Take back the most recent drop. The grid, number of dropped tokens, last drop and phase
+     * are restored exactly to what they were before that drop: the phase goes back from
+     * {@link cs1302.gameutil.GamePhase#OVER} to {@link cs1302.gameutil.GamePhase#PLAYABLE}, or
+     * to {@link cs1302.gameutil.GamePhase#READY} if no tokens are left. The move history is
+     * kept in a {@code byte} array sized for a full grid, so undoing and redoing never
+     * allocate.
+     *
+     * @throws IllegalStateException if there is no drop to undo
+     */
+    public void undo() {
 
-            return true;
-        }
+        if (!canUndo()) {
 
-        return false;
+            throw new IllegalStateException("There is no drop to undo.");
 
-    } // isBoardFull
+        } // throws IllegalStateException
+
+        numDropped--;
+        int move = history[numDropped];
+        int col = move & 0x0F;
+        int row = rows - heights[col];
+        heights[col]--;
+        grid[row][col] = null;
+        board.clear(row, col);
+        hash ^= Zobrist.key(move >> 4 & 1, board.bitIndex(row, col));
+        mirrorHash ^= Zobrist.key(move >> 4 & 1, board.bitIndex(row, cols - 1 - col));
+
+        if (numDropped == 0) {
+
+            lastDropRow = -1;
+            lastDropCol = -1;
+            phase = GamePhase.READY;
+
+        } else {
+
+            lastDropCol = history[numDropped - 1] & 0x0F;
+            lastDropRow = rows - heights[lastDropCol];
+            phase = GamePhase.PLAYABLE;
+
+        } // restore the previous drop
+
+    } // undo
 
     /**
-     * This method checks for any vertical Connect Fours (checks by columns).
+     * Play the most recently undone drop again, restoring the state it left the game in,
+     * including the phase {@link cs1302.gameutil.GamePhase#OVER} if
+     * {@link #isLastDropConnectFour} had ended the game on that drop.
      *
-     * @return {@code true} when there is a vertical Connect Four.
+     * @throws IllegalStateException if there is no undone drop to redo
      */
-    public boolean checkVertical() {
+    public void redo() {
+
+        if (!canRedo()) {
+
+            throw new IllegalStateException("There is no drop to redo.");
+
+        } // throws IllegalStateException
 
-        for (int j = 0; j < cols; j++) {
+        int move = history[numDropped];
+        int col = move & 0x0F;
+        int owner = move >> 4 & 1;
+        int row = rows - 1 - heights[col];
+        heights[col]++;
+        grid[row][col] = player[owner];
+        board.set(owner, row, col);
+        hash ^= Zobrist.key(owner, board.bitIndex(row, col));
+        mirrorHash ^= Zobrist.key(owner, board.bitIndex(row, cols - 1 - col));
+        lastDropRow = row;
+        lastDropCol = col;
+        numDropped++;
+        phase = (move & 0x80) != 0 ? GamePhase.OVER : GamePhase.PLAYABLE;
 
-            for (int i = 0; i < rows - 3; i++) {
+    } // redo
 
-                if (this.grid[i][j] == this.grid[i + 1][j] &&
-                    this.grid[i][j] == this.grid[i + 2][j] &&
-                    this.grid[i][j] == this.grid[i + 3][j] &&
-                    this.grid[i][j] != null ) {
+    /**
+     * Emit the flight recorder events for a call to {@link #isLastDropConnectFour}, if they
+     * are enabled.
+     *
+     * @param check the name of the check that found a connect four, or {@code null}
+     * @param ended whether the call ended the game
+     */
+    private void recordWinCheck(String check, boolean ended) {
 
-                    return true;
+        GameEvents.WinCheck event = new GameEvents.WinCheck();
+        if (event.shouldCommit()) {
 
-                } // if to check tokens
+            event.win = check != null;
+            event.check = check;
+            event.tokens = numDropped;
+            event.commit();
 
-            } // for to parse rows
+        } // emit the win check
 
-        } // for to parse cols
+        if (ended) {
 
-        return false;
+            GameEvents.GameOver over = new GameEvents.GameOver();
+            if (over.shouldCommit()) {
 
-    } // checkVertical
+                over.rows = rows;
+                over.columns = cols;
+                over.tokens = numDropped;
+                // the connect four may not pass through the last drop of a loaded game
+                over.winner = check == null ? -1 : board.hasConnectFour(0) ? 0 : 1;
+                over.commit();
+
+            } // emit the end of the game
 
+        } // the game just ended
 
+    } // recordWinCheck
 
     /**
-     * This method checks for any horizontal Connect Fours (checks by rows).
+     * Count a drop rejected for {@code reason} if {@linkplain GameMetrics metrics} are enabled.
      *
-     * @return {@code true} when there is a horizontal COnnect Four.
+     * @param reason why {@link #dropToken} is about to throw
      */
-    public boolean checkHorizontal() {
+    private static void rejected(GameMetrics.Rejection reason) {
 
-        for (int i = 0; i < rows; i++) {
+        if (GameMetrics.ENABLED) {
 
-            for (int j = 0; j < cols - 3; j++) {
+            GameMetrics.rejected(reason);
 
-                if (this.grid[i][j] == this.grid[i][j + 1] &&
-                    this.grid[i][j] == this.grid[i][j + 2] &&
-                    this.grid[i][j] == this.grid[i][j + 3] &&
-                    this.grid[i][j] != null) {
+        } // if metrics are enabled
 
-                    return true;
+    } // rejected
 
-                } // if to check tokens
+    /**
+     * Change the phase to {@link cs1302.gameutil.GamePhase#OVER} and remember in the history
+     * that the most recent drop ended the game, so that {@link #redo} can restore it.
+     */
+    private void setOver() {
 
-            } // for to parse rows
+        phase = GamePhase.OVER;
 
-        } // for to parse cols
+        if (numDropped > undoFloor) {
 
-        return false;
+            history[numDropped - 1] |= (byte) 0x80;
+
+        } // mark the drop that ended the game
+
+    } // setOver
+
+    /**
+     * Return the {@linkplain Zobrist Zobrist hash} of the tokens in the grid. The hash is
+     * updated by {@link #dropToken}, so reading it costs nothing. Games of the same size with
+     * the same tokens in the same cells have the same hash.
+     *
+     * @return the grid's hash ({@code 0} for an empty grid)
+     */
+    public long getHash() {
+
+        return hash;
+
+    } // getHash
+
+    /**
+     * Return the {@linkplain Zobrist Zobrist hash} of the grid reflected left to right, as if
+     * every token in column {@code c} were in column {@code cols - 1 - c}. Like
+     * {@link #getHash}, it is updated by {@link #dropToken}.
+     *
+     * @return the reflected grid's hash ({@code 0} for an empty grid)
+     */
+    public long getMirrorHash() {
+
+        return mirrorHash;
+
+    } // getMirrorHash
+
+    /**
+     * Return the same hash for this grid and for its reflection: the smaller of
+     * {@link #getHash} and {@link #getMirrorHash}. Tables keyed by it store one entry for a
+     * position and its mirror image, so they need about half as many entries. Columns stored
+     * with such an entry should go through {@link #toCanonicalColumn} in both directions.
+     *
+     * @return the canonical hash
+     */
+    public long getCanonicalHash() {
+
+        return Math.min(hash, mirrorHash);
+
+    } // getCanonicalHash
+
+    /**
+     * Map {@code col} between this grid and the orientation that {@link #getCanonicalHash}
+     * names: reflect it if the canonical hash is the mirror's, and leave it alone otherwise.
+     * The mapping is its own inverse, so it also maps a column read from a canonical table back
+     * to this grid.
+     *
+     * @param col a column index
+     * @return the column in the other orientation
+     */
+    public int toCanonicalColumn(int col) {
+
+        return mirrorHash < hash ? cols - 1 - col : col;
+
+    } // toCanonicalColumn
+
+    /**
+     * Return the number of tokens that have been dropped into column {@code col}.
+     *
+     * @param col the column index
+     * @return the number of tokens in the column, from {@code 0} to {@link #getRows}
+     * @throws IndexOutOfBoundsException if {@code col} is not a valid column index
+     */
+    public int getColumnHeight(int col) {
+
+        if (col < 0 || col >= cols) {
+
+            throw new IndexOutOfBoundsException("Invalid column index.");
+
+        } // invalid column index
+
+        return heights[col];
+
+    } // getColumnHeight
+
+    /**
+     * Return whether column {@code col} is full, meaning {@link #dropToken} would throw an
+     * {@code IllegalStateException} for it.
+     *
+     * @param col the column index
+     * @return {@code true} if no more tokens fit in the column
+     * @throws IndexOutOfBoundsException if {@code col} is not a valid column index
+     */
+    public boolean isColumnFull(int col) {
+
+        return getColumnHeight(col) == rows;
+
+    } // isColumnFull
+
+    /**
+     * This method checks for any vertical Connect Fours (checks by columns).
+     *
+     * @return {@code true} when there is a vertical Connect Four.
+     */
+    public boolean checkVertical() {
+
+        return board.hasVertical(0) || board.hasVertical(1);
+
+    } // checkVertical
+
+    /**
+     * This method checks for any horizontal Connect Fours (checks by rows).
+     *
+     * @return {@code true} when there is a horizontal Connect Four.
+     */
+    public boolean checkHorizontal() {
+
+        return board.hasHorizontal(0) || board.hasHorizontal(1);
 
     } // checkHorizontal
 
@@ -512,44 +761,274 @@ public class ConnectFour {
      */
     public boolean checkDiagonals() {
 
-        for (int i = 3; i < rows; i++) { // checking the vertical diagonal
+        return board.hasDiagonal(0) || board.hasDiagonal(1);
+
+    } // checkDiagonals
+
+    /**
+     * Return the cells of a Connect Four that passes through the last dropped token, or
+     * {@code null} if there is none. The {@linkplain LineMasks winning lines} through the last
+     * drop are tested against its player's bit mask, vertical first, then horizontal and both
+     * diagonals, so a drop that connects nothing is rejected with at most sixteen mask tests
+     * and no allocation. Only for a connect four are cells read, to find where the run ends.
+     * The returned array holds one {@code {row, col}} pair per
+     * cell of the winning line, ordered from one end of the line to the other; the line may be
+     * longer than four cells if the last drop joined two shorter runs.
+     *
+     * <p>
+     * Unlike {@link #isLastDropConnectFour}, this method does not change the game's phase.
+     *
+     * @return the winning line through the last drop, or {@code null} if the last drop did not
+     *     create a Connect Four or no token has been dropped yet
+     */
+    public int[][] getLastDropConnectFour() {
 
-            for (int j = 0; j < cols - 3; j++) {
+        if (!isInBounds(lastDropRow, lastDropCol)) {
 
-                if (this.grid[i][j] == this.grid[i - 1][j + 1] &&
-                    this.grid[i][j] == this.grid[i - 2][j + 2] &&
-                    this.grid[i][j] == this.grid[i - 3][j + 3] &&
-                    this.grid[i][j] != null) {
+            return null;
 
-                    return true;
+        } // nothing dropped yet
 
-                } // if to check tokens
+        Token token = grid[lastDropRow][lastDropCol];
 
-            } // for to parse rows
+        if (token == null) {
 
-        } // for to parse cols
+            return null;
 
+        } // last drop cell is empty
 
-        for (int i = 0; i < rows - 3; i++) { // checking the horizontal diagonal
+        int owner = token == player[0] ? 0 : 1;
+        LineMasks lines = LineMasks.forSize(rows, cols);
+        int found = lines.findLineThrough(board.bitIndex(lastDropRow, lastDropCol),
+            board.getLow(owner), board.getHigh(owner));
 
-            for (int j = 0; j < cols - 3; j++) {
+        if (found < 0) {
 
-                if (this.grid[i][j] == this.grid[i + 1][j + 1] &&
-                    this.grid[i][j] == this.grid[i + 2][j + 2] &&
-                    this.grid[i][j] == this.grid[i + 3][j + 3] &&
-                    this.grid[i][j] != null) {
+            return null;
 
-                    return true;
+        } // no winning line through the last drop
 
-                } // if to check tokens
+        int rowStep = lines.getRowStep(found);
+        int colStep = lines.getColStep(found);
+        int back = countRun(token, -rowStep, -colStep);
+        int ahead = countRun(token, rowStep, colStep);
+        int length = back + 1 + ahead;
+        int[][] line = new int[length][];
 
-            } // for to parse rows
+        for (int i = 0; i < length; i++) {
 
-        } // for to parse cols
+            int step = i - back;
+            line[i] = new int[] {lastDropRow + step * rowStep, lastDropCol + step * colStep};
 
-        return false;
+        } // for to fill the line
 
-    } // checkDiagonals
+        return line;
+
+    } // getLastDropConnectFour
+
+    /**
+     * Count how many cells holding {@code token} follow the last drop in the direction given by
+     * {@code rowStep} and {@code colStep}, not counting the last drop itself. Counting stops at
+     * the first different token, empty cell or the edge of the grid.
+     *
+     * @param token the token of the last drop
+     * @param rowStep the row increment per step
+     * @param colStep the column increment per step
+     * @return the number of matching cells in that direction
+     */
+    private int countRun(Token token, int rowStep, int colStep) {
+
+        int count = 0;
+        int row = lastDropRow + rowStep;
+        int col = lastDropCol + colStep;
+
+        while (isInBounds(row, col) && grid[row][col] == token) {
+
+            count++;
+            row += rowStep;
+            col += colStep;
+
+        } // while the run continues
+
+        return count;
+
+    } // countRun
+
+    /**
+     * Write this game to {@code buffer} as one fixed-width binary record of
+     * {@link GameArchive#RECORD_BYTES} bytes, starting at index {@code offset}. The layout is
+     * described in {@link GameArchive}. The buffer's position is not changed and its byte
+     * order is used for the masks.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the index of the record's first byte
+     * @throws IndexOutOfBoundsException if the record does not fit in the buffer
+     * @throws java.nio.ReadOnlyBufferException if the buffer is read-only
+     */
+    public void writeRecord(java.nio.ByteBuffer buffer, int offset) {
+
+        boolean noTokens = phase == GamePhase.NEW;
+        buffer.put(offset, (byte) rows);
+        buffer.put(offset + 1, (byte) cols);
+        buffer.put(offset + 2, (byte) (noTokens ? -1 : player[0].ordinal()));
+        buffer.put(offset + 3, (byte) (noTokens ? -1 : player[1].ordinal()));
+        buffer.put(offset + 4, (byte) lastDropRow);
+        buffer.put(offset + 5, (byte) lastDropCol);
+        buffer.put(offset + 6, (byte) phase.ordinal());
+        buffer.put(offset + 7, (byte) 0);
+        buffer.putLong(offset + 8, board.getLow(0));
+        buffer.putLong(offset + 16, board.getHigh(0));
+        buffer.putLong(offset + 24, board.getLow(1));
+        buffer.putLong(offset + 32, board.getHigh(1));
+
+    } // writeRecord
+
+    /**
+     * Replace the state of this game with the binary record that starts at index
+     * {@code offset} of {@code buffer}, as written by {@link #writeRecord}. The record is
+     * decoded straight from the buffer: no tokens are replayed through {@link #dropToken}, and
+     * if the record's grid has the same size as this game's grid, nothing is allocated. The
+     * buffer's position is not changed, so several threads may read records from one shared
+     * buffer, each into its own game.
+     *
+     * @param buffer the buffer to read from
+     * @param offset the index of the record's first byte
+     * @throws IndexOutOfBoundsException if the record does not fit in the buffer
+     * @throws IllegalArgumentException if the record does not describe a valid game; this game
+     *     is left unchanged in that case
+     */
+    public void readRecord(java.nio.ByteBuffer buffer, int offset) {
+
+        int newRows = buffer.get(offset);
+        int newCols = buffer.get(offset + 1);
+        int token0 = buffer.get(offset + 2);
+        int token1 = buffer.get(offset + 3);
+        int dropRow = buffer.get(offset + 4);
+        int dropCol = buffer.get(offset + 5);
+        int phaseIndex = buffer.get(offset + 6);
+        long lo0 = buffer.getLong(offset + 8);
+        long hi0 = buffer.getLong(offset + 16);
+        long lo1 = buffer.getLong(offset + 24);
+        long hi1 = buffer.getLong(offset + 32);
+
+        if (newRows < 6 || newRows > 9 || newCols < 7 || newCols > 9
+            || phaseIndex < 0 || phaseIndex >= GameArchive.PHASES.length
+            || ((lo0 & lo1) | (hi0 & hi1)) != 0) {
+
+            throw new IllegalArgumentException("Corrupt game record at offset " + offset + ".");
+
+        } // bad size, phase or overlapping masks
+
+        GamePhase newPhase = GameArchive.PHASES[phaseIndex];
+        int height = newRows + 1;
+        long occupiedLo = lo0 | lo1;
+        long occupiedHi = hi0 | hi1;
+        int count = 0;
+
+        for (int col = 0; col < newCols; col++) {
+
+            long column = Bitboard.bits(occupiedLo, occupiedHi, col * height, height);
+            int filled = Long.numberOfTrailingZeros(~column);
+
+            if ((column >>> filled) != 0 || filled > newRows) {
+
+                throw new IllegalArgumentException("Corrupt game record at offset " + offset
+                    + ": column " + col + " has a floating token.");
+
+            } // tokens must sit on top of each other
+
+            count += filled;
+
+        } // for each column
+
+        boolean noTokens = newPhase == GamePhase.NEW;
+        boolean badTokens = noTokens
+            ? token0 != -1 || token1 != -1
+            : token0 < 0 || token1 < 0 || token0 == token1
+                || token0 >= GameArchive.TOKENS.length || token1 >= GameArchive.TOKENS.length;
+        boolean badDrop = count == 0
+            ? dropRow != -1 || dropCol != -1 || newPhase == GamePhase.PLAYABLE
+                || newPhase == GamePhase.OVER
+            : dropCol < 0 || dropCol >= newCols || dropRow < 0 || dropRow >= newRows
+                || noTokens || newPhase == GamePhase.READY
+                || Bitboard.bits(occupiedLo, occupiedHi,
+                                 dropCol * height + newRows - 1 - dropRow, 1) == 0;
+
+        if (Long.bitCount(occupiedLo) + Long.bitCount(occupiedHi) != count
+            || badTokens || badDrop) {
+
+            throw new IllegalArgumentException("Corrupt game record at offset " + offset + ".");
+
+        } // tokens outside the grid, bad player tokens or bad last drop
+
+        if (newRows != rows || newCols != cols) {
+
+            grid = new Token[newRows][newCols];
+            board = new Bitboard(newRows, newCols);
+            heights = new byte[newCols];
+            history = new byte[newRows * newCols];
+            rows = newRows;
+            cols = newCols;
+
+        } // only reallocate when the size changes
+
+        if (noTokens) {
+
+            player = null;
+
+        } else {
+
+            if (player == null) {
+
+                player = new Token[2];
+
+            } // first time tokens are set
+
+            player[0] = GameArchive.TOKENS[token0];
+            player[1] = GameArchive.TOKENS[token1];
+
+        } // set the player tokens
+
+        board.setMask(0, lo0, hi0);
+        board.setMask(1, lo1, hi1);
+        hash = 0;
+        mirrorHash = 0;
+
+        for (int col = 0; col < cols; col++) {
+
+            int base = col * height;
+            long own0 = Bitboard.bits(lo0, hi0, base, height);
+            long own1 = Bitboard.bits(lo1, hi1, base, height);
+            int filled = Long.numberOfTrailingZeros(~(own0 | own1));
+            heights[col] = (byte) filled;
+
+            for (int bit = 0; bit < rows; bit++) {
+
+                Token token = null;
+
+                if (bit < filled) {
+
+                    int owner = (int) (own1 >>> bit) & 1;
+                    token = player[owner];
+                    hash ^= Zobrist.key(owner, base + bit);
+                    mirrorHash ^= Zobrist.key(owner, (cols - 1 - col) * height + bit);
+
+                } // cell holds a token
+
+                grid[rows - 1 - bit][col] = token;
+
+            } // for each cell, from the bottom up
+
+        } // for each column
+
+        numDropped = count;
+        undoFloor = count;
+        redoLimit = count;
+        lastDropRow = dropRow;
+        lastDropCol = dropCol;
+        phase = newPhase;
+
+    } // readRecord
 
 
 
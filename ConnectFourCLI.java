@@ -1,10 +1,15 @@
 package cs1302.game;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
-import java.io.FileNotFoundException;
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import cs1302.game.ConnectFour;
+import cs1302.game.ai.MonteCarloSearch;
+import cs1302.game.ai.Position;
 import cs1302.gameutil.GamePhase;
 import cs1302.gameutil.Token;
 
@@ -15,16 +20,65 @@ public class ConnectFourCLI {
 
     private static final Scanner STD_IN = new Scanner(System.in);
 
+    /** The text of every resource file read so far, by file name. */
+    private static final Map<String, String> RESOURCES = new HashMap<>();
+
     /**
      * Entry point to the {@link cs1302.game.ConnectFourDriver} program.
-     * @param args the command-line arguments (not used)
+     * @param args the command-line arguments; {@code --mcts <millis>} makes player 1 a computer
+     *     opponent that thinks for {@code millis} milliseconds per move, and
+     *     {@code --serve [address]} hosts games over a socket instead (see
+     *     {@link cs1302.game.net.GameServer#main}), and {@code --batch [options] [file]} replays
+     *     scripted games without drawing them (see {@link BatchRunner#main})
+     * @throws java.io.IOException if the game server cannot be started or the scripted games
+     *     cannot be read
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            cs1302.game.net.GameServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        } else if (args.length >= 1 && args[0].equals("--batch")) {
+            BatchRunner.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        } // if
+        long thinkMillis = args.length == 0 ? 0 : ConnectFourCLI.thinkMillis(args);
         ConnectFourCLI.printWelcome();
         ConnectFour game = ConnectFourCLI.manualSetUp();
-        ConnectFourCLI.play(game);
+        if (thinkMillis > 0) {
+            try (MonteCarloSearch engine = new MonteCarloSearch()) {
+                ConnectFourCLI.play(game, engine, thinkMillis);
+            } // try
+        } else {
+            ConnectFourCLI.play(game);
+        } // if
     } // main
 
+    /**
+     * Returns the thinking time given with {@code --mcts <millis>}, the only option of an
+     * interactive game. Prints a usage message and exits if the arguments are anything else,
+     * so that a mistyped option is reported before the setup questions are asked.
+     * @param args the command-line arguments, at least one
+     * @return the computer's thinking time per move, in milliseconds, at least {@code 1}
+     */
+    private static long thinkMillis(String[] args) {
+        if (args.length == 2 && args[0].equals("--mcts")) {
+            try {
+                long millis = Long.parseLong(args[1]);
+                if (millis > 0) {
+                    return millis;
+                } // if
+            } catch (NumberFormatException nfe) {
+                // reported below
+            } // try
+        } // if
+        System.err.println("usage: ConnectFourCLI [--mcts MILLIS]");
+        System.err.println("       ConnectFourCLI --serve [ADDRESS] [NAME=POLICY ...]");
+        System.err.println("       ConnectFourCLI --batch [OPTIONS] [FILE]");
+        System.err.println("MILLIS is the computer's thinking time per move, at least 1.");
+        System.exit(1);
+        return 0;
+    } // thinkMillis
+
     /**
      * If there is not file path specified then the user manually sets up a connect four
      * game by specifiying the number of rows, columns, and colors for both player tokens.
@@ -56,23 +110,36 @@ public class ConnectFourCLI {
     } // manualSetUp
 
 
+    /**
+     * Returns the text of a resource file, with every line ending in a newline. Each file is
+     * read only the first time it is needed.
+     * @param filename the file to read
+     * @return the file's text
+     */
+    public static synchronized String resource(String filename) {
+        String text = RESOURCES.get(filename);
+        if (text == null) {
+            try {
+                text = Files.readString(Path.of(filename));
+            } catch (IOException ioe) {
+                System.out.println("Missing " + filename + ". Make sure it is in the" +
+                    "resource folder in the projects home directory.");
+                System.exit(1);
+            } // try
+            if (!text.isEmpty() && !text.endsWith("\n")) {
+                text += "\n";
+            } // if
+            RESOURCES.put(filename, text);
+        } // if
+        return text;
+    } // resource
+
     /**
      * Prints all lines from the file.
      * @param filename the file to print
      */
     public static void printFileLines(String filename) {
-        try {
-            File inFile = new File(filename);
-            Scanner input = new Scanner(inFile);
-            while (input.hasNextLine()) {
-                System.out.println(input.nextLine());
-            }
-            input.close();
-        } catch (FileNotFoundException fnfe) {
-            System.out.println("Missing " + filename + ". Make sure it is in the" +
-                "resource folder in the projects home directory.");
-            System.exit(1);
-        } // try
+        System.out.print(resource(filename));
     } // printFileLines
 
     /**
@@ -106,29 +173,49 @@ public class ConnectFourCLI {
      * @param game a {@code ConnectFour} game to be played.
      */
     public static void play(ConnectFour game) {
+        ConnectFourCLI.play(game, null, 0);
+    } // play
+
+    /**
+     * Plays a {@code ConnectFour} object like {@link #play(ConnectFour)}, except that player 1's
+     * moves are chosen by {@code engine} when it is not {@code null}.
+     *
+     * @param game a {@code ConnectFour} game to be played.
+     * @param engine the computer opponent for player 1, or {@code null} for two human players.
+     * @param thinkMillis how long the computer may think about each move, in milliseconds.
+     */
+    public static void play(ConnectFour game, MonteCarloSearch engine, long thinkMillis) {
+        TerminalRenderer screen = TerminalRenderer.forStandardOutput(
+            resource("resources/connectfour.txt"));
         int player = 0;
-        boolean isWon = false;
+        String message = "";
 
         while (game.getPhase() != GamePhase.OVER) {
             try {
-                ConnectFourCLI.printHeader();
-                System.out.println();
-                game.printGrid();
-                System.out.print("\nPlayer " + player + ", enter a column to drop your token: ");
-                int col = Integer.parseInt(STD_IN.nextLine().trim());
+                int col;
+                if (engine != null && player == 1) {
+                    screen.render(game, message + "Player 1 (computer) is thinking...");
+                    col = engine.search(Position.of(game, player), thinkMillis, 0).getBestMove();
+                    message = "Player 1 (computer) dropped a token in column " + col + "\n";
+                } else {
+                    screen.render(game, message + "Player " + player
+                        + ", enter a column to drop your token: ");
+                    col = Integer.parseInt(STD_IN.nextLine().trim());
+                    message = "";
+                } // if
                 game.dropToken(player, col);
                 player = (player + 1) % 2;
-                isWon = game.isLastDropConnectFour();
+                game.isLastDropConnectFour();
             } catch (Exception e) {
-                System.out.println("\n *** Invalid column entry, try again ***");
+                message = "*** Invalid column entry, try again ***\n";
             } // try
         } // while
-        ConnectFourCLI.printGameOver();
-        game.printGrid();
 
+        String result = "";
         if (game.isLastDropConnectFour()) {
             player = (player + 1) % 2;
-            System.out.printf("\n\nCongratulations, player %s. You won!\n\n", player);
+            result = String.format("\nCongratulations, player %s. You won!\n\n", player);
         } // if
+        screen.render(game, message + resource("resources/gameover.txt") + result);
     } // play
 } // ConnectFourCLI
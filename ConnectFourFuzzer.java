@@ -0,0 +1,650 @@
+package cs1302.game;
+
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * A differential fuzzer that plays random and adversarial games on a {@link ConnectFour}
+ * engine and on {@link ReferenceConnectFour}, the original {@code Token[][]} rules, and checks
+ * that they agree after every operation. Games cover every supported grid size and mix
+ *
+ * <ul>
+ * <li>random drops by alternating players;
+ * <li>adversarial sequences: columns and players that are out of range, full columns, the same
+ *     player moving twice, drops after the game is over, winning and blocking moves, skipped or
+ *     repeated win checks, and {@link ConnectFour#undo undo} and {@link ConnectFour#redo redo};
+ *     and
+ * <li>games steered away from wins, which fill the grid and end in draws.
+ * </ul>
+ *
+ * <p>
+ * After each operation the two implementations must throw the same kind of exception (or
+ * none), return the same win-check results, and agree on {@code getTokenAt} for every cell,
+ * {@code getPhase}, {@code getNumDropped}, the last drop's row and column, {@code isBoardFull}
+ * and the three {@code check} methods. The reference has no undo, so it is rebuilt from the
+ * remaining drops after an undo or redo.
+ *
+ * <p>
+ * When the engine disagrees, the game is shrunk by removing ever smaller runs of operations
+ * for as long as the shortened game still disagrees, so the reported sequence is one where no
+ * single operation can be left out. Game {@code g} of a run depends only on the seed and
+ * {@code g}, so a reported game can be replayed with the same seed.
+ */
+public class ConnectFourFuzzer {
+
+    /** The operation that calls {@link ConnectFour#isLastDropConnectFour}. */
+    static final int CHECK = 1 << 16;
+
+    /** The operation that calls {@link ConnectFour#undo}. */
+    static final int UNDO = 2 << 16;
+
+    /** The operation that calls {@link ConnectFour#redo}. */
+    static final int REDO = 3 << 16;
+
+    private final BiFunction<Integer, Integer, ConnectFour> factory;
+
+    /**
+     * Constructs a fuzzer for the engine made by {@code factory}, which is given the number of
+     * rows and columns and must return a new game in the {@code NEW} phase.
+     *
+     * @param factory makes the games under test
+     */
+    public ConnectFourFuzzer(BiFunction<Integer, Integer, ConnectFour> factory) {
+        this.factory = factory;
+    } // ConnectFourFuzzer
+
+    /**
+     * Return the operation that drops {@code player}'s token in {@code col}. Either may be out
+     * of range.
+     *
+     * @param player the player
+     * @param col the column
+     * @return the operation
+     */
+    static int drop(int player, int col) {
+        return (player & 0xFF) << 8 | (col & 0xFF);
+    } // drop
+
+    /**
+     * Play {@code games} games on {@code threads} threads and return the first disagreement
+     * found, shrunk, or {@code null} if every game agreed.
+     *
+     * @param games the number of games
+     * @param seed the base random seed
+     * @param threads the number of threads
+     * @param operations counts the operations checked; may be {@code null}
+     * @return the shrunk disagreement, or {@code null}
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public Failure run(long games, long seed, int threads, AtomicLong operations)
+        throws InterruptedException {
+        AtomicReference<Failure> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[Math.max(1, threads)];
+        for (int t = 0; t < workers.length; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                long checked = 0;
+                for (long game = id; game < games && failure.get() == null;
+                     game += workers.length) {
+                    int rows = 6 + (int) (game % 4);
+                    int cols = 7 + (int) (game / 4 % 3);
+                    SplittableRandom random =
+                        new SplittableRandom(seed ^ game * 0x9E3779B97F4A7C15L);
+                    int[] ops = generate(rows, cols, random);
+                    checked += ops.length;
+                    Mismatch mismatch = check(rows, cols, ops, ops.length);
+                    if (mismatch != null) {
+                        int[] shrunk = shrink(rows, cols, Arrays.copyOf(ops, mismatch.index + 1));
+                        failure.compareAndSet(null, new Failure(
+                            game, rows, cols, shrunk, check(rows, cols, shrunk, shrunk.length)));
+                    } // if
+                } // for
+                if (operations != null) {
+                    operations.addAndGet(checked);
+                } // if
+            }, "fuzzer-" + t);
+            workers[t].start();
+        } // for
+        for (Thread worker : workers) {
+            worker.join();
+        } // for
+        return failure.get();
+    } // run
+
+    /**
+     * Generate one game's operations. The game is played on a reference model as it is
+     * generated, so that moves can aim for wins, blocks or draws.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param random the source of choices
+     * @return the operations
+     */
+    static int[] generate(int rows, int cols, SplittableRandom random) {
+        Model model = new Model(rows, cols);
+        int style = random.nextInt(3);  // 0 random, 1 adversarial, 2 avoid wins
+        int[] ops = new int[rows * cols * 4];
+        int count = 0;
+        int player = 0;
+        int afterOver = random.nextInt(4);
+        while (count + 2 <= ops.length) {
+            if (model.ref.getPhase() == GamePhase.OVER && afterOver-- == 0) {
+                break;
+            } // if
+            int roll = style == 1 ? random.nextInt(100) : 100;
+            int op;
+            boolean sameAgain = false;
+            if (roll < 4) {
+                op = drop(player, random.nextBoolean() ? -1 - random.nextInt(2) : cols);
+            } else if (roll < 7) {
+                op = drop(random.nextBoolean() ? 2 : -1, random.nextInt(cols));
+            } else if (roll < 13) {
+                op = UNDO;
+            } else if (roll < 17) {
+                op = REDO;
+            } else if (roll < 21) {
+                op = CHECK;
+            } else {
+                sameAgain = roll < 27;
+                op = drop(player, chooseColumn(model, player, style, random));
+            } // if
+            ops[count++] = op;
+            Object outcome = model.apply(op);
+            if (op == UNDO || op == REDO) {
+                if (outcome == null) {
+                    player = model.count % 2;
+                } // if
+            } else if (op != CHECK && outcome == null) {
+                if (style != 1 || random.nextInt(10) > 0) {
+                    ops[count++] = CHECK;
+                    model.apply(CHECK);
+                } // if
+                if (!sameAgain) {
+                    player ^= 1;
+                } // if
+            } // if
+        } // while
+        return Arrays.copyOf(ops, count);
+    } // generate
+
+    /**
+     * Choose a column for a drop: a random one, a winning or blocking one, or one that avoids
+     * a win, depending on {@code style}. Full columns may be chosen.
+     *
+     * @param model the game so far
+     * @param player the player to move
+     * @param style {@code 0} for random, {@code 1} for adversarial, {@code 2} to avoid wins
+     * @param random the source of choices
+     * @return the column
+     */
+    private static int chooseColumn(Model model, int player, int style, SplittableRandom random) {
+        ReferenceConnectFour ref = model.ref;
+        int cols = model.cols;
+        int start = random.nextInt(cols);
+        if (style == 0 || ref.getPhase() == GamePhase.OVER || random.nextInt(4) == 0) {
+            return start;
+        } // if
+        for (int i = 0; i < cols; i++) {
+            int col = (start + i) % cols;
+            if (ref.isColumnFull(col)) {
+                continue;
+            } // if
+            boolean wins = ref.wouldWin(player, col);
+            boolean blocks = !wins && ref.wouldWin(1 - player, col);
+            if (style == 1 && (wins || blocks)) {
+                return col;
+            } else if (style == 2 && !wins && !blocks) {
+                return col;
+            } // if
+        } // for
+        return start;
+    } // chooseColumn
+
+    /**
+     * Play {@code ops} on a new engine and a new reference model and return the first point
+     * where they disagree.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param ops the operations
+     * @param length the number of operations to play
+     * @return the disagreement, or {@code null} if there is none
+     */
+    Mismatch check(int rows, int cols, int[] ops, int length) {
+        ConnectFour game = factory.apply(rows, cols);
+        game.setPlayerTokens(Token.RED, Token.BLUE);
+        Model model = new Model(rows, cols);
+        for (int i = 0; i < length; i++) {
+            Object expected = model.apply(ops[i]);
+            Object actual = apply(game, ops[i]);
+            String difference = differ("result", actual, expected);
+            if (difference == null) {
+                difference = compare(game, model.ref);
+            } // if
+            if (difference != null) {
+                return new Mismatch(i, "after " + describe(ops[i]) + ", " + difference);
+            } // if
+        } // for
+        return null;
+    } // check
+
+    /**
+     * Apply one operation to the engine under test.
+     *
+     * @param game the engine
+     * @param op the operation
+     * @return the win check's result, the class of the exception thrown, or {@code null}
+     */
+    private static Object apply(ConnectFour game, int op) {
+        try {
+            switch (op) {
+            case CHECK:
+                return game.isLastDropConnectFour();
+            case UNDO:
+                game.undo();
+                return null;
+            case REDO:
+                game.redo();
+                return null;
+            default:
+                game.dropToken((byte) (op >> 8), (byte) op);
+                return null;
+            } // switch
+        } catch (RuntimeException re) {
+            return re.getClass();
+        } // try
+    } // apply
+
+    /**
+     * Compare everything the original API can observe about the two games.
+     *
+     * @param game the engine under test
+     * @param ref the reference
+     * @return the first difference, or {@code null} if there is none
+     */
+    private static String compare(ConnectFour game, ReferenceConnectFour ref) {
+        String difference = differ("getPhase", game.getPhase(), ref.getPhase());
+        if (difference == null) {
+            difference = differ("getNumDropped", value(game::getNumDropped),
+                                value(ref::getNumDropped));
+        } // if
+        if (difference == null) {
+            difference = differ("getLastDropRow", value(game::getLastDropRow),
+                                value(ref::getLastDropRow));
+        } // if
+        if (difference == null) {
+            difference = differ("getLastDropCol", value(game::getLastDropCol),
+                                value(ref::getLastDropCol));
+        } // if
+        if (difference == null) {
+            difference = differ("isBoardFull", game.isBoardFull(), ref.isBoardFull());
+        } // if
+        if (difference == null) {
+            difference = differ("checkVertical", game.checkVertical(), ref.checkVertical());
+        } // if
+        if (difference == null) {
+            difference = differ("checkHorizontal", game.checkHorizontal(),
+                                ref.checkHorizontal());
+        } // if
+        if (difference == null) {
+            difference = differ("checkDiagonals", game.checkDiagonals(), ref.checkDiagonals());
+        } // if
+        for (int row = 0; row < game.getRows() && difference == null; row++) {
+            for (int col = 0; col < game.getCols() && difference == null; col++) {
+                Token actual = game.getTokenAt(row, col);
+                Token expected = ref.getTokenAt(row, col);
+                if (actual != expected) {
+                    difference = differ("getTokenAt(" + row + ", " + col + ")", actual, expected);
+                } // if
+            } // for
+        } // for
+        return difference;
+    } // compare
+
+    /**
+     * A getter that may throw.
+     */
+    private interface Getter {
+
+        /**
+         * Return the value.
+         *
+         * @return the value
+         */
+        int get();
+
+    } // Getter
+
+    /**
+     * Return the value of {@code getter}, or the class of the exception it throws.
+     *
+     * @param getter the getter
+     * @return the value or exception class
+     */
+    private static Object value(Getter getter) {
+        try {
+            return getter.get();
+        } catch (RuntimeException re) {
+            return re.getClass();
+        } // try
+    } // value
+
+    /**
+     * Describe a difference between the engine's and the reference's answer to {@code what}.
+     *
+     * @param what the method or result compared
+     * @param actual the engine's answer
+     * @param expected the reference's answer
+     * @return the description, or {@code null} if the answers are equal
+     */
+    private static String differ(String what, Object actual, Object expected) {
+        if (actual == null ? expected == null : actual.equals(expected)) {
+            return null;
+        } // if
+        return what + " is " + name(actual) + " but the reference says " + name(expected);
+    } // differ
+
+    /**
+     * Return a short name for an answer.
+     *
+     * @param answer a value, an exception class or {@code null}
+     * @return the name
+     */
+    private static String name(Object answer) {
+        return answer instanceof Class ? "a thrown " + ((Class<?>) answer).getSimpleName()
+            : String.valueOf(answer);
+    } // name
+
+    /**
+     * Shrink a disagreeing game: remove runs of operations, from half the game down to single
+     * operations, keeping each removal after which the game still disagrees, until no single
+     * operation can be removed.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param ops the operations of a disagreeing game
+     * @return the shrunk operations
+     */
+    int[] shrink(int rows, int cols, int[] ops) {
+        int[] best = ops;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int run = Math.max(1, best.length / 2); run >= 1; run /= 2) {
+                for (int start = 0; start + run <= best.length; ) {
+                    int[] candidate = new int[best.length - run];
+                    System.arraycopy(best, 0, candidate, 0, start);
+                    System.arraycopy(best, start + run, candidate, start, candidate.length - start);
+                    Mismatch mismatch = check(rows, cols, candidate, candidate.length);
+                    if (mismatch != null) {
+                        best = Arrays.copyOf(candidate, mismatch.index + 1);
+                        shrunk = true;
+                    } else {
+                        start++;
+                    } // if
+                } // for
+            } // for
+        } // while
+        return best;
+    } // shrink
+
+    /**
+     * Return a readable form of one operation, like {@code drop(1, 3)} or {@code undo}.
+     *
+     * @param op the operation
+     * @return the description
+     */
+    static String describe(int op) {
+        switch (op) {
+        case CHECK:
+            return "check";
+        case UNDO:
+            return "undo";
+        case REDO:
+            return "redo";
+        default:
+            return "drop(" + (byte) (op >> 8) + ", " + (byte) op + ")";
+        } // switch
+    } // describe
+
+    /**
+     * The reference game together with what it needs to mirror undo and redo: every drop still
+     * in the engine's history, and whether a win check ended the game on it.
+     */
+    private static final class Model {
+
+        private final int rows;
+        private final int cols;
+        private final int[] moves;       // player << 4 | col of each drop in the history
+        private final boolean[] ended;   // whether a win check ended the game on that drop
+        private ReferenceConnectFour ref;
+        private int count;               // drops on the grid
+        private int limit;               // drops in the history, including undone ones
+
+        /**
+         * Constructs an empty model.
+         *
+         * @param rows the number of grid rows
+         * @param cols the number of grid columns
+         */
+        Model(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            this.moves = new int[rows * cols];
+            this.ended = new boolean[rows * cols];
+            rebuild(false);
+        } // Model
+
+        /**
+         * Apply one operation the way {@link ConnectFour} specifies it.
+         *
+         * @param op the operation
+         * @return the win check's result, the class of the exception thrown, or {@code null}
+         */
+        Object apply(int op) {
+            try {
+                switch (op) {
+                case CHECK:
+                    boolean win = ref.isLastDropConnectFour();
+                    if (ref.getPhase() == GamePhase.OVER && count > 0) {
+                        ended[count - 1] = true;
+                    } // if
+                    return win;
+                case UNDO:
+                    if (count == 0) {
+                        throw new IllegalStateException("There is no drop to undo.");
+                    } // if
+                    count--;
+                    rebuild(false);
+                    return null;
+                case REDO:
+                    if (count == limit) {
+                        throw new IllegalStateException("There is no drop to redo.");
+                    } // if
+                    count++;
+                    rebuild(ended[count - 1]);
+                    return null;
+                default:
+                    int player = (byte) (op >> 8);
+                    int col = (byte) op;
+                    ref.dropToken(player, col);
+                    moves[count] = player << 4 | col;
+                    ended[count] = false;
+                    count++;
+                    limit = count;
+                    return null;
+                } // switch
+            } catch (RuntimeException re) {
+                return re.getClass();
+            } // try
+        } // apply
+
+        /**
+         * Replace the reference with one holding the first {@link #count} drops.
+         *
+         * @param over whether the last of them ended the game
+         */
+        private void rebuild(boolean over) {
+            ref = new ReferenceConnectFour(rows, cols);
+            ref.setPlayerTokens(Token.RED, Token.BLUE);
+            for (int i = 0; i < count; i++) {
+                ref.dropToken(moves[i] >> 4, moves[i] & 0xF);
+            } // for
+            if (over) {
+                ref.isLastDropConnectFour();
+            } // if
+        } // rebuild
+
+    } // Model
+
+    /**
+     * The first operation at which the engine and the reference disagree.
+     */
+    static final class Mismatch {
+
+        private final int index;
+        private final String message;
+
+        /**
+         * Constructs a mismatch.
+         *
+         * @param index the index of the operation
+         * @param message what differed
+         */
+        Mismatch(int index, String message) {
+            this.index = index;
+            this.message = message;
+        } // Mismatch
+
+    } // Mismatch
+
+    /**
+     * A shrunk game on which the engine and the reference disagree.
+     */
+    public static final class Failure {
+
+        private final long game;
+        private final int rows;
+        private final int cols;
+        private final int[] ops;
+        private final String message;
+
+        /**
+         * Constructs a failure.
+         *
+         * @param game the number of the generated game that first disagreed
+         * @param rows the number of grid rows
+         * @param cols the number of grid columns
+         * @param ops the shrunk operations
+         * @param mismatch the disagreement at the end of the shrunk operations
+         */
+        Failure(long game, int rows, int cols, int[] ops, Mismatch mismatch) {
+            this.game = game;
+            this.rows = rows;
+            this.cols = cols;
+            this.ops = ops;
+            this.message = mismatch.message;
+        } // Failure
+
+        /**
+         * Return the number of the generated game that first disagreed.
+         *
+         * @return the game number
+         */
+        public long getGame() {
+            return game;
+        } // getGame
+
+        /**
+         * Return the number of operations in the shrunk game.
+         *
+         * @return the operation count
+         */
+        public int getLength() {
+            return ops.length;
+        } // getLength
+
+        /**
+         * Return what differed after the last operation.
+         *
+         * @return the difference
+         */
+        public String getMessage() {
+            return message;
+        } // getMessage
+
+        /**
+         * Return the grid size, the shrunk operations and the difference.
+         *
+         * @return the description
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("game ").append(game).append(" (").append(rows).append('x')
+                .append(cols).append(") disagrees in ").append(ops.length)
+                .append(" operations:\n ");
+            for (int op : ops) {
+                text.append(' ').append(describe(op));
+            } // for
+            return text.append("\n  ").append(message).toString();
+        } // toString
+
+    } // Failure
+
+    /**
+     * Fuzz {@link ConnectFour} against the reference from the command line.
+     *
+     * <pre>
+     * usage: ConnectFourFuzzer [--games N] [--seed S] [--threads T]
+     * </pre>
+     *
+     * <p>
+     * The defaults are 1,000,000 games with one thread per core. The exit status is {@code 1}
+     * if a disagreement was found, after printing its shrunk game.
+     *
+     * @param args the command-line arguments
+     * @throws InterruptedException if interrupted while fuzzing
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long games = 1_000_000;
+        long seed = 1302;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--games":
+                games = Long.parseLong(value);
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(value);
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        AtomicLong operations = new AtomicLong();
+        long start = System.nanoTime();
+        Failure failure = new ConnectFourFuzzer(ConnectFour::new)
+            .run(games, seed, threads, operations);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d operations in %.3f s (%,.0f operations/s, %d threads)%n",
+                          operations.get(), seconds, operations.get() / seconds, threads);
+        if (failure != null) {
+            System.out.println(failure);
+            System.exit(1);
+        } // if
+        System.out.printf("%,d games agree with the reference (seed %d)%n", games, seed);
+    } // main
+
+} // ConnectFourFuzzer
@@ -0,0 +1,426 @@
+package cs1302.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the {@link ConnectFourTester} tests, and shards of generated games checked by
+ * {@link ConnectFourFuzzer}, in parallel. Each test runs on one thread of a fixed pool with its
+ * own state, and everything it prints, including from threads it starts, is captured
+ * separately, so the output of tests running at the same time is not interleaved.
+ *
+ * <p>
+ * A test fails if it calls {@code fail}, which aborts only that test here, if it throws, or if
+ * it prints a line starting with {@code FAIL}. One line is printed per test with its wall time,
+ * followed by the captured output of every failed test and a summary. A JUnit-style XML report,
+ * which most CI servers can read, is written as well.
+ */
+public class ConnectFourTestRunner {
+
+    /** The output of the test running on the current thread, or {@code null}. */
+    private static final InheritableThreadLocal<ByteArrayOutputStream> CAPTURE =
+        new InheritableThreadLocal<>();
+
+    private final int threads;
+
+    /**
+     * Constructs a runner that runs up to {@code threads} tests at a time.
+     *
+     * @param threads the number of threads
+     */
+    public ConnectFourTestRunner(int threads) {
+        this.threads = Math.max(1, threads);
+    } // ConnectFourTestRunner
+
+    /**
+     * Return whether the current thread is running a test for a runner, in which case a failed
+     * test should throw {@link TestFailure} rather than end the program.
+     *
+     * @return {@code true} under a runner
+     */
+    static boolean isRunning() {
+        return CAPTURE.get() != null;
+    } // isRunning
+
+    /**
+     * Run {@code tests} and return their results in the same order. Tests are started in the
+     * order given, so the longest ones should come first. Standard output is redirected while
+     * the tests run.
+     *
+     * @param tests the tests by name
+     * @return the results
+     * @throws InterruptedException if interrupted while waiting for the tests
+     */
+    public List<Result> run(Map<String, Runnable> tests) throws InterruptedException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new Router(console), true));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "test-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Map.Entry<String, Runnable> test : tests.entrySet()) {
+                futures.add(pool.submit(() -> runOne(test.getKey(), test.getValue())));
+            } // for
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ee) {
+                    throw new IllegalStateException(ee.getCause());
+                } // try
+            } // for
+            return results;
+        } finally {
+            pool.shutdownNow();
+            System.setOut(console);
+        } // try
+    } // run
+
+    /**
+     * Run one test on the current thread, capturing its output.
+     *
+     * @param name the test's name
+     * @param test the test
+     * @return its result
+     */
+    private static Result runOne(String name, Runnable test) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CAPTURE.set(output);
+        String failure = null;
+        long start = System.nanoTime();
+        try {
+            test.run();
+        } catch (TestFailure tf) {
+            failure = tf.getMessage();
+        } catch (Throwable t) {
+            failure = "threw " + t;
+        } finally {
+            CAPTURE.remove();
+        } // try
+        long nanos = System.nanoTime() - start;
+        String text = output.toString(StandardCharsets.UTF_8);
+        if (failure == null) {
+            for (String line : text.split("\n")) {
+                if (line.startsWith("FAIL")) {
+                    failure = line;
+                    break;
+                } // if
+            } // for
+        } // if
+        return new Result(name, nanos, failure, text);
+    } // runOne
+
+    /**
+     * Write {@code results} as a JUnit-style XML report.
+     *
+     * @param results the results
+     * @param nanos the wall time of the whole run
+     * @param file where to write the report
+     * @throws IOException if the report cannot be written
+     */
+    public static void writeReport(List<Result> results, long nanos, Path file)
+        throws IOException {
+        int failures = 0;
+        for (Result result : results) {
+            failures += result.isPassed() ? 0 : 1;
+        } // for
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write(String.format(Locale.ROOT, "<testsuite name=\"%s\" tests=\"%d\""
+                                    + " failures=\"%d\" errors=\"0\" skipped=\"0\""
+                                    + " time=\"%.3f\">\n", ConnectFourTester.class.getName(),
+                                    results.size(), failures, nanos / 1e9));
+            for (Result result : results) {
+                out.write(String.format(Locale.ROOT, "  <testcase classname=\"%s\" name=\"%s\""
+                                        + " time=\"%.3f\"", ConnectFourTester.class.getName(),
+                                        escape(result.getName()), result.getNanos() / 1e9));
+                if (result.isPassed()) {
+                    out.write("/>\n");
+                } else {
+                    out.write(">\n    <failure message=\"" + escape(result.getFailure())
+                              + "\"/>\n    <system-out>" + escape(result.getOutput())
+                              + "</system-out>\n  </testcase>\n");
+                } // if
+            } // for
+            out.write("</testsuite>\n");
+        } // try
+    } // writeReport
+
+    /**
+     * Escape {@code text} for XML, replacing characters that XML 1.0 does not allow.
+     *
+     * @param text the text
+     * @return the escaped text
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&':
+                escaped.append("&amp;");
+                break;
+            case '<':
+                escaped.append("&lt;");
+                break;
+            case '>':
+                escaped.append("&gt;");
+                break;
+            case '"':
+                escaped.append("&quot;");
+                break;
+            default:
+                escaped.append(c < ' ' && c != '\n' && c != '\t' ? '?' : c);
+            } // switch
+        } // for
+        return escaped.toString();
+    } // escape
+
+    /**
+     * Standard output while tests run: bytes go to the output of the test running on the
+     * writing thread, or to the console if there is none.
+     */
+    private static final class Router extends OutputStream {
+
+        private final OutputStream console;
+
+        /**
+         * Constructs a router.
+         *
+         * @param console where to write bytes from other threads
+         */
+        Router(OutputStream console) {
+            this.console = console;
+        } // Router
+
+        @Override
+        public void write(int b) throws IOException {
+            ByteArrayOutputStream output = CAPTURE.get();
+            if (output != null) {
+                output.write(b);
+            } else {
+                console.write(b);
+            } // if
+        } // write
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteArrayOutputStream output = CAPTURE.get();
+            if (output != null) {
+                output.write(b, off, len);
+            } else {
+                console.write(b, off, len);
+            } // if
+        } // write
+
+        @Override
+        public void flush() throws IOException {
+            console.flush();
+        } // flush
+
+    } // Router
+
+    /**
+     * Thrown by {@code ConnectFourTester.fail} under a runner to abort the failing test. It is an
+     * {@code Error} so that tests catching the exceptions they expect do not catch it.
+     */
+    static final class TestFailure extends Error {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a failure.
+         *
+         * @param message why the test failed
+         */
+        TestFailure(String message) {
+            super(message);
+        } // TestFailure
+
+    } // TestFailure
+
+    /**
+     * The outcome of one test.
+     */
+    public static final class Result {
+
+        private final String name;
+        private final long nanos;
+        private final String failure;
+        private final String output;
+
+        /**
+         * Constructs a result.
+         *
+         * @param name the test's name
+         * @param nanos its wall time in nanoseconds
+         * @param failure why it failed, or {@code null} if it passed
+         * @param output what it printed
+         */
+        Result(String name, long nanos, String failure, String output) {
+            this.name = name;
+            this.nanos = nanos;
+            this.failure = failure;
+            this.output = output;
+        } // Result
+
+        /**
+         * Return the test's name.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        } // getName
+
+        /**
+         * Return the test's wall time.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        } // getNanos
+
+        /**
+         * Return whether the test passed.
+         *
+         * @return {@code true} if it passed
+         */
+        public boolean isPassed() {
+            return failure == null;
+        } // isPassed
+
+        /**
+         * Return why the test failed.
+         *
+         * @return the reason, or {@code null} if it passed
+         */
+        public String getFailure() {
+            return failure;
+        } // getFailure
+
+        /**
+         * Return everything the test printed.
+         *
+         * @return the output
+         */
+        public String getOutput() {
+            return output;
+        } // getOutput
+
+    } // Result
+
+    /**
+     * Return the tests run from the command line: {@code shards} shards of {@code games}
+     * generated games each, first because they take longest, then the
+     * {@link ConnectFourTester} tests.
+     *
+     * @param shards the number of fuzzer shards
+     * @param games the number of games per shard
+     * @return the tests by name
+     */
+    static Map<String, Runnable> suite(int shards, long games) {
+        Map<String, Runnable> tests = new LinkedHashMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            long seed = 1302 + shard;
+            tests.put("fuzz[seed=" + seed + "]", () -> {
+                try {
+                    ConnectFourFuzzer.Failure failure = new ConnectFourFuzzer(ConnectFour::new)
+                        .run(games, seed, 1, null);
+                    if (failure != null) {
+                        throw new TestFailure(failure.toString());
+                    } // if
+                } catch (InterruptedException ie) {
+                    throw new TestFailure("interrupted");
+                } // try
+            });
+        } // for
+        tests.putAll(ConnectFourTester.tests());
+        return tests;
+    } // suite
+
+    /**
+     * Run the tests from the command line.
+     *
+     * <pre>
+     * usage: ConnectFourTestRunner [--threads T] [--shards S] [--games G] [--report FILE]
+     * </pre>
+     *
+     * <p>
+     * The defaults are one thread per core and 16 fuzzer shards of 5,000 games each, and the
+     * report is written to {@code TEST-cs1302.game.ConnectFourTester.xml}. The exit status is
+     * {@code 1} if any test failed.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the report cannot be written
+     * @throws InterruptedException if interrupted while running the tests
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int shards = 16;
+        long games = 5000;
+        Path report = Paths.get("TEST-" + ConnectFourTester.class.getName() + ".xml");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "--shards":
+                shards = Integer.parseInt(value);
+                break;
+            case "--games":
+                games = Long.parseLong(value);
+                break;
+            case "--report":
+                report = Paths.get(value);
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        long start = System.nanoTime();
+        List<Result> results = new ConnectFourTestRunner(threads).run(suite(shards, games));
+        long nanos = System.nanoTime() - start;
+        int failures = 0;
+        for (Result result : results) {
+            System.out.printf("%s %10.3f ms  %s%n", result.isPassed() ? "PASS" : "FAIL",
+                              result.getNanos() / 1e6, result.getName());
+            failures += result.isPassed() ? 0 : 1;
+        } // for
+        for (Result result : results) {
+            if (!result.isPassed()) {
+                System.out.printf("%n%s%n%s%n- %s%n%s", "-".repeat(80), result.getName(),
+                                  result.getFailure(), result.getOutput());
+            } // if
+        } // for
+        writeReport(results, nanos, report);
+        System.out.printf("%n%d tests, %d failed, in %.3f s on %d threads; report in %s%n",
+                          results.size(), failures, nanos / 1e9, threads, report);
+        if (failures > 0) {
+            System.exit(1);
+        } // if
+    } // main
+
+} // ConnectFourTestRunner
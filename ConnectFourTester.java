@@ -1,8 +1,42 @@
 package cs1302.game;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import cs1302.gameutil.Token;
 import cs1302.gameutil.GamePhase;
+import cs1302.game.ai.EndgameTable;
+import cs1302.game.ai.MonteCarloSearch;
+import cs1302.game.ai.MovePolicy;
+import cs1302.game.ai.OpeningBook;
+import cs1302.game.ai.ParallelSolver;
+import cs1302.game.ai.Position;
+import cs1302.game.ai.SearchResult;
+import cs1302.game.ai.Solver;
+import cs1302.game.ai.TranspositionTable;
+import cs1302.game.net.SessionRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 /**
  * A command-line program for testing {@link cs1302.game.ConnectFour}. Students should refer to
@@ -11,15 +45,18 @@ import cs1302.gameutil.GamePhase;
  */
 public class ConnectFourTester {
 
-    // These variables are used in some of the test methods to store what
-    // the values of each variable should be when returned from a valid
-    // game object. In other words, they hold the "right answer". What you
-    // see here are default values. They are modified, as needed, throughout
-    // this tester.
-    private static int numDropped =    0;
-    private static int lastDropCol =  -1;
-    private static int lastDropRow =  -1;
-    private static boolean isWon = false;
+    /**
+     * The values that a valid game object should return, used by some of the test methods. In
+     * other words, they hold the "right answer". What you see here are default values. They are
+     * modified, as needed, by the test that owns them; each test makes its own, so that tests
+     * can run at the same time in {@link ConnectFourTestRunner}.
+     */
+    private static final class Expected {
+        private int numDropped =    0;
+        private int lastDropCol =  -1;
+        private int lastDropRow =  -1;
+        private boolean isWon = false;
+    } // Expected
 
     /**
      * Print a nice header with the supplied {@code title}.
@@ -31,22 +68,66 @@ public class ConnectFourTester {
     } // header
 
     /**
-     * Entry point to the {@link cs1302.game.ConnectFourTester} program. This program is not
-     * expected to support command-line arguments.
+     * Entry point to the {@link cs1302.game.ConnectFourTester} program. With no command-line
+     * arguments, every test is run; otherwise, only the tests they name are run.
      *
-     * @param args the command-line arguments (not used)
+     * @param args the names of the tests to run, if any
      */
     public static void main(String[] args) {
+        Map<String, Runnable> tests = tests();
+        if (args.length == 0) {
+            args = tests.keySet().toArray(new String[0]);
+        } // if
+        for (String name : args) {
+            Runnable test = tests.get(name);
+            if (test == null) {
+                System.err.println("ConnectFourTester: no test named " + name);
+                System.exit(1);
+            } // if
+            test.run();
+        } // for
+    } // main
+
+    /**
+     * Return the tests run by {@link #main}, in order, by name. {@link ConnectFourTestRunner}
+     * runs the same tests in parallel.
+     *
+     * @return the tests
+     */
+    static Map<String, Runnable> tests() {
         // To see information about the test methods that are run below, refer
         // to the documentation comments.
-        testConstructor();
-        testGetRows();
-        testGetCols();
-        testIsInBounds();
-        testGamePlay();
-        testFullBoard();
-        testNoStatic();
-    } // main
+        Map<String, Runnable> tests = new LinkedHashMap<>();
+        tests.put("testConstructor", ConnectFourTester::testConstructor);
+        tests.put("testGetRows", ConnectFourTester::testGetRows);
+        tests.put("testGetCols", ConnectFourTester::testGetCols);
+        tests.put("testIsInBounds", ConnectFourTester::testIsInBounds);
+        tests.put("testGamePlay", ConnectFourTester::testGamePlay);
+        tests.put("testFullBoard", ConnectFourTester::testFullBoard);
+        tests.put("testNoStatic", ConnectFourTester::testNoStatic);
+        tests.put("testWinningLine", ConnectFourTester::testWinningLine);
+        tests.put("testColumnHeight", ConnectFourTester::testColumnHeight);
+        tests.put("testBinaryRecord", ConnectFourTester::testBinaryRecord);
+        tests.put("testGameLog", ConnectFourTester::testGameLog);
+        tests.put("testUndoRedo", ConnectFourTester::testUndoRedo);
+        tests.put("testLatencyHistogram", ConnectFourTester::testLatencyHistogram);
+        tests.put("testGameMetrics", ConnectFourTester::testGameMetrics);
+        tests.put("testTerminalRenderer", ConnectFourTester::testTerminalRenderer);
+        tests.put("testBatchRunner", ConnectFourTester::testBatchRunner);
+        tests.put("testFuzzer", ConnectFourTester::testFuzzer);
+        tests.put("testMirror", ConnectFourTester::testMirror);
+        tests.put("testPerft", ConnectFourTester::testPerft);
+        tests.put("testLineMasks", ConnectFourTester::testLineMasks);
+        tests.put("testOpeningBook", ConnectFourTester::testOpeningBook);
+        tests.put("testEndgameTable", ConnectFourTester::testEndgameTable);
+        tests.put("testSessionRegistry", ConnectFourTester::testSessionRegistry);
+        tests.put("testSolver", ConnectFourTester::testSolver);
+        tests.put("testTranspositionTable", ConnectFourTester::testTranspositionTable);
+        tests.put("testParallelSolver", ConnectFourTester::testParallelSolver);
+        tests.put("testMonteCarloSearch", ConnectFourTester::testMonteCarloSearch);
+        tests.put("testGameEvents", ConnectFourTester::testGameEvents);
+        return tests;
+    } // tests
 
     //----------------------------------------------------------------------------------------------
     // TEST METHODS - Each provided test is separated with a heading like this one.
@@ -295,37 +376,38 @@ public class ConnectFourTester {
         // Recommendation to students: Test invalid drops here. Try passing an illegal
         // player number and try dropping a token in a column that is out of bounds.
 
-        // These three variables hold the answers. They will be used to compare the
+        // These variables hold the answers. They will be used to compare the
         // values returned from the game object in the testDrop method.
-        lastDropCol = 0;
-        numDropped = 1;
-        isWon = false;
+        Expected expected = new Expected();
+        expected.lastDropCol = 0;
+        expected.numDropped = 1;
+        expected.isWon = false;
 
         int player = 0;
-        lastDropRow = rowCount - 1;
+        expected.lastDropRow = rowCount - 1;
         for (int i = 0; i < rowCount; i++) {
             for (int j = 0; j < colCount; j++) {
                 // With this drop pattern, takes 28 drops to win.
-                if (numDropped == 28) {
-                    isWon = true;
+                if (expected.numDropped == 28) {
+                    expected.isWon = true;
                 } // if
 
                 // game should throw an exception if we drop a token after game over.
-                if (numDropped == 29) {
+                if (expected.numDropped == 29) {
                     testGameOver(game);
                     return;
                 } // if
 
-                lastDropCol = j;
+                expected.lastDropCol = j;
 
-                if (!testDrop(game, player, j)) {
+                if (!testDrop(game, player, j, expected)) {
                     return;
                 } // if
                 player = (player + 1) % 2;
-                numDropped++;
+                expected.numDropped++;
             } // for
             // Goes up by one after each row is full
-            lastDropRow--;
+            expected.lastDropRow--;
         } // for
 
     } // testSetPlayerTokens
@@ -461,8 +543,10 @@ public class ConnectFourTester {
      * @param game a reference to the Connect Four game.
      * @param player the player dropping the token.
      * @param dropCol the column where the token will be dropped.
+     * @param expected the values the game should return after the drop.
      */
-    private static boolean testDrop(ConnectFour game, int player, int dropCol) {
+    private static boolean testDrop(ConnectFour game, int player, int dropCol,
+                                    Expected expected) {
         // drop player token in the specified column.
         try {
             game.dropToken(player, dropCol);
@@ -475,7 +559,7 @@ public class ConnectFourTester {
         } // try
 
         // Check the game state after calling dropToken
-        boolean variableCheck = checkVariables(game);
+        boolean variableCheck = checkVariables(game, expected);
         if (!variableCheck) {
             return false;
         } // if
@@ -486,14 +570,14 @@ public class ConnectFourTester {
         } else {
             String message = String.format("FAIL: getTokenAt incorrectly returned %s after " +
                                            "token dropped in column %d", lastToken,
-                                           lastDropCol);
+                                           expected.lastDropCol);
 
             System.out.println(message);
             return false;
         } // if
 
-        if (game.isLastDropConnectFour() == isWon) {
-            if (!isWon) {
+        if (game.isLastDropConnectFour() == expected.isWon) {
+            if (!expected.isWon) {
                 pass("isLastDropConnectFour correctly says game is " +
                      "not yet won.");
             } else {
@@ -513,9 +597,10 @@ public class ConnectFourTester {
      * the {@link cs1302.gameutil.GamePhase#PLAYABLE} phase.
      *
      * @param game the Connect Four game to test.
+     * @param expected the values the game should return.
      * @return {@code true} if the tests pass and {@code false} otherwise.
      */
-    private static boolean checkVariables(ConnectFour game) {
+    private static boolean checkVariables(ConnectFour game, Expected expected) {
         // Check game phase
         if (game.getPhase() != GamePhase.PLAYABLE) {
             fail("game phase should be PLAYABLE after a token is dropped.");
@@ -525,42 +610,42 @@ public class ConnectFourTester {
         } // if
 
         // test drop row and drop col
-        if (lastDropRow == game.getLastDropRow()) {
+        if (expected.lastDropRow == game.getLastDropRow()) {
             String message = String.format("last drop row correctly set to %d after " +
-                                           "token dropped in column %d", lastDropRow,
-                                           lastDropCol);
+                                           "token dropped in column %d", expected.lastDropRow,
+                                           expected.lastDropCol);
             pass(message);
         } else {
             String message = String.format("last drop row incorrectly set to %d after " +
                                            "token dropped in column %d", game.getLastDropRow()
-                                           , lastDropCol);
+                                           , expected.lastDropCol);
             fail(message, game);
             return false;
 
         } // if
-        if (lastDropCol == game.getLastDropCol()) {
+        if (expected.lastDropCol == game.getLastDropCol()) {
             String message = String.format("last drop col correctly set to %d after " +
-                                           "token dropped in column %d", lastDropCol,
-                                           lastDropCol);
+                                           "token dropped in column %d", expected.lastDropCol,
+                                           expected.lastDropCol);
             pass(message);
         } else {
             String message = String.format("last drop col incorrectly set to %d after " +
                                            "token dropped in column %d", game.getLastDropCol()
-                                           , lastDropCol);
+                                           , expected.lastDropCol);
             fail(message, game);
             return false;
         } // if
 
         // test getNumDropped
-        if (numDropped == game.getNumDropped()) {
+        if (expected.numDropped == game.getNumDropped()) {
             String message = String.format("numDropped correctly set to %d after " +
-                                           "token dropped in column %d", numDropped,
-                                           lastDropCol);
+                                           "token dropped in column %d", expected.numDropped,
+                                           expected.lastDropCol);
             pass(message);
         } else {
             String message = String.format("numDropped incorrectly set to %d after " +
                                            "token dropped in column %d", game.getNumDropped(),
-                                           lastDropCol);
+                                           expected.lastDropCol);
             fail(message, game);
             return false;
         } // if
@@ -643,6 +728,1534 @@ public class ConnectFourTester {
 
     } // testFullBoard
 
+    //----------------------------------------------------------------------------------------------
+    // TEST WINNING LINE
+    //----------------------------------------------------------------------------------------------
+    /**
+     * Builds a diagonal connect four on a 6x7 board and checks that
+     * {@code getLastDropConnectFour} reports exactly the four winning cells, and that it
+     * reports nothing before the winning drop.
+     */
+    public static void testWinningLine() {
+        header("testWinningLine");
+        ConnectFour game = newValidGame(6, 7);
+        game.setPlayerTokens(Token.RED, Token.BLUE);
+
+        // staircase of player 1 tokens so that player 0 can climb the diagonal
+        int[] filler = {1, 2, 2, 3, 3, 3};
+        for (int col : filler) {
+            game.dropToken(1, col);
+        } // for
+        for (int col = 0; col < 3; col++) {
+            game.dropToken(0, col);
+        } // for
+
+        if (game.getLastDropConnectFour() == null) {
+            pass("testWinningLine: no winning line before the winning drop.");
+        } else {
+            fail("testWinningLine: reported a winning line before the winning drop.", game);
+        } // if
+
+        game.dropToken(0, 3);
+        int[][] line = game.getLastDropConnectFour();
+        int[][] expected = {{5, 0}, {4, 1}, {3, 2}, {2, 3}};
+        if (line != null && Arrays.deepEquals(sortedLine(line), expected)) {
+            pass("testWinningLine: reported the four diagonal cells.");
+        } else {
+            fail("testWinningLine: wrong winning line " + Arrays.deepToString(line), game);
+        } // if
+    } // testWinningLine
+
+    /**
+     * Returns a copy of {@code line} ordered by descending row index so that it can be compared
+     * with an expected line regardless of which end the game reported first.
+     *
+     * @param line the winning line cells.
+     * @return the sorted cells.
+     */
+    private static int[][] sortedLine(int[][] line) {
+        int[][] copy = line.clone();
+        Arrays.sort(copy, (a, b) -> b[0] - a[0]);
+        return copy;
+    } // sortedLine
+
+    //----------------------------------------------------------------------------------------------
+    // TEST COLUMN HEIGHT
+    //----------------------------------------------------------------------------------------------
+    /**
+     * Fills one column of a 6x7 board and checks {@code getColumnHeight} and
+     * {@code isColumnFull} after every drop, then checks that the full column rejects
+     * another token.
+     */
+    public static void testColumnHeight() {
+        header("testColumnHeight");
+        final int rows = 6;
+        ConnectFour game = newValidGame(rows, 7);
+        game.setPlayerTokens(Token.RED, Token.BLUE);
+
+        for (int i = 1; i <= rows; i++) {
+            game.dropToken(i % 2, 2);
+            boolean full = i == rows;
+            if (game.getColumnHeight(2) != i || game.isColumnFull(2) != full) {
+                String message = String.format("column 2 should hold %d tokens (full: %b) " +
+                                               "but getColumnHeight returned %d", i, full,
+                                               game.getColumnHeight(2));
+                fail(message, game);
+            } // if
+        } // for
+        pass("testColumnHeight: heights tracked while filling column 2.");
+
+        if (game.getColumnHeight(3) == 0 && !game.isColumnFull(3)) {
+            pass("testColumnHeight: other columns are still empty.");
+        } else {
+            fail("testColumnHeight: column 3 should be empty.", game);
+        } // if
+
+        try {
+            game.dropToken(0, 2);
+            fail("testColumnHeight: dropToken should reject a full column.", game);
+        } catch (IllegalStateException ise) {
+            pass("testColumnHeight: dropToken throws IllegalStateException for a full column.");
+        } // try
+    } // testColumnHeight
+
+    //----------------------------------------------------------------------------------------------
+    // TEST BINARY RECORD
+    //----------------------------------------------------------------------------------------------
+    /**
+     * Writes games in every phase to binary records, both in a buffer and in a
+     * {@code GameArchive} file, reads them back into one reused game, and checks that the
+     * copies match. Also checks that a corrupt record is rejected without changing the game.
+     */
+    public static void testBinaryRecord() {
+        header("testBinaryRecord");
+        List<ConnectFour> games = new ArrayList<>();
+        games.add(newValidGame(6, 7));
+        ConnectFour ready = newValidGame(9, 9);
+        ready.setPlayerTokens(Token.GREEN, Token.PURPLE);
+        games.add(ready);
+        ConnectFour won = newValidGame(7, 8);
+        won.setPlayerTokens(Token.RED, Token.BLUE);
+        for (int col : new int[] {0, 1, 0, 1, 0, 1, 0}) {
+            won.dropToken(col, col);
+            won.isLastDropConnectFour();
+        } // for
+        games.add(won);
+        ConnectFour full = newValidGame(9, 9);
+        full.setPlayerTokens(Token.YELLOW, Token.CYAN);
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                full.dropToken((col + row / 3) % 2, col);
+            } // for
+        } // for
+        full.isLastDropConnectFour();
+        games.add(full);
+
+        ByteBuffer buffer = ByteBuffer.allocate(GameArchive.RECORD_BYTES);
+        ConnectFour copy = newValidGame(6, 7);
+        for (ConnectFour game : games) {
+            game.writeRecord(buffer, 0);
+            copy.readRecord(buffer, 0);
+            if (!sameGame(game, copy)) {
+                fail("testBinaryRecord: record copy differs from a " + game.getPhase()
+                     + " game.", copy);
+                return;
+            } // if
+        } // for
+        pass("testBinaryRecord: NEW, READY, OVER and full games survive a buffer round trip.");
+
+        try {
+            Path file = Files.createTempFile("c4-archive-", ".bin");
+            try {
+                GameArchive.write(file, games);
+                GameArchive archive = GameArchive.open(file);
+                boolean same = archive.size() == games.size();
+                for (int i = 0; same && i < games.size(); i++) {
+                    same = sameGame(games.get(i), archive.read(i, copy));
+                } // for
+                if (same) {
+                    pass("testBinaryRecord: games survive an archive round trip.");
+                } else {
+                    fail("testBinaryRecord: archive copy differs from the original.", copy);
+                } // if
+            } finally {
+                Files.deleteIfExists(file);
+            } // try
+        } catch (IOException ioe) {
+            exceptionNotExpected(ioe);
+        } // try
+
+        won.writeRecord(buffer, 0);
+        copy.readRecord(buffer, 0);
+        // column 0 holds four tokens (bits 0-3); bit 5 would float above an empty cell
+        buffer.putLong(24, buffer.getLong(24) | 1L << 5);
+        try {
+            copy.readRecord(buffer, 0);
+            fail("testBinaryRecord: a floating token should be rejected.", copy);
+        } catch (IllegalArgumentException iae) {
+            if (sameGame(won, copy)) {
+                pass("testBinaryRecord: corrupt record rejected and game left unchanged.");
+            } else {
+                fail("testBinaryRecord: corrupt record changed the game.", copy);
+            } // if
+        } // try
+    } // testBinaryRecord
+
+    //----------------------------------------------------------------------------------------------
+    // TEST GAME LOG
+    //----------------------------------------------------------------------------------------------
+    /**
+     * Concatenates several game descriptions (one without a grid, one won, one full) into a
+     * single log, reads it with {@code GameLogReader}, and checks that every game matches
+     * what {@code fromFile} reads from the same description in its own file.
+     */
+    public static void testGameLog() {
+        header("testGameLog");
+        String[] descriptions = {
+            "6 7 RED BLUE\n",
+            "6 7 RED BLUE\n"
+                + "3 3 3 3 3 3 3\n3 3 3 3 3 3 3\n3 3 0 3 3 3 3\n"
+                + "3 3 0 3 3 3 3\n1 3 0 3 3 3 3\n0 1 0 1 1 3 3\n2 2\n",
+            "7 7 GREEN YELLOW\n"
+                + "0 1 0 1 0 1 0\n0 1 0 1 0 1 0\n0 1 0 1 0 1 0\n1 0 1 0 1 0 1\n"
+                + "1 0 1 0 1 0 1\n1 0 1 0 1 0 1\n0 1 0 1 0 1 0\n0 6\n",
+            "9 9 CYAN PURPLE\n" + "3 3 3 3 3 3 3 3 3\n".repeat(8) + "3 3 3 3 1 3 3 3 3\n8 4\n",
+        };
+        try {
+            Path file = Files.createTempFile("c4-log-", ".txt");
+            GameLogReader reader = new GameLogReader(new ByteArrayInputStream(
+                String.join("", descriptions).getBytes()));
+            try {
+                for (String description : descriptions) {
+                    Files.writeString(file, description);
+                    ConnectFour expected = ConnectFour.fromFile(file.toString());
+                    if (!reader.hasNext()) {
+                        fail("testGameLog: log ended after " + reader.getGamesRead() + " games.");
+                    } // if
+                    ConnectFour actual = reader.next();
+                    if (!sameGame(expected, actual)) {
+                        fail("testGameLog: game " + reader.getGamesRead() + " differs from "
+                             + "fromFile.", actual);
+                    } // if
+                } // for
+            } finally {
+                Files.deleteIfExists(file);
+            } // try
+            if (reader.hasNext()) {
+                fail("testGameLog: log has more games than were written.");
+            } // if
+            pass("testGameLog: every game in the log matches fromFile.");
+        } catch (IOException ioe) {
+            exceptionNotExpected(ioe);
+        } // try
+
+        GameLogReader bad = new GameLogReader(new ByteArrayInputStream(
+            "6 7 RED BLUE\n3 3 3 3 3 3 2\n".getBytes()));
+        try {
+            bad.next();
+            fail("testGameLog: a grid value of 2 should be rejected.");
+        } catch (InputMismatchException ime) {
+            pass("testGameLog: malformed grid rejected with " + ime.getMessage());
+        } // try
+    } // testGameLog
+
+    //----------------------------------------------------------------------------------------------
+    // TEST UNDO REDO
+    //----------------------------------------------------------------------------------------------
+    /**
+     * Plays a game on a 6x7 board to a win, recording the state after every drop, then undoes
+     * every drop and redoes them all, checking the state at each step. Also checks that a
+     * new drop discards the undone drops.
+     */
+    public static void testUndoRedo() {
+        header("testUndoRedo");
+        ConnectFour game = newValidGame(6, 7);
+        game.setPlayerTokens(Token.RED, Token.BLUE);
+        int[] cols = {3, 3, 4, 4, 2, 2, 5};
+        ByteBuffer states = ByteBuffer.allocate(GameArchive.RECORD_BYTES * (cols.length + 1));
+        long[] hashes = new long[cols.length + 1];
+        game.writeRecord(states, 0);
+        for (int i = 0; i < cols.length; i++) {
+            game.dropToken(i % 2, cols[i]);
+            game.isLastDropConnectFour();
+            game.writeRecord(states, (i + 1) * GameArchive.RECORD_BYTES);
+            hashes[i + 1] = game.getHash();
+        } // for
+        if (game.getPhase() != GamePhase.OVER) {
+            fail("testUndoRedo: the scripted game should end in a win.", game);
+        } // if
+
+        ByteBuffer state = ByteBuffer.allocate(GameArchive.RECORD_BYTES);
+        for (int i = cols.length - 1; i >= 0; i--) {
+            game.undo();
+            game.writeRecord(state, 0);
+            if (!state.equals(states.slice(i * GameArchive.RECORD_BYTES,
+                                           GameArchive.RECORD_BYTES))
+                || game.getHash() != hashes[i]) {
+                fail("testUndoRedo: state after undoing back to " + i + " drops is wrong.",
+                     game);
+            } // if
+        } // for
+        if (game.canUndo() || game.getPhase() != GamePhase.READY) {
+            fail("testUndoRedo: an empty game should be READY with nothing to undo.", game);
+        } // if
+        pass("testUndoRedo: every undo restores the previous state.");
+
+        for (int i = 1; i <= cols.length; i++) {
+            game.redo();
+            game.writeRecord(state, 0);
+            if (!state.equals(states.slice(i * GameArchive.RECORD_BYTES,
+                                           GameArchive.RECORD_BYTES))
+                || game.getHash() != hashes[i]) {
+                fail("testUndoRedo: state after redoing to " + i + " drops is wrong.", game);
+            } // if
+        } // for
+        if (game.canRedo() || game.getPhase() != GamePhase.OVER) {
+            fail("testUndoRedo: redoing the winning drop should end the game again.", game);
+        } // if
+        pass("testUndoRedo: every redo restores the next state, including the win.");
+
+        game.undo();
+        game.undo();
+        game.dropToken(1, 0);
+        if (game.canRedo()) {
+            fail("testUndoRedo: a new drop should discard the undone drops.", game);
+        } // if
+        try {
+            game.redo();
+            fail("testUndoRedo: redo should throw when there is nothing to redo.", game);
+        } catch (IllegalStateException ise) {
+            pass("testUndoRedo: a new drop discards the undone drops.");
+        } // try
+
+        // fromFile replays the bottom row left to right, so column 3 is replayed last
+        String rows = "3 3 3 3 3 3 3\n".repeat(5) + "1 3 3 0 3 3 3\n";
+        try {
+            Path file = Files.createTempFile("c4-undo-", ".txt");
+            try {
+                Files.writeString(file, "6 7 RED BLUE\n" + rows + "5 0\n");
+                ConnectFour loaded = ConnectFour.fromFile(file.toString());
+                if (loaded.canUndo()) {
+                    fail("testUndoRedo: a loaded game whose last drop was not replayed last"
+                         + " should have nothing to undo.", loaded);
+                } // if
+                try {
+                    loaded.undo();
+                    fail("testUndoRedo: undo should throw instead of taking back a token that"
+                         + " was not the last drop.", loaded);
+                } catch (IllegalStateException ise) {
+                    // expected
+                } // try
+                if (loaded.getTokenAt(5, 3) != Token.RED || loaded.getLastDropCol() != 0) {
+                    fail("testUndoRedo: a refused undo should leave the game unchanged.", loaded);
+                } // if
+                Files.writeString(file, "6 7 RED BLUE\n" + rows + "5 3\n");
+                loaded = ConnectFour.fromFile(file.toString());
+                loaded.undo();
+                if (loaded.getTokenAt(5, 3) != null || loaded.getLastDropCol() != 0) {
+                    fail("testUndoRedo: a loaded game whose last drop was replayed last should"
+                         + " undo it.", loaded);
+                } // if
+            } finally {
+                Files.deleteIfExists(file);
+            } // try
+            pass("testUndoRedo: undo after fromFile only takes back the file's last drop.");
+        } catch (IOException ioe) {
+            exceptionNotExpected(ioe);
+        } // try
+    } // testUndoRedo
+
+    /**
+     * Test {@link LatencyHistogram}: small values are counted exactly, and the percentiles of
+     * a wide range of values are within the histogram's stated precision.
+     */
+    public static void testLatencyHistogram() {
+        header("testLatencyHistogram");
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        } // for
+        LatencyHistogram.Snapshot small = histogram.snapshot();
+        if (small.getCount() != 100 || small.getValueAtPercentile(50) != 50
+            || small.getValueAtPercentile(100) != 100 || small.getMean() != 50.5) {
+            fail("testLatencyHistogram: values below 128 should be counted exactly.");
+        } // if
+        pass("testLatencyHistogram: small values are exact.");
+
+        histogram.reset();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value * 1000);
+        } // for
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot wide = histogram.snapshot();
+        double[] percentiles = {1, 25, 50, 90, 99, 99.9};
+        for (double percentile : percentiles) {
+            double expected = percentile * 10_000_000;
+            double error = Math.abs(wide.getValueAtPercentile(percentile) - expected) / expected;
+            if (error > 1.0 / LatencyHistogram.SUB_BUCKETS) {
+                fail("testLatencyHistogram: p" + percentile + " is "
+                     + wide.getValueAtPercentile(percentile) + " but should be near "
+                     + (long) expected + ".");
+            } // if
+        } // for
+        if (wide.getMax() != LatencyHistogram.MAX_VALUE || wide.getCount() != 1_000_001) {
+            fail("testLatencyHistogram: values above MAX_VALUE should be clamped.");
+        } // if
+        pass("testLatencyHistogram: percentiles are within the histogram's precision.");
+    } // testLatencyHistogram
+
+    /**
+     * Test that {@link ConnectFour} feeds {@link GameMetrics}: a known sequence of drops, one
+     * rejected drop or more for each {@link GameMetrics.Rejection} reason, a win and a draw
+     * show up in {@link GameMetrics#snapshot} and in a {@link GameMetrics#dumpEvery dump}.
+     * Metrics are fixed when {@code GameMetrics} is loaded, so unless they are enabled and the
+     * test is running alone, it runs again in a new JVM started with
+     * {@code -Dcs1302.game.metrics=true}.
+     */
+    public static void testGameMetrics() {
+        header("testGameMetrics");
+        if (!GameMetrics.ENABLED || ConnectFourTestRunner.isRunning()) {
+            forkGameMetrics();
+            return;
+        } // if
+        GameMetrics.reset();
+        ConnectFour game = newValidGame(6, 7);
+        int[][] rejected = {{0, 0}, {0, 7}, {0, -1}, {2, 0}, {0, 2}};
+        for (int i = 0; i < rejected.length; i++) {
+            if (i == 1) {
+                game.setPlayerTokens(Token.RED, Token.BLUE);
+            } else if (i == rejected.length - 1) {
+                for (int row = 0; row < game.getRows(); row++) {
+                    game.dropToken(row % 2, 2);
+                    game.isLastDropConnectFour();
+                } // for
+            } // if
+            try {
+                game.dropToken(rejected[i][0], rejected[i][1]);
+                fail("testGameMetrics: dropToken(" + rejected[i][0] + ", " + rejected[i][1]
+                     + ") should be rejected.", game);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException
+                     | IllegalStateException e) {
+                // expected
+            } // try
+        } // for
+        for (int i = 0; i < 7; i++) {
+            game.dropToken(i % 2, i % 2);
+            game.isLastDropConnectFour();
+        } // for
+        try {
+            game.dropToken(1, 3);
+            fail("testGameMetrics: a drop after the game is won should be rejected.", game);
+        } catch (IllegalStateException ise) {
+            // expected
+        } // try
+
+        int player = 0;
+        ConnectFour draw = newValidGame(6, 8);
+        draw.setPlayerTokens(Token.RED, Token.BLUE);
+        for (int i = 0; i < draw.getRows(); i++) {
+            for (int j = 0; j < draw.getCols(); j++) {
+                draw.dropToken(player, j);
+                draw.isLastDropConnectFour();
+                player = (player + 1) % 2;
+            } // for
+            if ((i + 1) % 3 == 0) {
+                player = (player + 1) % 2;
+            } // if
+        } // for
+        if (draw.getPhase() != GamePhase.OVER || draw.isLastDropConnectFour()) {
+            fail("testGameMetrics: the 6x8 game should end in a draw.", draw);
+        } // if
+
+        String counters = "drops=61 wins=1 draws=1 rejected: column=2 player=1 phase=2 full=1";
+        GameMetrics.Snapshot snapshot = GameMetrics.snapshot();
+        if (snapshot.getDrops() != 61 || snapshot.getWins() != 1 || snapshot.getDraws() != 1
+            || snapshot.getRejected(GameMetrics.Rejection.COLUMN) != 2
+            || snapshot.getRejected(GameMetrics.Rejection.PLAYER) != 1
+            || snapshot.getRejected(GameMetrics.Rejection.PHASE) != 2
+            || snapshot.getRejected(GameMetrics.Rejection.FULL) != 1
+            || !snapshot.toString().startsWith(counters)) {
+            fail("testGameMetrics: the snapshot should start with \"" + counters + "\" but is\n"
+                 + snapshot);
+        } // if
+        if (snapshot.getDropLatency().getCount() != 61
+            || snapshot.getCheckLatency().getCount() != 62) {
+            fail("testGameMetrics: every drop and every check should be timed.");
+        } // if
+        pass("testGameMetrics: drops, rejections by reason, wins and draws are counted.");
+
+        ByteArrayOutputStream dumped = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(dumped, true, StandardCharsets.UTF_8);
+        ScheduledFuture<?> dump = GameMetrics.dumpEvery(10, TimeUnit.MILLISECONDS, out);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!dumped.toString(StandardCharsets.UTF_8).contains(counters)
+                   && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            } // while
+        } catch (InterruptedException ie) {
+            exceptionNotExpected(ie);
+        } finally {
+            dump.cancel(false);
+        } // try
+        if (!dumped.toString(StandardCharsets.UTF_8).contains(counters)) {
+            fail("testGameMetrics: dumpEvery should print the snapshot.");
+        } // if
+        pass("testGameMetrics: dumpEvery prints the snapshot.");
+    } // testGameMetrics
+
+    /**
+     * Runs {@link #testGameMetrics} in a new JVM with metrics enabled, and passes on its
+     * results.
+     */
+    private static void forkGameMetrics() {
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        ProcessBuilder builder = new ProcessBuilder(java.toString(), "-Dcs1302.game.metrics=true",
+            "-cp", System.getProperty("java.class.path"), ConnectFourTester.class.getName(),
+            "testGameMetrics").redirectErrorStream(true);
+        try {
+            Process process = builder.start();
+            String output = new String(process.getInputStream().readAllBytes(),
+                                       StandardCharsets.UTF_8);
+            if (process.waitFor() != 0 || !output.contains("PASS")) {
+                fail("testGameMetrics: the run with -Dcs1302.game.metrics=true failed:\n"
+                     + output.strip());
+            } // if
+            for (String line : output.split("\n")) {
+                if (line.startsWith("PASS")) {
+                    System.out.println(line);
+                } // if
+            } // for
+        } catch (IOException | InterruptedException e) {
+            exceptionNotExpected(e);
+        } // try
+    } // forkGameMetrics
+
+    /**
+     * Test {@link TerminalRenderer} on an ANSI terminal: the first frame draws the whole grid,
+     * and a frame after one drop only moves the cursor to the new token and the message.
+     * Without ANSI support, the whole frame is written to the renderer's own output.
+     */
+    public static void testTerminalRenderer() {
+        header("testTerminalRenderer");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TerminalRenderer screen = new TerminalRenderer(
+            bytes, StandardCharsets.UTF_8, true, "HEADER");
+        ConnectFour game = newValidGame(6, 7);
+        game.setPlayerTokens(Token.RED, Token.BLUE);
+        screen.render(game, "first");
+        String first = bytes.toString(StandardCharsets.UTF_8);
+        if (!first.contains("\u001b[2J") || !first.contains("+---+---+---+---+---+---+---+")) {
+            fail("testTerminalRenderer: the first frame should clear the screen and draw the"
+                 + " grid.", game);
+        } // if
+        pass("testTerminalRenderer: the first frame draws the whole grid.");
+
+        bytes.reset();
+        game.dropToken(0, 2);
+        screen.render(game, "second");
+        String second = bytes.toString(StandardCharsets.UTF_8);
+        // header on row 1, blank row 2, grid rows 3-8, border 9, numbers 10, blank 11
+        String expected = "\u001b[8;11H\u001b[91m\u25cf\u001b[0m\u001b[12;1H\u001b[Jsecond";
+        if (!second.equals(expected)) {
+            fail("testTerminalRenderer: the second frame should only draw the new token, but"
+                 + " was " + second.replace("\u001b", "ESC"), game);
+        } // if
+        pass("testTerminalRenderer: a later frame draws only the changed cell.");
+
+        bytes.reset();
+        screen = new TerminalRenderer(bytes, StandardCharsets.UTF_8, false, "HEADER");
+        screen.render(game, "plain");
+        String plain = bytes.toString(StandardCharsets.UTF_8);
+        expected = "HEADER\n\n" + ". . . . . . . \n".repeat(5) + ". . R . . . . \n\nplain";
+        if (!plain.equals(expected)) {
+            fail("testTerminalRenderer: a frame without ANSI support should be the header and"
+                 + " the plain grid, but was\n" + plain, game);
+        } // if
+        pass("testTerminalRenderer: a frame without ANSI support is written in full.");
+    } // testTerminalRenderer
+
+    /**
+     * Test {@link BatchRunner}: a script of wins, a draw, an unfinished game, an impossible
+     * move and a wrong expected result is replayed with the right outcome for each game.
+     */
+    public static void testBatchRunner() {
+        header("testBatchRunner");
+        String script = "# comment\n"
+            + "3434343 0\n"
+            + "60011223 1\n"
+            + "512524256461521425234641511466630030000333 D\n"
+            + "3333\n"
+            + "33333333\n"
+            + "3434343 1\n";
+        BatchRunner runner = new BatchRunner(6, 7, false);
+        StringWriter out = new StringWriter();
+        try {
+            runner.run(new ByteArrayInputStream(script.getBytes()), out);
+        } catch (IOException ioe) {
+            exceptionNotExpected(ioe);
+        } // try
+        String expected = "0\n1\nD\n-\nE line 6: column 3 is full\n0 (line 7 expected 1)\n";
+        if (!out.toString().equals(expected) || runner.getGames() != 6
+            || runner.getWins(0) != 2 || runner.getWins(1) != 1 || runner.getDraws() != 1
+            || runner.getUnfinished() != 1 || runner.getInvalid() != 1
+            || runner.getMismatched() != 1) {
+            fail("testBatchRunner: the outcomes were\n" + out);
+        } // if
+        pass("testBatchRunner: every scripted game has the right outcome.");
+    } // testBatchRunner
+
+    /**
+     * Test {@link ConnectFourFuzzer}: a short run finds no disagreement between
+     * {@link ConnectFour} and the reference, while an engine that misses wins in its last
+     * column is caught and shrunk to a handful of operations.
+     */
+    public static void testFuzzer() {
+        header("testFuzzer");
+        try {
+            ConnectFourFuzzer.Failure failure = new ConnectFourFuzzer(ConnectFour::new)
+                .run(2000, 1302, 2, null);
+            if (failure != null) {
+                fail("testFuzzer: ConnectFour disagrees with the reference in " + failure);
+            } // if
+            failure = new ConnectFourFuzzer((rows, cols) -> new ConnectFour(rows, cols) {
+                @Override
+                public boolean isLastDropConnectFour() {
+                    boolean win = super.isLastDropConnectFour();
+                    return win && getLastDropCol() != getCols() - 1;
+                } // isLastDropConnectFour
+            }).run(2000, 1302, 2, null);
+            if (failure == null || failure.getLength() > 10
+                || !failure.getMessage().startsWith("after check, result is false")) {
+                fail("testFuzzer: the broken engine was not caught and shrunk: " + failure);
+            } // if
+        } catch (InterruptedException ie) {
+            exceptionNotExpected(ie);
+        } // try
+        pass("testFuzzer: the fuzzer agrees on ConnectFour and shrinks a broken engine.");
+    } // testFuzzer
+
+    /**
+     * Test reflection: on every grid size, a game and the same game played in mirrored columns
+     * have each other's hashes and the same canonical hash, {@code toCanonicalColumn} maps the
+     * columns of both to the same canonical columns unless the grid is symmetric, and the bit
+     * masks and search positions reflect to exactly what the mirrored moves produce.
+     */
+    public static void testMirror() {
+        header("testMirror");
+        Random random = new Random(1302);
+        for (int rows = 6; rows <= 9; rows++) {
+            for (int cols = 7; cols <= 9; cols++) {
+                ConnectFour game = newValidGame(rows, cols);
+                ConnectFour mirror = newValidGame(rows, cols);
+                game.setPlayerTokens(Token.RED, Token.BLUE);
+                mirror.setPlayerTokens(Token.RED, Token.BLUE);
+                Bitboard board = new Bitboard(rows, cols);
+                Bitboard mirrorBoard = new Bitboard(rows, cols);
+                Position pos = new Position(rows, cols);
+                Position mirrorPos = new Position(rows, cols);
+                for (int i = 0; i < rows * cols; i++) {
+                    int col = random.nextInt(cols);
+                    if (game.isColumnFull(col)) {
+                        continue;
+                    } // if
+                    int player = i % 2;
+                    int row = rows - 1 - game.getColumnHeight(col);
+                    game.dropToken(player, col);
+                    mirror.dropToken(player, cols - 1 - col);
+                    board.set(player, row, col);
+                    mirrorBoard.set(player, row, cols - 1 - col);
+                    pos.play(col);
+                    mirrorPos.play(cols - 1 - col);
+                    int height = rows + 1;
+                    long lo = board.getLow(player);
+                    long hi = board.getHigh(player);
+                    Position reflected = new Position(pos);
+                    reflected.mirror();
+                    if (game.getMirrorHash() != mirror.getHash()
+                        || mirror.getMirrorHash() != game.getHash()
+                        || game.getCanonicalHash() != mirror.getCanonicalHash()
+                        || game.getHash() != game.getMirrorHash()
+                            && game.toCanonicalColumn(col)
+                                != mirror.toCanonicalColumn(cols - 1 - col)
+                        || Bitboard.mirrorLow(lo, hi, height, cols) != mirrorBoard.getLow(player)
+                        || Bitboard.mirrorHigh(lo, hi, height, cols)
+                            != mirrorBoard.getHigh(player)
+                        || pos.canonicalKey() != mirrorPos.canonicalKey()
+                        || reflected.getHash() != mirrorPos.getHash()
+                        || reflected.getMirrorHash() != pos.getHash()
+                        || reflected.getHeight(0) != pos.getHeight(cols - 1)
+                        || reflected.canWinNext() != pos.canWinNext()) {
+                        fail("testMirror: the reflection of a " + rows + "x" + cols + " game"
+                             + " after a drop in column " + col + " is wrong.", game);
+                    } // if
+                    if (game.isLastDropConnectFour()) {
+                        break;
+                    } // if
+                } // for
+            } // for
+        } // for
+        pass("testMirror: reflected hashes, canonical columns, masks and positions agree.");
+    } // testMirror
+
+    /**
+     * Test {@link Perft}: the distinct positions of the 6-by-7 grid match the published counts,
+     * the move sequences and wins to ply 7 match a count made with the original rules in
+     * {@link ReferenceConnectFour}, and one thread counts the same as many.
+     */
+    public static void testPerft() {
+        header("testPerft");
+        long[] published = {1, 7, 49, 238, 1120, 4263, 16422, 54859, 184275};
+        Perft.Counts unique = new Perft(6, 7, 8, 20).count();
+        for (int ply = 0; ply <= 8; ply++) {
+            if (unique.getPositions(ply) != published[ply]) {
+                fail("testPerft: there should be " + published[ply] + " distinct positions at"
+                     + " ply " + ply + ", not " + unique.getPositions(ply));
+            } // if
+        } // for
+        long[][] expected = new long[2][8];
+        referencePerft(new byte[0], 7, expected);
+        Perft.Counts sequences = new Perft(6, 7, 7, 0).count();
+        for (int ply = 0; ply <= 7; ply++) {
+            if (sequences.getPositions(ply) != expected[0][ply]
+                || sequences.getWins(ply) != expected[1][ply] || sequences.getDraws(ply) != 0) {
+                fail("testPerft: the counts at ply " + ply + " should be " + expected[0][ply]
+                     + " positions and " + expected[1][ply] + " wins, but were\n" + sequences);
+            } // if
+        } // for
+        ForkJoinPool single = new ForkJoinPool(1);
+        Perft.Counts serial = new Perft(9, 9, 5, 16).count(single);
+        Perft.Counts parallel = new Perft(9, 9, 5, 16).count();
+        single.shutdown();
+        for (int ply = 0; ply <= 5; ply++) {
+            if (serial.getPositions(ply) != parallel.getPositions(ply)) {
+                fail("testPerft: one thread and many count differently at ply " + ply);
+            } // if
+        } // for
+        pass("testPerft: position counts match the published ones and the original rules.");
+    } // testPerft
+
+    /**
+     * Count the move sequences and wins below {@code moves} on a 6-by-7 grid, by ply, with the
+     * original rules in {@link ReferenceConnectFour}. The grid is rebuilt from the moves at
+     * each position, and moves of the last ply are checked without being made.
+     *
+     * @param moves the columns played so far, by alternating players
+     * @param depth the last ply to count
+     * @param counts the positions and wins found so far, by ply
+     */
+    private static void referencePerft(byte[] moves, int depth, long[][] counts) {
+        ReferenceConnectFour game = new ReferenceConnectFour(6, 7);
+        game.setPlayerTokens(Token.RED, Token.YELLOW);
+        for (int i = 0; i < moves.length; i++) {
+            game.dropToken(i % 2, moves[i]);
+        } // for
+        int ply = moves.length;
+        if (ply == 0) {
+            counts[0][0]++;
+        } // if
+        for (int col = 0; col < 7; col++) {
+            if (game.isColumnFull(col)) {
+                continue;
+            } // if
+            counts[0][ply + 1]++;
+            if (game.wouldWin(ply % 2, col)) {
+                counts[1][ply + 1]++;
+            } else if (ply + 1 < depth) {
+                byte[] next = Arrays.copyOf(moves, ply + 1);
+                next[ply] = (byte) col;
+                referencePerft(next, depth, counts);
+            } // if
+        } // for
+    } // referencePerft
+
+    /**
+     * Test {@link LineMasks}: every grid size has the right number of four-cell lines, the
+     * threat count matches a cell-by-cell scan of random grids, and the evaluation is zero for
+     * an empty grid and changes sign when the players swap.
+     */
+    public static void testLineMasks() {
+        header("testLineMasks");
+        Random random = new Random(1302);
+        for (int rows = 6; rows <= 9; rows++) {
+            for (int cols = 7; cols <= 9; cols++) {
+                LineMasks lines = LineMasks.forSize(rows, cols);
+                int expected = (rows - 3) * cols + rows * (cols - 3) + 2 * (rows - 3) * (cols - 3);
+                if (lines.getLineCount() != expected || lines.evaluate(0, 0, 0, 0) != 0) {
+                    fail("testLineMasks: a " + rows + "x" + cols + " grid should have " + expected
+                         + " lines, not " + lines.getLineCount());
+                } // if
+                for (int trial = 0; trial < 20; trial++) {
+                    ConnectFour game = newValidGame(rows, cols);
+                    game.setPlayerTokens(Token.RED, Token.BLUE);
+                    Bitboard board = new Bitboard(rows, cols);
+                    int drops = random.nextInt(rows * cols);
+                    for (int i = 0; i < drops; i++) {
+                        int col = random.nextInt(cols);
+                        if (!game.isColumnFull(col)) {
+                            int player = random.nextInt(2);
+                            board.set(player, rows - 1 - game.getColumnHeight(col), col);
+                            game.dropToken(player, col);
+                        } // if
+                    } // for
+                    long lo0 = board.getLow(0);
+                    long hi0 = board.getHigh(0);
+                    long lo1 = board.getLow(1);
+                    long hi1 = board.getHigh(1);
+                    if (lines.countThreats(lo0, hi0, lo1, hi1) != threats(game, Token.RED)
+                        || lines.countThreats(lo1, hi1, lo0, hi0) != threats(game, Token.BLUE)
+                        || lines.evaluate(lo0, hi0, lo1, hi1)
+                            != -lines.evaluate(lo1, hi1, lo0, hi0)) {
+                        fail("testLineMasks: the threats or evaluation of this grid are wrong.",
+                             game);
+                    } // if
+                } // for
+            } // for
+        } // for
+        pass("testLineMasks: line tables, threat counts and evaluations are right on every size.");
+    } // testLineMasks
+
+    /**
+     * Count the empty cells of {@code game} that would give {@code token} a connect four if it
+     * were placed there, by scanning in every direction from every empty cell.
+     *
+     * @param game the game
+     * @param token the player's token
+     * @return the number of threat cells
+     */
+    private static int threats(ConnectFour game, Token token) {
+        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+        int count = 0;
+        for (int row = 0; row < game.getRows(); row++) {
+            for (int col = 0; col < game.getCols(); col++) {
+                if (game.getTokenAt(row, col) != null) {
+                    continue;
+                } // if
+                for (int[] dir : directions) {
+                    int run = 1;
+                    for (int sign = -1; sign <= 1; sign += 2) {
+                        int r = row + sign * dir[0];
+                        int c = col + sign * dir[1];
+                        while (game.isInBounds(r, c) && game.getTokenAt(r, c) == token) {
+                            run++;
+                            r += sign * dir[0];
+                            c += sign * dir[1];
+                        } // while
+                    } // for
+                    if (run >= 4) {
+                        count++;
+                        break;
+                    } // if
+                } // for
+            } // for
+        } // for
+        return count;
+    } // threats
+
+    /**
+     * Test {@link OpeningBook}: a book built three plies past a middle-game root holds every
+     * position within reach and its reflection, with the solver's exact score and a move that
+     * keeps it; positions outside the book and damaged files are rejected; and the book policy
+     * plays the stored moves.
+     */
+    public static void testOpeningBook() {
+        header("testOpeningBook");
+        Path file = null;
+        try {
+            Position root = new Position(6, 7);
+            for (char move : "3322215444115660026633".toCharArray()) {
+                root.play(move - '0');
+            } // for
+            file = Files.createTempFile("opening-book", ".bin");
+            int count = OpeningBook.build(root, 3, 2, file);
+            OpeningBook book = OpeningBook.open(file);
+            List<Position> positions = new ArrayList<>();
+            bookPositions(root, 3, positions);
+            Solver solver = new Solver(20);
+            for (Position pos : positions) {
+                int score = book.score(pos);
+                int best = book.bestMove(pos);
+                Position reflected = new Position(pos);
+                reflected.mirror();
+                int reflectedBest = reflected.getHash() == pos.getHash() ? best : 6 - best;
+                if (score != solver.solve(pos) || best < 0 || !pos.canPlay(best)
+                    || book.score(reflected) != score
+                    || book.bestMove(reflected) != reflectedBest) {
+                    fail("testOpeningBook: a position " + pos.getMoves() + " moves in has score "
+                         + score + " and best move " + best + " in the book.");
+                } // if
+                int moveScore = pos.winScore();
+                if (!pos.isWinningMove(best)) {
+                    Position child = new Position(pos);
+                    child.play(best);
+                    moveScore = child.isFull() ? 0 : -solver.solve(child);
+                } // if
+                if (moveScore != score) {
+                    fail("testOpeningBook: the book's best move " + best + " scores " + moveScore
+                         + ", not " + score);
+                } // if
+            } // for
+            if (count != book.size() || book.getPlies() != 3 || book.getRows() != 6
+                || book.contains(new Position(6, 7))
+                || book.bestMove(new Position(7, 7)) != -1) {
+                fail("testOpeningBook: the book should hold " + count + " entries and only"
+                     + " positions near its root.");
+            } // if
+            MovePolicy policy = MovePolicy.parse("book:" + file + ":random");
+            if (policy.chooseMove(root, new Random(1302)) != book.bestMove(root)) {
+                fail("testOpeningBook: the book policy should play the book's move.");
+            } else if (OpeningBook.openShared(file)
+                       != OpeningBook.openShared(file.toAbsolutePath())) {
+                fail("testOpeningBook: a book file should be mapped once and shared.");
+            } // if
+            long start = System.nanoTime();
+            int lookups = 1_000_000;
+            int sum = 0;
+            for (int i = 0; i < lookups; i++) {
+                sum += book.bestMove(positions.get(i % positions.size()));
+            } // for
+            double nanos = (System.nanoTime() - start) / (double) lookups;
+            byte[] bytes = Files.readAllBytes(file);
+            byte[][] damagedFiles = {Arrays.copyOf(bytes, bytes.length - 1),
+                                     {'C', '4', 'X', 'X'}};
+            for (byte[] damaged : damagedFiles) {
+                Files.write(file, damaged);
+                try {
+                    OpeningBook.open(file);
+                    fail("testOpeningBook: a damaged book file should not open.");
+                } catch (IOException ioe) {
+                    // expected
+                } // try
+            } // for
+            pass(String.format("testOpeningBook: %d entries agree with the solver; %.0f ns per"
+                               + " lookup (checksum %d).", count, nanos, sum));
+        } catch (IOException | InterruptedException e) {
+            exceptionNotExpected(e);
+        } finally {
+            try {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                } // if
+            } catch (IOException ioe) {
+                // the temporary file is left behind
+            } // try
+        } // try
+    } // testOpeningBook
+
+    /**
+     * Add {@code position} and every position within {@code plies} plies of it that is not won
+     * or full to {@code positions}, the way {@link OpeningBook#build} finds them.
+     * Positions reached by several move orders are added once per order.
+     *
+     * @param position the position to start from
+     * @param plies how many more plies to go
+     * @param positions the positions found so far
+     */
+    private static void bookPositions(Position position, int plies, List<Position> positions) {
+        if (position.isFull()) {
+            return;
+        } // if
+        positions.add(position);
+        for (int col = 0; plies > 0 && col < position.getCols(); col++) {
+            if (position.canPlay(col) && !position.isWinningMove(col)) {
+                Position child = new Position(position);
+                child.play(col);
+                bookPositions(child, plies - 1, positions);
+            } // if
+        } // for
+    } // bookPositions
+
+    /**
+     * Test {@link EndgameTable}: a table built for a drawn root with 18 empty cells gives every
+     * position within three plies the result of its solver score and a move that keeps it,
+     * speeds up the solver without changing its scores, leaves positions that do not follow the
+     * root out, and rejects a damaged file.
+     */
+    public static void testEndgameTable() {
+        header("testEndgameTable");
+        Path file = null;
+        try {
+            Position root = new Position(6, 7);
+            for (char move : "514451035314030116300525".toCharArray()) {
+                root.play(move - '0');
+            } // for
+            file = Files.createTempFile("endgame-table", ".bin");
+            EndgameTable.build(root, file);
+            EndgameTable table = EndgameTable.open(file);
+            List<Position> positions = new ArrayList<>();
+            bookPositions(root, 3, positions);
+            Solver solver = new Solver(20);
+            for (Position pos : positions) {
+                int score = solver.solve(pos);
+                int result = table.result(pos);
+                int best = table.bestMove(pos);
+                int moveScore = pos.winScore();
+                if (best >= 0 && !pos.isWinningMove(best)) {
+                    Position child = new Position(pos);
+                    child.play(best);
+                    moveScore = child.isFull() ? 0 : -solver.solve(child);
+                } // if
+                if (result != Integer.signum(score) + 1 || best < 0
+                    || Integer.signum(moveScore) != Integer.signum(score)) {
+                    fail("testEndgameTable: a position scoring " + score + " has result "
+                         + result + " and best move " + best + " in the table.");
+                } // if
+            } // for
+            Solver withTable = new Solver(20);
+            withTable.setEndgameTable(table);
+            int score = solver.solve(root);
+            long nodes = solver.getNodeCount();
+            if (withTable.solve(root) != score || withTable.getNodeCount() >= nodes) {
+                fail("testEndgameTable: the table should give the solver the same score with"
+                     + " fewer nodes.");
+            } // if
+            Position before = new Position(root);
+            before.undo(5);
+            if (table.result(before) != -1 || table.result(new Position(7, 7)) != -1
+                || table.getEmptyCells() != 18) {
+                fail("testEndgameTable: only positions that follow the root should be covered.");
+            } // if
+            long start = System.nanoTime();
+            int lookups = 1_000_000;
+            int sum = 0;
+            for (int i = 0; i < lookups; i++) {
+                sum += table.result(positions.get(i % positions.size()));
+            } // for
+            double nanos = (System.nanoTime() - start) / (double) lookups;
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+            try {
+                EndgameTable.open(file);
+                fail("testEndgameTable: a damaged table file should not open.");
+            } catch (IOException ioe) {
+                // expected
+            } // try
+            pass(String.format("testEndgameTable: a table of %d entries agrees with the solver,"
+                               + " which needed %d nodes without it and %d with it; %.0f ns per"
+                               + " lookup (checksum %d).", table.size(), nodes,
+                               withTable.getNodeCount(), nanos, sum));
+        } catch (IOException ioe) {
+            exceptionNotExpected(ioe);
+        } finally {
+            try {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                } // if
+            } catch (IOException ioe) {
+                // the temporary file is left behind
+            } // try
+        } // try
+    } // testEndgameTable
+
+    /**
+     * Test {@link SessionRegistry}: ids that share a table slot can be removed from the middle
+     * of their probe run without losing the others, a long run of puts and removes agrees with
+     * a {@link HashMap}, an unused game expires after the idle timeout, and a game that is used
+     * again survives the wheel passing its old slot.
+     */
+    public static void testSessionRegistry() {
+        header("testSessionRegistry");
+        SessionRegistry registry = new SessionRegistry(1, 1, TimeUnit.SECONDS);
+        // a new shard's table has 32 slots; find six ids whose home slot is that of id 1
+        List<Long> run = new ArrayList<>();
+        for (long id = 1; run.size() < 6; id++) {
+            if ((registryHash(id) & 31) == (registryHash(1) & 31)) {
+                run.add(id);
+                registry.put(id, newValidGame(6, 7));
+            } // if
+        } // for
+        Map<Long, ConnectFour> expected = new HashMap<>();
+        for (long id : run) {
+            expected.put(id, registry.get(id));
+        } // for
+        for (int i : new int[] {2, 0, 4}) {
+            long id = run.get(i);
+            if (registry.remove(id) != expected.remove(id) || registry.get(id) != null
+                || registry.remove(id) != null) {
+                fail("testSessionRegistry: id " + id + " was not removed.");
+            } // if
+            for (Map.Entry<Long, ConnectFour> entry : expected.entrySet()) {
+                if (registry.get(entry.getKey()) != entry.getValue()) {
+                    fail("testSessionRegistry: removing id " + id + " from the middle of a"
+                         + " collision run lost id " + entry.getKey() + ".");
+                } // if
+            } // for
+        } // for
+        if (registry.size() != expected.size()) {
+            fail("testSessionRegistry: the size is " + registry.size() + ", not "
+                 + expected.size() + ".");
+        } // if
+        pass("testSessionRegistry: removing from the middle of a collision run keeps the rest.");
+
+        Random random = new Random(1302);
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                if (registry.remove(id) != expected.remove(id)) {
+                    fail("testSessionRegistry: remove(" + id + ") disagrees with a HashMap.");
+                } // if
+            } else if (random.nextBoolean()) {
+                ConnectFour game = newValidGame(6, 7);
+                registry.put(id, game);
+                expected.put(id, game);
+            } else if (registry.get(id) != expected.get(id)) {
+                fail("testSessionRegistry: get(" + id + ") disagrees with a HashMap.");
+            } // if
+        } // for
+        if (registry.size() != expected.size()) {
+            fail("testSessionRegistry: the size disagrees with a HashMap.");
+        } // if
+        pass("testSessionRegistry: 20,000 puts, gets and removes agree with a HashMap.");
+
+        try (SessionRegistry idle = new SessionRegistry(1, 1, TimeUnit.SECONDS)) {
+            List<Long> evicted = new ArrayList<>();
+            idle.setEvictionListener((id, game) -> evicted.add(id));
+            long used = idle.register(newValidGame(6, 7));
+            long unused = idle.register(newValidGame(6, 7));
+            Thread.sleep(600);
+            idle.get(used);
+            if (idle.expire() != 0) {
+                fail("testSessionRegistry: no game should expire before the timeout.");
+            } // if
+            Thread.sleep(600);
+            if (idle.expire() != 1 || !evicted.equals(List.of(unused)) || idle.size() != 1
+                || idle.get(unused) != null) {
+                fail("testSessionRegistry: only the unused game should expire after the"
+                     + " timeout, but " + evicted + " did.");
+            } // if
+            pass("testSessionRegistry: an unused game expires after the timeout.");
+            Thread.sleep(1000);
+            if (idle.expire() != 1 || !evicted.equals(List.of(unused, used))
+                || idle.get(used) != null) {
+                fail("testSessionRegistry: the game that was used again should survive one pass"
+                     + " of the wheel and expire a timeout after its last use.");
+            } // if
+            pass("testSessionRegistry: a game used again survives a pass of the wheel.");
+        } catch (InterruptedException ie) {
+            exceptionNotExpected(ie);
+        } // try
+    } // testSessionRegistry
+
+    /**
+     * Returns the hash that {@link SessionRegistry} gives {@code id}, whose low bits pick the id's
+     * home slot in a shard's table.
+     *
+     * @param id the session id.
+     * @return the id's hash.
+     */
+    private static int registryHash(long id) {
+        long h = id * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33));
+    } // registryHash
+
+    /**
+     * Test {@link Solver} against a brute-force minimax that plays every move to the end on a
+     * {@link ConnectFour} game, on near-full random positions of several grid sizes, and check
+     * that {@link Position#of(ConnectFour)} gives each position the game's hashes and player.
+     */
+    public static void testSolver() {
+        header("testSolver");
+        Random random = new Random(1302);
+        int[][] sizes = {{6, 7}, {6, 8}, {7, 7}, {8, 9}, {9, 7}};
+        int checked = 0;
+        for (int[] size : sizes) {
+            Solver solver = new Solver(16);
+            for (int n = 0; n < 160; n++) {
+                ConnectFour game = randomGame(size[0], size[1], 4 + random.nextInt(6), random);
+                Position position = Position.of(game);
+                if (position.getHash() != game.getHash()
+                    || position.getMirrorHash() != game.getMirrorHash()
+                    || position.getPlayer() != game.getNumDropped() % 2
+                    || position.getMoves() != game.getNumDropped()) {
+                    fail("testSolver: Position.of should copy the game's tokens, hashes and"
+                         + " player to move.", game);
+                } // if
+                int expected = minimax(game, game.getNumDropped() % 2);
+                int score = solver.solve(position);
+                if (score != expected) {
+                    fail("testSolver: the solver scores this position " + score
+                         + " but minimax scores it " + expected + ".", game);
+                } // if
+                checked++;
+            } // for
+        } // for
+        pass("testSolver: the solver agrees with minimax on " + checked + " near-full positions"
+             + " of " + sizes.length + " grid sizes.");
+    } // testSolver
+
+    /**
+     * Returns a game of the given size played by random moves, none of which connects four,
+     * until {@code empty} cells are left.
+     *
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param empty the number of empty cells to leave.
+     * @param random the source of the moves.
+     * @return the game.
+     */
+    private static ConnectFour randomGame(int rows, int cols, int empty, Random random) {
+        while (true) {
+            ConnectFour game = newValidGame(rows, cols);
+            game.setPlayerTokens(Token.RED, Token.YELLOW);
+            int dropped = 0;
+            while (dropped < rows * cols - empty && dropWithoutWin(game, dropped % 2, random)) {
+                dropped++;
+            } // while
+            if (dropped == rows * cols - empty) {
+                return game;
+            } // if
+        } // while
+    } // randomGame
+
+    /**
+     * Drops a token for {@code player} in a random column where it does not connect four.
+     *
+     * @param game the game.
+     * @param player the player.
+     * @param random the source of the column.
+     * @return {@code false} if every open column connects four.
+     */
+    private static boolean dropWithoutWin(ConnectFour game, int player, Random random) {
+        int start = random.nextInt(game.getCols());
+        for (int i = 0; i < game.getCols(); i++) {
+            int col = (start + i) % game.getCols();
+            if (game.getTokenAt(0, col) != null) {
+                continue;
+            } // if
+            game.dropToken(player, col);
+            if (!game.isLastDropConnectFour()) {
+                return true;
+            } // if
+            game.undo();
+        } // for
+        return false;
+    } // dropWithoutWin
+
+    /**
+     * Returns the score of {@code game} for {@code player}, found by trying every sequence of
+     * moves to the end of the game: a win with the player's {@code k}-th token from the end
+     * scores {@code k}, a draw scores {@code 0}. The game is left unchanged.
+     *
+     * @param game the game, with no connect four.
+     * @param player the player to move.
+     * @return the score.
+     */
+    private static int minimax(ConnectFour game, int player) {
+        int cells = game.getRows() * game.getCols();
+        int best = Integer.MIN_VALUE;
+        for (int col = 0; col < game.getCols(); col++) {
+            if (game.getTokenAt(0, col) != null) {
+                continue;
+            } // if
+            game.dropToken(player, col);
+            int score;
+            if (game.isLastDropConnectFour()) {
+                score = (cells + 2 - game.getNumDropped()) / 2;
+            } else if (game.getNumDropped() == cells) {
+                score = 0;
+            } else {
+                score = -minimax(game, 1 - player);
+            } // if
+            game.undo();
+            best = Math.max(best, score);
+        } // for
+        return best;
+    } // minimax
+
+    /**
+     * Test {@link TranspositionTable}: every score, bound, depth and move survives a store and
+     * a lookup, including after the search generation wraps around, and a slot keeps the
+     * deeper of two competing entries only while both belong to the current search.
+     */
+    public static void testTranspositionTable() {
+        header("testTranspositionTable");
+        TranspositionTable table = new TranspositionTable(4);
+        long key = 0xFFFFFFFF_FFFFFFF5L;
+        for (int round = 0; round < 2; round++) {
+            for (int score = -128; score <= 127; score++) {
+                for (int depth = 0; depth <= 127; depth++) {
+                    for (int move = -1; move <= 8; move++) {
+                        int bound = 1 + (score + depth + move + 129) % 3;
+                        table.put(key, score, bound, depth, move);
+                        long entry = table.get(key);
+                        if (TranspositionTable.score(entry) != score
+                            || TranspositionTable.bound(entry) != bound
+                            || TranspositionTable.depth(entry) != depth
+                            || TranspositionTable.move(entry) != move) {
+                            fail("testTranspositionTable: score " + score + ", bound " + bound
+                                 + ", depth " + depth + " and move " + move + " came back as "
+                                 + Long.toHexString(entry) + ".");
+                        } // if
+                    } // for
+                } // for
+            } // for
+            // the second round packs generation 255, and the newSearch below wraps it to 0
+            for (int i = 0; round == 0 && i < 255; i++) {
+                table.newSearch();
+            } // for
+        } // for
+        pass("testTranspositionTable: every field survives a store and a lookup.");
+
+        long deep = 0x12345678_00000003L;
+        long shallow = 0x87654321_00000003L;
+        table.put(deep, 5, TranspositionTable.EXACT, 10, 2);
+        table.put(shallow, -3, TranspositionTable.LOWER, 9, 4);
+        if (table.get(shallow) != 0 || TranspositionTable.depth(table.get(deep)) != 10) {
+            fail("testTranspositionTable: a shallower entry should not replace a deeper one from"
+                 + " the same search.");
+        } // if
+        table.put(deep, 6, TranspositionTable.UPPER, 3, 1);
+        if (TranspositionTable.score(table.get(deep)) != 6) {
+            fail("testTranspositionTable: a new entry for the same key should always be kept.");
+        } // if
+        table.put(shallow, -3, TranspositionTable.LOWER, 3, 4);
+        if (table.get(deep) != 0 || TranspositionTable.score(table.get(shallow)) != -3) {
+            fail("testTranspositionTable: an entry at least as deep should replace another.");
+        } // if
+        table.newSearch();
+        table.put(deep, 5, TranspositionTable.EXACT, 0, 2);
+        if (table.get(shallow) != 0 || TranspositionTable.depth(table.get(deep)) != 0) {
+            fail("testTranspositionTable: an entry from an earlier search should always be"
+                 + " replaced, even after the generation wraps to 0.");
+        } // if
+        pass("testTranspositionTable: a slot keeps the deeper entry of the current search.");
+    } // testTranspositionTable
+
+    /**
+     * Test {@link ParallelSolver}: with one thread and with four threads sharing a table, it
+     * gives the same exact score and the same column scores as {@link Solver} on a fixed set of
+     * random positions.
+     */
+    public static void testParallelSolver() {
+        header("testParallelSolver");
+        Random random = new Random(1302);
+        List<Position> positions = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            int cols = 7 + i % 2;
+            positions.add(Position.of(randomGame(6, cols, 14 + random.nextInt(8), random)));
+        } // for
+        Solver solver = new Solver(18);
+        for (int threads : new int[] {1, 4}) {
+            try (ParallelSolver parallel = new ParallelSolver(threads, 18)) {
+                for (Position position : positions) {
+                    int expected = solver.solve(position);
+                    int score = parallel.solve(position);
+                    if (score != expected) {
+                        fail("testParallelSolver: with " + threads + " threads the score is "
+                             + score + " but the solver's is " + expected + ".");
+                    } // if
+                } // for
+                Position first = positions.get(0);
+                if (!Arrays.equals(parallel.analyze(first), solver.analyze(first))) {
+                    fail("testParallelSolver: with " + threads + " threads the column scores"
+                         + " differ from the solver's.");
+                } // if
+            } // try
+            pass("testParallelSolver: " + threads + " thread(s) agree with the solver on "
+                 + positions.size() + " positions.");
+        } // for
+    } // testParallelSolver
+
+    /**
+     * Test {@link MonteCarloSearch} with one and with four worker threads: it takes an
+     * immediate win, blocks the opponent's immediate win, scores a position lost to a double
+     * threat as a certain loss, and runs exactly as many playouts as its budget allows (up to
+     * one extra per other worker).
+     */
+    public static void testMonteCarloSearch() {
+        header("testMonteCarloSearch");
+        Position win = positionAfter(6, 7, 0, 1, 0, 1, 0, 1);
+        Position block = positionAfter(6, 7, 0, 1, 0, 1, 0);
+        Position lost = positionAfter(6, 7, 2, 2, 3, 3, 4);
+        int budget = 20_000;
+        for (int threads : new int[] {1, 4}) {
+            try (MonteCarloSearch search = new MonteCarloSearch(threads, 1 << 16)) {
+                SearchResult result = search.search(win, 0, budget);
+                if (result.getBestMove() != 0 || result.getScore() != 100) {
+                    fail("testMonteCarloSearch: with " + threads + " threads the search should"
+                         + " win in column 0, but " + result);
+                } // if
+                result = search.search(block, 0, budget);
+                if (result.getBestMove() != 0) {
+                    fail("testMonteCarloSearch: with " + threads + " threads the search should"
+                         + " block column 0, but " + result);
+                } // if
+                if (result.getNodes() < budget || result.getNodes() >= budget + threads) {
+                    fail("testMonteCarloSearch: with " + threads + " threads a budget of "
+                         + budget + " playouts ran " + result.getNodes() + ".");
+                } // if
+                result = search.search(lost, 0, budget);
+                if (result.getScore() != -100) {
+                    fail("testMonteCarloSearch: with " + threads + " threads every move of a"
+                         + " position lost to a double threat should score -100, but " + result);
+                } // if
+            } // try
+            pass("testMonteCarloSearch: " + threads + " thread(s) win, block, see a lost"
+                 + " position and keep to the playout budget.");
+        } // for
+    } // testMonteCarloSearch
+
+    /**
+     * Returns the position reached by playing {@code moves} from an empty grid.
+     *
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param moves the columns played, in order.
+     * @return the position.
+     */
+    private static Position positionAfter(int rows, int cols, int... moves) {
+        Position position = new Position(rows, cols);
+        for (int col : moves) {
+            position.play(col);
+        } // for
+        return position;
+    } // positionAfter
+
+    /**
+     * Test the flight recorder events of {@link ConnectFour}: a game won in a column records
+     * a drop and a win check for every token, with {@code checkVertical} on the last one, and
+     * one game over for the right player; a loaded game whose connect four does not pass
+     * through its last drop names the player who owns the connect four.
+     */
+    public static void testGameEvents() {
+        header("testGameEvents");
+        int[] cols = {0, 3, 0, 3, 1, 3, 6, 3};
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < cols.length; i++) {
+            boolean win = i == cols.length - 1;
+            expected.append("Drop ").append(i % 2).append(' ').append(cols[i]).append(' ')
+                .append(i + 1).append("; WinCheck ").append(win).append(' ')
+                .append(win ? "checkVertical" : null).append(' ').append(i + 1).append("; ");
+        } // for
+        expected.append("GameOver 1 8; ");
+        String recorded = recordGameEvents(() -> {
+            ConnectFour game = newValidGame(6, 7);
+            game.setPlayerTokens(Token.RED, Token.BLUE);
+            for (int i = 0; i < cols.length; i++) {
+                game.dropToken(i % 2, cols[i]);
+                game.isLastDropConnectFour();
+            } // for
+        });
+        if (!recorded.equals(expected.toString())) {
+            fail("testGameEvents: the events of a game won in a column were\n  " + recorded);
+        } // if
+        pass("testGameEvents: every drop and win check is recorded, then the game over.");
+
+        recorded = recordGameEvents(() -> {
+            try {
+                Path file = Files.createTempFile("c4-events-", ".txt");
+                try {
+                    // player 0 owns the four, but the file names a token of player 1 as last
+                    Files.writeString(file, "6 7 RED BLUE\n"
+                        + "3 3 3 3 3 3 3\n".repeat(5) + "0 0 0 0 1 1 1\n5 6\n");
+                    ConnectFour.fromFile(file.toString());
+                } finally {
+                    Files.deleteIfExists(file);
+                } // try
+            } catch (IOException ioe) {
+                exceptionNotExpected(ioe);
+            } // try
+        });
+        if (!recorded.endsWith("; WinCheck true checkHorizontal 7; GameOver 0 7; ")) {
+            fail("testGameEvents: the events of a loaded game won by player 0 were\n  "
+                 + recorded);
+        } // if
+        pass("testGameEvents: a loaded game's winner owns the connect four.");
+    } // testGameEvents
+
+    /**
+     * Returns the {@code Drop}, {@code WinCheck} and {@code GameOver} events that
+     * {@code play} records on the calling thread, in order, each as its name and fields
+     * followed by {@code "; "}.
+     *
+     * @param play the code to record.
+     * @return the recorded events.
+     */
+    private static String recordGameEvents(Runnable play) {
+        StringBuilder events = new StringBuilder();
+        Path file = null;
+        try (Recording recording = new Recording()) {
+            recording.enable("cs1302.game.Drop");
+            recording.enable("cs1302.game.WinCheck");
+            recording.enable("cs1302.game.GameOver");
+            recording.start();
+            play.run();
+            recording.stop();
+            file = Files.createTempFile("c4-events-", ".jfr");
+            recording.dump(file);
+            List<RecordedEvent> recorded = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getThread() != null
+                    && event.getThread().getJavaThreadId() == Thread.currentThread().getId()) {
+                    recorded.add(event);
+                } // if
+            } // for
+            recorded.sort(Comparator.comparing(RecordedEvent::getStartTime));
+            for (RecordedEvent event : recorded) {
+                String name = event.getEventType().getName();
+                events.append(name.substring(name.lastIndexOf('.') + 1));
+                if (name.endsWith("Drop")) {
+                    events.append(' ').append(event.getInt("player")).append(' ')
+                        .append(event.getInt("column"));
+                } else if (name.endsWith("WinCheck")) {
+                    events.append(' ').append(event.getBoolean("win")).append(' ')
+                        .append(event.getString("check"));
+                } else {
+                    events.append(' ').append(event.getInt("winner"));
+                } // if
+                events.append(' ').append(event.getInt("tokens")).append("; ");
+            } // for
+        } catch (IOException ioe) {
+            exceptionNotExpected(ioe);
+        } finally {
+            try {
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                } // if
+            } catch (IOException ioe) {
+                // the temporary file is left behind
+            } // try
+        } // try
+        return events.toString();
+    } // recordGameEvents
+
+    /**
+     * Returns {@code true} if two games have the same size, player tokens, grid, phase, last
+     * drop, column heights and hash.
+     *
+     * @param a the first game.
+     * @param b the second game.
+     * @return whether the games are the same.
+     */
+    private static boolean sameGame(ConnectFour a, ConnectFour b) {
+        if (a.getRows() != b.getRows() || a.getCols() != b.getCols()
+            || a.getPhase() != b.getPhase() || a.getHash() != b.getHash()) {
+            return false;
+        } // if
+        if (a.getPhase() != GamePhase.NEW && (a.getPlayerToken(0) != b.getPlayerToken(0)
+            || a.getPlayerToken(1) != b.getPlayerToken(1))) {
+            return false;
+        } // if
+        if ((a.getPhase() == GamePhase.PLAYABLE || a.getPhase() == GamePhase.OVER)
+            && (a.getNumDropped() != b.getNumDropped() || a.getLastDropRow() != b.getLastDropRow()
+                || a.getLastDropCol() != b.getLastDropCol())) {
+            return false;
+        } // if
+        for (int col = 0; col < a.getCols(); col++) {
+            if (a.getColumnHeight(col) != b.getColumnHeight(col)) {
+                return false;
+            } // if
+            for (int row = 0; row < a.getRows(); row++) {
+                if (a.getTokenAt(row, col) != b.getTokenAt(row, col)) {
+                    return false;
+                } // if
+            } // for
+        } // for
+        return true;
+    } // sameGame
+
     /**
      * Returns a new {@code ConnectFour} object if {@code rows} and {@code cols} are valid.
      * Otherwise, the method returns {@code null}.
@@ -671,8 +2284,10 @@ public class ConnectFourTester {
      * @param t a reference to exception object generated.
      */
     private static void exceptionNotExpected(Throwable t) {
-        fail("an Exception was thrown but not expected");
-        System.out.println("  " + t);
+        if (t instanceof ConnectFourTestRunner.TestFailure) {
+            throw (ConnectFourTestRunner.TestFailure) t;
+        } // if
+        fail("an Exception was thrown but not expected\n  " + t);
     } // exceptionNotExpected
 
     /**
@@ -689,7 +2304,8 @@ public class ConnectFourTester {
      * Prints a message to indicate that a test was failed. The method prints
      * "FAIL" followed by the provided message, then aborts any remaining
      * tests. If {@code game} is not {@code null}, then this method attempts
-     * to print the game grid.
+     * to print the game grid. Under {@link ConnectFourTestRunner}, only the
+     * failing test is aborted.
      *
      * @param message the message to print.
      * @param game a {@code ConnectFour} game object.
@@ -701,6 +2317,9 @@ public class ConnectFourTester {
             System.out.println();
             game.printGrid();
         } // if
+        if (ConnectFourTestRunner.isRunning()) {
+            throw new ConnectFourTestRunner.TestFailure(message);
+        } // if
         System.out.println();
         System.out.println("ABORTING REMAINING TESTS: You should fix this test failure");
         System.out.println("to see any remaining test cases.");
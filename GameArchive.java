@@ -0,0 +1,272 @@
+package cs1302.game;
+
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A read-only, memory-mapped file of {@link ConnectFour} games in a compact binary format.
+ * Every game takes the same number of bytes, so game {@code i} is found with one
+ * multiplication, and {@link #read} decodes it straight from the mapped pages into an
+ * existing {@code ConnectFour} object without allocating anything.
+ *
+ * <p>
+ * An archive starts with a {@value #HEADER_BYTES}-byte header, followed by the records. All
+ * numbers are little-endian.
+ *
+ * <pre>
+ * header
+ *   0-3    magic number {@code 0x43344741} ("C4GA")
+ *   4-5    format version ({@value #VERSION})
+ *   6-7    record size in bytes ({@value #RECORD_BYTES})
+ *   8-15   number of records
+ *
+ * record
+ *   0      rows
+ *   1      cols
+ *   2-3    ordinal of each player's {@link Token}, or -1 for both in a NEW game
+ *   4-5    row and column of the last drop, or -1 for both if nothing was dropped
+ *   6      ordinal of the {@link GamePhase}
+ *   7      reserved (0)
+ *   8-23   player 0's tokens as a 128-bit {@link Bitboard} mask (low word first)
+ *   24-39  player 1's tokens as a 128-bit {@code Bitboard} mask (low word first)
+ * </pre>
+ *
+ * <p>
+ * Archives are created with {@link #write} or from the command line with {@link #main}. An
+ * archive may be read from several threads at once, as long as each thread reads into its own
+ * {@code ConnectFour} object.
+ */
+public final class GameArchive {
+
+    /** The magic number that starts every archive. */
+    public static final int MAGIC = 0x43344741;
+
+    /** The version of the format written by this class. */
+    public static final int VERSION = 1;
+
+    /** The size of the file header in bytes. */
+    public static final int HEADER_BYTES = 16;
+
+    /** The size of one game record in bytes. */
+    public static final int RECORD_BYTES = 40;
+
+    /** Every token, indexed by ordinal, so records can be decoded without {@code values()}. */
+    static final Token[] TOKENS = Token.values();
+
+    /** Every game phase, indexed by ordinal. */
+    static final GamePhase[] PHASES = GamePhase.values();
+
+    /** Records per mapped chunk, so a chunk stays under the 2 GiB limit of a buffer. */
+    private static final int CHUNK_RECORDS = (1 << 30) / RECORD_BYTES;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    /**
+     * Constructs an archive over already mapped chunks.
+     *
+     * @param chunks the mapped records
+     * @param size the number of records
+     */
+    private GameArchive(MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    } // GameArchive
+
+    /**
+     * Map the archive in {@code file}. The file is mapped read-only; its pages are loaded by
+     * the operating system as records are read.
+     *
+     * @param file the archive file
+     * @return the archive
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public static GameArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete or the file ends
+            } // while
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a game archive.");
+            } else if (header.getShort(4) != VERSION || header.getShort(6) != RECORD_BYTES) {
+                throw new IOException(file + " has unsupported archive version "
+                    + header.getShort(4) + ".");
+            } // if
+            long size = header.getLong(8);
+            if (size < 0 || channel.size() < HEADER_BYTES + size * RECORD_BYTES) {
+                throw new IOException(file + " is truncated: " + size + " records expected.");
+            } // if
+            int count = (int) ((size + CHUNK_RECORDS - 1) / CHUNK_RECORDS);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long first = (long) i * CHUNK_RECORDS;
+                long records = Math.min(CHUNK_RECORDS, size - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                        HEADER_BYTES + first * RECORD_BYTES,
+                                        records * RECORD_BYTES);
+                chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+            } // for
+            return new GameArchive(chunks, size);
+        } // try
+    } // open
+
+    /**
+     * Return the number of games in the archive.
+     *
+     * @return the record count
+     */
+    public long size() {
+        return size;
+    } // size
+
+    /**
+     * Read game {@code index} into {@code game}, replacing its state; see
+     * {@link ConnectFour#readRecord}. Nothing is allocated when {@code game} already has the
+     * record's grid size.
+     *
+     * @param index the record index
+     * @param game the game to read into
+     * @return {@code game}
+     * @throws IndexOutOfBoundsException if {@code index} is not between {@code 0} and
+     *     {@code size() - 1}
+     * @throws IllegalArgumentException if the record is corrupt
+     */
+    public ConnectFour read(long index, ConnectFour game) {
+        Objects.checkIndex(index, size);
+        int chunk = (int) (index / CHUNK_RECORDS);
+        int offset = (int) (index % CHUNK_RECORDS) * RECORD_BYTES;
+        game.readRecord(chunks[chunk], offset);
+        return game;
+    } // read
+
+    /**
+     * Return game {@code index} as a new {@code ConnectFour} object.
+     *
+     * @param index the record index
+     * @return the game
+     * @throws IndexOutOfBoundsException if {@code index} is not between {@code 0} and
+     *     {@code size() - 1}
+     * @throws IllegalArgumentException if the record is corrupt
+     */
+    public ConnectFour get(long index) {
+        return read(index, new ConnectFour(6, 7));
+    } // get
+
+    /**
+     * Write {@code games} to a new archive in {@code file}, replacing any existing file.
+     *
+     * @param file the archive file
+     * @param games the games to write, in order
+     * @return the number of games written
+     * @throws IOException if the file cannot be written
+     */
+    public static long write(Path file, Iterable<ConnectFour> games) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_BYTES << 12)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(HEADER_BYTES);
+            long count = 0;
+            for (ConnectFour game : games) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    drain(channel, buffer);
+                } // if
+                game.writeRecord(buffer, buffer.position());
+                buffer.position(buffer.position() + RECORD_BYTES);
+                count++;
+            } // for
+            drain(channel, buffer);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort((short) VERSION).putShort((short) RECORD_BYTES)
+                .putLong(count).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            } // while
+            return count;
+        } // try
+    } // write
+
+    /**
+     * Write everything in {@code buffer} to the end of {@code channel} and clear the buffer.
+     *
+     * @param channel the channel to write to
+     * @param buffer the bytes to write, from {@code 0} to the buffer's position
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        } // while
+        buffer.clear();
+    } // drain
+
+    /**
+     * Convert game files to an archive, or scan an archive.
+     *
+     * <pre>
+     * usage: GameArchive ARCHIVE GAME_FILE...
+     *        GameArchive ARCHIVE
+     * </pre>
+     *
+     * <p>
+     * With game files (in the text format read by {@link ConnectFour#fromFile}), they are
+     * written to {@code ARCHIVE} in order. With only an archive, every record is read into a
+     * single game object, and the number of games, finished games and tokens is printed along
+     * with the read rate.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: GameArchive ARCHIVE [GAME_FILE...]");
+            System.exit(1);
+        } // if
+        Path file = Path.of(args[0]);
+        if (args.length > 1) {
+            List<ConnectFour> games = new ArrayList<>(args.length - 1);
+            for (int i = 1; i < args.length; i++) {
+                try {
+                    games.add(ConnectFour.fromFile(args[i]));
+                } catch (FileNotFoundException fnfe) {
+                    throw new IOException("Cannot read " + args[i] + ".", fnfe);
+                } // try
+            } // for
+            System.out.printf("wrote %,d games to %s%n", write(file, games), file);
+            return;
+        } // if
+        long start = System.nanoTime();
+        GameArchive archive = open(file);
+        ConnectFour game = new ConnectFour(6, 7);
+        long over = 0;
+        long tokens = 0;
+        for (long i = 0; i < archive.size(); i++) {
+            archive.read(i, game);
+            if (game.getPhase() == GamePhase.OVER) {
+                over++;
+            } // if
+            if (game.getPhase() != GamePhase.NEW && game.getPhase() != GamePhase.READY) {
+                tokens += game.getNumDropped();
+            } // if
+        } // for
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d games (%,d over, %,d tokens) in %.3f s, %,.0f games/s%n",
+                          archive.size(), over, tokens, seconds, archive.size() / seconds);
+    } // main
+
+} // GameArchive
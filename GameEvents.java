@@ -0,0 +1,120 @@
+package cs1302.game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events emitted by {@link ConnectFour}: one per token drop, one per
+ * {@linkplain ConnectFour#isLastDropConnectFour win check} and one when a game ends. Events
+ * of the search engines and the self-play simulator are in their own packages and share the
+ * {@value #CATEGORY} category.
+ *
+ * <p>
+ * Every event is disabled by default, so a drop only pays for a check that the JIT compiler
+ * folds away unless a recording is running with the event enabled. To record them, enable
+ * them by name in a recording's settings, for example
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:filename=game.jfr,+cs1302.game.Drop#enabled=true ...
+ * </pre>
+ *
+ * <p>
+ * or with {@link jdk.jfr.Recording#enable(String)}. Drops and win checks happen millions of
+ * times a second in simulations, so they are recorded without stack traces.
+ */
+final class GameEvents {
+
+    /** The category of every event in the game's packages. */
+    static final String CATEGORY = "Connect Four";
+
+    /**
+     * This class only holds the event types.
+     */
+    private GameEvents() {
+    } // GameEvents
+
+    /**
+     * A token dropped by {@link ConnectFour#dropToken}.
+     */
+    @Name("cs1302.game.Drop")
+    @Label("Token Drop")
+    @Category(CATEGORY)
+    @Description("A token dropped into a column")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Drop extends Event {
+
+        @Label("Player")
+        int player;
+
+        @Label("Row")
+        int row;
+
+        @Label("Column")
+        int column;
+
+        @Label("Tokens")
+        @Description("The number of tokens in the grid after the drop")
+        int tokens;
+
+        @Label("Hash")
+        @Description("The Zobrist hash of the grid after the drop")
+        long hash;
+
+    } // Drop
+
+    /**
+     * A call to {@link ConnectFour#isLastDropConnectFour}.
+     */
+    @Name("cs1302.game.WinCheck")
+    @Label("Win Check")
+    @Category(CATEGORY)
+    @Description("A check for a connect four through the last token dropped")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class WinCheck extends Event {
+
+        @Label("Win")
+        boolean win;
+
+        @Label("Check")
+        @Description("The check that found the connect four: checkHorizontal, checkVertical"
+            + " or checkDiagonals")
+        String check;
+
+        @Label("Tokens")
+        int tokens;
+
+    } // WinCheck
+
+    /**
+     * A game that ended in a win or a draw.
+     */
+    @Name("cs1302.game.GameOver")
+    @Label("Game Over")
+    @Category(CATEGORY)
+    @Description("A game that ended with a connect four or a full grid")
+    @Enabled(false)
+    static final class GameOver extends Event {
+
+        @Label("Rows")
+        int rows;
+
+        @Label("Columns")
+        int columns;
+
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Winner")
+        @Description("The player who made the connect four, or -1 for a draw")
+        int winner;
+
+    } // GameOver
+
+} // GameEvents
@@ -0,0 +1,402 @@
+package cs1302.game;
+
+import cs1302.gameutil.GamePhase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a log of many games, one after another, in the text format read by
+ * {@link ConnectFour#fromFile}. Games are parsed one at a time as they are asked for, with a
+ * small hand-written tokenizer over a fixed 64 KiB buffer, so the memory used does not depend
+ * on the size of the log and no {@code Scanner} or {@code String} is created per game.
+ *
+ * <p>
+ * A game in the log may leave out its grid and last drop, like a file read by
+ * {@code fromFile}. The two cases are told apart by the number that follows the player
+ * tokens: a grid starts with {@code 0}, {@code 1} or {@code 3}, and the next game starts with
+ * its row count, which is at least {@code 6}. Each game ends up in the same state that
+ * {@code fromFile} would produce for it on its own.
+ *
+ * <p>
+ * Malformed input is reported with an {@link InputMismatchException} that gives the line
+ * number, and read errors with an {@link UncheckedIOException}. A reader is not thread-safe.
+ */
+public class GameLogReader implements Iterator<ConnectFour>, AutoCloseable {
+
+    /** Size of the read buffer in bytes. */
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /** Longest token name, in bytes. */
+    private static final int MAX_WORD = 16;
+
+    /** The name of every token, indexed by ordinal, as ASCII bytes. */
+    private static final byte[][] NAMES = new byte[GameArchive.TOKENS.length][];
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            NAMES[i] = GameArchive.TOKENS[i].name().getBytes(StandardCharsets.US_ASCII);
+        } // for
+    } // static
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final byte[] bytes = buffer.array();
+    private int position;
+    private int limit;
+    private boolean eof;
+    private long line = 1;
+
+    private final byte[] word = new byte[MAX_WORD];
+    private final int[] heights = new int[9];
+    private final ByteBuffer record = ByteBuffer.allocate(GameArchive.RECORD_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    private long games;
+
+    /**
+     * Constructs a reader over {@code channel}. The channel is closed by {@link #close}.
+     *
+     * @param channel the log to read
+     */
+    public GameLogReader(ReadableByteChannel channel) {
+        this.channel = channel;
+    } // GameLogReader
+
+    /**
+     * Constructs a reader over {@code in}. The stream is closed by {@link #close}.
+     *
+     * @param in the log to read
+     */
+    public GameLogReader(InputStream in) {
+        this(Channels.newChannel(in));
+    } // GameLogReader
+
+    /**
+     * Open the log in {@code file}.
+     *
+     * @param file the log file
+     * @return a reader positioned at the first game
+     * @throws IOException if the file cannot be opened
+     */
+    public static GameLogReader open(Path file) throws IOException {
+        return new GameLogReader(FileChannel.open(file));
+    } // open
+
+    /**
+     * Return the number of games read so far.
+     *
+     * @return the game count
+     */
+    public long getGamesRead() {
+        return games;
+    } // getGamesRead
+
+    /**
+     * Return {@code true} if there is another game in the log.
+     *
+     * @return whether {@link #next} will return a game
+     * @throws UncheckedIOException if the log cannot be read
+     */
+    @Override
+    public boolean hasNext() {
+        return peek() >= 0;
+    } // hasNext
+
+    /**
+     * Return the next game in the log as a new {@code ConnectFour} object.
+     *
+     * @return the next game
+     * @throws NoSuchElementException if there are no more games
+     * @throws InputMismatchException if the next game is malformed
+     * @throws UncheckedIOException if the log cannot be read
+     */
+    @Override
+    public ConnectFour next() {
+        return next(new ConnectFour(6, 7));
+    } // next
+
+    /**
+     * Read the next game in the log into {@code game}, replacing its state, and return it.
+     * Nothing is allocated when {@code game} already has the next game's grid size.
+     *
+     * @param game the game to read into
+     * @return {@code game}
+     * @throws NoSuchElementException if there are no more games
+     * @throws InputMismatchException if the next game is malformed
+     * @throws UncheckedIOException if the log cannot be read
+     */
+    public ConnectFour next(ConnectFour game) {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more games in the log.");
+        } // if
+        long start = line;
+        int rows = nextInt();
+        int cols = nextInt();
+        if (rows < 6 || rows > 9 || cols < 7 || cols > 9) {
+            throw mismatch("unsupported grid size " + rows + " by " + cols);
+        } // if
+        int token0 = nextToken();
+        int token1 = nextToken();
+        int height = rows + 1;
+        long lo0 = 0;
+        long hi0 = 0;
+        long lo1 = 0;
+        long hi1 = 0;
+        int count = 0;
+        int dropRow = -1;
+        int dropCol = -1;
+        int next = peek();
+        if (next == '0' || next == '1' || next == '3') {
+            // same order as fromFile: each token lands on top of the column read so far
+            Arrays.fill(heights, 0);
+            for (int cell = 0; cell < rows * cols; cell++) {
+                int col = cell % cols;
+                int value = nextInt();
+                if (value == 3) {
+                    continue;
+                } else if (value != 0 && value != 1) {
+                    throw mismatch("expected 0, 1 or 3 in the grid but found " + value);
+                } else if (heights[col] == rows) {
+                    throw mismatch("column " + col + " holds more than " + rows + " tokens");
+                } // if
+                int bit = col * height + heights[col]++;
+                long lo = bit < 64 ? 1L << bit : 0;
+                long hi = bit < 64 ? 0 : 1L << (bit - 64);
+                if (value == 0) {
+                    lo0 |= lo;
+                    hi0 |= hi;
+                } else {
+                    lo1 |= lo;
+                    hi1 |= hi;
+                } // if
+                count++;
+            } // for
+            int row = nextInt();
+            int col = nextInt();
+            if (count > 0 && (row < 0 || row >= rows || col < 0 || col >= cols)) {
+                throw mismatch("last drop " + row + " " + col + " is outside the grid");
+            } else if (count > 0) {
+                dropRow = row;
+                dropCol = col;
+            } // if
+        } // if
+        GamePhase phase;
+        if (count == 0) {
+            phase = GamePhase.READY;
+        } else if (count == rows * cols || Bitboard.hasConnectFour(lo0, hi0, height)
+                   || Bitboard.hasConnectFour(lo1, hi1, height)) {
+            phase = GamePhase.OVER;
+        } else {
+            phase = GamePhase.PLAYABLE;
+        } // if
+        record.put(0, (byte) rows).put(1, (byte) cols)
+            .put(2, (byte) token0).put(3, (byte) token1)
+            .put(4, (byte) dropRow).put(5, (byte) dropCol)
+            .put(6, (byte) phase.ordinal()).put(7, (byte) 0)
+            .putLong(8, lo0).putLong(16, hi0).putLong(24, lo1).putLong(32, hi1);
+        try {
+            game.readRecord(record, 0);
+        } catch (IllegalArgumentException iae) {
+            InputMismatchException ime = new InputMismatchException(
+                "Game starting on line " + start + " is invalid: " + iae.getMessage());
+            ime.initCause(iae);
+            throw ime;
+        } // try
+        games++;
+        return game;
+    } // next
+
+    /**
+     * Return a sequential stream of the remaining games. Closing the stream closes this
+     * reader.
+     *
+     * @return the games
+     */
+    public Stream<ConnectFour> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    } // stream
+
+    /**
+     * Close the underlying channel.
+     *
+     * @throws UncheckedIOException if the channel cannot be closed
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } // try
+    } // close
+
+    /**
+     * Skip whitespace and return the next byte without consuming it.
+     *
+     * @return the next non-whitespace byte, or {@code -1} at the end of the log
+     */
+    private int peek() {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            } // if
+            byte b = bytes[position];
+            if (b == '\n') {
+                line++;
+            } else if (b != ' ' && b != '\t' && b != '\r') {
+                return b;
+            } // if
+            position++;
+        } // while
+    } // peek
+
+    /**
+     * Read the next integer, which may have a leading minus sign.
+     *
+     * @return the integer
+     * @throws InputMismatchException if the next word is not an integer
+     */
+    private int nextInt() {
+        int b = peek();
+        boolean negative = b == '-';
+        if (negative) {
+            position++;
+            b = position < limit || fill() ? bytes[position] : -1;
+        } // if
+        if (b < '0' || b > '9') {
+            throw mismatch(b < 0 ? "unexpected end of log" : "expected a number");
+        } // if
+        int value = 0;
+        do {
+            value = value * 10 + (b - '0');
+            if (value > 1_000_000) {
+                throw mismatch("number too large");
+            } // if
+            position++;
+            b = position < limit || fill() ? bytes[position] : -1;
+        } while (b >= '0' && b <= '9');
+        return negative ? -value : value;
+    } // nextInt
+
+    /**
+     * Read the next token name.
+     *
+     * @return the token's ordinal
+     * @throws InputMismatchException if the next word is not a token name
+     */
+    private int nextToken() {
+        if (peek() < 0) {
+            throw mismatch("unexpected end of log");
+        } // if
+        int length = 0;
+        int b = bytes[position];
+        while (b > ' ') {
+            if (length == MAX_WORD) {
+                throw mismatch("expected a token name");
+            } // if
+            word[length++] = (byte) b;
+            position++;
+            b = position < limit || fill() ? bytes[position] : -1;
+        } // while
+        for (int i = 0; i < NAMES.length; i++) {
+            if (Arrays.equals(word, 0, length, NAMES[i], 0, NAMES[i].length)) {
+                return i;
+            } // if
+        } // for
+        throw mismatch("expected a token name but found "
+            + new String(word, 0, length, StandardCharsets.US_ASCII));
+    } // nextToken
+
+    /**
+     * Read more of the log into the buffer, discarding what has been consumed.
+     *
+     * @return {@code false} if the end of the log was reached and nothing is left
+     * @throws UncheckedIOException if the log cannot be read
+     */
+    private boolean fill() {
+        if (eof) {
+            return position < limit;
+        } // if
+        buffer.clear();
+        position = 0;
+        limit = 0;
+        try {
+            int n;
+            do {
+                n = channel.read(buffer);
+            } while (n == 0);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit = buffer.position();
+            } // if
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } // try
+        return limit > 0;
+    } // fill
+
+    /**
+     * Return an exception for malformed input at the current line.
+     *
+     * @param message what was wrong
+     * @return the exception to throw
+     */
+    private InputMismatchException mismatch(String message) {
+        return new InputMismatchException("Line " + line + ": " + message + ".");
+    } // mismatch
+
+    /**
+     * Parse a game log and print how many games it holds and how fast it was read, optionally
+     * writing the games to a {@link GameArchive}.
+     *
+     * <pre>
+     * usage: GameLogReader LOG [ARCHIVE]
+     * </pre>
+     *
+     * <p>
+     * {@code LOG} may be {@code -} to read standard input.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: GameLogReader LOG [ARCHIVE]");
+            System.exit(1);
+        } // if
+        long start = System.nanoTime();
+        try (GameLogReader reader = args[0].equals("-")
+             ? new GameLogReader(System.in) : open(Path.of(args[0]))) {
+            if (args.length > 1) {
+                GameArchive.write(Path.of(args[1]), () -> reader);
+            } else {
+                ConnectFour game = new ConnectFour(6, 7);
+                while (reader.hasNext()) {
+                    reader.next(game);
+                } // while
+            } // if
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%,d games in %.3f s, %,.0f games/s%n", reader.getGamesRead(),
+                              seconds, reader.getGamesRead() / seconds);
+        } // try
+    } // main
+
+} // GameLogReader
@@ -0,0 +1,274 @@
+package cs1302.game;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in counters and latency histograms for every {@link ConnectFour} game in the JVM. They
+ * count drops, drops rejected by {@link ConnectFour#dropToken} (by {@linkplain Rejection
+ * reason}), wins and draws, and time each call to {@code dropToken} and
+ * {@link ConnectFour#isLastDropConnectFour} in a {@link LatencyHistogram}.
+ *
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -Dcs1302.game.metrics=true}. The
+ * switch is read once into the constant {@link #ENABLED}, and {@code ConnectFour} tests it
+ * before touching anything here, so the JIT compiler removes the instrumentation entirely when
+ * it is off. When it is on, counters are {@link LongAdder}s, so games on different threads do
+ * not contend for them, and each timed call costs two reads of {@link System#nanoTime}.
+ *
+ * <p>
+ * The current values are read with {@link #snapshot}, or printed every so often with
+ * {@link #dumpEvery}. Setting {@code -Dcs1302.game.metrics.dump=SECONDS} as well starts a dump
+ * to standard error at that interval when this class is loaded.
+ */
+public final class GameMetrics {
+
+    /** Whether metrics are recorded; set by the {@code cs1302.game.metrics} property. */
+    public static final boolean ENABLED = Boolean.getBoolean("cs1302.game.metrics");
+
+    /**
+     * The reasons {@link ConnectFour#dropToken} rejects a drop.
+     */
+    public enum Rejection {
+
+        /** The column is not in the grid. */
+        COLUMN,
+
+        /** The player is neither {@code 0} nor {@code 1}. */
+        PLAYER,
+
+        /** The game is not {@code READY} or {@code PLAYABLE}. */
+        PHASE,
+
+        /** The column is full. */
+        FULL
+
+    } // Rejection
+
+    /** Every rejection reason, indexed by ordinal. */
+    private static final Rejection[] REJECTIONS = Rejection.values();
+
+    private static final LongAdder DROPS = new LongAdder();
+    private static final LongAdder[] REJECTED = new LongAdder[REJECTIONS.length];
+    private static final LongAdder WINS = new LongAdder();
+    private static final LongAdder DRAWS = new LongAdder();
+    private static final LatencyHistogram DROP_TIME = new LatencyHistogram();
+    private static final LatencyHistogram CHECK_TIME = new LatencyHistogram();
+
+    /** The thread that runs periodic dumps, created by the first call to {@link #dumpEvery}. */
+    private static ScheduledExecutorService dumper;
+
+    static {
+        for (int i = 0; i < REJECTED.length; i++) {
+            REJECTED[i] = new LongAdder();
+        } // for
+        long seconds = Long.getLong("cs1302.game.metrics.dump", 0);
+        if (ENABLED && seconds > 0) {
+            dumpEvery(seconds, TimeUnit.SECONDS, System.err);
+        } // if
+    } // static
+
+    /**
+     * This class has only static members.
+     */
+    private GameMetrics() {
+    } // GameMetrics
+
+    /**
+     * Record a successful drop that started at {@code start}.
+     *
+     * @param start the {@link System#nanoTime} reading taken when the drop began
+     */
+    static void dropped(long start) {
+        DROP_TIME.record(System.nanoTime() - start);
+        DROPS.increment();
+    } // dropped
+
+    /**
+     * Record a drop rejected for {@code reason}.
+     *
+     * @param reason why the drop was rejected
+     */
+    static void rejected(Rejection reason) {
+        REJECTED[reason.ordinal()].increment();
+    } // rejected
+
+    /**
+     * Record a call to {@link ConnectFour#isLastDropConnectFour} that started at {@code start}.
+     *
+     * @param start the {@link System#nanoTime} reading taken when the call began
+     * @param ended whether the call ended the game
+     * @param win whether the last drop made a connect four
+     */
+    static void checked(long start, boolean ended, boolean win) {
+        CHECK_TIME.record(System.nanoTime() - start);
+        if (ended) {
+            (win ? WINS : DRAWS).increment();
+        } // if
+    } // checked
+
+    /**
+     * Return the current values of every counter and histogram.
+     *
+     * @return the snapshot
+     */
+    public static Snapshot snapshot() {
+        long[] rejected = new long[REJECTED.length];
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = REJECTED[i].sum();
+        } // for
+        return new Snapshot(DROPS.sum(), rejected, WINS.sum(), DRAWS.sum(),
+                            DROP_TIME.snapshot(), CHECK_TIME.snapshot());
+    } // snapshot
+
+    /**
+     * Set every counter and histogram back to zero.
+     */
+    public static void reset() {
+        DROPS.reset();
+        for (LongAdder count : REJECTED) {
+            count.reset();
+        } // for
+        WINS.reset();
+        DRAWS.reset();
+        DROP_TIME.reset();
+        CHECK_TIME.reset();
+    } // reset
+
+    /**
+     * Print a {@linkplain #snapshot snapshot} to {@code out} every {@code period}, starting
+     * one period from now, on a daemon thread. Cancel the returned future to stop.
+     *
+     * @param period the time between dumps
+     * @param unit the unit of {@code period}
+     * @param out where to print
+     * @return the scheduled dump
+     * @throws IllegalArgumentException if {@code period} is not positive
+     */
+    public static synchronized ScheduledFuture<?> dumpEvery(long period, TimeUnit unit,
+                                                            PrintStream out) {
+        if (dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "game-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } // if
+        return dumper.scheduleAtFixedRate(() -> out.print(LocalTime.now() + " " + snapshot()),
+                                          period, period, unit);
+    } // dumpEvery
+
+    /**
+     * The values of the {@link GameMetrics} counters and histograms at one moment.
+     */
+    public static final class Snapshot {
+
+        private final long drops;
+        private final long[] rejected;
+        private final long wins;
+        private final long draws;
+        private final LatencyHistogram.Snapshot dropLatency;
+        private final LatencyHistogram.Snapshot checkLatency;
+
+        /**
+         * Constructs a snapshot.
+         *
+         * @param drops the number of successful drops
+         * @param rejected the number of rejected drops, indexed by {@link Rejection} ordinal
+         * @param wins the number of games won
+         * @param draws the number of games drawn
+         * @param dropLatency the {@code dropToken} latencies
+         * @param checkLatency the {@code isLastDropConnectFour} latencies
+         */
+        private Snapshot(long drops, long[] rejected, long wins, long draws,
+                         LatencyHistogram.Snapshot dropLatency,
+                         LatencyHistogram.Snapshot checkLatency) {
+            this.drops = drops;
+            this.rejected = rejected;
+            this.wins = wins;
+            this.draws = draws;
+            this.dropLatency = dropLatency;
+            this.checkLatency = checkLatency;
+        } // Snapshot
+
+        /**
+         * Return the number of successful drops.
+         *
+         * @return the drop count
+         */
+        public long getDrops() {
+            return drops;
+        } // getDrops
+
+        /**
+         * Return the number of drops rejected for {@code reason}.
+         *
+         * @param reason the reason
+         * @return the rejection count
+         */
+        public long getRejected(Rejection reason) {
+            return rejected[reason.ordinal()];
+        } // getRejected
+
+        /**
+         * Return the number of games that ended in a connect four.
+         *
+         * @return the win count
+         */
+        public long getWins() {
+            return wins;
+        } // getWins
+
+        /**
+         * Return the number of games that ended with a full grid and no connect four.
+         *
+         * @return the draw count
+         */
+        public long getDraws() {
+            return draws;
+        } // getDraws
+
+        /**
+         * Return the latencies of successful {@link ConnectFour#dropToken} calls.
+         *
+         * @return the drop latencies
+         */
+        public LatencyHistogram.Snapshot getDropLatency() {
+            return dropLatency;
+        } // getDropLatency
+
+        /**
+         * Return the latencies of {@link ConnectFour#isLastDropConnectFour} calls.
+         *
+         * @return the check latencies
+         */
+        public LatencyHistogram.Snapshot getCheckLatency() {
+            return checkLatency;
+        } // getCheckLatency
+
+        /**
+         * Return the snapshot as lines of text: the counters, then one line per histogram.
+         *
+         * @return the text, ending with a line separator
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("drops=%d wins=%d draws=%d rejected:", drops, wins, draws));
+            for (Rejection reason : REJECTIONS) {
+                text.append(' ').append(reason.name().toLowerCase()).append('=')
+                    .append(rejected[reason.ordinal()]);
+            } // for
+            text.append(String.format("%n  dropToken             %s%n", dropLatency));
+            text.append(String.format("  isLastDropConnectFour %s%n", checkLatency));
+            return text.toString();
+        } // toString
+
+    } // Snapshot
+
+} // GameMetrics
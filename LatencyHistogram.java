@@ -0,0 +1,215 @@
+package cs1302.game;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds, laid out like an HdrHistogram: every
+ * power-of-two range of values is split into {@value #SUB_BUCKETS} equal buckets, so a
+ * recorded value is off by less than one part in {@value #SUB_BUCKETS} (about 1.6%) from
+ * any value in its bucket, from one nanosecond up to {@link #MAX_VALUE}. Larger values are
+ * counted in the last bucket.
+ *
+ * <p>
+ * Each bucket is a {@link LongAdder}, so threads that record at the same time spread their
+ * updates over separate cells instead of fighting over one counter. Recording costs one bit
+ * scan and one adder increment. Reading is done through a {@link Snapshot}, which copies the
+ * counts; a snapshot taken while other threads record is not atomic, but every count in it is
+ * one that was really reached.
+ */
+public final class LatencyHistogram {
+
+    /** The number of linear buckets in each power-of-two range, as a power of two. */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** The number of buckets that values from {@code 2^k} to {@code 2^(k+1) - 1} share. */
+    public static final int SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+    /** The largest value recorded exactly (about 18 minutes); larger values are clamped. */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    /** The number of buckets needed to cover {@code 0} to {@link #MAX_VALUE}. */
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        } // for
+    } // LatencyHistogram
+
+    /**
+     * Return the bucket that holds {@code value}. Values below {@code 2 * SUB_BUCKETS} have a
+     * bucket each; above that, the top {@code SUB_BUCKET_BITS} bits of the value pick the
+     * bucket within its power-of-two range.
+     *
+     * @param value a value between {@code 0} and {@link #MAX_VALUE}
+     * @return the bucket index
+     */
+    private static int index(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value | (SUB_BUCKETS * 2 - 1));
+        int shift = bits - SUB_BUCKET_BITS;
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    } // index
+
+    /**
+     * Return the smallest value that falls in bucket {@code index}.
+     *
+     * @param index the bucket index
+     * @return the bucket's lowest value
+     */
+    private static long lowestValue(int index) {
+        if (index < SUB_BUCKETS * 2) {
+            return index;
+        } // if
+        int shift = (index >>> (SUB_BUCKET_BITS - 1)) - 1;
+        return (long) (index - (shift << (SUB_BUCKET_BITS - 1))) << shift;
+    } // lowestValue
+
+    /**
+     * Return the largest value that falls in bucket {@code index}.
+     *
+     * @param index the bucket index
+     * @return the bucket's highest value
+     */
+    private static long highestValue(int index) {
+        return index + 1 == BUCKETS ? MAX_VALUE : lowestValue(index + 1) - 1;
+    } // highestValue
+
+    /**
+     * Record one latency. Negative values are counted as {@code 0}.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts[index(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    } // record
+
+    /**
+     * Forget every recorded value. Values recorded while the reset is in progress may be kept
+     * or lost.
+     */
+    public void reset() {
+        for (LongAdder count : counts) {
+            count.reset();
+        } // for
+        sum.reset();
+        max.reset();
+    } // reset
+
+    /**
+     * Return a copy of the recorded counts.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts[i].sum();
+            total += copy[i];
+        } // for
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    } // snapshot
+
+    /**
+     * An unchanging copy of a {@link LatencyHistogram}'s counts.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        /**
+         * Constructs a snapshot of copied counts.
+         *
+         * @param counts the count of each bucket
+         * @param count the total of {@code counts}
+         * @param sum the sum of the recorded values
+         * @param max the largest recorded value
+         */
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        } // Snapshot
+
+        /**
+         * Return the number of recorded values.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        } // getCount
+
+        /**
+         * Return the mean of the recorded values.
+         *
+         * @return the mean in nanoseconds, or {@code 0} if nothing was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        } // getMean
+
+        /**
+         * Return the largest recorded value.
+         *
+         * @return the maximum in nanoseconds, or {@code 0} if nothing was recorded
+         */
+        public long getMax() {
+            return max;
+        } // getMax
+
+        /**
+         * Return the value at {@code percentile}: the highest value of the bucket that holds
+         * the recorded value with that rank, but never more than {@link #getMax}.
+         *
+         * @param percentile the percentile, between {@code 0} and {@code 100}
+         * @return the value in nanoseconds, or {@code 0} if nothing was recorded
+         * @throws IllegalArgumentException if {@code percentile} is out of range
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile out of range: " + percentile);
+            } // if
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                } // if
+            } // for
+            return 0;
+        } // getValueAtPercentile
+
+        /**
+         * Return the count, mean, common percentiles and maximum in microseconds, on one line.
+         *
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f"
+                                 + " max=%.3f us", count, getMean() / 1e3,
+                                 getValueAtPercentile(50) / 1e3, getValueAtPercentile(90) / 1e3,
+                                 getValueAtPercentile(99) / 1e3, getValueAtPercentile(99.9) / 1e3,
+                                 max / 1e3);
+        } // toString
+
+    } // Snapshot
+
+} // LatencyHistogram
@@ -0,0 +1,281 @@
+package cs1302.game;
+
+/**
+ * Precomputed tables of the winning lines of one grid size: every set of four cells in a row,
+ * column or diagonal. Each line is stored as a 128-bit mask in the {@link Bitboard} layout, so
+ * that testing whether a player owns a line, or how many of its cells they hold, is a couple of
+ * ANDs and a bit count. For each cell, the lines through it are listed in a flat array, grouped
+ * by direction: vertical, horizontal, down-right and down-left.
+ *
+ * <p>
+ * The tables for all twelve supported sizes are built once, when this class is loaded, and are
+ * shared by every game of that size; the largest, for a 9-by-9 grid, has 180 lines. All arrays
+ * are primitive and indexed by line or by {@linkplain Bitboard#bitIndex bit index}.
+ */
+public final class LineMasks {
+
+    /** The row and column steps of each direction, in the order lines are listed. */
+    private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+    /**
+     * The weight of a line holding {@code n} of a player's tokens and none of the other's, as
+     * used by {@link #evaluate}.
+     */
+    private static final int[] WEIGHTS = {0, 1, 8, 64, 4096};
+
+    /** The tables, indexed by {@code rows * 10 + cols}. */
+    private static final LineMasks[] SIZES = new LineMasks[100];
+
+    static {
+        for (int rows = 6; rows <= 9; rows++) {
+            for (int cols = 7; cols <= 9; cols++) {
+                SIZES[rows * 10 + cols] = new LineMasks(rows, cols);
+            } // for
+        } // for
+    } // static
+
+    private final int rows;
+    private final int height;
+    private final long[] lineLo;      // bits 0-63 of each line
+    private final long[] lineHi;      // bits 64-127 of each line
+    private final byte[] direction;   // index into DIRECTIONS of each line
+    private final byte[] cells;       // the four bit indices of each line, in direction order
+    private final short[] firstLine;  // where each bit index's lines start in cellLines
+    private final short[] cellLines;  // the lines through each cell, by direction
+
+    /**
+     * Builds the tables for a {@code rows}-by-{@code cols} grid.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     */
+    private LineMasks(int rows, int cols) {
+        this.rows = rows;
+        this.height = rows + 1;
+        int count = 0;
+        for (int[] dir : DIRECTIONS) {
+            count += (rows - 3 * dir[0]) * (cols - 3 * Math.abs(dir[1]));
+        } // for
+        lineLo = new long[count];
+        lineHi = new long[count];
+        direction = new byte[count];
+        cells = new byte[4 * count];
+        int bits = cols * height;
+        int[] through = new int[bits];
+        int line = 0;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            int rowStep = DIRECTIONS[d][0];
+            int colStep = DIRECTIONS[d][1];
+            for (int row = 0; row + 3 * rowStep < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int lastCol = col + 3 * colStep;
+                    if (lastCol < 0 || lastCol >= cols) {
+                        continue;
+                    } // if
+                    direction[line] = (byte) d;
+                    for (int k = 0; k < 4; k++) {
+                        int bit = (col + k * colStep) * height + rows - 1 - (row + k * rowStep);
+                        cells[4 * line + k] = (byte) bit;
+                        if (bit < 64) {
+                            lineLo[line] |= 1L << bit;
+                        } else {
+                            lineHi[line] |= 1L << (bit - 64);
+                        } // if
+                        through[bit]++;
+                    } // for
+                    line++;
+                } // for
+            } // for
+        } // for
+        firstLine = new short[bits + 1];
+        for (int bit = 0; bit < bits; bit++) {
+            firstLine[bit + 1] = (short) (firstLine[bit] + through[bit]);
+        } // for
+        cellLines = new short[firstLine[bits]];
+        int[] next = new int[bits];
+        for (int bit = 0; bit < bits; bit++) {
+            next[bit] = firstLine[bit];
+        } // for
+        for (line = 0; line < count; line++) {
+            for (int k = 0; k < 4; k++) {
+                int bit = cells[4 * line + k];
+                cellLines[next[bit]++] = (short) line;
+            } // for
+        } // for
+    } // LineMasks
+
+    /**
+     * Return the shared tables for a {@code rows}-by-{@code cols} grid.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @return the tables
+     * @throws IllegalArgumentException if the size is not supported by {@link ConnectFour}
+     */
+    public static LineMasks forSize(int rows, int cols) {
+        if (rows < 6 || rows > 9 || cols < 7 || cols > 9) {
+            throw new IllegalArgumentException("Unsupported grid size: " + rows + "x" + cols);
+        } // if
+        return SIZES[rows * 10 + cols];
+    } // forSize
+
+    /**
+     * Return the number of winning lines on the grid.
+     *
+     * @return the line count
+     */
+    public int getLineCount() {
+        return lineLo.length;
+    } // getLineCount
+
+    /**
+     * Return bits {@code 0-63} of a line's mask.
+     *
+     * @param line the line index
+     * @return the low word of the line
+     */
+    public long getLow(int line) {
+        return lineLo[line];
+    } // getLow
+
+    /**
+     * Return bits {@code 64-127} of a line's mask.
+     *
+     * @param line the line index
+     * @return the high word of the line
+     */
+    public long getHigh(int line) {
+        return lineHi[line];
+    } // getHigh
+
+    /**
+     * Return the row step of a line's direction: {@code 1} if it runs down the grid, otherwise
+     * {@code 0}.
+     *
+     * @param line the line index
+     * @return the row step
+     */
+    public int getRowStep(int line) {
+        return DIRECTIONS[direction[line]][0];
+    } // getRowStep
+
+    /**
+     * Return the column step of a line's direction: {@code 1} if it runs to the right,
+     * {@code -1} if it runs to the left, and {@code 0} for a vertical line.
+     *
+     * @param line the line index
+     * @return the column step
+     */
+    public int getColStep(int line) {
+        return DIRECTIONS[direction[line]][1];
+    } // getColStep
+
+    /**
+     * Return the bit index of cell {@code k} of a line, counting from the end nearest the top
+     * of the grid (or the left end of a horizontal line).
+     *
+     * @param line the line index
+     * @param k the cell, from {@code 0} to {@code 3}
+     * @return the cell's bit index
+     */
+    public int getCell(int line, int k) {
+        return cells[4 * line + k];
+    } // getCell
+
+    /**
+     * Return the row of a bit index.
+     *
+     * @param bit a bit index
+     * @return the row index ({@code 0} is the top row)
+     */
+    public int rowOf(int bit) {
+        return rows - 1 - bit % height;
+    } // rowOf
+
+    /**
+     * Return the column of a bit index.
+     *
+     * @param bit a bit index
+     * @return the column index
+     */
+    public int colOf(int bit) {
+        return bit / height;
+    } // colOf
+
+    /**
+     * Return the first line through the cell at bit index {@code bit} that is fully contained
+     * in the 128-bit mask made of {@code lo} and {@code hi}. Lines are tried vertical first,
+     * then horizontal, down-right and down-left.
+     *
+     * @param bit the cell's bit index
+     * @param lo bits {@code 0-63} of a player's tokens
+     * @param hi bits {@code 64-127} of a player's tokens
+     * @return the line index, or {@code -1} if the player owns no line through the cell
+     */
+    public int findLineThrough(int bit, long lo, long hi) {
+        for (int i = firstLine[bit]; i < firstLine[bit + 1]; i++) {
+            int line = cellLines[i];
+            if ((lineLo[line] & ~lo | lineHi[line] & ~hi) == 0) {
+                return line;
+            } // if
+        } // for
+        return -1;
+    } // findLineThrough
+
+    /**
+     * Return the number of empty cells that would complete a line for the player whose tokens
+     * are {@code (ownLo, ownHi)}: cells of lines where that player holds three tokens and the
+     * other player holds none. A cell on several such lines counts once. Cells that cannot be
+     * played yet are included, since they stay threats until they can be.
+     *
+     * @param ownLo bits {@code 0-63} of the player's tokens
+     * @param ownHi bits {@code 64-127} of the player's tokens
+     * @param otherLo bits {@code 0-63} of the other player's tokens
+     * @param otherHi bits {@code 64-127} of the other player's tokens
+     * @return the number of threat cells
+     */
+    public int countThreats(long ownLo, long ownHi, long otherLo, long otherHi) {
+        long threatLo = 0;
+        long threatHi = 0;
+        for (int line = 0; line < lineLo.length; line++) {
+            long lo = lineLo[line];
+            long hi = lineHi[line];
+            if ((lo & otherLo | hi & otherHi) == 0
+                && Long.bitCount(lo & ownLo) + Long.bitCount(hi & ownHi) == 3) {
+                threatLo |= lo & ~ownLo;
+                threatHi |= hi & ~ownHi;
+            } // if
+        } // for
+        return Long.bitCount(threatLo) + Long.bitCount(threatHi);
+    } // countThreats
+
+    /**
+     * Return a static evaluation of the grid for the player whose tokens are
+     * {@code (ownLo, ownHi)}: over every line that only one player has tokens on, the sum of
+     * the weights of that player's lines minus the sum of the other's. A line with one, two,
+     * three or four tokens weighs 1, 8, 64 or 4096. The evaluation is antisymmetric: swapping
+     * the players negates it.
+     *
+     * @param ownLo bits {@code 0-63} of the player's tokens
+     * @param ownHi bits {@code 64-127} of the player's tokens
+     * @param otherLo bits {@code 0-63} of the other player's tokens
+     * @param otherHi bits {@code 64-127} of the other player's tokens
+     * @return the evaluation
+     */
+    public int evaluate(long ownLo, long ownHi, long otherLo, long otherHi) {
+        int score = 0;
+        for (int line = 0; line < lineLo.length; line++) {
+            long lo = lineLo[line];
+            long hi = lineHi[line];
+            int own = Long.bitCount(lo & ownLo) + Long.bitCount(hi & ownHi);
+            int other = Long.bitCount(lo & otherLo) + Long.bitCount(hi & otherHi);
+            if (other == 0) {
+                score += WEIGHTS[own];
+            } else if (own == 0) {
+                score -= WEIGHTS[other];
+            } // if
+        } // for
+        return score;
+    } // evaluate
+
+} // LineMasks
@@ -0,0 +1,419 @@
+package cs1302.game;
+
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the positions reachable in a {@link ConnectFour} game, ply by ply, in the style of a
+ * chess <em>perft</em> ("performance test"). Starting from the empty grid, every legal drop is
+ * made with {@link ConnectFour#dropToken}, checked with {@link ConnectFour#isLastDropConnectFour}
+ * and taken back with {@link ConnectFour#undo}, down to a given depth. Positions where the game
+ * is over, by a win or a full grid, are counted but not expanded.
+ *
+ * <p>
+ * By default, every move sequence is counted, so ply {@code n} of an unfinished grid has
+ * {@code cols^n} positions. With a dedupe table, a position reached again by another order of
+ * the same moves (a transposition) is counted once and its moves are not searched again, which
+ * gives the number of distinct positions per ply; for the standard 6-by-7 grid these are
+ * 1, 7, 49, 238, 1120, 4263, 16422, 54859, 184275, ... Positions are identified by their
+ * {@linkplain ConnectFour#getHash Zobrist hash}.
+ *
+ * <p>
+ * Because the counts are exact, they check the engine's move and win rules against independent
+ * implementations and published figures, and the time they take measures how fast the engine
+ * plays. The search is split over a {@link ForkJoinPool} by the moves of the first plies.
+ */
+public class Perft {
+
+    /** The plies whose moves are split into separate tasks. */
+    private static final int SPLIT_PLIES = 2;
+
+    private final int rows;
+    private final int cols;
+    private final int depth;
+    private final KeySet seen;
+
+    /**
+     * Constructs a counter for a {@code rows}-by-{@code cols} grid.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param depth the number of plies to search
+     * @param tableBits the base-two logarithm of the dedupe table's size, from {@code 1} to
+     *     {@code 30}, or {@code 0} to count every move sequence
+     * @throws IllegalArgumentException if the grid size, depth or table size is not supported
+     */
+    public Perft(int rows, int cols, int depth, int tableBits) {
+        new ConnectFour(rows, cols);  // validates the size
+        if (depth < 0 || depth > rows * cols) {
+            throw new IllegalArgumentException("Depth must be between 0 and the number of cells.");
+        } else if (tableBits < 0 || tableBits > 30) {
+            throw new IllegalArgumentException("Table size must be between 2^1 and 2^30.");
+        } // if
+        this.rows = rows;
+        this.cols = cols;
+        this.depth = depth;
+        this.seen = tableBits == 0 ? null : new KeySet(tableBits);
+    } // Perft
+
+    /**
+     * Search on {@code pool} and return the counts. The dedupe table, if any, is cleared first.
+     *
+     * @param pool the pool that runs the search
+     * @return the counts
+     * @throws IllegalStateException if the dedupe table fills up
+     */
+    public Counts count(ForkJoinPool pool) {
+        if (seen != null) {
+            seen.clear();
+        } // if
+        long start = System.nanoTime();
+        long[][] counts = pool.invoke(new Subtree(new byte[0]));
+        return new Counts(rows, cols, seen != null, counts, System.nanoTime() - start);
+    } // count
+
+    /**
+     * Search on the common pool and return the counts.
+     *
+     * @return the counts
+     * @throws IllegalStateException if the dedupe table fills up
+     */
+    public Counts count() {
+        return count(ForkJoinPool.commonPool());
+    } // count
+
+    /**
+     * The search below one move sequence of the first {@link #SPLIT_PLIES} plies. It forks one
+     * subtask per move until it is that deep, and then searches the rest on its own game.
+     */
+    private final class Subtree extends RecursiveTask<long[][]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] moves;
+
+        /**
+         * Constructs the search below {@code moves}.
+         *
+         * @param moves the columns played so far
+         */
+        Subtree(byte[] moves) {
+            this.moves = moves;
+        } // Subtree
+
+        @Override
+        protected long[][] compute() {
+            ConnectFour game = new ConnectFour(rows, cols);
+            game.setPlayerTokens(Token.RED, Token.YELLOW);
+            for (int i = 0; i < moves.length; i++) {
+                game.dropToken(i & 1, moves[i]);
+            } // for
+            long[][] counts = new long[3][depth + 1];
+            int ply = moves.length;
+            if (ply >= SPLIT_PLIES || ply == depth) {
+                search(game, ply, counts);
+                return counts;
+            } // if
+            if (!visit(game, ply, counts)) {
+                return counts;
+            } // if
+            List<Subtree> children = new ArrayList<>();
+            for (int col = 0; col < cols; col++) {
+                if (!game.isColumnFull(col)) {
+                    byte[] next = Arrays.copyOf(moves, ply + 1);
+                    next[ply] = (byte) col;
+                    children.add(new Subtree(next));
+                } // if
+            } // for
+            for (Subtree child : invokeAll(children)) {
+                long[][] sums = child.join();
+                for (int kind = 0; kind < 3; kind++) {
+                    for (int i = 0; i <= depth; i++) {
+                        counts[kind][i] += sums[kind][i];
+                    } // for
+                } // for
+            } // for
+            return counts;
+        } // compute
+
+    } // Subtree
+
+    /**
+     * Count the position {@code game} is in, at {@code ply}, and everything below it.
+     *
+     * @param game the game, which is left as it was
+     * @param ply the number of tokens on the grid
+     * @param counts the positions, wins and draws found so far, by ply
+     */
+    private void search(ConnectFour game, int ply, long[][] counts) {
+        if (!visit(game, ply, counts)) {
+            return;
+        } // if
+        int player = ply & 1;
+        for (int col = 0; col < cols; col++) {
+            if (!game.isColumnFull(col)) {
+                game.dropToken(player, col);
+                search(game, ply + 1, counts);
+                game.undo();
+            } // if
+        } // for
+    } // search
+
+    /**
+     * Count the position {@code game} is in, at {@code ply}, and return whether its moves should
+     * be searched: it is new, the game is not over and the depth has not been reached.
+     *
+     * @param game the game
+     * @param ply the number of tokens on the grid
+     * @param counts the positions, wins and draws found so far, by ply
+     * @return {@code true} if the position should be expanded
+     */
+    private boolean visit(ConnectFour game, int ply, long[][] counts) {
+        if (seen != null && !seen.add(game.getHash())) {
+            return false;
+        } // if
+        counts[0][ply]++;
+        if (ply > 0 && game.isLastDropConnectFour()) {
+            counts[1][ply]++;
+            return false;
+        } else if (game.getPhase() == GamePhase.OVER) {
+            counts[2][ply]++;
+            return false;
+        } // if
+        return ply < depth;
+    } // visit
+
+    /**
+     * A fixed-size, lock-free set of position hashes with open addressing. Threads claim an
+     * empty slot with a compare-and-set, so each hash is added by exactly one of them.
+     */
+    private static final class KeySet {
+
+        /** The longest run of slots probed before the table counts as full. */
+        private static final int MAX_PROBES = 1024;
+
+        /** Stands in for the hash {@code 0}, which marks an empty slot. */
+        private static final long ZERO = 0x9E3779B97F4A7C15L;
+
+        private final AtomicLongArray slots;
+        private final int mask;
+
+        /**
+         * Constructs an empty set with {@code 2^bits} slots.
+         *
+         * @param bits the base-two logarithm of the number of slots
+         */
+        KeySet(int bits) {
+            this.slots = new AtomicLongArray(1 << bits);
+            this.mask = (1 << bits) - 1;
+        } // KeySet
+
+        /**
+         * Add {@code key} to the set.
+         *
+         * @param key the position hash
+         * @return {@code true} if it was not in the set
+         * @throws IllegalStateException if the set is too full to add it
+         */
+        boolean add(long key) {
+            if (key == 0) {
+                key = ZERO;
+            } // if
+            int slot = (int) (key ^ key >>> 32) & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long held = slots.get(slot);
+                if (held == key) {
+                    return false;
+                } else if (held == 0) {
+                    if (slots.compareAndSet(slot, 0, key)) {
+                        return true;
+                    } // if
+                    probe--;
+                    continue;  // another thread took the slot; look at it again
+                } // if
+                slot = (slot + 1) & mask;
+            } // for
+            throw new IllegalStateException("The dedupe table is full; give it more bits.");
+        } // add
+
+        /**
+         * Remove every key.
+         */
+        void clear() {
+            for (int i = 0; i <= mask; i++) {
+                slots.set(i, 0);
+            } // for
+        } // clear
+
+    } // KeySet
+
+    /**
+     * The positions, wins and draws counted by a search, by ply.
+     */
+    public static final class Counts {
+
+        private final int rows;
+        private final int cols;
+        private final boolean unique;
+        private final long[][] counts;
+        private final long nanos;
+
+        /**
+         * Constructs the counts of a search.
+         *
+         * @param rows the number of grid rows
+         * @param cols the number of grid columns
+         * @param unique whether transpositions were counted once
+         * @param counts the positions, wins and draws by ply
+         * @param nanos the search's wall time
+         */
+        Counts(int rows, int cols, boolean unique, long[][] counts, long nanos) {
+            this.rows = rows;
+            this.cols = cols;
+            this.unique = unique;
+            this.counts = counts;
+            this.nanos = nanos;
+        } // Counts
+
+        /**
+         * Return the depth searched.
+         *
+         * @return the number of plies
+         */
+        public int getDepth() {
+            return counts[0].length - 1;
+        } // getDepth
+
+        /**
+         * Return the number of positions with {@code ply} tokens, including those where the
+         * game is over.
+         *
+         * @param ply the number of tokens, from {@code 0} to the depth
+         * @return the position count
+         */
+        public long getPositions(int ply) {
+            return counts[0][ply];
+        } // getPositions
+
+        /**
+         * Return the number of positions with {@code ply} tokens whose last drop won the game.
+         *
+         * @param ply the number of tokens, from {@code 0} to the depth
+         * @return the win count
+         */
+        public long getWins(int ply) {
+            return counts[1][ply];
+        } // getWins
+
+        /**
+         * Return the number of positions with {@code ply} tokens that are full grids without a
+         * connect four.
+         *
+         * @param ply the number of tokens, from {@code 0} to the depth
+         * @return the draw count
+         */
+        public long getDraws(int ply) {
+            return counts[2][ply];
+        } // getDraws
+
+        /**
+         * Return the number of positions at every ply.
+         *
+         * @return the total position count
+         */
+        public long getTotal() {
+            long total = 0;
+            for (long positions : counts[0]) {
+                total += positions;
+            } // for
+            return total;
+        } // getTotal
+
+        /**
+         * Return the search's wall time.
+         *
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        } // getNanos
+
+        /**
+         * Return a table of the counts by ply, followed by the total and the rate.
+         *
+         * @return the table
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%dx%d, %s%n%4s %20s %16s %12s%n", rows, cols,
+                                      unique ? "distinct positions" : "move sequences",
+                                      "ply", "positions", "wins", "draws"));
+            for (int ply = 0; ply <= getDepth(); ply++) {
+                text.append(String.format("%4d %,20d %,16d %,12d%n", ply, getPositions(ply),
+                                          getWins(ply), getDraws(ply)));
+            } // for
+            double seconds = nanos / 1e9;
+            return text.append(String.format("total %,d positions in %.3f s (%,.0f positions/s)",
+                                             getTotal(), seconds, getTotal() / seconds))
+                .toString();
+        } // toString
+
+    } // Counts
+
+    /**
+     * Count positions from the command line.
+     *
+     * <pre>
+     * usage: Perft [--rows R] [--cols C] [--depth D] [--unique BITS] [--threads T]
+     * </pre>
+     *
+     * <p>
+     * The defaults are the standard 6-by-7 grid, a depth of 8 and one thread per core. With
+     * {@code --unique}, transpositions are counted once using a dedupe table of
+     * {@code 2^BITS} slots of 8 bytes each.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        int rows = 6;
+        int cols = 7;
+        int depth = 8;
+        int tableBits = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+            case "--rows":
+                rows = value;
+                break;
+            case "--cols":
+                cols = value;
+                break;
+            case "--depth":
+                depth = value;
+                break;
+            case "--unique":
+                tableBits = value;
+                break;
+            case "--threads":
+                threads = value;
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        System.out.println(new Perft(rows, cols, depth, tableBits).count(pool));
+        pool.shutdown();
+    } // main
+
+} // Perft
@@ -0,0 +1,298 @@
+package cs1302.game;
+
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+/**
+ * The original {@code Token[][]} implementation of {@link ConnectFour}'s rules, kept as an
+ * oracle for {@link ConnectFourFuzzer} and the tests. Every method works the way
+ * {@code ConnectFour} did before it gained bitboards, column heights and undo: drops scan the
+ * column for the lowest empty cell, and the win checks scan the whole grid.
+ *
+ * <p>
+ * This class is deliberately slow and simple. Do not optimize it; its value is that it is
+ * obviously correct and independent of the engine it checks.
+ */
+final class ReferenceConnectFour {
+
+    private final int rows;
+    private final int cols;
+    private final Token[][] grid;
+    private Token[] player;
+    private int numDropped;
+    private int lastDropRow = -1;
+    private int lastDropCol = -1;
+    private GamePhase phase = GamePhase.NEW;
+
+    /**
+     * Constructs an empty game with a {@code rows}-by-{@code cols} grid.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @throws IllegalArgumentException if the grid size is not supported
+     */
+    ReferenceConnectFour(int rows, int cols) {
+        if (rows < 6 || rows > 9 || cols < 7 || cols > 9) {
+            throw new IllegalArgumentException("Unsupported grid size.");
+        } // if
+        this.rows = rows;
+        this.cols = cols;
+        this.grid = new Token[rows][cols];
+    } // ReferenceConnectFour
+
+    /**
+     * Set the players' tokens; see {@link ConnectFour#setPlayerTokens}.
+     *
+     * @param token0 the first player's token
+     * @param token1 the second player's token
+     * @throws IllegalArgumentException if the tokens are the same
+     * @throws IllegalStateException if tokens have been dropped
+     */
+    void setPlayerTokens(Token token0, Token token1) {
+        if (phase == GamePhase.PLAYABLE || phase == GamePhase.OVER) {
+            throw new IllegalStateException("Game is in the wrong phase to set player tokens.");
+        } else if (token0 == token1) {
+            throw new IllegalArgumentException("Players cannot have the same token.");
+        } // if
+        player = new Token[] {token0, token1};
+        phase = GamePhase.READY;
+    } // setPlayerTokens
+
+    /**
+     * Return the token at a cell; see {@link ConnectFour#getTokenAt}.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return the token, or {@code null} for an empty cell
+     * @throws IndexOutOfBoundsException if the cell is not in the grid
+     */
+    Token getTokenAt(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Row and column requested are not in this grid.");
+        } // if
+        return grid[row][col];
+    } // getTokenAt
+
+    /**
+     * Return the number of tokens dropped; see {@link ConnectFour#getNumDropped}.
+     *
+     * @return the number of tokens dropped
+     * @throws IllegalStateException if the phase is {@code NEW} or {@code READY}
+     */
+    int getNumDropped() {
+        requireDropped();
+        return numDropped;
+    } // getNumDropped
+
+    /**
+     * Return the row of the last drop; see {@link ConnectFour#getLastDropRow}.
+     *
+     * @return the row index
+     * @throws IllegalStateException if the phase is {@code NEW} or {@code READY}
+     */
+    int getLastDropRow() {
+        requireDropped();
+        return lastDropRow;
+    } // getLastDropRow
+
+    /**
+     * Return the column of the last drop; see {@link ConnectFour#getLastDropCol}.
+     *
+     * @return the column index
+     * @throws IllegalStateException if the phase is {@code NEW} or {@code READY}
+     */
+    int getLastDropCol() {
+        requireDropped();
+        return lastDropCol;
+    } // getLastDropCol
+
+    /**
+     * Throw unless a token has been dropped.
+     *
+     * @throws IllegalStateException if the phase is {@code NEW} or {@code READY}
+     */
+    private void requireDropped() {
+        if (phase == GamePhase.NEW || phase == GamePhase.READY) {
+            throw new IllegalStateException("No tokens have been dropped yet.");
+        } // if
+    } // requireDropped
+
+    /**
+     * Return the game phase.
+     *
+     * @return the phase
+     */
+    GamePhase getPhase() {
+        return phase;
+    } // getPhase
+
+    /**
+     * Drop a token; see {@link ConnectFour#dropToken}.
+     *
+     * @param player the player, {@code 0} or {@code 1}
+     * @param col the column index
+     * @throws IndexOutOfBoundsException if the column is not in the grid
+     * @throws IllegalArgumentException if the player is neither {@code 0} nor {@code 1}
+     * @throws IllegalStateException if the phase is {@code NEW} or {@code OVER}, or the column
+     *     is full
+     */
+    void dropToken(int player, int col) {
+        if (col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Invalid column index.");
+        } else if (player != 0 && player != 1) {
+            throw new IllegalArgumentException("Either Player 0 or Player 1 must be playing.");
+        } else if (phase == GamePhase.NEW || phase == GamePhase.OVER) {
+            throw new IllegalStateException("Game is in the wrong phase to drop a token.");
+        } else if (grid[0][col] != null) {
+            throw new IllegalStateException("This column is full!");
+        } // if
+        int emptyRow = 0;
+        for (int row = 0; row < rows; row++) {
+            if (grid[row][col] == null) {
+                emptyRow = row;
+            } // if
+        } // for
+        grid[emptyRow][col] = this.player[player];
+        phase = GamePhase.PLAYABLE;
+        lastDropRow = emptyRow;
+        lastDropCol = col;
+        numDropped++;
+    } // dropToken
+
+    /**
+     * Check for a connect four and end the game if there is one or the grid is full; see
+     * {@link ConnectFour#isLastDropConnectFour}.
+     *
+     * @return {@code true} if there is a connect four
+     */
+    boolean isLastDropConnectFour() {
+        if (isBoardFull()) {
+            phase = GamePhase.OVER;
+        } // if
+        if (checkDiagonals() || checkHorizontal() || checkVertical()) {
+            phase = GamePhase.OVER;
+            return true;
+        } // if
+        return false;
+    } // isLastDropConnectFour
+
+    /**
+     * Return whether every cell holds a token, by counting them.
+     *
+     * @return {@code true} if the grid is full
+     */
+    boolean isBoardFull() {
+        for (Token[] row : grid) {
+            for (Token token : row) {
+                if (token == null) {
+                    return false;
+                } // if
+            } // for
+        } // for
+        return true;
+    } // isBoardFull
+
+    /**
+     * Return whether four equal tokens start at {@code (row, col)} and go in direction
+     * {@code (rowStep, colStep)}.
+     *
+     * @param row the first cell's row
+     * @param col the first cell's column
+     * @param rowStep the row step
+     * @param colStep the column step
+     * @return {@code true} if the four cells hold the same token
+     */
+    private boolean four(int row, int col, int rowStep, int colStep) {
+        Token token = grid[row][col];
+        return token != null
+            && grid[row + rowStep][col + colStep] == token
+            && grid[row + 2 * rowStep][col + 2 * colStep] == token
+            && grid[row + 3 * rowStep][col + 3 * colStep] == token;
+    } // four
+
+    /**
+     * Return whether there is a vertical connect four anywhere in the grid.
+     *
+     * @return {@code true} if there is one
+     */
+    boolean checkVertical() {
+        for (int col = 0; col < cols; col++) {
+            for (int row = 0; row < rows - 3; row++) {
+                if (four(row, col, 1, 0)) {
+                    return true;
+                } // if
+            } // for
+        } // for
+        return false;
+    } // checkVertical
+
+    /**
+     * Return whether there is a horizontal connect four anywhere in the grid.
+     *
+     * @return {@code true} if there is one
+     */
+    boolean checkHorizontal() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols - 3; col++) {
+                if (four(row, col, 0, 1)) {
+                    return true;
+                } // if
+            } // for
+        } // for
+        return false;
+    } // checkHorizontal
+
+    /**
+     * Return whether there is a diagonal connect four, in either direction, anywhere in the
+     * grid.
+     *
+     * @return {@code true} if there is one
+     */
+    boolean checkDiagonals() {
+        for (int row = 3; row < rows; row++) {
+            for (int col = 0; col < cols - 3; col++) {
+                if (four(row, col, -1, 1)) {
+                    return true;
+                } // if
+            } // for
+        } // for
+        for (int row = 0; row < rows - 3; row++) {
+            for (int col = 0; col < cols - 3; col++) {
+                if (four(row, col, 1, 1)) {
+                    return true;
+                } // if
+            } // for
+        } // for
+        return false;
+    } // checkDiagonals
+
+    /**
+     * Return whether dropping {@code player}'s token in {@code col} would make a connect four,
+     * without changing the game. Used by the fuzzer to steer games toward wins and draws.
+     *
+     * @param player the player, {@code 0} or {@code 1}
+     * @param col the column, which must not be full
+     * @return {@code true} if the drop would win
+     */
+    boolean wouldWin(int player, int col) {
+        int row = rows - 1;
+        while (grid[row][col] != null) {
+            row--;
+        } // while
+        grid[row][col] = this.player[player];
+        boolean win = checkDiagonals() || checkHorizontal() || checkVertical();
+        grid[row][col] = null;
+        return win;
+    } // wouldWin
+
+    /**
+     * Return whether column {@code col} is full.
+     *
+     * @param col the column index, which must be in the grid
+     * @return {@code true} if no more tokens fit
+     */
+    boolean isColumnFull(int col) {
+        return grid[0][col] != null;
+    } // isColumnFull
+
+} // ReferenceConnectFour
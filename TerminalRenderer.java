@@ -0,0 +1,280 @@
+package cs1302.game;
+
+import cs1302.gameutil.Token;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Draws {@link ConnectFour} games on a terminal for {@link ConnectFourCLI}. Each frame is built
+ * in one reusable buffer and written with a single flush, so a frame costs one write to the
+ * terminal however many lines it has.
+ *
+ * <p>
+ * On an ANSI terminal, the first frame clears the screen and draws the header and the whole
+ * grid. Later frames only move the cursor to the cells that changed since the previous frame
+ * and redraw those, then replace the message below the grid. A move therefore sends a few dozen
+ * bytes instead of the whole screen, which keeps play responsive over slow links and keeps
+ * recorded sessions small.
+ *
+ * <p>
+ * Without ANSI support, every frame is drawn in full the way {@link ConnectFourCLI} has always
+ * drawn a turn: the header (the text {@link ConnectFourCLI#printHeader} prints), a blank line,
+ * and the grid as {@link ConnectFour#printGrid} prints it, one line per row with each cell's
+ * token initial, or {@code .} if it is empty, followed by a space. The grid is built into the
+ * frame rather than printed by {@code printGrid}, so this frame too is a single write to the
+ * renderer's own output.
+ */
+public class TerminalRenderer {
+
+    /** The control sequence introducer. */
+    private static final String CSI = "\u001b[";
+
+    /** The width of one grid cell, including its right border. */
+    private static final int CELL_WIDTH = 4;
+
+    private final Writer out;
+    private final boolean ansi;
+    private final String header;
+    private final int headerLines;
+    private final StringBuilder frame = new StringBuilder(4096);
+
+    private byte[] shown;  // the token ordinal + 1 drawn in each cell, or 0 for empty
+    private int rows;      // the size of the grid on the screen, or 0 before the first frame
+    private int cols;
+
+    /**
+     * Constructs a renderer that writes frames to {@code out}.
+     *
+     * @param out where to write frames
+     * @param charset the terminal's character set
+     * @param ansi whether the terminal understands ANSI cursor movement and colors
+     * @param header the text drawn above the grid
+     */
+    public TerminalRenderer(OutputStream out, Charset charset, boolean ansi, String header) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, charset), 1 << 14);
+        this.ansi = ansi;
+        this.header = header.endsWith("\n") ? header : header + "\n";
+        this.headerLines = (int) this.header.chars().filter(c -> c == '\n').count();
+    } // TerminalRenderer
+
+    /**
+     * Return a renderer for standard output. Cursor movement is used when standard output is
+     * an interactive terminal whose {@code TERM} is not {@code dumb}.
+     *
+     * @param header the text drawn above the grid
+     * @return the renderer
+     */
+    public static TerminalRenderer forStandardOutput(String header) {
+        String term = System.getenv("TERM");
+        boolean ansi = System.console() != null && term != null && !term.equals("dumb");
+        return new TerminalRenderer(System.out, Charset.defaultCharset(), ansi, header);
+    } // forStandardOutput
+
+    /**
+     * Draw {@code game} with {@code message} below it. The message replaces the previous one;
+     * it may span several lines and need not end with a newline, so it can end with a prompt.
+     *
+     * @param game the game to draw
+     * @param message the text below the grid
+     * @throws UncheckedIOException if the frame cannot be written
+     */
+    public void render(ConnectFour game, String message) {
+        frame.setLength(0);
+        if (!ansi) {
+            frame.append(header).append('\n');
+            appendPlainGrid(game);
+            frame.append('\n');
+        } else if (game.getRows() != rows || game.getCols() != cols) {
+            rows = game.getRows();
+            cols = game.getCols();
+            shown = new byte[rows * cols];
+            frame.append(CSI).append("H").append(CSI).append("2J");
+            frame.append(header).append('\n');
+            appendGrid(game);
+        } else {
+            appendChanges(game);
+        } // if
+        if (ansi) {
+            moveTo(messageRow(), 1);
+            frame.append(CSI).append('J');
+        } // if
+        frame.append(message);
+        flush();
+    } // render
+
+    /**
+     * Write the frame built so far to the terminal and empty the buffer.
+     *
+     * @throws UncheckedIOException if the frame cannot be written
+     */
+    private void flush() {
+        try {
+            out.append(frame);
+            out.flush();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        } // try
+        frame.setLength(0);
+    } // flush
+
+    /**
+     * Forget what is on the screen, so that the next frame is drawn in full.
+     */
+    public void reset() {
+        rows = 0;
+        cols = 0;
+        shown = null;
+    } // reset
+
+    /**
+     * Append the whole grid of an ANSI frame, its bottom border and the column numbers, and
+     * remember every cell as drawn.
+     *
+     * @param game the game to draw
+     */
+    private void appendGrid(ConnectFour game) {
+        int gridRows = game.getRows();
+        int gridCols = game.getCols();
+        for (int row = 0; row < gridRows; row++) {
+            frame.append('|');
+            for (int col = 0; col < gridCols; col++) {
+                Token token = game.getTokenAt(row, col);
+                frame.append(' ');
+                appendToken(token);
+                frame.append(" |");
+                shown[row * gridCols + col] = code(token);
+            } // for
+            frame.append('\n');
+        } // for
+        frame.append('+');
+        for (int col = 0; col < gridCols; col++) {
+            frame.append("---+");
+        } // for
+        frame.append('\n');
+        for (int col = 0; col < gridCols; col++) {
+            frame.append("  ").append(col).append(' ');
+        } // for
+        frame.append('\n');
+    } // appendGrid
+
+    /**
+     * Append the whole grid of a frame without ANSI support, in the format of
+     * {@link ConnectFour#printGrid}.
+     *
+     * @param game the game to draw
+     */
+    private void appendPlainGrid(ConnectFour game) {
+        for (int row = 0; row < game.getRows(); row++) {
+            for (int col = 0; col < game.getCols(); col++) {
+                Token token = game.getTokenAt(row, col);
+                frame.append(token == null ? '.' : token.name().charAt(0)).append(' ');
+            } // for
+            frame.append('\n');
+        } // for
+    } // appendPlainGrid
+
+    /**
+     * Append a cursor move to every cell that differs from what is on the screen, followed by
+     * the cell's new contents.
+     *
+     * @param game the game to draw
+     */
+    private void appendChanges(ConnectFour game) {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                Token token = game.getTokenAt(row, col);
+                byte code = code(token);
+                if (shown[row * cols + col] != code) {
+                    moveTo(gridTop() + row, col * CELL_WIDTH + 3);
+                    appendToken(token);
+                    shown[row * cols + col] = code;
+                } // if
+            } // for
+        } // for
+    } // appendChanges
+
+    /**
+     * Return the screen row, counting from {@code 1}, of the grid's top row: one blank line
+     * below the header.
+     *
+     * @return the grid's first row
+     */
+    private int gridTop() {
+        return headerLines + 2;
+    } // gridTop
+
+    /**
+     * Return the screen row, counting from {@code 1}, where the message starts: one blank line
+     * below the column numbers.
+     *
+     * @return the message row
+     */
+    private int messageRow() {
+        return gridTop() + rows + 3;
+    } // messageRow
+
+    /**
+     * Append a cursor move to {@code row} and {@code col}, both counting from {@code 1}.
+     *
+     * @param row the screen row
+     * @param col the screen column
+     */
+    private void moveTo(int row, int col) {
+        frame.append(CSI).append(row).append(';').append(col).append('H');
+    } // moveTo
+
+    /**
+     * Append one cell's contents: a colored disc, or a space for an empty cell.
+     *
+     * @param token the cell's token, or {@code null}
+     */
+    private void appendToken(Token token) {
+        if (token == null) {
+            frame.append(' ');
+        } else {
+            frame.append(CSI).append(color(token)).append("m\u25cf").append(CSI).append("0m");
+        } // if
+    } // appendToken
+
+    /**
+     * Return the ANSI foreground color code for {@code token}.
+     *
+     * @param token the token
+     * @return the color code, or {@code 39} (the default color) for an unknown token
+     */
+    private static int color(Token token) {
+        switch (token.name()) {
+        case "RED":
+            return 91;
+        case "GREEN":
+            return 92;
+        case "YELLOW":
+            return 93;
+        case "BLUE":
+            return 94;
+        case "PURPLE":
+            return 95;
+        case "CYAN":
+            return 96;
+        default:
+            return 39;
+        } // switch
+    } // color
+
+    /**
+     * Return the code remembered for a cell holding {@code token}.
+     *
+     * @param token the token, or {@code null}
+     * @return the token's ordinal plus one, or {@code 0} for an empty cell
+     */
+    private static byte code(Token token) {
+        return (byte) (token == null ? 0 : token.ordinal() + 1);
+    } // code
+
+} // TerminalRenderer
@@ -0,0 +1,51 @@
+package cs1302.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of {@link ConnectFour} grids. A grid's hash is the XOR of one
+ * key per token, chosen by the token's player and its {@linkplain Bitboard#bitIndex bit index}.
+ * Because XOR is its own inverse, dropping a token or taking it back updates the hash with a
+ * single XOR, and two grids with the same tokens always hash the same no matter the order the
+ * tokens were dropped in.
+ *
+ * <p>
+ * The keys are generated from a fixed seed so that hashes are stable across runs, which lets
+ * them be stored in files such as opening books.
+ */
+public final class Zobrist {
+
+    /** Number of bit indices covered: 9 columns of 10 bits on the largest grid. */
+    public static final int BITS = 90;
+
+    /** Key XORed into a search position's hash when player {@code 1} is to move. */
+    public static final long SIDE;
+
+    private static final long[] KEYS = new long[2 * BITS];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x1302C4L);
+        for (int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = random.nextLong();
+        } // for
+        SIDE = random.nextLong();
+    } // static
+
+    /**
+     * Not instantiable.
+     */
+    private Zobrist() {
+    } // Zobrist
+
+    /**
+     * Return the key for a token of {@code player} at bit index {@code bit}.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @param bit the token's bit index, as returned by {@link Bitboard#bitIndex}
+     * @return the Zobrist key
+     */
+    public static long key(int player, int bit) {
+        return KEYS[player * BITS + bit];
+    } // key
+
+} // Zobrist
@@ -0,0 +1,569 @@
+package cs1302.game.ai;
+
+import cs1302.game.Bitboard;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A table of the exact result, win, draw or loss, of every position that can follow a late
+ * <em>root</em> position, stored at two bits per position in a memory-mapped file. A table is
+ * built by {@link #build} by retrograde analysis: positions are visited from the full grid
+ * backwards, one layer of tokens at a time, so that every move of a position leads to one whose
+ * result is already known. It is then opened by {@link #open} and read without loading it into
+ * the heap, so that an engine or a hint can answer any position of the endgame instantly.
+ *
+ * <p>
+ * Positions are numbered by a perfect index rather than a hash, so the table stores no keys.
+ * A position after the root is fixed by how many tokens were added to each column (its
+ * <em>shape</em>) and by which of those tokens belong to the player to move at the root, who
+ * holds {@code ceil(m / 2)} of {@code m} added tokens. Shapes are numbered in mixed radix, and
+ * each owns a block of {@code C(m, ceil(m / 2))} entries, one per choice of those tokens in
+ * colexicographic order. Every index names exactly one arrangement, so a root with {@code k}
+ * empty cells needs at most about {@code 2^(k + cols) / 4} bytes. Up to {@link #MAX_EMPTY}
+ * empty cells are supported; a table of all positions of a grid size, whatever their earlier
+ * tokens, would be far too large to build.
+ *
+ * <p>
+ * The file is big-endian. It starts with a 48-byte header:
+ *
+ * <pre>
+ * int  magic    0x4334454E ("C4EN")
+ * byte version  1
+ * byte rows
+ * byte cols
+ * byte empty    the empty cells of the root
+ * long maskLo   the root's tokens, in the {@link Position} layout
+ * long maskHi
+ * long ownLo    the root's tokens of its player to move
+ * long ownHi
+ * long count    the number of entries
+ * </pre>
+ *
+ * <p>
+ * It is followed by the entries, four to a byte starting with the lowest bits. Each is
+ * {@link #LOSS}, {@link #DRAW} or {@link #WIN} for the player to move, or {@link #OVER} for an
+ * arrangement that already contains a connect four. An {@code EndgameTable} only reads its
+ * mapping at absolute offsets, so one instance can be shared by any number of threads.
+ */
+public final class EndgameTable {
+
+    /** The most empty cells a root may have. */
+    public static final int MAX_EMPTY = 24;
+
+    /** The player to move loses with best play. */
+    public static final int LOSS = 0;
+
+    /** The game is drawn with best play. */
+    public static final int DRAW = 1;
+
+    /** The player to move wins with best play. */
+    public static final int WIN = 2;
+
+    /** The grid already contains a connect four, so the game is over. */
+    public static final int OVER = 3;
+
+    /** The first four bytes of a table file. */
+    private static final int MAGIC = 0x4334454E;
+
+    /** The file format version written by {@link #build}. */
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 48;
+
+    /** Binomial coefficients: {@code BINOMIAL[n][k]} is {@code C(n, k)}. */
+    private static final int[][] BINOMIAL = new int[MAX_EMPTY + 2][MAX_EMPTY + 2];
+
+    static {
+        for (int n = 0; n < BINOMIAL.length; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            } // for
+        } // for
+    } // static
+
+    private final int rows;
+    private final int cols;
+    private final int height;
+    private final int empty;
+    private final int rootMoves;
+    private final long rootMaskLo;  // the root's tokens
+    private final long rootMaskHi;
+    private final long rootOwnLo;   // the root's tokens of its player to move
+    private final long rootOwnHi;
+    private final int[] base;       // bit index of the lowest empty cell of each column
+    private final int[] capacity;   // empty cells of each column at the root
+    private final int[] radix;      // weight of each column's added tokens in a shape number
+    private final long[] offset;    // first entry of each shape, then the entry count
+    private final ByteBuffer values;
+
+    /**
+     * Constructs a table over {@code values} for the root with the given tokens, building its
+     * index.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param maskLo bits {@code 0-63} of the root's tokens
+     * @param maskHi bits {@code 64-127} of the root's tokens
+     * @param ownLo bits {@code 0-63} of the root's tokens of its player to move
+     * @param ownHi bits {@code 64-127} of the root's tokens of its player to move
+     * @param values the packed entries, or {@code null} to size a new table
+     * @throws IllegalArgumentException if the root has too many empty cells
+     */
+    private EndgameTable(int rows, int cols, long maskLo, long maskHi, long ownLo, long ownHi,
+                         ByteBuffer values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.height = rows + 1;
+        this.rootMaskLo = maskLo;
+        this.rootMaskHi = maskHi;
+        this.rootOwnLo = ownLo;
+        this.rootOwnHi = ownHi;
+        this.rootMoves = Long.bitCount(maskLo) + Long.bitCount(maskHi);
+        this.empty = rows * cols - rootMoves;
+        if (empty > MAX_EMPTY) {
+            throw new IllegalArgumentException("An endgame table root may have at most "
+                                               + MAX_EMPTY + " empty cells, not " + empty);
+        } // if
+        base = new int[cols];
+        capacity = new int[cols];
+        radix = new int[cols];
+        int shapes = 1;
+        for (int col = 0; col < cols; col++) {
+            int filled = Long.bitCount(Bitboard.bits(maskLo, maskHi, col * height, rows));
+            base[col] = col * height + filled;
+            capacity[col] = rows - filled;
+            radix[col] = shapes;
+            shapes *= capacity[col] + 1;
+        } // for
+        offset = new long[shapes + 1];
+        for (int shape = 0; shape < shapes; shape++) {
+            int m = tokens(shape);
+            offset[shape + 1] = offset[shape] + BINOMIAL[m][(m + 1) / 2];
+        } // for
+        if ((offset[shapes] + 3) / 4 > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IllegalArgumentException("The endgame table would be too large to map.");
+        } // if
+        this.values = values != null
+            ? values : ByteBuffer.wrap(new byte[(int) ((offset[shapes] + 3) / 4)]);
+    } // EndgameTable
+
+    /**
+     * Map a table file into memory. The file is mapped read-only and stays mapped until the
+     * table is garbage collected.
+     *
+     * @param file the table file
+     * @return the table
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static EndgameTable open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Endgame table too large to map: " + file);
+            } // if
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (length < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an endgame table: " + file);
+            } else if (buffer.get(4) != VERSION) {
+                throw new IOException("Unsupported endgame table version " + buffer.get(4)
+                                      + ": " + file);
+            } else if (buffer.get(5) < 6 || buffer.get(5) > 9 || buffer.get(6) < 7
+                       || buffer.get(6) > 9) {
+                throw new IOException("Corrupt endgame table: " + file);
+            } // if
+            EndgameTable table;
+            try {
+                table = new EndgameTable(buffer.get(5), buffer.get(6), buffer.getLong(8),
+                                         buffer.getLong(16), buffer.getLong(24),
+                                         buffer.getLong(32),
+                                         buffer.position(HEADER_BYTES).slice());
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException("Corrupt endgame table: " + file, e);
+            } // try
+            if (table.empty != buffer.get(7) || table.size() != buffer.getLong(40)
+                || (table.size() + 3) / 4 != length - HEADER_BYTES) {
+                throw new IOException("Truncated or corrupt endgame table: " + file);
+            } // if
+            return table;
+        } // try
+    } // open
+
+    /**
+     * Return the number of grid rows.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    } // getRows
+
+    /**
+     * Return the number of grid columns.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    } // getCols
+
+    /**
+     * Return the number of empty cells of the root, which is the most moves any position in
+     * the table has left.
+     *
+     * @return the root's empty cells
+     */
+    public int getEmptyCells() {
+        return empty;
+    } // getEmptyCells
+
+    /**
+     * Return the number of entries, including arrangements that cannot occur in a game.
+     *
+     * @return the entry count
+     */
+    public long size() {
+        return offset[offset.length - 1];
+    } // size
+
+    /**
+     * Return the index of {@code position}'s entry: its shape's block, plus the colex rank of
+     * the added tokens that belong to the root's player to move.
+     *
+     * @param position the position to look up
+     * @return the entry index, or {@code -1} if the position does not follow the root
+     */
+    public long indexOf(Position position) {
+        if (position.getRows() != rows || position.getCols() != cols) {
+            return -1;
+        } // if
+        long maskLo = position.maskLo();
+        long maskHi = position.maskHi();
+        if ((maskLo & rootMaskLo) != rootMaskLo || (maskHi & rootMaskHi) != rootMaskHi) {
+            return -1;
+        } // if
+        boolean rootPlayer = ((position.getMoves() - rootMoves) & 1) == 0;
+        long ownLo = rootPlayer ? position.currentLo() : position.currentLo() ^ maskLo;
+        long ownHi = rootPlayer ? position.currentHi() : position.currentHi() ^ maskHi;
+        if ((ownLo & rootMaskLo) != rootOwnLo || (ownHi & rootMaskHi) != rootOwnHi) {
+            return -1;
+        } // if
+        int shape = 0;
+        int m = 0;
+        int owned = 0;
+        for (int col = 0; col < cols; col++) {
+            int added = position.getHeight(col) - (rows - capacity[col]);
+            shape += added * radix[col];
+            for (int bit = base[col]; bit < base[col] + added; bit++) {
+                long word = bit < 64 ? ownLo >>> bit : ownHi >>> (bit - 64);
+                owned |= (int) (word & 1) << m++;
+            } // for
+        } // for
+        if (Integer.bitCount(owned) != (m + 1) / 2) {
+            return -1;
+        } // if
+        return offset[shape] + rank(owned);
+    } // indexOf
+
+    /**
+     * Return the result of {@code position} for the player to move.
+     *
+     * @param position the position to look up
+     * @return {@link #WIN}, {@link #DRAW}, {@link #LOSS} or {@link #OVER}, or {@code -1} if the
+     *     position does not follow the root
+     */
+    public int result(Position position) {
+        long index = indexOf(position);
+        return index < 0 ? -1 : value(index);
+    } // result
+
+    /**
+     * Return a move that keeps the best result in {@code position}: a move that wins at once
+     * if there is one, otherwise the move to the worst result for the opponent nearest the
+     * center. A winning move kept this way always leads to a win, but not necessarily the
+     * fastest one. The position is left unchanged.
+     *
+     * @param position the position to play from
+     * @return the column, or {@code -1} if the position does not follow the root, is over or
+     *     is full
+     */
+    public int bestMove(Position position) {
+        int result = result(position);
+        if (result < 0 || result == OVER || position.isFull()) {
+            return -1;
+        } // if
+        int best = -1;
+        int bestValue = -1;
+        for (int col : position.centerOrder()) {
+            if (!position.canPlay(col)) {
+                continue;
+            } else if (position.isWinningMove(col)) {
+                return col;
+            } // if
+            position.play(col);
+            int value = WIN - result(position);
+            position.undo(col);
+            if (value > bestValue) {
+                best = col;
+                bestValue = value;
+            } // if
+        } // for
+        return best;
+    } // bestMove
+
+    /**
+     * Return the entry at {@code index}.
+     *
+     * @param index the entry index
+     * @return the two-bit entry
+     */
+    private int value(long index) {
+        return values.get((int) (index >>> 2)) >> (2 * (int) (index & 3)) & 3;
+    } // value
+
+    /**
+     * Return the number of tokens added to the root in a shape.
+     *
+     * @param shape the shape number
+     * @return the number of added tokens
+     */
+    private int tokens(int shape) {
+        int m = 0;
+        for (int col = cols - 1; col >= 0; col--) {
+            m += shape / radix[col];
+            shape %= radix[col];
+        } // for
+        return m;
+    } // tokens
+
+    /**
+     * Return the colexicographic rank of a set among the sets of the same size: the sum of
+     * {@code C(p, i)} over its {@code i}-th smallest member {@code p}, counting from one.
+     *
+     * @param set the members, as bits
+     * @return the rank
+     */
+    private static int rank(int set) {
+        int rank = 0;
+        for (int i = 1; set != 0; i++) {
+            rank += BINOMIAL[Integer.numberOfTrailingZeros(set)][i];
+            set &= set - 1;
+        } // for
+        return rank;
+    } // rank
+
+    //----------------------------------------------------------------------------------------------
+    // BUILDING
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Build the table of every position that can follow {@code root} and write it to
+     * {@code file}. Shapes are visited from the most added tokens to the fewest, so each entry
+     * is decided from entries already written: a full grid is a draw, a position is a win if
+     * some move connects four or leads to a loss for the opponent, a draw if the best it can
+     * reach is a draw, and a loss otherwise.
+     *
+     * @param root the position to start from, which has at most {@link #MAX_EMPTY} empty cells
+     * @param file where to write the table
+     * @return the table, backed by the heap rather than the file
+     * @throws IllegalArgumentException if the root has too many empty cells
+     * @throws IOException if the table cannot be written
+     */
+    public static EndgameTable build(Position root, Path file) throws IOException {
+        EndgameTable table = new EndgameTable(root.getRows(), root.getCols(), root.maskLo(),
+                                              root.maskHi(), root.currentLo(),
+                                              root.currentHi(), null);
+        table.solve();
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(table.rows);
+            out.writeByte(table.cols);
+            out.writeByte(table.empty);
+            out.writeLong(table.rootMaskLo);
+            out.writeLong(table.rootMaskHi);
+            out.writeLong(table.rootOwnLo);
+            out.writeLong(table.rootOwnHi);
+            out.writeLong(table.size());
+            out.write(table.values.array());
+        } // try
+        return table;
+    } // build
+
+    /**
+     * Fill in every entry of this heap-backed table, layer by layer from the full grid back to
+     * the root.
+     */
+    private void solve() {
+        byte[] packed = values.array();
+        int[] added = new int[cols];
+        int[] cells = new int[empty];
+        long otherLo = rootMaskLo ^ rootOwnLo;
+        long otherHi = rootMaskHi ^ rootOwnHi;
+        for (int m = empty; m >= 0; m--) {
+            for (int shape = 0; shape + 1 < offset.length; shape++) {
+                if (tokens(shape) != m) {
+                    continue;
+                } // if
+                int n = 0;
+                for (int col = 0; col < cols; col++) {
+                    added[col] = shape / radix[col] % (capacity[col] + 1);
+                    for (int k = 0; k < added[col]; k++) {
+                        cells[n++] = base[col] + k;
+                    } // for
+                } // for
+                // the sets of added tokens owned by the root's player to move, in colex order
+                long index = offset[shape];
+                int size = (m + 1) / 2;
+                for (int owned = (1 << size) - 1; owned < 1 << m; index++) {
+                    long ownLo = rootOwnLo;
+                    long ownHi = rootOwnHi;
+                    long oppLo = otherLo;
+                    long oppHi = otherHi;
+                    for (int i = 0; i < m; i++) {
+                        int bit = cells[i];
+                        boolean own = (owned >>> i & 1) != 0;
+                        if (bit < 64) {
+                            ownLo |= own ? 1L << bit : 0;
+                            oppLo |= own ? 0 : 1L << bit;
+                        } else {
+                            ownHi |= own ? 1L << (bit - 64) : 0;
+                            oppHi |= own ? 0 : 1L << (bit - 64);
+                        } // if
+                    } // for
+                    int value;
+                    if (Bitboard.hasConnectFour(ownLo, ownHi, height)
+                        || Bitboard.hasConnectFour(oppLo, oppHi, height)) {
+                        value = OVER;
+                    } else if (m == empty) {
+                        value = DRAW;
+                    } else if ((m & 1) == 0) {
+                        value = decide(shape, owned, m, ownLo, ownHi, true);
+                    } else {
+                        value = decide(shape, owned, m, oppLo, oppHi, false);
+                    } // if
+                    packed[(int) (index >>> 2)] |= (byte) (value << (2 * (int) (index & 3)));
+                    if (m == 0) {
+                        break;
+                    } // if
+                    // Gosper's hack: the next larger integer with the same number of bits set
+                    int low = owned & -owned;
+                    int ripple = owned + low;
+                    owned = ripple | ((owned ^ ripple) >>> 2) / low;
+                } // for
+            } // for
+        } // for
+    } // solve
+
+    /**
+     * Return the result of a position that is not over and not full, from the entries of the
+     * positions one token later.
+     *
+     * @param shape the position's shape
+     * @param owned the added tokens of the root's player to move, in shape order
+     * @param m the number of added tokens
+     * @param moverLo bits {@code 0-63} of the tokens of the player to move
+     * @param moverHi bits {@code 64-127} of the tokens of the player to move
+     * @param rootPlayer {@code true} if the root's player is to move
+     * @return {@link #WIN}, {@link #DRAW} or {@link #LOSS}
+     */
+    private int decide(int shape, int owned, int m, long moverLo, long moverHi,
+                       boolean rootPlayer) {
+        int best = LOSS;
+        int before = 0;  // added tokens in the columns left of col
+        for (int col = 0; col < cols; col++) {
+            int added = shape / radix[col] % (capacity[col] + 1);
+            before += added;
+            if (added == capacity[col]) {
+                continue;
+            } // if
+            int bit = base[col] + added;
+            long lo = bit < 64 ? moverLo | 1L << bit : moverLo;
+            long hi = bit < 64 ? moverHi : moverHi | 1L << (bit - 64);
+            if (Bitboard.hasConnectFour(lo, hi, height)) {
+                return WIN;
+            } // if
+            // the new token goes after the ones already added in this column and those left of it
+            int below = owned & ((1 << before) - 1);
+            int above = owned >>> before << (before + 1);
+            int child = below | above | (rootPlayer ? 1 << before : 0);
+            int value = WIN - value(offset[shape + radix[col]] + rank(child));
+            if (value > best) {
+                best = value;
+            } // if
+        } // for
+        return best;
+    } // decide
+
+    /**
+     * Build a table from the command line.
+     *
+     * <pre>
+     * usage: EndgameTable --moves M [--rows R] [--cols C] [--out FILE]
+     * </pre>
+     *
+     * <p>
+     * The root is played from {@code --moves}, one column digit per move as in the
+     * {@link cs1302.game.sim.SelfPlay} record format, on the standard 6-by-7 grid unless
+     * another size is given. The table is written to {@code endgame-RxC.bin} by default.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the table cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = 6;
+        int cols = 7;
+        String moves = "";
+        String out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--rows":
+                rows = Integer.parseInt(value);
+                break;
+            case "--cols":
+                cols = Integer.parseInt(value);
+                break;
+            case "--moves":
+                moves = value;
+                break;
+            case "--out":
+                out = value;
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        Position root = new Position(rows, cols);
+        for (int i = 0; i < moves.length(); i++) {
+            int col = moves.charAt(i) - '0';
+            if (col < 0 || col >= cols || !root.canPlay(col) || root.isWinningMove(col)) {
+                System.err.println("Move " + (i + 1) + " of the root cannot be played.");
+                System.exit(1);
+            } // if
+            root.play(col);
+        } // for
+        if (rows * cols - root.getMoves() > MAX_EMPTY) {
+            System.err.println("The root must have at most " + MAX_EMPTY + " empty cells.");
+            System.exit(1);
+        } // if
+        Path file = Paths.get(out != null ? out : "endgame-" + rows + "x" + cols + ".bin");
+        long start = System.nanoTime();
+        EndgameTable table = build(root, file);
+        String[] names = {"loss", "draw", "win", "over"};
+        System.out.printf("%d entries, %d bytes, written to %s in %.3f s; the root is a %s%n",
+                          table.size(), HEADER_BYTES + (table.size() + 3) / 4, file,
+                          (System.nanoTime() - start) / 1e9, names[table.result(root)]);
+    } // main
+
+} // EndgameTable
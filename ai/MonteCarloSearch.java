@@ -0,0 +1,473 @@
+package cs1302.game.ai;
+
+import cs1302.game.ConnectFour;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Monte Carlo Tree Search (MCTS) player for {@link ConnectFour}. It is meant for large grids,
+ * such as 9-by-9, where the exact {@link Solver} is too slow, and its strength can be tuned by
+ * its time or playout budget.
+ *
+ * <p>
+ * Each playout walks down a shared search tree using the UCT rule, adds the children of the
+ * leaf it reaches, finishes the game with random moves (always taking an immediate win), and
+ * adds the result to every node on its path. Several worker threads build the same tree at
+ * once. A thread that walks through a node counts its visit right away and its result only at
+ * the end, so until then the node looks like a loss ("virtual loss") and other threads prefer
+ * different paths.
+ *
+ * <p>
+ * The tree lives in preallocated primitive arrays and every worker owns a {@link Position} that
+ * it resets from the root before each playout, so playouts allocate nothing.
+ *
+ * <p>
+ * The {@linkplain SearchResult#getScore score} of a result is the expected outcome of the best
+ * move for the player to move, from {@code -100} (certain loss) to {@code 100} (certain win).
+ * Its {@linkplain SearchResult#getNodes node count} is the number of playouts and its
+ * {@linkplain SearchResult#getDepth depth} is the deepest tree path visited.
+ *
+ * <p>
+ * Call {@link #close} to release the worker threads.
+ */
+public class MonteCarloSearch implements AutoCloseable {
+
+    /** Default number of tree nodes: {@code 2^21}, about 30 MiB. */
+    public static final int DEFAULT_NODES = 1 << 21;
+
+    /** Default UCT exploration constant. */
+    public static final double DEFAULT_EXPLORATION = 1.0;
+
+    private static final long VISIT = 1L << 32;     // one visit in a packed stats value
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    private static final byte OPEN = 0;             // outcome of a node that is not terminal
+    private static final byte WIN = 1;              // the move into the node connects four
+    private static final byte DRAW = 2;             // the move into the node fills the grid
+    private static final byte ILLEGAL = 3;          // the move into the node is not possible
+
+    private final int capacity;
+    private final AtomicLongArray stats;         // visits << 32 | reward (2 per win, 1 per draw)
+    private final AtomicIntegerArray children;   // index of the first child, or a marker
+    private final byte[] outcomes;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicLong playouts = new AtomicLong();
+
+    private final Worker[] workers;
+    private final ExecutorService pool;
+    private double exploration = DEFAULT_EXPLORATION;
+
+    private Position root;
+    private int cols;
+    private long deadline;
+    private long maxPlayouts;
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a search that uses every available core and a tree of {@link #DEFAULT_NODES}
+     * nodes.
+     */
+    public MonteCarloSearch() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_NODES);
+    } // MonteCarloSearch
+
+    /**
+     * Constructs a search with {@code threads} worker threads and room for {@code maxNodes}
+     * tree nodes. Once the tree is full, playouts still run but the tree stops growing.
+     *
+     * @param threads the number of worker threads, including the calling thread
+     * @param maxNodes the maximum number of tree nodes
+     * @throws IllegalArgumentException if {@code threads} is less than {@code 1} or
+     *     {@code maxNodes} is less than {@code 10}
+     */
+    public MonteCarloSearch(int threads, int maxNodes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one worker thread is needed.");
+        } // if
+        if (maxNodes < 10) {
+            throw new IllegalArgumentException("The tree needs room for at least 10 nodes.");
+        } // if
+        this.capacity = maxNodes;
+        this.stats = new AtomicLongArray(maxNodes);
+        this.children = new AtomicIntegerArray(maxNodes);
+        this.outcomes = new byte[maxNodes];
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(0x9E3779B97F4A7C15L * (i + 1));
+        } // for
+        if (threads == 1) {
+            this.pool = null;
+        } else {
+            AtomicInteger id = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(threads - 1, task -> {
+                Thread thread = new Thread(task, "mcts-worker-" + id.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } // if
+    } // MonteCarloSearch
+
+    /**
+     * Set the UCT exploration constant. Larger values spread playouts more evenly across moves;
+     * smaller values concentrate them on the moves that look best so far.
+     *
+     * @param exploration the exploration constant
+     */
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    } // setExploration
+
+    /**
+     * Return the number of worker threads.
+     *
+     * @return the thread count
+     */
+    public int getThreads() {
+        return workers.length;
+    } // getThreads
+
+    /**
+     * Search {@code game} for up to {@code timeLimitMillis} milliseconds, with
+     * {@link Position#of(ConnectFour)} deciding whose turn it is.
+     *
+     * @param game the game to search
+     * @param timeLimitMillis the time budget
+     * @return the search result
+     * @throws IllegalArgumentException if {@code game} already contains a connect four
+     */
+    public SearchResult search(ConnectFour game, long timeLimitMillis) {
+        return search(Position.of(game), timeLimitMillis, 0);
+    } // search
+
+    /**
+     * Search {@code position} until {@code timeLimitMillis} milliseconds have passed or
+     * {@code maxPlayouts} playouts have run, whichever comes first. At least one limit must be
+     * positive. The position is left unchanged.
+     *
+     * @param position the position to search
+     * @param timeLimitMillis the time budget, or {@code 0} for none
+     * @param maxPlayouts the playout budget, or {@code 0} for none
+     * @return the search result
+     * @throws IllegalArgumentException if neither limit is positive
+     */
+    public SearchResult search(Position position, long timeLimitMillis, long maxPlayouts) {
+        if (timeLimitMillis <= 0 && maxPlayouts <= 0) {
+            throw new IllegalArgumentException("A time or playout budget is needed.");
+        } // if
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        SearchResult result = searchFrom(position, timeLimitMillis, maxPlayouts);
+        event.finish("MonteCarloSearch", workers.length, result);
+        return result;
+    } // search
+
+    /**
+     * Search {@code position} like {@link #search(Position, long, long)}, once the budget has
+     * been checked.
+     *
+     * @param position the position to search
+     * @param timeLimitMillis the time budget, or {@code 0} for none
+     * @param maxPlayouts the playout budget, or {@code 0} for none
+     * @return the search result
+     */
+    private SearchResult searchFrom(Position position, long timeLimitMillis, long maxPlayouts) {
+        long start = System.nanoTime();
+        root = new Position(position);
+        cols = root.getCols();
+        deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : Long.MAX_VALUE;
+        this.maxPlayouts = maxPlayouts > 0 ? maxPlayouts : Long.MAX_VALUE;
+        stopped = false;
+        playouts.set(0);
+        nodeCount.set(1);
+        stats.set(0, 0);
+        children.set(0, UNEXPANDED);
+        outcomes[0] = root.isFull() ? DRAW : OPEN;
+        if (root.isFull()) {
+            return new SearchResult(-1, 0, 0, true, 0, System.nanoTime() - start);
+        } // if
+        for (int col : root.centerOrder()) {
+            if (root.canPlay(col) && root.isWinningMove(col)) {
+                return new SearchResult(col, 100, 1, true, 0, System.nanoTime() - start);
+            } // if
+        } // for
+        runWorkers();
+        return result(System.nanoTime() - start);
+    } // searchFrom
+
+    /**
+     * Release the worker threads. The search must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        } // if
+    } // close
+
+    /**
+     * Run every worker until the budget is used up, with worker {@code 0} on the calling thread.
+     */
+    private void runWorkers() {
+        Future<?>[] futures = new Future<?>[workers.length];
+        for (int i = 1; i < workers.length; i++) {
+            futures[i] = pool.submit(workers[i]);
+        } // for
+        try {
+            workers[0].run();
+        } finally {
+            stopped = true;
+            for (int i = 1; i < workers.length; i++) {
+                try {
+                    futures[i].get();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ee) {
+                    throw new IllegalStateException("An MCTS worker failed.", ee.getCause());
+                } // try
+            } // for
+        } // try
+    } // runWorkers
+
+    /**
+     * Build the result from the root's children: an immediate win if there is one, otherwise
+     * the most visited move.
+     *
+     * @param elapsed the time spent searching, in nanoseconds
+     * @return the search result
+     */
+    private SearchResult result(long elapsed) {
+        int first = children.get(0);
+        int maxDepth = 0;
+        for (Worker worker : workers) {
+            maxDepth = Math.max(maxDepth, worker.maxDepth);
+        } // for
+        int best = -1;
+        long bestVisits = -1;
+        int score = 0;
+        for (int col : root.centerOrder()) {
+            if (first < 0 || !root.canPlay(col)) {
+                continue;
+            } // if
+            int child = first + col;
+            long value = stats.get(child);
+            long visits = value >>> 32;
+            if (outcomes[child] == WIN) {
+                best = col;
+                score = 100;
+                break;
+            } // if
+            if (visits > bestVisits) {
+                best = col;
+                bestVisits = visits;
+                score = visits == 0 ? 0 : (int) Math.round(((value & 0xFFFFFFFFL) / (double) visits
+                                                            - 1) * 100);
+            } // if
+        } // for
+        if (best < 0) {
+            for (int col : root.centerOrder()) {
+                if (root.canPlay(col)) {
+                    best = col;
+                    break;
+                } // if
+            } // for
+        } // if
+        return new SearchResult(best, score, maxDepth, false, playouts.get(), elapsed);
+    } // result
+
+    /**
+     * A worker thread's state: its own copy of the position and random number generator, so
+     * that a playout needs no allocation and no coordination beyond the shared tree.
+     */
+    private class Worker implements Runnable {
+
+        private final int[] path = new int[82];
+        private Position scratch;
+        private long seed;
+        private int maxDepth;
+
+        /**
+         * Constructs a worker with the given random seed.
+         *
+         * @param seed the initial random state
+         */
+        Worker(long seed) {
+            this.seed = seed;
+        } // Worker
+
+        @Override
+        public void run() {
+            if (scratch == null || scratch.getRows() != root.getRows()
+                || scratch.getCols() != root.getCols()) {
+                scratch = new Position(root);
+            } // if
+            maxDepth = 0;
+            while (!stopped) {
+                playout();
+                long done = playouts.incrementAndGet();
+                if (done >= maxPlayouts || (done & 0xFF) == 0 && System.nanoTime() > deadline) {
+                    stopped = true;
+                } // if
+            } // while
+        } // run
+
+        /**
+         * Run one playout: select a path through the tree, expand its leaf, finish the game at
+         * random and record the result along the path.
+         */
+        private void playout() {
+            scratch.copyFrom(root);
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            stats.getAndAdd(0, VISIT);
+            boolean expanded = false;
+            while (outcomes[node] == OPEN && !expanded) {
+                int first = children.get(node);
+                if (first == UNEXPANDED) {
+                    first = expand(node);
+                    expanded = true;
+                } // if
+                if (first < 0) {
+                    break;
+                } // if
+                // step into one child; after an expansion, that child is the new leaf
+                int col = select(node, first);
+                node = first + col;
+                scratch.play(col);
+                stats.getAndAdd(node, VISIT);
+                path[++depth] = node;
+            } // while
+            maxDepth = Math.max(maxDepth, depth);
+            // reward for the player who made the move into the final node
+            int reward;
+            if (outcomes[node] == WIN) {
+                reward = 2;
+            } else if (outcomes[node] == DRAW) {
+                reward = 1;
+            } else {
+                reward = 2 - rollout();
+            } // if
+            for (int d = depth; d >= 0; d--) {
+                stats.getAndAdd(path[d], reward);
+                reward = 2 - reward;
+            } // for
+        } // playout
+
+        /**
+         * Add the children of {@code node}, whose position is in {@link #scratch}. Returns a
+         * negative value if another thread is already expanding the node or the tree is full.
+         *
+         * @param node the node to expand
+         * @return the index of the first child, or a negative value
+         */
+        private int expand(int node) {
+            if (nodeCount.get() + cols > capacity
+                || !children.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                return -1;
+            } // if
+            int first = nodeCount.getAndAdd(cols);
+            if (first + cols > capacity) {
+                children.set(node, UNEXPANDED);
+                return -1;
+            } // if
+            boolean full = scratch.getMoves() + 1 == scratch.getRows() * cols;
+            for (int col = 0; col < cols; col++) {
+                int child = first + col;
+                stats.set(child, 0);
+                children.set(child, UNEXPANDED);
+                if (!scratch.canPlay(col)) {
+                    outcomes[child] = ILLEGAL;
+                } else if (scratch.isWinningMove(col)) {
+                    outcomes[child] = WIN;
+                } else if (full) {
+                    outcomes[child] = DRAW;
+                } else {
+                    outcomes[child] = OPEN;
+                } // if
+            } // for
+            // publishing the index makes the outcomes above visible to other threads
+            children.set(node, first);
+            return first;
+        } // expand
+
+        /**
+         * Return the column of the child of {@code node} with the highest UCT value. Unvisited
+         * children come first, in center-first order.
+         *
+         * @param node the parent node
+         * @param first the index of its first child
+         * @return the selected column
+         */
+        private int select(int node, int first) {
+            double logParent = Math.log(Math.max(1, stats.get(node) >>> 32));
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int col : scratch.centerOrder()) {
+                int child = first + col;
+                byte outcome = outcomes[child];
+                if (outcome == ILLEGAL) {
+                    continue;
+                } else if (outcome == WIN) {
+                    return col;
+                } // if
+                long value = stats.get(child);
+                long visits = value >>> 32;
+                if (visits == 0) {
+                    return col;
+                } // if
+                double mean = (value & 0xFFFFFFFFL) / (2.0 * visits);
+                double uct = mean + exploration * Math.sqrt(logParent / visits);
+                if (uct > bestValue) {
+                    bestValue = uct;
+                    best = col;
+                } // if
+            } // for
+            return best;
+        } // select
+
+        /**
+         * Play random moves from {@link #scratch} until the game ends. A player who can connect
+         * four always does.
+         *
+         * @return {@code 2} if the player to move at the start wins, {@code 0} if they lose,
+         *     {@code 1} for a draw
+         */
+        private int rollout() {
+            int me = scratch.getPlayer();
+            while (!scratch.isFull()) {
+                if (scratch.canWinNext()) {
+                    return scratch.getPlayer() == me ? 2 : 0;
+                } // if
+                int col = nextInt(cols);
+                while (!scratch.canPlay(col)) {
+                    col = col + 1 == cols ? 0 : col + 1;
+                } // while
+                scratch.play(col);
+            } // while
+            return 1;
+        } // rollout
+
+        /**
+         * Return a pseudorandom number between {@code 0} (inclusive) and {@code bound}
+         * (exclusive) from a xorshift generator.
+         *
+         * @param bound the upper bound
+         * @return the random number
+         */
+        private int nextInt(int bound) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            return (int) ((seed >>> 33) * bound >>> 31);
+        } // nextInt
+
+    } // Worker
+
+} // MonteCarloSearch
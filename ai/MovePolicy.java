@@ -0,0 +1,188 @@
+package cs1302.game.ai;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.random.RandomGenerator;
+
+/**
+ * A rule for picking the next move in a {@link Position}, used to play games without a human.
+ * Implementations may keep state between calls (such as a search tree or a table), so each
+ * thread should get its own instance from {@link #parse}.
+ */
+public interface MovePolicy {
+
+    /**
+     * Return the column to play in {@code position}, which is not full and not over. The
+     * position must be left as it was.
+     *
+     * @param position the position to move in
+     * @param random the source of randomness to use, owned by the calling thread
+     * @return a column that is not full
+     */
+    int chooseMove(Position position, RandomGenerator random);
+
+    /**
+     * Return a policy that picks uniformly among the columns that are not full.
+     *
+     * @return a random policy
+     */
+    static MovePolicy random() {
+        return (position, random) -> {
+            int cols = position.getCols();
+            int col = random.nextInt(cols);
+            while (!position.canPlay(col)) {
+                col = col + 1 == cols ? 0 : col + 1;
+            } // while
+            return col;
+        };
+    } // random
+
+    /**
+     * Return a policy that wins when it can, otherwise picks at random among the moves that do
+     * not let the opponent win next turn (which includes blocking a single threat), and picks
+     * any move when every move loses.
+     *
+     * @return a greedy policy
+     */
+    static MovePolicy greedy() {
+        int[] options = new int[9];
+        MovePolicy fallback = random();
+        return (position, random) -> {
+            for (int col : position.centerOrder()) {
+                if (position.canPlay(col) && position.isWinningMove(col)) {
+                    return col;
+                } // if
+            } // for
+            if (!position.nonLosingMoves()) {
+                return fallback.chooseMove(position, random);
+            } // if
+            long lo = position.scratchLo();
+            long hi = position.scratchHi();
+            int count = 0;
+            for (int col = 0; col < position.getCols(); col++) {
+                if ((lo & position.columnLo(col) | hi & position.columnHi(col)) != 0) {
+                    options[count++] = col;
+                } // if
+            } // for
+            return options[random.nextInt(count)];
+        };
+    } // greedy
+
+    /**
+     * Return a policy that plays the move found by a {@link Solver} within
+     * {@code timeLimitMillis} milliseconds. The solver's table has {@code 2^20} slots (8 MiB).
+     *
+     * @param timeLimitMillis the time budget per move
+     * @return a solver policy
+     */
+    static MovePolicy solver(long timeLimitMillis) {
+        Solver solver = new Solver(20);
+        return (position, random) -> solver.search(position, timeLimitMillis).getBestMove();
+    } // solver
+
+    /**
+     * Return a policy that plays the move found by a single-threaded {@link MonteCarloSearch}
+     * after {@code playouts} playouts.
+     *
+     * @param playouts the playout budget per move
+     * @return an MCTS policy
+     */
+    static MovePolicy mcts(long playouts) {
+        MonteCarloSearch search = new MonteCarloSearch(1, 1 << 18);
+        return (position, random) -> search.search(position, 0, playouts).getBestMove();
+    } // mcts
+
+    /**
+     * Return a policy that plays the best move stored in {@code book} for positions it holds,
+     * and asks {@code fallback} otherwise.
+     *
+     * @param book the opening book, which may be shared with other policies
+     * @param fallback the policy for positions that are not in the book
+     * @return a book policy
+     */
+    static MovePolicy book(OpeningBook book, MovePolicy fallback) {
+        return (position, random) -> {
+            int col = book.bestMove(position);
+            return col >= 0 ? col : fallback.chooseMove(position, random);
+        };
+    } // book
+
+    /**
+     * Return a new policy described by {@code spec}: {@code random}, {@code greedy},
+     * {@code solver:<millis>}, {@code mcts:<playouts>} or {@code book:<file>:<spec>}, which
+     * plays from the {@linkplain OpeningBook opening book} in {@code <file>} and by the policy
+     * {@code <spec>} once out of book. The book file's name may not contain a colon. Each book
+     * file is {@linkplain OpeningBook#openShared mapped once} and shared by every policy that
+     * names it. Because a book policy reads any file it is given, specs from untrusted sources
+     * must not reach this method.
+     *
+     * @param spec the policy description
+     * @return a new policy instance
+     * @throws IllegalArgumentException if {@code spec} is not recognized or its book cannot be
+     *     read
+     */
+    static MovePolicy parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        try {
+            switch (parts[0]) {
+            case "random":
+                return random();
+            case "greedy":
+                return greedy();
+            case "solver":
+                return solver(Long.parseLong(parts[1]));
+            case "mcts":
+                return mcts(Long.parseLong(parts[1]));
+            case "book":
+                String[] book = parts[1].split(":", 2);
+                return book(OpeningBook.openShared(Paths.get(book[0])), parse(book[1]));
+            default:
+                break;
+            } // switch
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // reported below
+        } catch (IOException ioe) {
+            throw new IllegalArgumentException("Cannot read opening book: " + ioe.getMessage(),
+                                               ioe);
+        } // try
+        throw new IllegalArgumentException("Unknown move policy: " + spec + " (expected random,"
+            + " greedy, solver:<millis>, mcts:<playouts> or book:<file>:<spec>)");
+    } // parse
+
+    /**
+     * Check that {@code spec} is a policy description {@link #parse} accepts, without building
+     * the policy: no search table or tree is allocated and no book file is opened, so a missing
+     * book is only reported by {@code parse}.
+     *
+     * @param spec the policy description
+     * @throws IllegalArgumentException if {@code spec} is not recognized
+     */
+    static void validate(String spec) {
+        String[] parts = spec.split(":", 2);
+        try {
+            switch (parts[0]) {
+            case "random":
+            case "greedy":
+                return;
+            case "solver":
+            case "mcts":
+                Long.parseLong(parts[1]);
+                return;
+            case "book":
+                String[] book = parts[1].split(":", 2);
+                if (!book[0].isEmpty()) {
+                    validate(book[1]);
+                    return;
+                } // if
+                break;
+            default:
+                break;
+            } // switch
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // reported below
+        } // try
+        throw new IllegalArgumentException("Unknown move policy: " + spec + " (expected random,"
+            + " greedy, solver:<millis>, mcts:<playouts> or book:<file>:<spec>)");
+    } // validate
+
+} // MovePolicy
@@ -0,0 +1,451 @@
+package cs1302.game.ai;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A precomputed table of exact scores and best moves, read from a memory-mapped file. A book is
+ * built offline by {@link #build}, which solves every position reachable within a number of
+ * plies of a root position (normally the empty grid), and is then opened by {@link #open},
+ * which maps the file without reading it into the heap. A lookup is a binary search over the
+ * mapped entries, so an engine can play the opening in microseconds rather than searching.
+ *
+ * <p>
+ * The file is big-endian. It starts with a 16-byte header:
+ *
+ * <pre>
+ * int  magic    0x43344F42 ("C4OB")
+ * byte version  1
+ * byte rows
+ * byte cols
+ * byte plies    how far from the root the positions go
+ * int  count    the number of entries
+ * int  reserved 0
+ * </pre>
+ *
+ * <p>
+ * It is followed by {@code count} 10-byte entries, sorted by key as signed longs: the
+ * {@linkplain Position#canonicalKey canonical key} of a position (8 bytes), its exact score for
+ * the player to move (1 byte) and its best move in the canonical orientation (1 byte). A
+ * position and its reflection share an entry, so a book holds about half as many entries as
+ * there are distinct positions. Positions that are already won or full have no entry.
+ *
+ * <p>
+ * An {@code OpeningBook} only reads its mapping at absolute offsets, so one instance can be
+ * shared by any number of threads.
+ */
+public final class OpeningBook {
+
+    /** The first four bytes of a book file. */
+    private static final int MAGIC = 0x43344F42;
+
+    /** The file format version written by {@link #build}. */
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 10;
+
+    /** The books opened by {@link #openShared}, by absolute path. */
+    private static final ConcurrentHashMap<Path, OpeningBook> SHARED = new ConcurrentHashMap<>();
+
+    private final ByteBuffer entries;
+    private final int rows;
+    private final int cols;
+    private final int plies;
+    private final int size;
+
+    /**
+     * Constructs a book over a mapped file, checking its header.
+     *
+     * @param buffer the whole file
+     * @param file the file's path, for error messages
+     * @throws IOException if the file is not a book of a supported version
+     */
+    private OpeningBook(ByteBuffer buffer, Path file) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book: " + file);
+        } else if (buffer.get(4) != VERSION) {
+            throw new IOException("Unsupported opening book version " + buffer.get(4) + ": "
+                                  + file);
+        } // if
+        this.rows = buffer.get(5);
+        this.cols = buffer.get(6);
+        this.plies = buffer.get(7);
+        this.size = buffer.getInt(8);
+        if (size < 0 || (long) size * ENTRY_BYTES != buffer.capacity() - HEADER_BYTES) {
+            throw new IOException("Truncated or corrupt opening book: " + file);
+        } // if
+        this.entries = buffer.position(HEADER_BYTES).slice();
+    } // OpeningBook
+
+    /**
+     * Map a book file into memory. The file is mapped read-only and stays mapped until the book
+     * is garbage collected; its entries are paged in by the operating system as they are read.
+     *
+     * @param file the book file
+     * @return the book
+     * @throws IOException if the file cannot be read, is larger than 2 GiB or is not a book
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Opening book too large to map: " + file);
+            } // if
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, length), file);
+        } // try
+    } // open
+
+    /**
+     * Return the book in {@code file}, mapping it on the first call for that file and returning
+     * the same instance afterwards, so that every policy and thread reading one book shares one
+     * mapping. A file rebuilt while the program runs is not mapped again.
+     *
+     * @param file the book file
+     * @return the shared book
+     * @throws IOException if the file cannot be read, is larger than 2 GiB or is not a book
+     */
+    public static OpeningBook openShared(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        OpeningBook book = SHARED.get(key);
+        if (book == null) {
+            book = open(key);
+            OpeningBook other = SHARED.putIfAbsent(key, book);
+            if (other != null) {
+                book = other;
+            } // if
+        } // if
+        return book;
+    } // openShared
+
+    /**
+     * Return the number of grid rows of the book's positions.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    } // getRows
+
+    /**
+     * Return the number of grid columns of the book's positions.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    } // getCols
+
+    /**
+     * Return how many plies past its root the book was built to.
+     *
+     * @return the depth in plies
+     */
+    public int getPlies() {
+        return plies;
+    } // getPlies
+
+    /**
+     * Return the number of entries in the book.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return size;
+    } // size
+
+    /**
+     * Return the index of the entry with {@code key}, by binary search.
+     *
+     * @param key a {@linkplain Position#canonicalKey canonical position key}
+     * @return the entry index, or {@code -1} if the book has no such entry
+     */
+    public int indexOf(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = entries.getLong(mid * ENTRY_BYTES);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            } // if
+        } // while
+        return -1;
+    } // indexOf
+
+    /**
+     * Return the key of an entry.
+     *
+     * @param index the entry index
+     * @return the entry's canonical position key
+     */
+    public long getKey(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    } // getKey
+
+    /**
+     * Return the exact score of an entry's position for the player to move.
+     *
+     * @param index the entry index
+     * @return the score; see {@link Position} for its meaning
+     */
+    public int getScore(int index) {
+        return entries.get(index * ENTRY_BYTES + 8);
+    } // getScore
+
+    /**
+     * Return the best move of an entry's position in the canonical orientation. Map it to a
+     * particular position with {@link Position#toCanonicalColumn}.
+     *
+     * @param index the entry index
+     * @return the canonical best column
+     */
+    public int getMove(int index) {
+        return entries.get(index * ENTRY_BYTES + 9);
+    } // getMove
+
+    /**
+     * Return the index of {@code position}'s entry.
+     *
+     * @param position the position to look up
+     * @return the entry index, or {@code -1} if the position is not in the book
+     */
+    private int indexOf(Position position) {
+        if (position.getRows() != rows || position.getCols() != cols) {
+            return -1;
+        } // if
+        return indexOf(position.canonicalKey());
+    } // indexOf
+
+    /**
+     * Return {@code true} if the book has an entry for {@code position}.
+     *
+     * @param position the position to look up
+     * @return whether the position is in the book
+     */
+    public boolean contains(Position position) {
+        return indexOf(position) >= 0;
+    } // contains
+
+    /**
+     * Return the exact score of {@code position} for the player to move, if it is in the book.
+     *
+     * @param position the position to look up
+     * @return the score, or {@link Integer#MIN_VALUE} if the position is not in the book
+     */
+    public int score(Position position) {
+        int index = indexOf(position);
+        return index < 0 ? Integer.MIN_VALUE : getScore(index);
+    } // score
+
+    /**
+     * Return the best move in {@code position}, if it is in the book. Among moves with the best
+     * score, the one nearest the center was stored, as {@link Solver#bestMove} picks it.
+     *
+     * @param position the position to look up
+     * @return the best column, or {@code -1} if the position is not in the book
+     */
+    public int bestMove(Position position) {
+        int index = indexOf(position);
+        return index < 0 ? -1 : position.toCanonicalColumn(getMove(index));
+    } // bestMove
+
+    //----------------------------------------------------------------------------------------------
+    // BUILDING
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Solve every position reachable within {@code plies} plies of {@code root}, including the
+     * root, and write them to {@code file} as a book. Positions are solved with
+     * {@link Solver#analyze} on {@code threads} threads, each with its own {@link Solver} of
+     * {@link Solver#DEFAULT_TABLE_BITS} bits, and are written once per pair of reflections.
+     *
+     * @param root the position to start from, which is not won or full
+     * @param plies how many plies past {@code root} to go, from {@code 0} to {@code 127}
+     * @param threads the number of solver threads
+     * @param file where to write the book
+     * @return the number of entries written
+     * @throws IllegalArgumentException if {@code plies} is out of range
+     * @throws IOException if the book cannot be written
+     * @throws InterruptedException if interrupted while solving
+     */
+    public static int build(Position root, int plies, int threads, Path file)
+        throws IOException, InterruptedException {
+        if (plies < 0 || plies > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Plies must be between 0 and 127.");
+        } // if
+        List<Position> positions = new ArrayList<>();
+        collect(new Position(root), plies, new HashSet<>(), positions);
+        int count = positions.size();
+        long[] keys = new long[count];
+        byte[] scores = new byte[count];
+        byte[] moves = new byte[count];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < Math.max(1, threads); t++) {
+                workers.add(pool.submit(() -> {
+                    Solver solver = new Solver();
+                    for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        Position position = positions.get(i);
+                        int[] analysis = solver.analyze(position);
+                        int best = Solver.bestOf(analysis, position.centerOrder());
+                        keys[i] = position.canonicalKey();
+                        scores[i] = (byte) analysis[best];
+                        moves[i] = (byte) position.toCanonicalColumn(best);
+                    } // for
+                }));
+            } // for
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ee) {
+                    throw new IllegalStateException(ee.getCause());
+                } // try
+            } // for
+        } finally {
+            pool.shutdownNow();
+        } // try
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        } // for
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(root.getRows());
+            out.writeByte(root.getCols());
+            out.writeByte(plies);
+            out.writeInt(count);
+            out.writeInt(0);
+            for (int i : order) {
+                out.writeLong(keys[i]);
+                out.writeByte(scores[i]);
+                out.writeByte(moves[i]);
+            } // for
+        } // try
+        return count;
+    } // build
+
+    /**
+     * Add {@code position} and every position within {@code plies} plies of it to
+     * {@code positions}, once per canonical key. Moves that win are not played, and full grids
+     * are not added.
+     *
+     * @param position the position to start from, restored before returning
+     * @param plies how many more plies to go
+     * @param seen the canonical keys added so far
+     * @param positions the positions added so far
+     */
+    private static void collect(Position position, int plies, Set<Long> seen,
+                                List<Position> positions) {
+        if (position.isFull() || !seen.add(position.canonicalKey())) {
+            return;
+        } // if
+        positions.add(new Position(position));
+        if (plies == 0) {
+            return;
+        } // if
+        for (int col = 0; col < position.getCols(); col++) {
+            if (position.canPlay(col) && !position.isWinningMove(col)) {
+                position.play(col);
+                collect(position, plies - 1, seen, positions);
+                position.undo(col);
+            } // if
+        } // for
+    } // collect
+
+    /**
+     * Build a book from the command line.
+     *
+     * <pre>
+     * usage: OpeningBook [--rows R] [--cols C] [--moves M] [--plies P] [--threads T]
+     *                    [--out FILE]
+     * </pre>
+     *
+     * <p>
+     * The defaults are the standard 6-by-7 grid, the empty grid as root, 8 plies, one thread
+     * per core and {@code book-RxC.bin}. {@code --moves} plays a root position first, given as
+     * one column digit per move as in the {@link cs1302.game.sim.SelfPlay} record format. Plies
+     * near the empty grid are expensive to solve: a book is meant to be built once and shipped.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the book cannot be written
+     * @throws InterruptedException if interrupted while solving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rows = 6;
+        int cols = 7;
+        String moves = "";
+        int plies = 8;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--rows":
+                rows = Integer.parseInt(value);
+                break;
+            case "--cols":
+                cols = Integer.parseInt(value);
+                break;
+            case "--moves":
+                moves = value;
+                break;
+            case "--plies":
+                plies = Integer.parseInt(value);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "--out":
+                out = value;
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        Position root = new Position(rows, cols);
+        for (int i = 0; i < moves.length(); i++) {
+            int col = moves.charAt(i) - '0';
+            if (col < 0 || col >= cols || !root.canPlay(col) || root.isWinningMove(col)) {
+                System.err.println("Move " + (i + 1) + " of the root cannot be played.");
+                System.exit(1);
+            } // if
+            root.play(col);
+        } // for
+        Path file = Paths.get(out != null ? out : "book-" + rows + "x" + cols + ".bin");
+        long start = System.nanoTime();
+        int count = build(root, plies, threads, file);
+        System.out.printf("%d entries, %d bytes, written to %s in %.3f s%n", count,
+                          HEADER_BYTES + (long) count * ENTRY_BYTES, file,
+                          (System.nanoTime() - start) / 1e9);
+    } // main
+
+} // OpeningBook
@@ -0,0 +1,343 @@
+package cs1302.game.ai;
+
+import cs1302.game.ConnectFour;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a {@link Solver} search on several cores at once using Lazy SMP: every thread searches
+ * the same position with its own {@code Solver}, and all of them share one
+ * {@link TranspositionTable}. Helper threads try the first moves in a different order, so the
+ * entries they leave in the table let the other threads skip work. The first thread to finish
+ * stops the rest.
+ *
+ * <p>
+ * With one thread, a {@code ParallelSolver} runs the search on the calling thread and returns
+ * exactly what a single {@code Solver} would. With more threads, exact scores are still exact,
+ * but node counts and the result of a timed {@link #search} may vary from run to run.
+ *
+ * <p>
+ * Call {@link #close} to release the helper threads.
+ */
+public class ParallelSolver implements AutoCloseable {
+
+    private final Solver[] solvers;
+    private final TranspositionTable table;
+    private final ExecutorService pool;
+    private long nodes;
+
+    /**
+     * Constructs a solver that uses every available core and a table of
+     * {@code 2^}{@link Solver#DEFAULT_TABLE_BITS} slots.
+     */
+    public ParallelSolver() {
+        this(Runtime.getRuntime().availableProcessors(), Solver.DEFAULT_TABLE_BITS);
+    } // ParallelSolver
+
+    /**
+     * Constructs a solver that searches with {@code threads} threads sharing a table of
+     * {@code 2^tableBits} slots.
+     *
+     * @param threads the number of search threads, including the calling thread
+     * @param tableBits base-two logarithm of the table size
+     * @throws IllegalArgumentException if {@code threads} is less than {@code 1}
+     */
+    public ParallelSolver(int threads, int tableBits) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one search thread is needed.");
+        } // if
+        this.table = new TranspositionTable(tableBits);
+        this.solvers = new Solver[threads];
+        for (int i = 0; i < threads; i++) {
+            solvers[i] = new Solver(table);
+            solvers[i].setHelper(i);
+        } // for
+        if (threads == 1) {
+            this.pool = null;
+        } else {
+            AtomicInteger id = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(threads - 1, task -> {
+                Thread thread = new Thread(task, "solver-helper-" + id.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } // if
+    } // ParallelSolver
+
+    /**
+     * Return the number of search threads.
+     *
+     * @return the thread count
+     */
+    public int getThreads() {
+        return solvers.length;
+    } // getThreads
+
+    /**
+     * Return the shared transposition table.
+     *
+     * @return the table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    } // getTable
+
+    /**
+     * Return the number of positions visited by all threads during the most recent search.
+     *
+     * @return the node count
+     */
+    public long getNodeCount() {
+        return nodes;
+    } // getNodeCount
+
+    /**
+     * Return the exact score of {@code position} for the player to move.
+     *
+     * @param position the position to solve
+     * @return the score; see {@link Position} for its meaning
+     */
+    public int solve(Position position) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        table.newSearch();
+        int[] scores = new int[solvers.length];
+        boolean[] finished = new boolean[solvers.length];
+        runAll(i -> {
+            scores[i] = solvers[i].solveFrom(position);
+            finished[i] = !solvers[i].wasAborted();
+        });
+        for (int i = 0; i < solvers.length; i++) {
+            if (finished[i]) {
+                event.finish("ParallelSolver", solvers.length, nodes, scores[i]);
+                return scores[i];
+            } // if
+        } // for
+        throw new IllegalStateException("No search thread finished.");
+    } // solve
+
+    /**
+     * Return the exact score of {@code game} for the player to move.
+     *
+     * @param game the game to solve
+     * @return the score
+     * @throws IllegalArgumentException if {@code game} already contains a connect four
+     */
+    public int solve(ConnectFour game) {
+        return solve(Position.of(game));
+    } // solve
+
+    /**
+     * Return the exact score of every move in {@code position}.
+     *
+     * @param position the position to analyze
+     * @return one score per column, or {@link Integer#MIN_VALUE} for full columns
+     */
+    public int[] analyze(Position position) {
+        int[] scores = new int[position.getCols()];
+        long total = 0;
+        Position child = new Position(position);
+        for (int col = 0; col < scores.length; col++) {
+            scores[col] = Integer.MIN_VALUE;
+            if (!position.canPlay(col)) {
+                continue;
+            } // if
+            if (position.isWinningMove(col)) {
+                scores[col] = position.winScore();
+                continue;
+            } // if
+            child.play(col);
+            scores[col] = child.isFull() ? 0 : -solve(child);
+            total += nodes;
+            child.undo(col);
+        } // for
+        nodes = total;
+        return scores;
+    } // analyze
+
+    /**
+     * Search {@code position} with a time budget; see {@link Solver#search(Position, long)}. The
+     * result of the main thread is returned unless a helper solved the position first.
+     *
+     * @param position the position to search
+     * @param timeLimitMillis the time budget, or {@code 0} for no limit
+     * @return the search result, with the node count summed over all threads
+     */
+    public SearchResult search(Position position, long timeLimitMillis) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        table.newSearch();
+        SearchResult[] results = new SearchResult[solvers.length];
+        runAll(i -> results[i] = solvers[i].searchFrom(position, timeLimitMillis));
+        SearchResult best = results[0];
+        for (SearchResult result : results) {
+            if (result.isSolved() && !best.isSolved()) {
+                best = result;
+            } // if
+        } // for
+        SearchResult result = new SearchResult(best.getBestMove(), best.getScore(),
+                                               best.getDepth(), best.isSolved(), nodes,
+                                               System.nanoTime() - start);
+        event.finish("ParallelSolver", solvers.length, result);
+        return result;
+    } // search
+
+    /**
+     * Release the helper threads. The solver must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        } // if
+    } // close
+
+    /**
+     * A piece of work run once per search thread.
+     */
+    private interface ThreadTask {
+
+        /**
+         * Run the work for search thread {@code i}.
+         *
+         * @param i the search thread number
+         */
+        void run(int i);
+
+    } // ThreadTask
+
+    /**
+     * Run {@code task} on every search thread, with thread {@code 0} on the calling thread, and
+     * wait for all of them. Whichever thread finishes first asks the others to stop. Afterwards
+     * {@link #nodes} holds the total node count.
+     *
+     * @param task the work to run
+     */
+    private void runAll(ThreadTask task) {
+        for (Solver solver : solvers) {
+            solver.setStopRequested(false);
+        } // for
+        Future<?>[] futures = new Future<?>[solvers.length];
+        for (int i = 1; i < solvers.length; i++) {
+            int id = i;
+            futures[i] = pool.submit(() -> {
+                task.run(id);
+                stopAll();
+            });
+        } // for
+        try {
+            task.run(0);
+        } finally {
+            stopAll();
+            for (int i = 1; i < solvers.length; i++) {
+                try {
+                    futures[i].get();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ee) {
+                    throw new IllegalStateException("A search thread failed.", ee.getCause());
+                } // try
+            } // for
+        } // try
+        nodes = 0;
+        for (Solver solver : solvers) {
+            nodes += solver.getNodeCount();
+        } // for
+    } // runAll
+
+    /**
+     * Ask every search thread to stop.
+     */
+    private void stopAll() {
+        for (Solver solver : solvers) {
+            solver.setStopRequested(true);
+        } // for
+    } // stopAll
+
+    /**
+     * Print a speedup report: solve the same set of positions with 1, 2, 4, ... threads, up to
+     * the number of available cores, and print the time, nodes per second and speedup of each
+     * thread count.
+     *
+     * <pre>
+     * usage: ParallelSolver [positions] [plies] [rows] [cols]
+     * </pre>
+     *
+     * <p>
+     * The positions are generated from a fixed seed by playing {@code plies} random moves
+     * (default {@code 12}) on a {@code rows}-by-{@code cols} grid (default 6-by-7), so every
+     * run and every host solves the same set.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        int cols = args.length > 3 ? Integer.parseInt(args[3]) : 7;
+        Position[] positions = randomPositions(count, plies, rows, cols, new Random(1302));
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d positions, %d plies, %dx%d, %d cores%n", count, plies, rows, cols,
+                          cores);
+        System.out.printf("%8s %10s %16s %16s %8s%n", "threads", "seconds", "nodes",
+                          "nodes/s", "speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= cores; threads = threads < cores
+                 ? Math.min(threads * 2, cores) : threads + 1) {
+            try (ParallelSolver solver = new ParallelSolver(threads, Solver.DEFAULT_TABLE_BITS)) {
+                long nodes = 0;
+                long start = System.nanoTime();
+                for (Position position : positions) {
+                    solver.solve(position);
+                    nodes += solver.getNodeCount();
+                } // for
+                double seconds = (System.nanoTime() - start) / 1e9;
+                if (threads == 1) {
+                    baseline = seconds;
+                } // if
+                System.out.printf("%8d %10.3f %,16d %,16.0f %8.2f%n", threads, seconds, nodes,
+                                  nodes / seconds, baseline / seconds);
+            } // try
+        } // for
+    } // main
+
+    /**
+     * Return {@code count} positions made by playing {@code plies} random moves that do not
+     * end the game.
+     *
+     * @param count the number of positions
+     * @param plies the number of moves in each position
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param random the source of moves
+     * @return the positions
+     */
+    static Position[] randomPositions(int count, int plies, int rows, int cols, Random random) {
+        Position[] positions = new Position[count];
+        for (int i = 0; i < count; i++) {
+            Position position = new Position(rows, cols);
+            int attempts = 0;
+            while (position.getMoves() < plies) {
+                int col = random.nextInt(cols);
+                if (position.canPlay(col) && !position.isWinningMove(col)) {
+                    position.play(col);
+                } // if
+                boolean stuck = ++attempts > 100 * plies;
+                if (stuck || position.getMoves() == plies && position.canWinNext()) {
+                    // start over rather than hand out a decided position
+                    position = new Position(rows, cols);
+                    attempts = 0;
+                } // if
+            } // while
+            positions[i] = position;
+        } // for
+        return positions;
+    } // randomPositions
+
+} // ParallelSolver
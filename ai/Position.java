@@ -0,0 +1,660 @@
+package cs1302.game.ai;
+
+import cs1302.game.Bitboard;
+import cs1302.game.ConnectFour;
+import cs1302.game.Zobrist;
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+/**
+ * A {@code Position} is a compact, mutable copy of a {@link cs1302.game.ConnectFour} grid that
+ * the search engines in this package can play and take back moves on without allocating. It
+ * uses the same column-major layout as {@link cs1302.game.Bitboard} (one sentinel bit above each
+ * column), but stores the grid the way a negamax search wants it: a mask of the tokens that
+ * belong to the player to move and a mask of all tokens. Both masks are split into a low word
+ * (bits {@code 0-63}) and a high word (bits {@code 64-127}) so that every supported grid size,
+ * up to 9-by-9, fits.
+ *
+ * <p>
+ * Scores follow the usual Connect Four solver convention: a position where the player to move
+ * wins with their {@code k}-th token scores {@code (rows * cols + 1) / 2 + 1 - k}, a loss scores
+ * the negation, and a draw scores {@code 0}. Faster wins therefore score higher.
+ */
+public final class Position {
+
+    /** Search order for each supported column count, from the center outwards. */
+    private static final int[][] CENTER_ORDER = new int[10][];
+
+    static {
+        for (int cols = 7; cols <= 9; cols++) {
+            int[] order = new int[cols];
+            for (int i = 0; i < cols; i++) {
+                // middle, one left, one right, two left, two right, ...
+                order[i] = cols / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+            } // for
+            CENTER_ORDER[cols] = order;
+        } // for
+    } // static
+
+    private final int rows;
+    private final int cols;
+    private final int height;       // bits per column, including the sentinel
+    private final int cells;        // rows * cols
+    private final long[] colLo;     // bits of each column (without the sentinel)
+    private final long[] colHi;
+    private final long boardLo;     // every playable cell
+    private final long boardHi;
+    private final long allBottomLo; // lowest bit of every column
+    private final long allBottomHi;
+    private final byte[] heights;   // tokens in each column
+
+    private long curLo;             // tokens of the player to move
+    private long curHi;
+    private long maskLo;            // all tokens
+    private long maskHi;
+    private int moves;              // tokens on the grid
+    private int player;             // player to move (0 or 1)
+    private long hash;              // Zobrist hash of the tokens
+    private long mirrorHash;        // Zobrist hash of the tokens reflected left to right
+
+    private long scratchLo;         // output of winningCells
+    private long scratchHi;
+
+    /**
+     * Constructs an empty position with {@code rows}-many rows and {@code cols}-many columns.
+     * Player {@code 0} moves first.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @throws IllegalArgumentException if the size is not supported by
+     *     {@link cs1302.game.ConnectFour}
+     */
+    public Position(int rows, int cols) {
+        if (rows < 6 || rows > 9 || cols < 7 || cols > 9) {
+            throw new IllegalArgumentException("Unsupported grid size: " + rows + "x" + cols);
+        } // if
+        this.rows = rows;
+        this.cols = cols;
+        this.height = rows + 1;
+        this.cells = rows * cols;
+        this.colLo = new long[cols];
+        this.colHi = new long[cols];
+        this.heights = new byte[cols];
+        long bLo = 0;
+        long bHi = 0;
+        long aLo = 0;
+        long aHi = 0;
+        for (int col = 0; col < cols; col++) {
+            for (int h = 0; h < rows; h++) {
+                int bit = col * height + h;
+                if (bit < 64) {
+                    colLo[col] |= 1L << bit;
+                } else {
+                    colHi[col] |= 1L << (bit - 64);
+                } // if
+            } // for
+            bLo |= colLo[col];
+            bHi |= colHi[col];
+            // the lowest set bit of each column is its bottom cell
+            aLo |= colLo[col] & -colLo[col];
+            aHi |= colLo[col] == 0 ? colHi[col] & -colHi[col] : 0;
+        } // for
+        this.boardLo = bLo;
+        this.boardHi = bHi;
+        this.allBottomLo = aLo;
+        this.allBottomHi = aHi;
+    } // Position
+
+    /**
+     * Constructs a copy of {@code other}.
+     *
+     * @param other the position to copy
+     */
+    public Position(Position other) {
+        this(other.rows, other.cols);
+        copyFrom(other);
+    } // Position
+
+    /**
+     * Return a position holding the tokens currently in {@code game}. The player to move is the
+     * player with fewer tokens on the grid, or player {@code 0} when both have the same number.
+     *
+     * @param game the game to copy
+     * @return a position for {@code game}
+     * @throws IllegalArgumentException if {@code game} already contains a connect four
+     */
+    public static Position of(ConnectFour game) {
+        int count0 = 0;
+        int count1 = 0;
+        if (game.getPhase() != GamePhase.NEW) {
+            Token token0 = game.getPlayerToken(0);
+            for (int row = 0; row < game.getRows(); row++) {
+                for (int col = 0; col < game.getCols(); col++) {
+                    Token token = game.getTokenAt(row, col);
+                    if (token != null) {
+                        if (token == token0) {
+                            count0++;
+                        } else {
+                            count1++;
+                        } // if
+                    } // if
+                } // for
+            } // for
+        } // if
+        return of(game, count0 <= count1 ? 0 : 1);
+    } // of
+
+    /**
+     * Return a position holding the tokens currently in {@code game} with {@code toMove} as the
+     * player to move.
+     *
+     * @param game the game to copy
+     * @param toMove the player to move ({@code 0} or {@code 1})
+     * @return a position for {@code game}
+     * @throws IllegalArgumentException if {@code toMove} is neither {@code 0} nor {@code 1}, or
+     *     if {@code game} already contains a connect four
+     */
+    public static Position of(ConnectFour game, int toMove) {
+        if (toMove != 0 && toMove != 1) {
+            throw new IllegalArgumentException("Specify either player 0 or player 1.");
+        } // if
+        if (game.checkHorizontal() || game.checkVertical() || game.checkDiagonals()) {
+            throw new IllegalArgumentException("The game already contains a connect four.");
+        } // if
+        Position pos = new Position(game.getRows(), game.getCols());
+        pos.player = toMove;
+        if (game.getPhase() == GamePhase.NEW) {
+            return pos;
+        } // if
+        Token mine = game.getPlayerToken(toMove);
+        for (int col = 0; col < pos.cols; col++) {
+            for (int row = pos.rows - 1; row >= 0; row--) {
+                Token token = game.getTokenAt(row, col);
+                if (token == null) {
+                    break;
+                } // if
+                int bit = col * pos.height + pos.heights[col];
+                long lo = bit < 64 ? 1L << bit : 0L;
+                long hi = bit < 64 ? 0L : 1L << (bit - 64);
+                pos.maskLo |= lo;
+                pos.maskHi |= hi;
+                if (token == mine) {
+                    pos.curLo |= lo;
+                    pos.curHi |= hi;
+                } // if
+                int owner = token == mine ? toMove : 1 - toMove;
+                pos.hash ^= Zobrist.key(owner, bit);
+                pos.mirrorHash ^= Zobrist.key(owner, pos.mirrorBit(bit));
+                pos.heights[col]++;
+                pos.moves++;
+            } // for
+        } // for
+        return pos;
+    } // of
+
+    /**
+     * Overwrite this position with the contents of {@code other}, which must have the same
+     * size.
+     *
+     * @param other the position to copy
+     */
+    public void copyFrom(Position other) {
+        curLo = other.curLo;
+        curHi = other.curHi;
+        maskLo = other.maskLo;
+        maskHi = other.maskHi;
+        moves = other.moves;
+        player = other.player;
+        hash = other.hash;
+        mirrorHash = other.mirrorHash;
+        System.arraycopy(other.heights, 0, heights, 0, cols);
+    } // copyFrom
+
+    /**
+     * Return the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    } // getRows
+
+    /**
+     * Return the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    } // getCols
+
+    /**
+     * Return the number of tokens on the grid.
+     *
+     * @return the number of tokens
+     */
+    public int getMoves() {
+        return moves;
+    } // getMoves
+
+    /**
+     * Return the player to move.
+     *
+     * @return {@code 0} or {@code 1}
+     */
+    public int getPlayer() {
+        return player;
+    } // getPlayer
+
+    /**
+     * Return the number of tokens in column {@code col}.
+     *
+     * @param col the column index
+     * @return the column height
+     */
+    public int getHeight(int col) {
+        return heights[col];
+    } // getHeight
+
+    /**
+     * Return the column indices ordered from the center of the grid outwards, which is the
+     * order in which moves are most likely to be good.
+     *
+     * @return the center-first column order (do not modify)
+     */
+    public int[] centerOrder() {
+        return CENTER_ORDER[cols];
+    } // centerOrder
+
+    /**
+     * Return the lowest possible score on this grid size.
+     *
+     * @return the minimum score
+     */
+    public int minScore() {
+        return -cells / 2 + 3;
+    } // minScore
+
+    /**
+     * Return the highest possible score on this grid size.
+     *
+     * @return the maximum score
+     */
+    public int maxScore() {
+        return (cells + 1) / 2 - 3;
+    } // maxScore
+
+    /**
+     * Return the score of a win for the player to move if they win with their next token.
+     *
+     * @return the score of an immediate win
+     */
+    public int winScore() {
+        return (cells + 1 - moves) / 2;
+    } // winScore
+
+    /**
+     * Return {@code true} if column {@code col} has room for another token.
+     *
+     * @param col the column index
+     * @return {@code true} if a token can be played in the column
+     */
+    public boolean canPlay(int col) {
+        return heights[col] < rows;
+    } // canPlay
+
+    /**
+     * Return {@code true} if every cell is filled.
+     *
+     * @return {@code true} if the grid is full
+     */
+    public boolean isFull() {
+        return moves == cells;
+    } // isFull
+
+    /**
+     * Play a token for the player to move in column {@code col}. The column must not be full.
+     *
+     * @param col the column index
+     */
+    public void play(int col) {
+        int bit = col * height + heights[col];
+        curLo ^= maskLo;
+        curHi ^= maskHi;
+        if (bit < 64) {
+            maskLo |= 1L << bit;
+        } else {
+            maskHi |= 1L << (bit - 64);
+        } // if
+        hash ^= Zobrist.key(player, bit);
+        mirrorHash ^= Zobrist.key(player, mirrorBit(bit));
+        heights[col]++;
+        moves++;
+        player ^= 1;
+    } // play
+
+    /**
+     * Take back the token most recently played in column {@code col}.
+     *
+     * @param col the column index
+     */
+    public void undo(int col) {
+        heights[col]--;
+        int bit = col * height + heights[col];
+        if (bit < 64) {
+            maskLo &= ~(1L << bit);
+        } else {
+            maskHi &= ~(1L << (bit - 64));
+        } // if
+        curLo ^= maskLo;
+        curHi ^= maskHi;
+        moves--;
+        player ^= 1;
+        hash ^= Zobrist.key(player, bit);
+        mirrorHash ^= Zobrist.key(player, mirrorBit(bit));
+    } // undo
+
+    /**
+     * Reflect this position left to right in place, so that column {@code c} becomes column
+     * {@code cols - 1 - c}. The masks are moved a whole column at a time with
+     * {@link Bitboard#mirrorLow} and {@link Bitboard#mirrorHigh}, and the two hashes swap.
+     */
+    public void mirror() {
+        long lo = curLo;
+        long hi = curHi;
+        curLo = Bitboard.mirrorLow(lo, hi, height, cols);
+        curHi = Bitboard.mirrorHigh(lo, hi, height, cols);
+        lo = maskLo;
+        hi = maskHi;
+        maskLo = Bitboard.mirrorLow(lo, hi, height, cols);
+        maskHi = Bitboard.mirrorHigh(lo, hi, height, cols);
+        for (int col = 0; col < cols / 2; col++) {
+            byte swap = heights[col];
+            heights[col] = heights[cols - 1 - col];
+            heights[cols - 1 - col] = swap;
+        } // for
+        long swap = hash;
+        hash = mirrorHash;
+        mirrorHash = swap;
+    } // mirror
+
+    /**
+     * Return the bit index that {@code bit} moves to when the grid is reflected left to right.
+     *
+     * @param bit a bit index
+     * @return the reflected bit index
+     */
+    private int mirrorBit(int bit) {
+        int col = bit / height;
+        return bit + (cols - 1 - 2 * col) * height;
+    } // mirrorBit
+
+    /**
+     * Return {@code true} if the player to move wins by playing in column {@code col}. The
+     * column must not be full.
+     *
+     * @param col the column index
+     * @return {@code true} if the move creates a connect four
+     */
+    public boolean isWinningMove(int col) {
+        winningCells(curLo, curHi);
+        return (scratchLo & playableLo() & colLo[col] | scratchHi & playableHi() & colHi[col]) != 0;
+    } // isWinningMove
+
+    /**
+     * Return {@code true} if the player to move has a move that wins immediately.
+     *
+     * @return {@code true} if the player to move can win with their next token
+     */
+    public boolean canWinNext() {
+        winningCells(curLo, curHi);
+        long pLo = playableLo();
+        long pHi = playableHi();
+        return (scratchLo & pLo | scratchHi & pHi) != 0;
+    } // canWinNext
+
+    /**
+     * Return the {@linkplain Zobrist Zobrist hash} of the tokens on the grid. It matches
+     * {@link ConnectFour#getHash} for a game with the same tokens and is updated incrementally
+     * by {@link #play} and {@link #undo}.
+     *
+     * @return the hash of the tokens
+     */
+    public long getHash() {
+        return hash;
+    } // getHash
+
+    /**
+     * Return a 64-bit key that identifies this position for a search: the
+     * {@linkplain #getHash hash} of the tokens, combined with {@link Zobrist#SIDE} when player
+     * {@code 1} is to move.
+     *
+     * @return the position key
+     */
+    public long key() {
+        return player == 0 ? hash : hash ^ Zobrist.SIDE;
+    } // key
+
+    /**
+     * Return the {@linkplain Zobrist Zobrist hash} of the tokens reflected left to right. It
+     * matches {@link ConnectFour#getMirrorHash} for a game with the same tokens.
+     *
+     * @return the hash of the reflected tokens
+     */
+    public long getMirrorHash() {
+        return mirrorHash;
+    } // getMirrorHash
+
+    /**
+     * Return the same 64-bit key for this position and its reflection: the smaller of the two
+     * {@linkplain #key keys}. A position and its mirror image have the same score, and their
+     * best moves are reflections of each other, so transposition tables, opening books and
+     * other caches keyed by it need about half as many entries. Columns stored with such an
+     * entry should go through {@link #toCanonicalColumn} in both directions.
+     *
+     * @return the canonical position key
+     */
+    public long canonicalKey() {
+        long canonical = Math.min(hash, mirrorHash);
+        return player == 0 ? canonical : canonical ^ Zobrist.SIDE;
+    } // canonicalKey
+
+    /**
+     * Return {@code true} if {@link #canonicalKey} is the key of this position's reflection
+     * rather than of the position itself.
+     *
+     * @return {@code true} if the canonical orientation is the mirror image
+     */
+    public boolean isMirrored() {
+        return mirrorHash < hash;
+    } // isMirrored
+
+    /**
+     * Map {@code col} between this position and the orientation that {@link #canonicalKey}
+     * names: reflect it if {@link #isMirrored}, and leave it alone otherwise. The mapping is its
+     * own inverse, so it also maps a column read from a canonical table back to this position.
+     * Negative values, which mean "no column", are returned unchanged.
+     *
+     * @param col a column index, or a negative value
+     * @return the column in the other orientation
+     */
+    public int toCanonicalColumn(int col) {
+        return col >= 0 && mirrorHash < hash ? cols - 1 - col : col;
+    } // toCanonicalColumn
+
+    //----------------------------------------------------------------------------------------------
+    // SEARCH SUPPORT: Package-private helpers used by the engines in this package.
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Compute the columns in which the player to move can play without letting the opponent win
+     * on the next move. The result is stored as a move mask in {@link #scratchLo} and
+     * {@link #scratchHi}, with one bit set at the landing cell of each such column. Returns
+     * {@code false}, leaving an empty mask, if every move loses.
+     *
+     * @return {@code true} if at least one move does not lose immediately
+     */
+    boolean nonLosingMoves() {
+        long pLo = playableLo();
+        long pHi = playableHi();
+        winningCells(curLo ^ maskLo, curHi ^ maskHi);
+        long oppLo = scratchLo;
+        long oppHi = scratchHi;
+        long forcedLo = pLo & oppLo;
+        long forcedHi = pHi & oppHi;
+        if ((forcedLo | forcedHi) != 0) {
+            if (Long.bitCount(forcedLo) + Long.bitCount(forcedHi) > 1) {
+                scratchLo = 0;
+                scratchHi = 0;
+                return false;
+            } // if
+            pLo = forcedLo;
+            pHi = forcedHi;
+        } // if
+        // never play directly below a cell where the opponent would connect four
+        scratchLo = pLo & ~(oppLo >>> 1 | oppHi << 63);
+        scratchHi = pHi & ~(oppHi >>> 1);
+        return (scratchLo | scratchHi) != 0;
+    } // nonLosingMoves
+
+    /**
+     * Return the number of open cells that would complete a connect four for the player to
+     * move after they play the landing cell {@code (lo, hi)}. Used to order moves.
+     *
+     * @param lo the low word of the landing cell
+     * @param hi the high word of the landing cell
+     * @return the number of threats the move creates
+     */
+    int moveScore(long lo, long hi) {
+        winningCells(curLo | lo, curHi | hi);
+        return Long.bitCount(scratchLo) + Long.bitCount(scratchHi);
+    } // moveScore
+
+    /**
+     * Return the low word of the column mask for {@code col}.
+     *
+     * @param col the column index
+     * @return the low word of the column mask
+     */
+    long columnLo(int col) {
+        return colLo[col];
+    } // columnLo
+
+    /**
+     * Return the high word of the column mask for {@code col}.
+     *
+     * @param col the column index
+     * @return the high word of the column mask
+     */
+    long columnHi(int col) {
+        return colHi[col];
+    } // columnHi
+
+    /**
+     * Return the low word of the last mask computed by {@link #nonLosingMoves}.
+     *
+     * @return the low word of the scratch mask
+     */
+    long scratchLo() {
+        return scratchLo;
+    } // scratchLo
+
+    /**
+     * Return the high word of the last mask computed by {@link #nonLosingMoves}.
+     *
+     * @return the high word of the scratch mask
+     */
+    long scratchHi() {
+        return scratchHi;
+    } // scratchHi
+
+    /**
+     * Return the low word of the mask of all tokens.
+     *
+     * @return the low word of the token mask
+     */
+    long maskLo() {
+        return maskLo;
+    } // maskLo
+
+    /**
+     * Return the high word of the mask of all tokens.
+     *
+     * @return the high word of the token mask
+     */
+    long maskHi() {
+        return maskHi;
+    } // maskHi
+
+    /**
+     * Return the low word of the mask of the player to move's tokens.
+     *
+     * @return the low word of the current player's mask
+     */
+    long currentLo() {
+        return curLo;
+    } // currentLo
+
+    /**
+     * Return the high word of the mask of the player to move's tokens.
+     *
+     * @return the high word of the current player's mask
+     */
+    long currentHi() {
+        return curHi;
+    } // currentHi
+
+    /**
+     * Return the low word of the landing cell of every column that is not full.
+     *
+     * @return the low word of the playable mask
+     */
+    private long playableLo() {
+        return (maskLo + allBottomLo) & boardLo;
+    } // playableLo
+
+    /**
+     * Return the high word of the landing cell of every column that is not full. The carry out
+     * of the low word is needed when a column straddles bit {@code 64}.
+     *
+     * @return the high word of the playable mask
+     */
+    private long playableHi() {
+        long lo = maskLo + allBottomLo;
+        long carry = Long.compareUnsigned(lo, maskLo) < 0 ? 1 : 0;
+        return (maskHi + allBottomHi + carry) & boardHi;
+    } // playableHi
+
+    /**
+     * Compute the empty cells that would complete a connect four for the tokens in
+     * {@code (lo, hi)} and store them in {@link #scratchLo} and {@link #scratchHi}.
+     *
+     * @param lo the low word of a player's tokens
+     * @param hi the high word of a player's tokens
+     */
+    private void winningCells(long lo, long hi) {
+        // vertical: three tokens directly below
+        long rLo = (lo << 1) & (lo << 2) & (lo << 3);
+        long rHi = (hi << 1 | lo >>> 63) & (hi << 2 | lo >>> 62) & (hi << 3 | lo >>> 61);
+        for (int d = -1; d <= 1; d++) {
+            int s = height + d;
+            long l1Lo = lo << s;
+            long l1Hi = hi << s | lo >>> (64 - s);
+            long l2Lo = lo << 2 * s;
+            long l2Hi = hi << 2 * s | lo >>> (64 - 2 * s);
+            long l3Lo = lo << 3 * s;
+            long l3Hi = hi << 3 * s | lo >>> (64 - 3 * s);
+            long r1Lo = lo >>> s | hi << (64 - s);
+            long r1Hi = hi >>> s;
+            long r2Lo = lo >>> 2 * s | hi << (64 - 2 * s);
+            long r2Hi = hi >>> 2 * s;
+            long r3Lo = lo >>> 3 * s | hi << (64 - 3 * s);
+            long r3Hi = hi >>> 3 * s;
+            rLo |= l1Lo & l2Lo & (l3Lo | r1Lo) | r1Lo & r2Lo & (l1Lo | r3Lo);
+            rHi |= l1Hi & l2Hi & (l3Hi | r1Hi) | r1Hi & r2Hi & (l1Hi | r3Hi);
+        } // for
+        scratchLo = rLo & (boardLo & ~maskLo);
+        scratchHi = rHi & (boardHi & ~maskHi);
+    } // winningCells
+
+} // Position
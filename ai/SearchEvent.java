@@ -0,0 +1,91 @@
+package cs1302.game.ai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one search or solve by an engine in this package. The
+ * event's duration is the time the engine spent; its fields say what it found and how many
+ * nodes it visited. Like the game's own events, it is disabled by default.
+ */
+@Name("cs1302.game.Search")
+@Label("Search")
+@Category("Connect Four")
+@Description("A search or exact solve of one position")
+@Enabled(false)
+final class SearchEvent extends Event {
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Threads")
+    int threads;
+
+    @Label("Solve")
+    @Description("Whether this was an exact solve rather than a search with a budget")
+    boolean solve;
+
+    @Label("Nodes")
+    @Description("The positions visited, or the playouts run by a Monte Carlo search")
+    long nodes;
+
+    @Label("Best Move")
+    int bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Solved")
+    boolean solved;
+
+    /**
+     * End the event and commit it, if it is enabled, with the outcome of a search.
+     *
+     * @param engine the name of the engine
+     * @param threads the number of threads that searched
+     * @param result the search result
+     */
+    void finish(String engine, int threads, SearchResult result) {
+        end();
+        if (shouldCommit()) {
+            this.engine = engine;
+            this.threads = threads;
+            this.nodes = result.getNodes();
+            this.bestMove = result.getBestMove();
+            this.score = result.getScore();
+            this.depth = result.getDepth();
+            this.solved = result.isSolved();
+            commit();
+        } // if
+    } // finish
+
+    /**
+     * End the event and commit it, if it is enabled, with the outcome of an exact solve.
+     *
+     * @param engine the name of the engine
+     * @param threads the number of threads that searched
+     * @param nodes the number of positions visited
+     * @param score the exact score
+     */
+    void finish(String engine, int threads, long nodes, int score) {
+        end();
+        if (shouldCommit()) {
+            this.engine = engine;
+            this.threads = threads;
+            this.solve = true;
+            this.nodes = nodes;
+            this.bestMove = -1;
+            this.score = score;
+            this.solved = true;
+            commit();
+        } // if
+    } // finish
+
+} // SearchEvent
@@ -0,0 +1,107 @@
+package cs1302.game.ai;
+
+/**
+ * The outcome of a search started by one of the engines in this package.
+ */
+public class SearchResult {
+
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final boolean solved;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs a {@code SearchResult}.
+     *
+     * @param bestMove the column the engine recommends, or {@code -1} if no move is possible
+     * @param score the score of {@code bestMove} from the point of view of the player to move
+     * @param depth the deepest completed search depth, in plies
+     * @param solved {@code true} if {@code score} is the exact game-theoretic value
+     * @param nodes the number of positions visited
+     * @param elapsedNanos the wall-clock time spent searching
+     */
+    public SearchResult(int bestMove, int score, int depth, boolean solved, long nodes,
+                        long elapsedNanos) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.solved = solved;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    } // SearchResult
+
+    /**
+     * Return the column the engine recommends.
+     *
+     * @return the best column, or {@code -1} if no move is possible
+     */
+    public int getBestMove() {
+        return bestMove;
+    } // getBestMove
+
+    /**
+     * Return the score of the best move. Positive scores are wins for the player to move,
+     * negative scores are losses and {@code 0} is a draw (or, if the search was not
+     * {@linkplain #isSolved solved}, an undecided position).
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    } // getScore
+
+    /**
+     * Return the deepest search depth that was completed.
+     *
+     * @return the depth in plies
+     */
+    public int getDepth() {
+        return depth;
+    } // getDepth
+
+    /**
+     * Return whether {@link #getScore} is the exact value of the position.
+     *
+     * @return {@code true} if the position was solved
+     */
+    public boolean isSolved() {
+        return solved;
+    } // isSolved
+
+    /**
+     * Return the number of positions visited.
+     *
+     * @return the node count
+     */
+    public long getNodes() {
+        return nodes;
+    } // getNodes
+
+    /**
+     * Return the time spent searching.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    } // getElapsedNanos
+
+    /**
+     * Return the search speed.
+     *
+     * @return positions visited per second
+     */
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    } // getNodesPerSecond
+
+    @Override
+    public String toString() {
+        return String.format("move %d, score %d, depth %d%s, %,d nodes in %.3f s (%,.0f nodes/s)",
+                             bestMove, score, depth, solved ? " (solved)" : "", nodes,
+                             elapsedNanos / 1e9, getNodesPerSecond());
+    } // toString
+
+} // SearchResult
@@ -0,0 +1,577 @@
+package cs1302.game.ai;
+
+import cs1302.game.ConnectFour;
+
+/**
+ * A negamax search with alpha-beta pruning that plays and solves {@link ConnectFour}
+ * positions of every supported size. The search
+ *
+ * <ul>
+ * <li>tries moves from the center column outwards, after any move that creates more threats;
+ * <li>never considers moves that let the opponent connect four on their next turn;
+ * <li>remembers earlier results in a fixed-size {@link TranspositionTable}; and
+ * <li>deepens iteratively, either one ply at a time up to a time budget
+ *     ({@link #search(Position, long)}) or by narrowing a null window around the exact score
+ *     ({@link #solve(Position)}).
+ * </ul>
+ *
+ * <p>
+ * A {@code Solver} is not thread-safe. Reusing one across positions of the same game keeps its
+ * table warm.
+ */
+public class Solver {
+
+    /** Table size used by {@link #Solver()}: {@code 2^22} slots, 32 MiB. */
+    public static final int DEFAULT_TABLE_BITS = 22;
+
+    /** How often, in nodes, the search looks at the clock. */
+    private static final long CLOCK_MASK = (1 << 12) - 1;
+
+    private final TranspositionTable table;
+    private final int[][] moveCols = new int[82][9];   // ordered moves per ply
+    private final int[][] moveScores = new int[82][9];
+
+    private Position pos;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+    private volatile boolean stopRequested;  // set by another thread to end the search
+    private int helper;                      // Lazy SMP helper number, 0 for the main search
+    private EndgameTable endgame;            // results of late positions, or null
+
+    /**
+     * Constructs a solver with a table of {@code 2^}{@link #DEFAULT_TABLE_BITS} slots.
+     */
+    public Solver() {
+        this(DEFAULT_TABLE_BITS);
+    } // Solver
+
+    /**
+     * Constructs a solver with a table of {@code 2^tableBits} slots.
+     *
+     * @param tableBits base-two logarithm of the table size
+     */
+    public Solver(int tableBits) {
+        this(new TranspositionTable(tableBits));
+    } // Solver
+
+    /**
+     * Constructs a solver that uses {@code table}.
+     *
+     * @param table the transposition table to use
+     */
+    public Solver(TranspositionTable table) {
+        this.table = table;
+    } // Solver
+
+    /**
+     * Return the transposition table used by this solver.
+     *
+     * @return the table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    } // getTable
+
+    /**
+     * Use {@code endgame} to bound the scores of the positions it covers during searches that
+     * reach the end of the game. A win is worth at least {@code 1}, a loss at most {@code -1}
+     * and a draw exactly {@code 0}, so a null window around zero is answered without a search.
+     *
+     * @param endgame the table to use, which may be shared with other solvers, or {@code null}
+     */
+    public void setEndgameTable(EndgameTable endgame) {
+        this.endgame = endgame;
+    } // setEndgameTable
+
+    /**
+     * Return the number of positions visited by the most recent search.
+     *
+     * @return the node count
+     */
+    public long getNodeCount() {
+        return nodes;
+    } // getNodeCount
+
+    /**
+     * Return the exact score of {@code position} for the player to move. The position is left
+     * unchanged.
+     *
+     * @param position the position to solve
+     * @return the score; see {@link Position} for its meaning
+     */
+    public int solve(Position position) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        table.newSearch();
+        stopRequested = false;
+        int score = solveFrom(position);
+        event.finish("Solver", 1, nodes, score);
+        return score;
+    } // solve
+
+    /**
+     * Return the exact score of {@code game} for the player to move, as decided by
+     * {@link Position#of(ConnectFour)}.
+     *
+     * @param game the game to solve
+     * @return the score
+     * @throws IllegalArgumentException if {@code game} already contains a connect four
+     */
+    public int solve(ConnectFour game) {
+        return solve(Position.of(game));
+    } // solve
+
+    /**
+     * Return the exact score of every move in {@code position}.
+     *
+     * @param position the position to analyze
+     * @return one score per column, or {@link Integer#MIN_VALUE} for full columns
+     */
+    public int[] analyze(Position position) {
+        int[] scores = new int[position.getCols()];
+        long total = 0;
+        Position child = new Position(position);
+        for (int col = 0; col < scores.length; col++) {
+            scores[col] = Integer.MIN_VALUE;
+            if (!position.canPlay(col)) {
+                continue;
+            } // if
+            if (position.isWinningMove(col)) {
+                scores[col] = position.winScore();
+                continue;
+            } // if
+            child.play(col);
+            scores[col] = child.isFull() ? 0 : -solve(child);
+            total += nodes;
+            child.undo(col);
+        } // for
+        nodes = total;
+        return scores;
+    } // analyze
+
+    /**
+     * Return the column with the best exact score in {@code position}, preferring central
+     * columns when several moves score the same.
+     *
+     * @param position the position to play from
+     * @return the best column, or {@code -1} if the grid is full
+     */
+    public int bestMove(Position position) {
+        return bestOf(analyze(position), position.centerOrder());
+    } // bestMove
+
+    /**
+     * Return the column with the highest score, breaking ties in favor of the column that
+     * comes first in {@code order}.
+     *
+     * @param scores one score per column, or {@link Integer#MIN_VALUE} for full columns
+     * @param order the columns in order of preference
+     * @return the best column, or {@code -1} if every column is full
+     */
+    static int bestOf(int[] scores, int[] order) {
+        int best = -1;
+        for (int col : order) {
+            if (scores[col] != Integer.MIN_VALUE && (best < 0 || scores[col] > scores[best])) {
+                best = col;
+            } // if
+        } // for
+        return best;
+    } // bestOf
+
+    /**
+     * Search {@code position} one ply deeper at a time until it is solved or
+     * {@code timeLimitMillis} milliseconds have passed, and return the best move of the last
+     * completed depth. The position is left unchanged.
+     *
+     * @param position the position to search
+     * @param timeLimitMillis the time budget, or {@code 0} for no limit
+     * @return the search result
+     */
+    public SearchResult search(Position position, long timeLimitMillis) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        table.newSearch();
+        stopRequested = false;
+        SearchResult result = searchFrom(position, timeLimitMillis);
+        event.finish("Solver", 1, result);
+        return result;
+    } // search
+
+    /**
+     * Search {@code game} with a time budget; see {@link #search(Position, long)}.
+     *
+     * @param game the game to search
+     * @param timeLimitMillis the time budget, or {@code 0} for no limit
+     * @return the search result
+     * @throws IllegalArgumentException if {@code game} already contains a connect four
+     */
+    public SearchResult search(ConnectFour game, long timeLimitMillis) {
+        return search(Position.of(game), timeLimitMillis);
+    } // search
+
+    //----------------------------------------------------------------------------------------------
+    // SHARED SEARCH: Used by ParallelSolver to run several solvers over one table.
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Set the Lazy SMP helper number of this solver. Helpers other than {@code 0} shuffle the
+     * order of the first moves they try so that they explore different parts of the tree and
+     * leave results in the shared table for the others.
+     *
+     * @param helper the helper number
+     */
+    void setHelper(int helper) {
+        this.helper = helper;
+    } // setHelper
+
+    /**
+     * Ask a running search to finish as soon as possible. May be called from any thread; the
+     * search notices within a few thousand nodes.
+     *
+     * @param stop {@code true} to stop the search, {@code false} to allow the next one to run
+     */
+    void setStopRequested(boolean stop) {
+        stopRequested = stop;
+    } // setStopRequested
+
+    /**
+     * Return whether the most recent search was cut short by a time limit or a stop request.
+     *
+     * @return {@code true} if the search did not finish
+     */
+    boolean wasAborted() {
+        return aborted;
+    } // wasAborted
+
+    /**
+     * Solve {@code position} like {@link #solve(Position)}, but without starting a new table
+     * generation or clearing a stop request.
+     *
+     * @param position the position to solve
+     * @return the exact score, or an arbitrary value if the search was {@linkplain #wasAborted
+     *     aborted}
+     */
+    int solveFrom(Position position) {
+        nodes = 0;
+        deadline = 0;
+        aborted = false;
+        pos = new Position(position);
+        return solveExact();
+    } // solveFrom
+
+    /**
+     * Search {@code position} like {@link #search(Position, long)}, but without starting a new
+     * table generation or clearing a stop request.
+     *
+     * @param position the position to search
+     * @param timeLimitMillis the time budget, or {@code 0} for no limit
+     * @return the search result
+     */
+    SearchResult searchFrom(Position position, long timeLimitMillis) {
+        long start = System.nanoTime();
+        nodes = 0;
+        aborted = false;
+        deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1_000_000L : 0;
+        pos = new Position(position);
+        int remaining = pos.getRows() * pos.getCols() - pos.getMoves();
+        if (remaining == 0) {
+            return new SearchResult(-1, 0, 0, true, 0, System.nanoTime() - start);
+        } // if
+        for (int col : pos.centerOrder()) {
+            if (pos.canPlay(col) && pos.isWinningMove(col)) {
+                return new SearchResult(col, pos.winScore(), 1, true, 1,
+                                        System.nanoTime() - start);
+            } // if
+        } // for
+        int bestMove = -1;
+        int bestScore = 0;
+        int completed = 0;
+        boolean solved = false;
+        for (int depth = 1; depth <= remaining && !solved; depth++) {
+            long result = searchRoot(depth, bestMove);
+            if (aborted) {
+                break;
+            } // if
+            bestMove = (int) (result >> 32);
+            bestScore = (int) result;
+            completed = depth;
+            solved = bestScore != 0 || depth == remaining;
+        } // for
+        if (bestMove < 0) {
+            // out of time before depth 1 finished: any legal move will do
+            for (int col : pos.centerOrder()) {
+                if (pos.canPlay(col)) {
+                    bestMove = col;
+                    break;
+                } // if
+            } // for
+        } // if
+        return new SearchResult(bestMove, bestScore, completed, solved, nodes,
+                                System.nanoTime() - start);
+    } // searchFrom
+
+    /**
+     * Solve {@link #pos} exactly by repeatedly searching null windows that halve the range the
+     * score can be in.
+     *
+     * @return the exact score
+     */
+    private int solveExact() {
+        if (pos.canWinNext()) {
+            return pos.winScore();
+        } // if
+        int cells = pos.getRows() * pos.getCols();
+        int depth = cells - pos.getMoves();
+        int min = -depth / 2;
+        int max = (depth + 1) / 2;
+        while (min < max && !aborted) {
+            int med = min + (max - min) / 2;
+            // look at scores close to zero first; they are cheaper to refute
+            if (med <= 0 && min / 2 < med) {
+                med = min / 2;
+            } else if (med >= 0 && max / 2 > med) {
+                med = max / 2;
+            } // if
+            int score = negamax(med, med + 1, depth, 0);
+            if (score <= med) {
+                max = score;
+            } else {
+                min = score;
+            } // if
+        } // while
+        return min;
+    } // solveExact
+
+    /**
+     * Search every move of {@link #pos} to {@code depth} plies with a full window. The player
+     * to move must not have an immediate win.
+     *
+     * @param depth the search depth
+     * @param firstMove a column to try first, or {@code -1}
+     * @return the best column in the upper 32 bits and its score in the lower 32 bits
+     */
+    private long searchRoot(int depth, int firstMove) {
+        int cells = pos.getRows() * pos.getCols();
+        int alpha = pos.minScore() - 1;
+        int beta = pos.maxScore() + 1;
+        int best = -1;
+        if (!pos.nonLosingMoves()) {
+            for (int col : pos.centerOrder()) {
+                if (pos.canPlay(col)) {
+                    return (long) col << 32 | (-(cells - pos.getMoves()) / 2 & 0xFFFFFFFFL);
+                } // if
+            } // for
+        } // if
+        int count = orderMoves(0, firstMove);
+        for (int i = 0; i < count; i++) {
+            int col = moveCols[0][i];
+            pos.play(col);
+            int score = -negamax(-beta, -alpha, depth - 1, 1);
+            pos.undo(col);
+            if (aborted) {
+                return 0;
+            } // if
+            if (score > alpha) {
+                alpha = score;
+                best = col;
+            } // if
+        } // for
+        return (long) best << 32 | (alpha & 0xFFFFFFFFL);
+    } // searchRoot
+
+    /**
+     * Return the score of {@link #pos} within the window {@code (alpha, beta)}, searching at
+     * most {@code depth} more plies. Scores outside the window are reported as the nearest
+     * window bound. The player to move must not have an immediate win.
+     *
+     * @param alpha the score the caller can already guarantee
+     * @param beta the score above which the caller no longer cares
+     * @param depth the remaining search depth
+     * @param ply the distance from the root, used to index move lists
+     * @return the score of the position, clamped to the window
+     */
+    private int negamax(int alpha, int beta, int depth, int ply) {
+        nodes++;
+        if ((nodes & CLOCK_MASK) == 0
+            && (stopRequested || deadline != 0 && System.nanoTime() > deadline)) {
+            aborted = true;
+        } // if
+        if (aborted) {
+            return 0;
+        } // if
+        int moves = pos.getMoves();
+        int cells = pos.getRows() * pos.getCols();
+        if (!pos.nonLosingMoves()) {
+            // every move lets the opponent connect four next turn
+            return -(cells - moves) / 2;
+        } // if
+        if (moves >= cells - 2) {
+            return 0;
+        } // if
+        int min = -(cells - 2 - moves) / 2;
+        if (alpha < min) {
+            alpha = min;
+            if (alpha >= beta) {
+                return alpha;
+            } // if
+        } // if
+        int max = (cells - 1 - moves) / 2;
+        if (beta > max) {
+            beta = max;
+            if (alpha >= beta) {
+                return beta;
+            } // if
+        } // if
+        // a position and its mirror image share one entry, stored in canonical orientation
+        long key = pos.canonicalKey();
+        long entry = table.get(key);
+        int hashMove = -1;
+        if (entry != 0) {
+            hashMove = pos.toCanonicalColumn(TranspositionTable.move(entry));
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) {
+                    return Math.max(alpha, Math.min(beta, score));
+                } else if (bound == TranspositionTable.LOWER && score > alpha) {
+                    alpha = score;
+                } else if (bound == TranspositionTable.UPPER && score < beta) {
+                    beta = score;
+                } // if
+                if (alpha >= beta) {
+                    return alpha;
+                } // if
+            } // if
+        } // if
+        if (endgame != null && depth >= cells - moves) {
+            // only a search to the end may rely on the result; a shallower one needs a score
+            int result = endgame.result(pos);
+            if (result == EndgameTable.DRAW) {
+                return Math.max(alpha, Math.min(beta, 0));
+            } else if (result == EndgameTable.WIN && alpha < 1) {
+                alpha = 1;
+                if (alpha >= beta) {
+                    return alpha;
+                } // if
+            } else if (result == EndgameTable.LOSS && beta > -1) {
+                beta = -1;
+                if (alpha >= beta) {
+                    return beta;
+                } // if
+            } // if
+        } // if
+        if (depth <= 0) {
+            // horizon: treat the position as undecided
+            return Math.max(alpha, Math.min(beta, 0));
+        } // if
+        int alphaStart = alpha;
+        int best = -1;
+        int count = orderMoves(ply, hashMove);
+        for (int i = 0; i < count; i++) {
+            int col = moveCols[ply][i];
+            pos.play(col);
+            int score = -negamax(-beta, -alpha, depth - 1, ply + 1);
+            pos.undo(col);
+            if (aborted) {
+                return 0;
+            } // if
+            if (score >= beta) {
+                table.put(key, score, TranspositionTable.LOWER, depth,
+                          pos.toCanonicalColumn(col));
+                return score;
+            } // if
+            if (score > alpha) {
+                alpha = score;
+                best = col;
+            } // if
+        } // for
+        int bound = alpha > alphaStart ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.put(key, alpha, bound, depth, pos.toCanonicalColumn(best));
+        return alpha;
+    } // negamax
+
+    /**
+     * Fill the move list for {@code ply} with the non-losing moves most recently computed by
+     * {@link Position#nonLosingMoves}, best first. {@code firstMove} goes to the front; the rest
+     * are ordered by the number of threats they create, and then from the center outwards.
+     *
+     * @param ply the move list to fill
+     * @param firstMove a column to try first, or {@code -1}
+     * @return the number of moves in the list
+     */
+    private int orderMoves(int ply, int firstMove) {
+        long nextLo = pos.scratchLo();
+        long nextHi = pos.scratchHi();
+        int[] cols = moveCols[ply];
+        int[] scores = moveScores[ply];
+        int count = 0;
+        for (int col : pos.centerOrder()) {
+            long moveLo = nextLo & pos.columnLo(col);
+            long moveHi = nextHi & pos.columnHi(col);
+            if ((moveLo | moveHi) == 0) {
+                continue;
+            } // if
+            int score = col == firstMove ? Integer.MAX_VALUE : pos.moveScore(moveLo, moveHi);
+            int i = count++;
+            for (; i > 0 && scores[i - 1] < score; i--) {
+                cols[i] = cols[i - 1];
+                scores[i] = scores[i - 1];
+            } // for
+            cols[i] = col;
+            scores[i] = score;
+        } // for
+        if (helper != 0 && ply < 2 && count > 1) {
+            rotate(cols, count, helper % count);
+        } // if
+        return count;
+    } // orderMoves
+
+    /**
+     * Rotate the first {@code count} entries of {@code cols} left by {@code by} places.
+     *
+     * @param cols the move list
+     * @param count the number of moves in the list
+     * @param by the rotation distance
+     */
+    private static void rotate(int[] cols, int count, int by) {
+        for (int r = 0; r < by; r++) {
+            int first = cols[0];
+            System.arraycopy(cols, 1, cols, 0, count - 1);
+            cols[count - 1] = first;
+        } // for
+    } // rotate
+
+    /**
+     * Solve the game stored in a file (in the format read by {@link ConnectFour#fromFile}) and
+     * print the score of each column and the best move.
+     *
+     * @param args the path to the game file and, optionally, a time limit in milliseconds
+     * @throws java.io.FileNotFoundException if the game file cannot be found
+     */
+    public static void main(String[] args) throws java.io.FileNotFoundException {
+        if (args.length < 1) {
+            System.out.println("usage: Solver <game file> [time limit in ms]");
+            return;
+        } // if
+        Position position = Position.of(ConnectFour.fromFile(args[0]));
+        Solver solver = new Solver();
+        if (args.length > 1) {
+            System.out.println(solver.search(position, Long.parseLong(args[1])));
+            return;
+        } // if
+        long start = System.nanoTime();
+        int[] scores = solver.analyze(position);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (int col = 0; col < scores.length; col++) {
+            String score = scores[col] == Integer.MIN_VALUE ? "full" : "" + scores[col];
+            System.out.printf("column %d: %s%n", col, score);
+        } // for
+        System.out.printf("player %d to move, best column %d (%.3f s)%n", position.getPlayer(),
+                          bestOf(scores, position.centerOrder()), seconds);
+        if (TranspositionTable.STATS) {
+            System.out.println(solver.getTable().stats());
+        } // if
+    } // main
+
+} // Solver
@@ -0,0 +1,319 @@
+package cs1302.game.ai;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size transposition table for the search engines in this package, stored outside the
+ * Java heap. The garbage collector never has to scan or move the table, so it can be several
+ * gigabytes large without adding to pause times.
+ *
+ * <p>
+ * Each slot is one packed {@code long}:
+ *
+ * <pre>
+ * bits 32-63  upper half of the position key (used to detect collisions)
+ * bits 24-31  search generation the entry was written in
+ * bits 17-20  best column + 1 (0 when unknown)
+ * bits 10-16  search depth
+ * bits  8-9   bound type ({@link #LOWER}, {@link #UPPER} or {@link #EXACT})
+ * bits  0-7   score + 128
+ * </pre>
+ *
+ * <p>
+ * The slot for a key is picked by the key's low bits. When two keys compete for a slot, the
+ * entry that was searched deeper is kept, unless it was written by an earlier
+ * {@linkplain #newSearch search}. Because a slot is a single aligned {@code long}, several
+ * threads may share one table; a reader sees either the old or the new entry, never a mix.
+ *
+ * <p>
+ * When the JVM is started with {@code -Dcs1302.game.ai.tableStats=true}, the table also counts
+ * probes, hits, collisions and stores; the counters can be read at any time (for example by a
+ * monitoring thread) with {@link #getProbes} and friends or {@link #stats}. They are off by
+ * default because {@link #get} and {@link #put} run on every node of a search, and the switch
+ * is the constant {@link #STATS}, so the JIT compiler removes the counting when it is off.
+ * Direct memory is limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum
+ * heap size; raise it to allocate tables larger than the heap.
+ */
+public class TranspositionTable {
+
+    /** The stored score is a lower bound on the true score. */
+    public static final int LOWER = 1;
+
+    /** The stored score is an upper bound on the true score. */
+    public static final int UPPER = 2;
+
+    /** The stored score is exact. */
+    public static final int EXACT = 3;
+
+    /** Whether the counters are kept; set by the {@code cs1302.game.ai.tableStats} property. */
+    public static final boolean STATS = Boolean.getBoolean("cs1302.game.ai.tableStats");
+
+    /** Slots per backing buffer: {@code 2^27} slots of 8 bytes, or 1 GiB. */
+    private static final int SEGMENT_BITS = 27;
+
+    private final LongBuffer[] segments;
+    private final long mask;
+    private final int segmentMask;
+    private int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs an empty table with {@code 2^log2Size} slots of 8 bytes each.
+     *
+     * @param log2Size base-two logarithm of the number of slots
+     * @throws IllegalArgumentException if {@code log2Size} is not between {@code 1} and
+     *     {@code 36}
+     * @throws OutOfMemoryError if there is not enough direct memory for the table
+     */
+    public TranspositionTable(int log2Size) {
+        if (log2Size < 1 || log2Size > 36) {
+            throw new IllegalArgumentException("Table size must be between 2^1 and 2^36.");
+        } // if
+        int segmentBits = Math.min(log2Size, SEGMENT_BITS);
+        int count = 1 << (log2Size - segmentBits);
+        this.segments = new LongBuffer[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = ByteBuffer.allocateDirect(8 << segmentBits)
+                .order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+        } // for
+        this.mask = (1L << log2Size) - 1;
+        this.segmentMask = (1 << segmentBits) - 1;
+    } // TranspositionTable
+
+    /**
+     * Return the number of slots in the table.
+     *
+     * @return the table capacity
+     */
+    public long capacity() {
+        return mask + 1;
+    } // capacity
+
+    /**
+     * Return the amount of direct memory used by the table.
+     *
+     * @return the table size in bytes
+     */
+    public long sizeBytes() {
+        return capacity() * 8;
+    } // sizeBytes
+
+    /**
+     * Remove every entry from the table and reset the counters.
+     */
+    public void clear() {
+        for (LongBuffer segment : segments) {
+            for (int i = 0; i < segment.capacity(); i++) {
+                segment.put(i, 0L);
+            } // for
+        } // for
+        generation = 0;
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+        stores.reset();
+        rejected.reset();
+    } // clear
+
+    /**
+     * Start a new search generation. Entries written before this call are replaced by new
+     * entries regardless of their depth, so stale results do not crowd out fresh ones.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    } // newSearch
+
+    /**
+     * Store an entry for {@code key}. The slot's current entry is kept instead if it belongs to
+     * a different position, was written in the current generation, and was searched deeper.
+     *
+     * @param key the position key
+     * @param score the score, between {@code -128} and {@code 127}
+     * @param bound {@link #LOWER}, {@link #UPPER} or {@link #EXACT}
+     * @param depth the remaining search depth the score was computed with, at most {@code 127}
+     * @param move the best column found, or {@code -1} if none
+     */
+    public void put(long key, int score, int bound, int depth, int move) {
+        long slot = key & mask;
+        LongBuffer segment = segments[(int) (slot >>> SEGMENT_BITS)];
+        int index = (int) slot & segmentMask;
+        long old = segment.get(index);
+        if (old != 0 && (int) (old >>> 32) != (int) (key >>> 32)
+            && (int) (old >>> 24 & 0xFF) == generation && depth(old) > depth) {
+            if (STATS) {
+                rejected.increment();
+            } // if
+            return;
+        } // if
+        segment.put(index, pack(key, score, bound, depth, move, generation));
+        if (STATS) {
+            stores.increment();
+        } // if
+    } // put
+
+    /**
+     * Return the packed entry stored for {@code key}, or {@code 0} if there is none. Use
+     * {@link #score}, {@link #bound}, {@link #depth} and {@link #move} to unpack it.
+     *
+     * @param key the position key
+     * @return the packed entry or {@code 0}
+     */
+    public long get(long key) {
+        long slot = key & mask;
+        long entry = segments[(int) (slot >>> SEGMENT_BITS)].get((int) slot & segmentMask);
+        if (STATS) {
+            probes.increment();
+        } // if
+        if (entry == 0) {
+            return 0;
+        } else if ((int) (entry >>> 32) != (int) (key >>> 32)) {
+            if (STATS) {
+                collisions.increment();
+            } // if
+            return 0;
+        } // if
+        if (STATS) {
+            hits.increment();
+        } // if
+        return entry;
+    } // get
+
+    /**
+     * Return the number of {@link #get} calls.
+     *
+     * @return the probe count
+     */
+    public long getProbes() {
+        return probes.sum();
+    } // getProbes
+
+    /**
+     * Return the number of {@link #get} calls that found an entry for their key.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    } // getHits
+
+    /**
+     * Return the number of {@link #get} calls that found an entry for a different key.
+     *
+     * @return the collision count
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    } // getCollisions
+
+    /**
+     * Return the number of entries written by {@link #put}.
+     *
+     * @return the store count
+     */
+    public long getStores() {
+        return stores.sum();
+    } // getStores
+
+    /**
+     * Return the number of {@link #put} calls that kept a deeper entry instead.
+     *
+     * @return the rejected store count
+     */
+    public long getRejected() {
+        return rejected.sum();
+    } // getRejected
+
+    /**
+     * Return the fraction of probes that were hits.
+     *
+     * @return the hit rate, between {@code 0} and {@code 1}
+     */
+    public double getHitRate() {
+        long total = getProbes();
+        return total == 0 ? 0 : (double) getHits() / total;
+    } // getHitRate
+
+    /**
+     * Return the counters as one line of {@code name=value} pairs. They are all {@code 0}
+     * unless {@link #STATS} is set.
+     *
+     * @return the table statistics
+     */
+    public String stats() {
+        return String.format("tt.bytes=%d tt.probes=%d tt.hits=%d tt.hitRate=%.4f "
+                             + "tt.collisions=%d tt.stores=%d tt.rejected=%d",
+                             sizeBytes(), getProbes(), getHits(), getHitRate(),
+                             getCollisions(), getStores(), getRejected());
+    } // stats
+
+    /**
+     * Pack an entry into a {@code long}. The bound is never {@code 0}, so a packed entry is
+     * never {@code 0} either.
+     *
+     * @param key the position key
+     * @param score the score
+     * @param bound the bound type
+     * @param depth the search depth
+     * @param move the best column, or {@code -1}
+     * @param generation the search generation
+     * @return the packed entry
+     */
+    static long pack(long key, int score, int bound, int depth, int move, int generation) {
+        return key & 0xFFFFFFFF00000000L
+            | (long) generation << 24
+            | (move + 1) << 17
+            | depth << 10
+            | bound << 8
+            | (score + 128);
+    } // pack
+
+    /**
+     * Return the score of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return the score
+     */
+    public static int score(long entry) {
+        return ((int) entry & 0xFF) - 128;
+    } // score
+
+    /**
+     * Return the bound type of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return {@link #LOWER}, {@link #UPPER} or {@link #EXACT}
+     */
+    public static int bound(long entry) {
+        return (int) entry >>> 8 & 0x3;
+    } // bound
+
+    /**
+     * Return the search depth of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return the depth
+     */
+    public static int depth(long entry) {
+        return (int) entry >>> 10 & 0x7F;
+    } // depth
+
+    /**
+     * Return the best column of a packed entry.
+     *
+     * @param entry the packed entry
+     * @return the column, or {@code -1} if none was recorded
+     */
+    public static int move(long entry) {
+        return ((int) entry >>> 17 & 0xF) - 1;
+    } // move
+
+} // TranspositionTable
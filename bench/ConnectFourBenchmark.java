@@ -0,0 +1,389 @@
+package cs1302.game.bench;
+
+import cs1302.game.ConnectFour;
+import cs1302.gameutil.Token;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the {@link ConnectFour} operations that every game, simulation and search
+ * calls over and over. Each benchmark runs on a 6-by-7 and a 9-by-9 grid.
+ *
+ * <p>
+ * The grids are filled with the pattern used by {@code ConnectFourTester.testFullBoard}: the
+ * token in row {@code r} (counted from the bottom) and column {@code c} belongs to player
+ * {@code (c + r / 3) % 2}. That pattern never contains a connect four, so
+ * {@link ConnectFour#isLastDropConnectFour} always has to look at the whole grid, which is its
+ * worst case. The {@code early}, {@code mid} and {@code full} fills stop after four tokens,
+ * half the grid and the whole grid.
+ *
+ * <p>
+ * The benchmarks need JMH ({@code org.openjdk.jmh:jmh-core} and its annotation processor) on
+ * the class path when they are compiled. Run them through {@link #main}, which always adds the
+ * GC profiler so every result comes with {@code gc.alloc.rate.norm}, the bytes allocated per
+ * operation:
+ *
+ * <pre>
+ * java -cp &lt;classes&gt;:&lt;jmh jars&gt; cs1302.game.bench.ConnectFourBenchmark [JMH options]
+ * </pre>
+ *
+ * <p>
+ * Any JMH command-line option may be given, for example {@code -rf json -rff base.json} to
+ * save a baseline or {@code isLastDrop} to run only the matching benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectFourBenchmark {
+
+    /**
+     * A grid size and a game filled to some point, rebuilt once per trial.
+     */
+    @State(Scope.Thread)
+    public static class Filled {
+
+        /** The grid size, as {@code <rows>x<cols>}. */
+        @Param({"6x7", "9x9"})
+        public String size;
+
+        /** How much of the grid is filled: {@code early}, {@code mid} or {@code full}. */
+        @Param({"early", "mid", "full"})
+        public String fill;
+
+        ConnectFour game;
+
+        /**
+         * Build the game.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            int rows = rows(size);
+            int cols = cols(size);
+            int tokens = rows * cols;
+            if (fill.equals("early")) {
+                tokens = 4;
+            } else if (fill.equals("mid")) {
+                tokens = tokens / 2;
+            } // if
+            game = fill(rows, cols, tokens);
+            if (game.isLastDropConnectFour()) {
+                throw new IllegalStateException("The fill pattern contains a connect four.");
+            } // if
+        } // setUp
+
+    } // Filled
+
+    /**
+     * A grid size and an empty grid with the tokens set, used by the benchmarks that start
+     * their own game.
+     */
+    @State(Scope.Thread)
+    public static class Empty {
+
+        /** The grid size, as {@code <rows>x<cols>}. */
+        @Param({"6x7", "9x9"})
+        public String size;
+
+        int rows;
+        int cols;
+        long seed = 1302;
+
+        /**
+         * Parse the grid size.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            rows = rows(size);
+            cols = cols(size);
+        } // setUp
+
+    } // Empty
+
+    /**
+     * A grid size and a half-filled game with a column that still has room, for the
+     * drop-and-undo cycle used by searches.
+     */
+    @State(Scope.Thread)
+    public static class HalfFilled {
+
+        /** The grid size, as {@code <rows>x<cols>}. */
+        @Param({"6x7", "9x9"})
+        public String size;
+
+        ConnectFour game;
+        int col;
+
+        /**
+         * Build the game.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            int rows = rows(size);
+            int cols = cols(size);
+            game = fill(rows, cols, rows * cols / 2);
+            col = cols - 1;
+        } // setUp
+
+    } // HalfFilled
+
+    /**
+     * A half-filled game written to a temporary file in the format read by
+     * {@link ConnectFour#fromFile}.
+     */
+    @State(Scope.Thread)
+    public static class GameFile {
+
+        /** The grid size, as {@code <rows>x<cols>}. */
+        @Param({"6x7", "9x9"})
+        public String size;
+
+        String path;
+
+        /**
+         * Write the file.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            int rows = rows(size);
+            int cols = cols(size);
+            ConnectFour game = fill(rows, cols, rows * cols / 2);
+            Path file = Files.createTempFile("c4-bench-", ".txt");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.printf("%d %d%n%s %s%n", rows, cols, Token.RED, Token.YELLOW);
+                // bottom row first, so each column is dropped in the order it was filled
+                for (int row = rows - 1; row >= 0; row--) {
+                    for (int col = 0; col < cols; col++) {
+                        Token token = game.getTokenAt(row, col);
+                        out.print(token == null ? 3 : token == Token.RED ? 0 : 1);
+                        out.print(col + 1 < cols ? " " : System.lineSeparator());
+                    } // for
+                } // for
+                out.printf("%d %d%n", game.getLastDropRow(), game.getLastDropCol());
+            } // try
+            path = file.toString();
+        } // setUp
+
+        /**
+         * Delete the file.
+         *
+         * @throws IOException if the file cannot be deleted
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(Path.of(path));
+        } // tearDown
+
+    } // GameFile
+
+    /**
+     * Measure {@link ConnectFour#dropToken}: fill an empty grid column by column. The time is
+     * for the whole fill, including constructing the game; divide by {@code rows * cols} for
+     * the cost of one drop.
+     *
+     * @param state the grid size
+     * @return the filled game
+     */
+    @Benchmark
+    public ConnectFour dropToken(Empty state) {
+        ConnectFour game = newGame(state.rows, state.cols);
+        for (int col = 0; col < state.cols; col++) {
+            for (int row = 0; row < state.rows; row++) {
+                game.dropToken((col + row / 3) & 1, col);
+            } // for
+        } // for
+        return game;
+    } // dropToken
+
+    /**
+     * Measure one drop followed by {@link ConnectFour#undo}, the cycle a search runs at every
+     * node. It should allocate nothing.
+     *
+     * @param state the half-filled game
+     * @return the game's hash, which is back to where it started
+     */
+    @Benchmark
+    public long dropUndo(HalfFilled state) {
+        ConnectFour game = state.game;
+        game.dropToken(0, state.col);
+        game.undo();
+        return game.getHash();
+    } // dropUndo
+
+    /**
+     * Measure {@link ConnectFour#isLastDropConnectFour} on a grid with no connect four.
+     *
+     * @param state the filled game
+     * @return the result of the check
+     */
+    @Benchmark
+    public boolean isLastDropConnectFour(Filled state) {
+        return state.game.isLastDropConnectFour();
+    } // isLastDropConnectFour
+
+    /**
+     * Measure {@link ConnectFour#isBoardFull}.
+     *
+     * @param state the filled game
+     * @return the result of the check
+     */
+    @Benchmark
+    public boolean isBoardFull(Filled state) {
+        return state.game.isBoardFull();
+    } // isBoardFull
+
+    /**
+     * Measure {@link ConnectFour#getTokenAt}: read every cell of the grid once.
+     *
+     * @param state the filled game
+     * @param blackhole sink for the tokens
+     */
+    @Benchmark
+    public void getTokenAt(Filled state, Blackhole blackhole) {
+        ConnectFour game = state.game;
+        for (int row = 0; row < game.getRows(); row++) {
+            for (int col = 0; col < game.getCols(); col++) {
+                blackhole.consume(game.getTokenAt(row, col));
+            } // for
+        } // for
+    } // getTokenAt
+
+    /**
+     * Measure {@link ConnectFour#fromFile} on a half-filled grid.
+     *
+     * @param state the game file
+     * @return the loaded game
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public ConnectFour fromFile(GameFile state) throws IOException {
+        return ConnectFour.fromFile(state.path);
+    } // fromFile
+
+    /**
+     * Measure a whole game between two random players, checking for a connect four after every
+     * drop as {@code ConnectFourCLI} does. The moves come from an xorshift generator kept in
+     * the state, so no random number objects are allocated and each call plays a different
+     * game.
+     *
+     * @param state the grid size and random seed
+     * @return the finished game
+     */
+    @Benchmark
+    public ConnectFour randomGame(Empty state) {
+        ConnectFour game = newGame(state.rows, state.cols);
+        long seed = state.seed;
+        int player = 0;
+        do {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            int col = (int) ((seed >>> 1) % state.cols);
+            while (game.isColumnFull(col)) {
+                col = col + 1 == state.cols ? 0 : col + 1;
+            } // while
+            game.dropToken(player, col);
+            player = 1 - player;
+        } while (!game.isLastDropConnectFour() && !game.isBoardFull());
+        state.seed = seed;
+        return game;
+    } // randomGame
+
+    /**
+     * Return a new game with its player tokens set.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @return the game
+     */
+    static ConnectFour newGame(int rows, int cols) {
+        ConnectFour game = new ConnectFour(rows, cols);
+        game.setPlayerTokens(Token.RED, Token.YELLOW);
+        return game;
+    } // newGame
+
+    /**
+     * Return a new game with the first {@code tokens} cells of the fill pattern, dropped row
+     * by row from the bottom.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param tokens the number of tokens to drop
+     * @return the game
+     */
+    static ConnectFour fill(int rows, int cols, int tokens) {
+        ConnectFour game = newGame(rows, cols);
+        for (int i = 0; i < tokens; i++) {
+            int row = i / cols;
+            int col = i % cols;
+            game.dropToken((col + row / 3) & 1, col);
+        } // for
+        return game;
+    } // fill
+
+    /**
+     * Return the number of rows in a {@code <rows>x<cols>} size.
+     *
+     * @param size the grid size
+     * @return the number of rows
+     */
+    static int rows(String size) {
+        return Integer.parseInt(size.substring(0, size.indexOf('x')));
+    } // rows
+
+    /**
+     * Return the number of columns in a {@code <rows>x<cols>} size.
+     *
+     * @param size the grid size
+     * @return the number of columns
+     */
+    static int cols(String size) {
+        return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+    } // cols
+
+    /**
+     * Run the benchmarks in this class with the GC profiler.
+     *
+     * @param args JMH command-line options
+     * @throws RunnerException if a benchmark fails
+     * @throws CommandLineOptionException if the options cannot be parsed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli).addProfiler(GCProfiler.class);
+        if (cli.getIncludes().isEmpty()) {
+            options.include(ConnectFourBenchmark.class.getSimpleName());
+        } // if
+        new Runner(options.build()).run();
+    } // main
+
+} // ConnectFourBenchmark
@@ -0,0 +1,304 @@
+package cs1302.game.net;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A load-test client for {@link GameServer}. It opens many connections at once, plays random
+ * games on each, and reports the move latency: the time from sending a column to reading the
+ * line that says whose turn it is or how the game ended. Extra idle connections can be held
+ * open during the test to see how the server copes with many sessions that do nothing.
+ *
+ * <p>
+ * Without an address, the test starts its own server on a free loopback port, so it needs
+ * nothing else running.
+ */
+public class GameLoadTest {
+
+    private final SocketAddress address;
+    private final int rows;
+    private final int cols;
+    private final String policy;
+
+    /**
+     * Constructs a load test against the server at {@code address}.
+     *
+     * @param address the server address
+     * @param rows the number of grid rows in each game
+     * @param cols the number of grid columns in each game
+     * @param policy the name of a server-side opponent, such as {@code greedy}, or
+     *     {@code null} to play both sides
+     */
+    public GameLoadTest(SocketAddress address, int rows, int cols, String policy) {
+        this.address = address;
+        this.rows = rows;
+        this.cols = cols;
+        this.policy = policy;
+    } // GameLoadTest
+
+    /**
+     * Run the test: {@code clients} connections each play {@code games} games at the same
+     * time, while {@code idle} more connections stay open without sending anything.
+     *
+     * @param clients the number of playing connections
+     * @param games the number of games each playing connection plays
+     * @param idle the number of idle connections
+     * @param seed the base random seed
+     * @return the move latencies in nanoseconds, sorted
+     * @throws IOException if a connection fails
+     */
+    public long[] run(int clients, int games, int idle, long seed) throws IOException {
+        List<SocketChannel> idlers = new ArrayList<>(idle);
+        ExecutorService pool = GameServer.newThreadPerTaskExecutor("load-client-");
+        try {
+            for (int i = 0; i < idle; i++) {
+                SocketChannel channel = connect();
+                idlers.add(channel);
+            } // for
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> results = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                long clientSeed = seed + i;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return play(games, new SplittableRandom(clientSeed));
+                }));
+            } // for
+            start.countDown();
+            long[][] samples = new long[clients][];
+            int total = 0;
+            for (int i = 0; i < clients; i++) {
+                samples[i] = results.get(i).get();
+                total += samples[i].length;
+            } // for
+            long[] latencies = new long[total];
+            int n = 0;
+            for (long[] part : samples) {
+                System.arraycopy(part, 0, latencies, n, part.length);
+                n += part.length;
+            } // for
+            Arrays.sort(latencies);
+            return latencies;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for clients.", ie);
+        } catch (ExecutionException ee) {
+            throw new IOException("A client failed.", ee.getCause());
+        } finally {
+            for (SocketChannel channel : idlers) {
+                channel.close();
+            } // for
+            pool.shutdownNow();
+        } // try
+    } // run
+
+    /**
+     * Return the latency at quantile {@code q} of sorted samples.
+     *
+     * @param sorted the sorted latencies
+     * @param q the quantile, between {@code 0} and {@code 1}
+     * @return the latency, or {@code 0} if there are no samples
+     */
+    public static long quantile(long[] sorted, double q) {
+        if (sorted.length == 0) {
+            return 0;
+        } // if
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(q * (sorted.length - 1)))];
+    } // quantile
+
+    /**
+     * Open a connection to the server. The greeting is left unread.
+     *
+     * @return the connection
+     * @throws IOException if the connection fails
+     */
+    private SocketChannel connect() throws IOException {
+        boolean unix = address instanceof UnixDomainSocketAddress;
+        SocketChannel channel = unix ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        channel.connect(address);
+        if (!unix) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } // if
+        return channel;
+    } // connect
+
+    /**
+     * Play {@code games} random games on one connection.
+     *
+     * @param games the number of games
+     * @param random the source of moves
+     * @return the latency of every move, in nanoseconds
+     * @throws IOException if the connection fails or the server answers unexpectedly
+     */
+    private long[] play(int games, SplittableRandom random) throws IOException {
+        long[] latencies = new long[64];
+        int count = 0;
+        int[] heights = new int[cols];
+        try (SocketChannel channel = connect()) {
+            BufferedReader in = new BufferedReader(
+                Channels.newReader(channel, StandardCharsets.UTF_8), 1024);
+            Writer out = new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8), 256);
+            expect(in.readLine(), "HELLO");
+            String newGame = "NEW " + rows + " " + cols + (policy == null ? "" : " " + policy)
+                + "\n";
+            for (int game = 0; game < games; game++) {
+                out.write(newGame);
+                out.flush();
+                expect(in.readLine(), "GAME");
+                expect(in.readLine(), "TURN");
+                Arrays.fill(heights, 0);
+                boolean over = false;
+                while (!over) {
+                    int col = random.nextInt(cols);
+                    while (heights[col] == rows) {
+                        col = col + 1 == cols ? 0 : col + 1;
+                    } // while
+                    long start = System.nanoTime();
+                    out.write(col + "\n");
+                    out.flush();
+                    String line;
+                    while ((line = in.readLine()) != null && line.startsWith("DROP")) {
+                        heights[Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1))]++;
+                    } // while
+                    long latency = System.nanoTime() - start;
+                    if (line == null || line.startsWith("ERR")) {
+                        throw new IOException("Unexpected reply to a drop: " + line);
+                    } // if
+                    over = !line.startsWith("TURN");
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    } // if
+                    latencies[count++] = latency;
+                } // while
+            } // for
+            out.write("QUIT\n");
+            out.flush();
+            expect(in.readLine(), "BYE");
+        } // try
+        return Arrays.copyOf(latencies, count);
+    } // play
+
+    /**
+     * Check that a reply starts with {@code word}.
+     *
+     * @param line the reply
+     * @param word the expected first word
+     * @throws IOException if the reply is missing or different
+     */
+    private static void expect(String line, String word) throws IOException {
+        if (line == null || !line.startsWith(word)) {
+            throw new IOException("Expected " + word + " from the server but got " + line);
+        } // if
+    } // expect
+
+    /**
+     * Run a load test and print the move latency percentiles.
+     *
+     * <pre>
+     * usage: GameLoadTest [--address PORT | HOST:PORT | unix:PATH] [--clients N] [--games G]
+     *                     [--idle I] [--rows R] [--cols C] [--policy NAME] [--seed S]
+     * </pre>
+     *
+     * <p>
+     * Without {@code --address}, a server is started in this process on a free loopback
+     * port. The defaults are 100 clients playing 20 games each on a 6-by-7 grid with no
+     * server-side opponent and no idle connections.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the test fails
+     */
+    public static void main(String[] args) throws IOException {
+        String addressSpec = null;
+        int clients = 100;
+        int games = 20;
+        int idle = 0;
+        int rows = 6;
+        int cols = 7;
+        String policy = null;
+        long seed = 1302;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--address":
+                addressSpec = value;
+                break;
+            case "--clients":
+                clients = Integer.parseInt(value);
+                break;
+            case "--games":
+                games = Integer.parseInt(value);
+                break;
+            case "--idle":
+                idle = Integer.parseInt(value);
+                break;
+            case "--rows":
+                rows = Integer.parseInt(value);
+                break;
+            case "--cols":
+                cols = Integer.parseInt(value);
+                break;
+            case "--policy":
+                policy = value;
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        GameServer server = null;
+        SocketAddress address;
+        if (addressSpec == null) {
+            server = new GameServer(GameServer.parseAddress("0"));
+            server.start();
+            address = server.getAddress();
+        } else {
+            address = GameServer.parseAddress(addressSpec);
+        } // if
+        try {
+            long start = System.nanoTime();
+            long[] latencies = new GameLoadTest(address, rows, cols, policy)
+                .run(clients, games, idle, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d clients x %d games (%d idle) against %s in %.3f s%n",
+                              clients, games, idle, address, seconds);
+            System.out.printf("%,d moves, %,.0f moves/s%n", latencies.length,
+                              latencies.length / seconds);
+            System.out.printf("latency us: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                              quantile(latencies, 0.50) / 1e3, quantile(latencies, 0.90) / 1e3,
+                              quantile(latencies, 0.99) / 1e3, quantile(latencies, 0.999) / 1e3,
+                              quantile(latencies, 1.0) / 1e3);
+            if (server != null) {
+                System.out.printf("server: %,d sessions accepted, %,d games, %,d drops%n",
+                                  server.getAcceptedSessions(), server.getGamesStarted(),
+                                  server.getDrops());
+            } // if
+        } finally {
+            if (server != null) {
+                server.close();
+            } // if
+        } // try
+    } // main
+
+} // GameLoadTest
@@ -0,0 +1,829 @@
+package cs1302.game.net;
+
+import cs1302.game.ConnectFour;
+import cs1302.game.ai.MovePolicy;
+import cs1302.game.ai.Position;
+import cs1302.gameutil.GamePhase;
+import cs1302.gameutil.Token;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts {@link ConnectFour} games for clients that connect over a local TCP or Unix-domain
+ * socket. Each connection is one session that plays one game at a time, following the same
+ * "enter a column" flow as {@code ConnectFourCLI}: both players take turns on the same
+ * connection, or player 1's moves are made by one of the server's opponents.
+ *
+ * <p>
+ * The protocol is line based. The server greets each client with {@code HELLO connect-four 1}
+ * and then answers each request line with one or more lines:
+ *
+ * <pre>
+ * request                      response
+ * NEW rows cols [opponent]     GAME rows cols token0 token1 id, then TURN 0
+ * RESUME id                    GAME rows cols token0 token1 id, then TURN p, WIN p or DRAW
+ * col                          DROP player row col (one per drop, including the
+ *                              server's reply move), then TURN p, WIN p or DRAW
+ * UNDO                         UNDO row col (one per undone drop), then TURN p
+ * BOARD                        one line per grid row of '.', '0' and '1', then END
+ * QUIT                         BYE, and the connection is closed
+ * </pre>
+ *
+ * <p>
+ * A request that cannot be carried out, such as a full column or a drop after the game is
+ * over, is answered with {@code ERR message} and changes nothing; the client may try again.
+ * A request line longer than 256 bytes closes the connection.
+ *
+ * <p>
+ * The opponent in {@code NEW} is the name of one of the opponents the server was started
+ * with, such as {@code greedy} or {@code solver}; clients cannot describe their own. Each
+ * name stands for a {@linkplain MovePolicy#parse policy description} whose move time and
+ * playouts are capped, and its engines are kept in a pool shared by every session, with at
+ * most one engine per core, so a game against the server allocates nothing of its own.
+ *
+ * <p>
+ * Games are kept in a {@link SessionRegistry} under the id sent with {@code GAME}, and are
+ * looked up there on every request. A game outlives its connection: another connection can
+ * pick it up with {@code RESUME}, without the server-side policy. A game that receives no
+ * requests for the idle timeout is dropped.
+ *
+ * <p>
+ * Every connection is served by its own thread, with blocking reads and writes. On a Java
+ * runtime with virtual threads (Java 21 and later) those are virtual threads, so tens of
+ * thousands of idle sessions cost little more than their games. On older runtimes they are
+ * platform threads with a small stack. A connection reads and writes its channel directly,
+ * with no {@code Reader} or {@code Writer} in between: those hold a lock while they wait for
+ * the socket, which pins a virtual thread to its carrier, so a few idle clients would stop
+ * every other virtual thread from running.
+ */
+public class GameServer implements AutoCloseable {
+
+    /** The TCP port used when none is given. */
+    public static final int DEFAULT_PORT = 1302;
+
+    /** How long a game is kept without requests, in minutes, when no timeout is given. */
+    public static final long DEFAULT_IDLE_MINUTES = 30;
+
+    /** The longest move time an opponent may be given, in milliseconds. */
+    public static final long MAX_MOVE_MILLIS = 1000;
+
+    /** The most playouts an opponent may be given per move. */
+    public static final long MAX_PLAYOUTS = 100_000;
+
+    /** Stack size of platform connection threads, when virtual threads are not available. */
+    private static final long PLATFORM_STACK_BYTES = 256 << 10;
+
+    /** The longest request line accepted, in bytes. */
+    private static final int MAX_LINE_BYTES = 256;
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final boolean tcp;
+    private final ExecutorService connections;
+    private final SessionRegistry registry;
+    private final Map<String, Engines> opponents = new LinkedHashMap<>();
+    private volatile boolean closed;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+
+    /**
+     * Constructs a server bound to {@code address} that keeps idle games for
+     * {@value #DEFAULT_IDLE_MINUTES} minutes.
+     *
+     * @param address where to listen
+     * @throws IOException if the socket cannot be bound
+     */
+    public GameServer(SocketAddress address) throws IOException {
+        this(address, new SessionRegistry(DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES));
+    } // GameServer
+
+    /**
+     * Constructs a server bound to {@code address} that keeps its games in {@code registry} and
+     * offers the {@linkplain #defaultOpponents default opponents}.
+     *
+     * @param address where to listen
+     * @param registry where games are kept
+     * @throws IOException if the socket cannot be bound
+     */
+    public GameServer(SocketAddress address, SessionRegistry registry) throws IOException {
+        this(address, registry, defaultOpponents());
+    } // GameServer
+
+    /**
+     * Constructs a server bound to {@code address}, which is either an
+     * {@link InetSocketAddress} or a {@link UnixDomainSocketAddress}, that keeps its games in
+     * {@code registry} and offers {@code opponents} to its clients. The server does not accept
+     * connections until {@link #serve} or {@link #start} is called; it starts the registry's
+     * expiry thread and stops it when closed.
+     *
+     * @param address where to listen
+     * @param registry where games are kept
+     * @param opponents the policy description of each opponent, by the name clients use
+     * @throws IllegalArgumentException if a description is not recognized, names a book that
+     *     cannot be read, or exceeds {@link #MAX_MOVE_MILLIS} or {@link #MAX_PLAYOUTS}
+     * @throws IOException if the socket cannot be bound
+     */
+    public GameServer(SocketAddress address, SessionRegistry registry,
+                      Map<String, String> opponents) throws IOException {
+        for (Map.Entry<String, String> opponent : opponents.entrySet()) {
+            checkLimits(opponent.getValue());
+            this.opponents.put(opponent.getKey(), new Engines(opponent.getValue()));
+        } // for
+        this.registry = registry;
+        this.tcp = !(address instanceof UnixDomainSocketAddress);
+        this.server = tcp ? ServerSocketChannel.open()
+            : ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address, 4096);
+        this.address = server.getLocalAddress();
+        this.connections = newThreadPerTaskExecutor("game-session-");
+        registry.startExpiry();
+    } // GameServer
+
+    /**
+     * Return the opponents offered when none are given: {@code random}, {@code greedy},
+     * {@code solver} ({@code solver:250}) and {@code mcts} ({@code mcts:5000}).
+     *
+     * @return the default policy descriptions, by name
+     */
+    public static Map<String, String> defaultOpponents() {
+        Map<String, String> opponents = new LinkedHashMap<>();
+        opponents.put("random", "random");
+        opponents.put("greedy", "greedy");
+        opponents.put("solver", "solver:250");
+        opponents.put("mcts", "mcts:5000");
+        return opponents;
+    } // defaultOpponents
+
+    /**
+     * Check that {@code spec} is a policy description whose move time is at most
+     * {@link #MAX_MOVE_MILLIS} and whose playouts are at most {@link #MAX_PLAYOUTS}, including
+     * the fallback of a book. A zero budget, which means no limit, is rejected.
+     *
+     * @param spec the policy description
+     * @throws IllegalArgumentException if the description is not recognized or over a limit
+     */
+    static void checkLimits(String spec) {
+        MovePolicy.validate(spec);
+        String[] parts = spec.split(":", 3);
+        if (parts[0].equals("book")) {
+            checkLimits(parts[2]);
+        } else if (parts[0].equals("solver") || parts[0].equals("mcts")) {
+            long budget = Long.parseLong(parts[1]);
+            long limit = parts[0].equals("solver") ? MAX_MOVE_MILLIS : MAX_PLAYOUTS;
+            if (budget < 1 || budget > limit) {
+                throw new IllegalArgumentException("The budget of " + spec
+                                                   + " must be between 1 and " + limit);
+            } // if
+        } // if
+    } // checkLimits
+
+    /**
+     * Return the registry the server keeps its games in.
+     *
+     * @return the session registry
+     */
+    public SessionRegistry getRegistry() {
+        return registry;
+    } // getRegistry
+
+    /**
+     * Return the address the server is listening on, with the actual port if port {@code 0}
+     * was requested.
+     *
+     * @return the local address
+     */
+    public SocketAddress getAddress() {
+        return address;
+    } // getAddress
+
+    /**
+     * Return the number of connections currently open.
+     *
+     * @return the active session count
+     */
+    public int getActiveSessions() {
+        return active.get();
+    } // getActiveSessions
+
+    /**
+     * Return the number of connections accepted so far.
+     *
+     * @return the accepted connection count
+     */
+    public long getAcceptedSessions() {
+        return accepted.get();
+    } // getAcceptedSessions
+
+    /**
+     * Return the number of games started so far.
+     *
+     * @return the game count
+     */
+    public long getGamesStarted() {
+        return games.get();
+    } // getGamesStarted
+
+    /**
+     * Return the number of tokens dropped so far, by clients and by server policies.
+     *
+     * @return the drop count
+     */
+    public long getDrops() {
+        return drops.get();
+    } // getDrops
+
+    /**
+     * Accept connections on the calling thread until the server is closed.
+     *
+     * @throws IOException if accepting fails for a reason other than {@link #close}
+     */
+    public void serve() throws IOException {
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException cce) {
+                return;
+            } // try
+            accepted.incrementAndGet();
+            connections.execute(() -> handle(channel));
+        } // while
+    } // serve
+
+    /**
+     * Accept connections on a new daemon thread and return immediately.
+     *
+     * @return the accepting thread
+     */
+    public Thread start() {
+        Thread acceptor = new Thread(() -> {
+            try {
+                serve();
+            } catch (IOException ioe) {
+                if (!closed) {
+                    System.err.println("game server stopped: " + ioe);
+                } // if
+            } // try
+        }, "game-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return acceptor;
+    } // start
+
+    /**
+     * Stop accepting connections and close every open session.
+     *
+     * @throws IOException if the listening socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        connections.shutdownNow();
+        registry.close();
+        if (address instanceof UnixDomainSocketAddress unix) {
+            Files.deleteIfExists(unix.getPath());
+        } // if
+    } // close
+
+    /**
+     * Serve one connection until the client quits or disconnects.
+     *
+     * @param channel the client connection
+     */
+    private void handle(SocketChannel channel) {
+        active.incrementAndGet();
+        try (channel) {
+            if (tcp) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } // if
+            ByteBuffer input = ByteBuffer.allocate(MAX_LINE_BYTES + 1).flip();
+            Session session = new Session(channel);
+            write(channel, "HELLO connect-four 1\n");
+            String line;
+            while ((line = readLine(channel, input)) != null && session.request(line.trim())) {
+                // the session has written its response
+            } // while
+        } catch (IOException ioe) {
+            // the client went away; nothing to report back to
+        } finally {
+            active.decrementAndGet();
+        } // try
+    } // handle
+
+    /**
+     * Read one line from {@code channel}, without its line terminator. Bytes that arrive after
+     * the line stay in {@code buffer} for the next call.
+     *
+     * @param channel the client connection
+     * @param buffer the bytes read but not yet returned, between its position and limit
+     * @return the line, or {@code null} at the end of the input
+     * @throws IOException if the line cannot be read or is longer than
+     *     {@value #MAX_LINE_BYTES} bytes
+     */
+    private static String readLine(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        int scanned = buffer.position();
+        while (true) {
+            for (int i = scanned; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    String line = new String(buffer.array(), buffer.position(),
+                                             i - buffer.position(), StandardCharsets.UTF_8);
+                    buffer.position(i + 1);
+                    return line;
+                } // if
+            } // for
+            int pending = buffer.remaining();
+            if (pending > MAX_LINE_BYTES) {
+                throw new IOException("request line too long");
+            } // if
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                String rest = pending > 0 ? new String(buffer.array(), 0, pending,
+                                                       StandardCharsets.UTF_8) : null;
+                buffer.position(buffer.limit());
+                return rest;
+            } // if
+            scanned = pending;
+        } // while
+    } // readLine
+
+    /**
+     * Write {@code text} to {@code channel} in UTF-8.
+     *
+     * @param channel the client connection
+     * @param text the text to write
+     * @throws IOException if the text cannot be written
+     */
+    private static void write(SocketChannel channel, CharSequence text) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        } // while
+    } // write
+
+    /**
+     * The engines of one opponent: up to one instance of its policy per core, created as
+     * sessions need them and reused by every session after that.
+     */
+    private static final class Engines {
+
+        private final String spec;
+        private final int limit = Runtime.getRuntime().availableProcessors();
+        private final LinkedBlockingQueue<MovePolicy> idle = new LinkedBlockingQueue<>();
+        private final AtomicInteger created = new AtomicInteger(1);
+
+        /**
+         * Constructs the pool with one engine, which checks that the policy can be built.
+         *
+         * @param spec the policy description
+         */
+        Engines(String spec) {
+            this.spec = spec;
+            idle.add(MovePolicy.parse(spec));
+        } // Engines
+
+        /**
+         * Return an idle engine, creating one if fewer than the limit exist, or waiting for
+         * one to be released otherwise.
+         *
+         * @return an engine that only the caller uses until it is released
+         * @throws InterruptedException if interrupted while waiting
+         */
+        MovePolicy acquire() throws InterruptedException {
+            MovePolicy engine = idle.poll();
+            if (engine != null) {
+                return engine;
+            } // if
+            for (int count = created.get(); count < limit; count = created.get()) {
+                if (created.compareAndSet(count, count + 1)) {
+                    return MovePolicy.parse(spec);
+                } // if
+            } // for
+            return idle.take();
+        } // acquire
+
+        /**
+         * Return an engine to the pool.
+         *
+         * @param engine an engine from {@link #acquire}
+         */
+        void release(MovePolicy engine) {
+            idle.add(engine);
+        } // release
+
+    } // Engines
+
+    /**
+     * The game played on one connection. A game may be shared with other connections through
+     * {@code RESUME}, so every request that reads or changes it holds the game's lock, and
+     * only that lock: responses are collected while it is held and written to the client once
+     * it is released, and the server's opponent searches without it.
+     */
+    private class Session {
+
+        private final SocketChannel channel;
+        private final StringBuilder response = new StringBuilder(256);
+        private final SplittableRandom random = new SplittableRandom();
+        private ConnectFour game;
+        private long id;
+        private Engines opponent;
+
+        /**
+         * Constructs a session with no game.
+         *
+         * @param channel where responses are written
+         */
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        } // Session
+
+        /**
+         * Carry out one request line and write its response.
+         *
+         * @param line the request
+         * @return {@code false} if the client asked to quit
+         * @throws IOException if the response cannot be written
+         */
+        boolean request(String line) throws IOException {
+            String[] words = line.split("\\s+");
+            response.setLength(0);
+            boolean more = true;
+            try {
+                more = dispatch(words);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                response.append("ERR unknown request: ").append(line).append('\n');
+            } catch (RuntimeException re) {
+                response.append("ERR ").append(re.getMessage()).append('\n');
+            } // try
+            write(channel, response);
+            return more;
+        } // request
+
+        /**
+         * Carry out one request.
+         *
+         * @param words the request words
+         * @return {@code false} if the client asked to quit
+         * @throws IOException if interrupted while waiting for the server's opponent
+         */
+        private boolean dispatch(String[] words) throws IOException {
+            switch (words[0].toUpperCase()) {
+            case "NEW":
+                newGame(words);
+                break;
+            case "RESUME":
+                resume(Long.parseLong(words[1]));
+                break;
+            case "UNDO":
+                undo();
+                break;
+            case "BOARD":
+                board();
+                break;
+            case "QUIT":
+                if (game != null) {
+                    registry.remove(id);
+                } // if
+                response.append("BYE\n");
+                return false;
+            default:
+                drop(Integer.parseInt(words[0]));
+                break;
+            } // switch
+            return true;
+        } // dispatch
+
+        /**
+         * Start a new game: {@code NEW rows cols [opponent]}. No lock is needed, since no
+         * other connection knows the new game yet.
+         *
+         * @param words the request words
+         */
+        private void newGame(String[] words) {
+            if (words.length < 3 || words.length > 4) {
+                throw new IllegalArgumentException("usage: NEW rows cols [opponent]");
+            } // if
+            ConnectFour next = new ConnectFour(Integer.parseInt(words[1]),
+                                               Integer.parseInt(words[2]));
+            Engines policy = words.length == 4 ? opponents.get(words[3]) : null;
+            if (words.length == 4 && policy == null) {
+                throw new IllegalArgumentException("Unknown opponent " + words[3] + "; expected"
+                                                   + " one of " + opponents.keySet());
+            } // if
+            next.setPlayerTokens(Token.RED, Token.YELLOW);
+            if (game != null) {
+                registry.remove(id);
+            } // if
+            game = next;
+            id = registry.register(game);
+            opponent = policy;
+            games.incrementAndGet();
+            header();
+            response.append("TURN 0\n");
+        } // newGame
+
+        /**
+         * Continue the registered game {@code gameId}, with both players on this connection.
+         * Only the found game is locked, never the one this session is leaving, so two
+         * connections resuming each other's games cannot deadlock.
+         *
+         * @param gameId the game's id
+         */
+        private void resume(long gameId) {
+            ConnectFour found = registry.get(gameId);
+            if (found == null) {
+                throw new IllegalStateException("No game with id " + gameId + ".");
+            } // if
+            game = found;
+            id = gameId;
+            opponent = null;
+            synchronized (found) {
+                header();
+                status();
+            } // synchronized
+        } // resume
+
+        /**
+         * Add the {@code GAME} line for the current game to the response.
+         */
+        private void header() {
+            response.append("GAME ").append(game.getRows()).append(' ').append(game.getCols())
+                .append(' ').append(game.getPlayerToken(0)).append(' ')
+                .append(game.getPlayerToken(1)).append(' ').append(id).append('\n');
+        } // header
+
+        /**
+         * Drop a token for the player whose turn it is, then let the server's opponent reply.
+         * The opponent searches a copy of the position without holding the game's lock, and
+         * its move is only played if no other connection changed the game in the meantime.
+         *
+         * @param col the column
+         * @throws IOException if interrupted while waiting for the opponent's engine
+         */
+        private void drop(int col) throws IOException {
+            requireGame();
+            ConnectFour current = game;
+            Position position;
+            int dropped;
+            synchronized (current) {
+                play(col);
+                if (opponent == null || current.getPhase() == GamePhase.OVER) {
+                    status();
+                    return;
+                } // if
+                position = Position.of(current, turn());
+                dropped = current.getNumDropped();
+            } // synchronized
+            int reply = reply(position);
+            synchronized (current) {
+                if (current.getNumDropped() == dropped && current.getPhase() != GamePhase.OVER) {
+                    play(reply);
+                } // if
+                status();
+            } // synchronized
+        } // drop
+
+        /**
+         * Return the move of this session's opponent in {@code position}, using an engine
+         * borrowed from its pool.
+         *
+         * @param position the position to move in
+         * @return the opponent's column
+         * @throws IOException if interrupted while waiting for an engine, which ends the
+         *     connection
+         */
+        private int reply(Position position) throws IOException {
+            MovePolicy engine;
+            try {
+                engine = opponent.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for an engine", ie);
+            } // try
+            try {
+                return engine.chooseMove(position, random);
+            } finally {
+                opponent.release(engine);
+            } // try
+        } // reply
+
+        /**
+         * Drop a token for the player whose turn it is and report it. The caller holds the
+         * game's lock.
+         *
+         * @param col the column
+         */
+        private void play(int col) {
+            int player = turn();
+            game.dropToken(player, col);
+            drops.incrementAndGet();
+            game.isLastDropConnectFour();
+            response.append("DROP ").append(player).append(' ').append(game.getLastDropRow())
+                .append(' ').append(col).append('\n');
+        } // play
+
+        /**
+         * Return the player whose turn it is. Player 0 always moves first, so this is the
+         * number of tokens on the grid modulo 2.
+         *
+         * @return {@code 0} or {@code 1}
+         */
+        private int turn() {
+            return game.getPhase() == GamePhase.READY ? 0 : game.getNumDropped() % 2;
+        } // turn
+
+        /**
+         * Take back the last drop, or the last two when the server's opponent made the last
+         * one, so that it is the client's turn again.
+         */
+        private void undo() {
+            requireGame();
+            synchronized (game) {
+                if (!game.canUndo()) {
+                    throw new IllegalStateException("There is no drop to undo.");
+                } // if
+                int count = opponent != null && turn() == 0 && game.getNumDropped() >= 2 ? 2 : 1;
+                for (int i = 0; i < count; i++) {
+                    int row = game.getLastDropRow();
+                    int col = game.getLastDropCol();
+                    game.undo();
+                    response.append("UNDO ").append(row).append(' ').append(col).append('\n');
+                } // for
+                status();
+            } // synchronized
+        } // undo
+
+        /**
+         * Add the grid to the response, top row first.
+         */
+        private void board() {
+            requireGame();
+            synchronized (game) {
+                for (int r = 0; r < game.getRows(); r++) {
+                    for (int c = 0; c < game.getCols(); c++) {
+                        Token token = game.getTokenAt(r, c);
+                        response.append(token == null ? '.' : token == Token.RED ? '0' : '1');
+                    } // for
+                    response.append('\n');
+                } // for
+            } // synchronized
+            response.append("END\n");
+        } // board
+
+        /**
+         * Add the game's status to the response: whose turn it is, or how it ended. The caller
+         * holds the game's lock.
+         */
+        private void status() {
+            if (game.getPhase() != GamePhase.OVER) {
+                response.append("TURN ").append(turn()).append('\n');
+            } else if (game.getLastDropConnectFour() != null) {
+                response.append("WIN ").append(1 - turn()).append('\n');
+            } else {
+                response.append("DRAW\n");
+            } // if
+        } // status
+
+        /**
+         * Look the current game up in the registry, which also keeps it from expiring.
+         *
+         * @throws IllegalStateException if there is no game or it has expired
+         */
+        private void requireGame() {
+            if (game == null) {
+                throw new IllegalStateException("No game; send NEW rows cols first.");
+            } else if (registry.get(id) != game) {
+                game = null;
+                throw new IllegalStateException("The game has expired; send NEW rows cols.");
+            } // if
+        } // requireGame
+
+    } // Session
+
+    /**
+     * Return an executor that runs every task on a new thread: a virtual thread if the
+     * runtime supports them, otherwise a daemon platform thread with a small stack.
+     *
+     * @param prefix the name prefix of platform threads
+     * @return the executor
+     */
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        try {
+            // looked up reflectively so that the code still compiles and runs on Java 17
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException
+                 | InvocationTargetException e) {
+            AtomicInteger id = new AtomicInteger();
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS,
+                                          new SynchronousQueue<>(), task -> {
+                    Thread thread = new Thread(null, task, prefix + id.incrementAndGet(),
+                                               PLATFORM_STACK_BYTES);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        } // try
+    } // newThreadPerTaskExecutor
+
+    /**
+     * Return the socket address described by {@code spec}: {@code unix:PATH} for a
+     * Unix-domain socket, {@code HOST:PORT}, or just {@code PORT} on the loopback address.
+     *
+     * @param spec the address description
+     * @return the address
+     * @throws IllegalArgumentException if {@code spec} cannot be parsed
+     */
+    static SocketAddress parseAddress(String spec) {
+        if (spec.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(Path.of(spec.substring(5)));
+        } // if
+        int colon = spec.lastIndexOf(':');
+        try {
+            if (colon < 0) {
+                return new InetSocketAddress("127.0.0.1", Integer.parseInt(spec));
+            } // if
+            return new InetSocketAddress(spec.substring(0, colon),
+                                         Integer.parseInt(spec.substring(colon + 1)));
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Bad address: " + spec, nfe);
+        } // try
+    } // parseAddress
+
+    /**
+     * Run a server until it is killed, printing the number of open sessions every ten
+     * seconds.
+     *
+     * <pre>
+     * usage: GameServer [PORT | HOST:PORT | unix:PATH] [NAME=POLICY ...]
+     * </pre>
+     *
+     * <p>
+     * The default is {@code 127.0.0.1:1302}. Each {@code NAME=POLICY} offers an opponent under
+     * {@code NAME}; if any are given, they replace the {@linkplain #defaultOpponents defaults}.
+     * Raise the open-file limit ({@code ulimit -n}) to host more sessions than the default
+     * limit allows.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        SocketAddress address = parseAddress(args.length > 0 ? args[0]
+                                             : String.valueOf(DEFAULT_PORT));
+        Map<String, String> opponents = args.length > 1 ? new LinkedHashMap<>()
+            : defaultOpponents();
+        for (int i = 1; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals < 1) {
+                System.err.println("Expected NAME=POLICY, not " + args[i]);
+                System.exit(1);
+            } // if
+            opponents.put(args[i].substring(0, equals), args[i].substring(equals + 1));
+        } // for
+        SessionRegistry registry = new SessionRegistry(DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES);
+        try (GameServer server = new GameServer(address, registry, opponents)) {
+            System.err.println("serving games on " + server.getAddress());
+            Thread acceptor = server.start();
+            while (acceptor.isAlive()) {
+                try {
+                    acceptor.join(10_000);
+                } catch (InterruptedException ie) {
+                    return;
+                } // try
+                System.err.printf("%d open sessions, %,d accepted, %,d games, %,d drops%n",
+                                  server.getActiveSessions(), server.getAcceptedSessions(),
+                                  server.getGamesStarted(), server.getDrops());
+            } // while
+        } // try
+    } // main
+
+} // GameServer
@@ -0,0 +1,642 @@
+package cs1302.game.net;
+
+import cs1302.game.ConnectFour;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maps {@code long} session ids to hosted {@link ConnectFour} games and forgets games that have
+ * not been used for a while.
+ *
+ * <p>
+ * The registry is split into shards, each guarded by its own lock, and an id always goes to
+ * the same shard, so threads working on different sessions rarely wait for each other. Inside
+ * a shard, entries live in parallel primitive arrays (id, game, deadline and two wheel links)
+ * and are found through an open-addressing table of entry numbers. Apart from the games
+ * themselves, an entry costs about 40 bytes and no objects; see {@link #overheadBytes}.
+ *
+ * <p>
+ * Idle games are expired by a hashed timing wheel rather than by scanning every entry. Each
+ * shard has {@value #WHEEL_SLOTS} slots, one per tick of {@code idleTimeout / 64}, and every
+ * entry sits in the slot of its deadline. Using a game only moves its deadline; the entry is
+ * moved to its new slot the next time the wheel passes its old one. {@link #expire} therefore
+ * only visits the entries whose slots have come due since the last call.
+ */
+public class SessionRegistry implements AutoCloseable {
+
+    /** The default number of shards. */
+    public static final int DEFAULT_SHARDS = 64;
+
+    /** Timing-wheel slots per shard; twice the number of ticks in one idle timeout. */
+    static final int WHEEL_SLOTS = 128;
+
+    /** Ticks in one idle timeout. */
+    private static final int TIMEOUT_TICKS = WHEEL_SLOTS / 2;
+
+    /** Nothing; the end of a wheel list or an empty table slot. */
+    private static final int NONE = -1;
+
+    /**
+     * Receives the games that {@link #expire} removes.
+     */
+    public interface EvictionListener {
+
+        /**
+         * Called with the shard's lock held, so it must be quick and must not use the
+         * registry.
+         *
+         * @param id the session id
+         * @param game the expired game
+         */
+        void evicted(long id, ConnectFour game);
+
+    } // EvictionListener
+
+    private final Shard[] shards;
+    private final int shardMask;   // applied to the top 16 bits of a hash
+    private final long tickNanos;
+    private final long origin = System.nanoTime();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private volatile EvictionListener listener;
+    private volatile Thread expirer;
+
+    /**
+     * Constructs a registry with {@value #DEFAULT_SHARDS} shards.
+     *
+     * @param idleTimeout how long an unused game is kept
+     * @param unit the unit of {@code idleTimeout}
+     */
+    public SessionRegistry(long idleTimeout, TimeUnit unit) {
+        this(DEFAULT_SHARDS, idleTimeout, unit);
+    } // SessionRegistry
+
+    /**
+     * Constructs a registry with {@code shards} shards.
+     *
+     * @param shards the number of shards, rounded up to a power of two
+     * @param idleTimeout how long an unused game is kept, at least 64 milliseconds
+     * @param unit the unit of {@code idleTimeout}
+     * @throws IllegalArgumentException if {@code shards} is not between {@code 1} and
+     *     {@code 2^16} or the timeout is too short
+     */
+    public SessionRegistry(int shards, long idleTimeout, TimeUnit unit) {
+        if (shards < 1 || shards > 1 << 16) {
+            throw new IllegalArgumentException("Shard count must be between 1 and 65536.");
+        } // if
+        long timeout = unit.toNanos(idleTimeout);
+        if (timeout < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_TICKS)) {
+            throw new IllegalArgumentException("Idle timeout must be at least 64 ms.");
+        } // if
+        int bits = 32 - Integer.numberOfLeadingZeros(shards - 1);
+        this.shards = new Shard[1 << bits];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard();
+        } // for
+        this.shardMask = this.shards.length - 1;
+        this.tickNanos = timeout / TIMEOUT_TICKS;
+    } // SessionRegistry
+
+    /**
+     * Set the listener told about expired games.
+     *
+     * @param listener the listener, or {@code null} for none
+     */
+    public void setEvictionListener(EvictionListener listener) {
+        this.listener = listener;
+    } // setEvictionListener
+
+    /**
+     * Add {@code game} under a new id.
+     *
+     * @param game the game
+     * @return the new session id, never {@code 0}
+     */
+    public long register(ConnectFour game) {
+        long id = nextId.getAndIncrement();
+        put(id, game);
+        return id;
+    } // register
+
+    /**
+     * Add or replace the game for {@code id} and restart its idle timeout.
+     *
+     * @param id the session id
+     * @param game the game
+     * @throws NullPointerException if {@code game} is {@code null}
+     */
+    public void put(long id, ConnectFour game) {
+        if (game == null) {
+            throw new NullPointerException("game");
+        } // if
+        long hash = mix(id);
+        Shard shard = shards[(int) (hash >>> 48) & shardMask];
+        synchronized (shard) {
+            shard.put(id, (int) hash, game, now() + TIMEOUT_TICKS);
+        } // synchronized
+    } // put
+
+    /**
+     * Return the game for {@code id} and restart its idle timeout.
+     *
+     * @param id the session id
+     * @return the game, or {@code null} if there is none or it has expired
+     */
+    public ConnectFour get(long id) {
+        long hash = mix(id);
+        Shard shard = shards[(int) (hash >>> 48) & shardMask];
+        int deadline = now() + TIMEOUT_TICKS;
+        synchronized (shard) {
+            int entry = shard.find(id, (int) hash);
+            if (entry == NONE) {
+                shard.misses++;
+                return null;
+            } // if
+            shard.hits++;
+            shard.deadlines[entry] = deadline;
+            return shard.games[entry];
+        } // synchronized
+    } // get
+
+    /**
+     * Remove the game for {@code id}.
+     *
+     * @param id the session id
+     * @return the removed game, or {@code null} if there was none
+     */
+    public ConnectFour remove(long id) {
+        long hash = mix(id);
+        Shard shard = shards[(int) (hash >>> 48) & shardMask];
+        synchronized (shard) {
+            int entry = shard.find(id, (int) hash);
+            if (entry == NONE) {
+                return null;
+            } // if
+            ConnectFour game = shard.games[entry];
+            shard.remove(entry, (int) hash);
+            return game;
+        } // synchronized
+    } // remove
+
+    /**
+     * Remove every game that has been idle for longer than the timeout. Only the wheel slots
+     * that have come due since the last call are visited.
+     *
+     * @return the number of games removed
+     */
+    public int expire() {
+        int now = now();
+        int removed = 0;
+        EvictionListener current = listener;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                removed += shard.advance(now, current);
+            } // synchronized
+        } // for
+        return removed;
+    } // expire
+
+    /**
+     * Call {@link #expire} once per tick ({@code idleTimeout / 64}) on a daemon thread until
+     * the registry is closed.
+     */
+    public synchronized void startExpiry() {
+        if (expirer != null) {
+            return;
+        } // if
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(tickNanos));
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException ie) {
+                    return;
+                } // try
+                expire();
+            } // while
+        }, "session-expiry");
+        thread.setDaemon(true);
+        thread.start();
+        expirer = thread;
+    } // startExpiry
+
+    /**
+     * Stop the expiry thread, if it was started. The registry can still be used.
+     */
+    @Override
+    public synchronized void close() {
+        if (expirer != null) {
+            expirer.interrupt();
+            expirer = null;
+        } // if
+    } // close
+
+    /**
+     * Return the number of games in the registry.
+     *
+     * @return the game count
+     */
+    public int size() {
+        int total = 0;
+        for (int i = 0; i < shards.length; i++) {
+            total += getShardSize(i);
+        } // for
+        return total;
+    } // size
+
+    /**
+     * Return the number of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    } // getShardCount
+
+    /**
+     * Return the number of games in shard {@code shard}.
+     *
+     * @param shard the shard number
+     * @return the shard's game count
+     */
+    public int getShardSize(int shard) {
+        Shard s = shards[shard];
+        synchronized (s) {
+            return s.size;
+        } // synchronized
+    } // getShardSize
+
+    /**
+     * Return the number of entries shard {@code shard} has room for before it grows.
+     *
+     * @param shard the shard number
+     * @return the shard's capacity
+     */
+    public int getShardCapacity(int shard) {
+        Shard s = shards[shard];
+        synchronized (s) {
+            return s.keys.length;
+        } // synchronized
+    } // getShardCapacity
+
+    /**
+     * Return the number of bytes the registry's arrays take up, not counting the games.
+     *
+     * @return the registry's memory overhead
+     */
+    public long overheadBytes() {
+        long total = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                // ids, deadlines, next and prev links, game references and the table
+                total += shard.keys.length * (8L + 4 + 4 + 4 + 8) + shard.table.length * 4L
+                    + WHEEL_SLOTS * 4L;
+            } // synchronized
+        } // for
+        return total;
+    } // overheadBytes
+
+    /**
+     * Return one line per shard with its size, capacity, lookup hits and misses, and
+     * evictions, followed by a line of totals.
+     *
+     * @return the shard statistics
+     */
+    public String stats() {
+        StringBuilder text = new StringBuilder();
+        long[] totals = new long[5];
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            long[] row;
+            synchronized (shard) {
+                row = new long[] {shard.size, shard.keys.length, shard.hits, shard.misses,
+                                  shard.evictions};
+            } // synchronized
+            text.append(String.format("shard %3d size=%d capacity=%d hits=%d misses=%d "
+                                      + "evictions=%d%n", i, row[0], row[1], row[2], row[3],
+                                      row[4]));
+            for (int j = 0; j < totals.length; j++) {
+                totals[j] += row[j];
+            } // for
+        } // for
+        text.append(String.format("total     size=%d capacity=%d hits=%d misses=%d "
+                                  + "evictions=%d overheadBytes=%d%n", totals[0], totals[1],
+                                  totals[2], totals[3], totals[4], overheadBytes()));
+        return text.toString();
+    } // stats
+
+    /**
+     * Return the current tick. Ticks wrap around after about {@code 2^31} ticks, so they are
+     * only ever compared by subtraction.
+     *
+     * @return the tick number
+     */
+    private int now() {
+        return (int) ((System.nanoTime() - origin) / tickNanos);
+    } // now
+
+    /**
+     * Scramble an id so that consecutive ids spread over all shards and table slots.
+     *
+     * @param id the id
+     * @return the hash
+     */
+    private static long mix(long id) {
+        long h = id * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    } // mix
+
+    /**
+     * One shard: entry arrays, a table of entry numbers, and a timing wheel. Every method
+     * must be called with the shard's lock held.
+     */
+    private static final class Shard {
+
+        private long[] keys = new long[16];
+        private ConnectFour[] games = new ConnectFour[16];
+        private int[] deadlines = new int[16];
+        private int[] next = new int[16];    // next entry in the wheel slot, or the free list
+        private int[] prev = new int[16];    // previous entry in the wheel slot
+        private int[] table = newTable(32);  // entry numbers, NONE when empty
+        private final int[] wheel = newTable(WHEEL_SLOTS); // first entry of each slot
+        private int used;                    // entries ever handed out
+        private int free = NONE;             // first free entry
+        private int size;
+        private int tick;
+        private boolean started;
+
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        /**
+         * Return the entry for {@code key}.
+         *
+         * @param key the id
+         * @param hash the id's hash
+         * @return the entry number, or {@link #NONE}
+         */
+        int find(long key, int hash) {
+            int mask = table.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int entry = table[i];
+                if (entry == NONE || keys[entry] == key) {
+                    return entry;
+                } // if
+            } // for
+        } // find
+
+        /**
+         * Add or replace the game for {@code key}.
+         *
+         * @param key the id
+         * @param hash the id's hash
+         * @param game the game
+         * @param deadline the tick at which the game expires
+         */
+        void put(long key, int hash, ConnectFour game, int deadline) {
+            if (!started) {
+                tick = deadline - TIMEOUT_TICKS;
+                started = true;
+            } // if
+            int entry = find(key, hash);
+            if (entry != NONE) {
+                games[entry] = game;
+                deadlines[entry] = deadline;
+                return;
+            } // if
+            if (free != NONE) {
+                entry = free;
+                free = next[entry];
+            } else {
+                if (used == keys.length) {
+                    grow();
+                } // if
+                entry = used++;
+            } // if
+            keys[entry] = key;
+            games[entry] = game;
+            deadlines[entry] = deadline;
+            link(entry, deadline & (WHEEL_SLOTS - 1));
+            if (++size * 2 > table.length) {
+                rehash(table.length * 2);
+            } // if
+            insert(entry, hash);
+        } // put
+
+        /**
+         * Remove an entry from the wheel and the table and put it on the free list.
+         *
+         * @param entry the entry number
+         * @param hash the hash of the entry's id
+         */
+        void remove(int entry, int hash) {
+            unlink(entry, deadlines[entry] & (WHEEL_SLOTS - 1));
+            int mask = table.length - 1;
+            int hole = hash & mask;
+            while (table[hole] != entry) {
+                hole = (hole + 1) & mask;
+            } // while
+            // backward-shift deletion keeps every probe sequence unbroken
+            for (int i = (hole + 1) & mask; table[i] != NONE; i = (i + 1) & mask) {
+                int home = (int) mix(keys[table[i]]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    table[hole] = table[i];
+                    hole = i;
+                } // if
+            } // for
+            table[hole] = NONE;
+            games[entry] = null;
+            next[entry] = free;
+            free = entry;
+            size--;
+        } // remove
+
+        /**
+         * Turn the wheel forward to tick {@code now}, removing the entries whose deadline has
+         * passed and moving the ones that were used since they were filed.
+         *
+         * @param now the current tick
+         * @param listener told about every removed game, or {@code null}
+         * @return the number of removed games
+         */
+        int advance(int now, EvictionListener listener) {
+            if (!started || now - tick <= 0) {
+                return 0;
+            } // if
+            int removed = 0;
+            int from = now - tick > WHEEL_SLOTS ? now - WHEEL_SLOTS + 1 : tick + 1;
+            for (int t = from; t - now <= 0; t++) {
+                int slot = t & (WHEEL_SLOTS - 1);
+                int entry = wheel[slot];
+                while (entry != NONE) {
+                    int following = next[entry];
+                    int deadline = deadlines[entry];
+                    if (deadline - now <= 0) {
+                        long key = keys[entry];
+                        ConnectFour game = games[entry];
+                        remove(entry, (int) mix(key));
+                        evictions++;
+                        removed++;
+                        if (listener != null) {
+                            listener.evicted(key, game);
+                        } // if
+                    } else if ((deadline & (WHEEL_SLOTS - 1)) != slot) {
+                        unlink(entry, slot);
+                        link(entry, deadline & (WHEEL_SLOTS - 1));
+                    } // if
+                    entry = following;
+                } // while
+            } // for
+            tick = now;
+            return removed;
+        } // advance
+
+        /**
+         * Add an entry to the front of a wheel slot's list.
+         *
+         * @param entry the entry number
+         * @param slot the wheel slot
+         */
+        private void link(int entry, int slot) {
+            int head = wheel[slot];
+            next[entry] = head;
+            prev[entry] = NONE;
+            if (head != NONE) {
+                prev[head] = entry;
+            } // if
+            wheel[slot] = entry;
+        } // link
+
+        /**
+         * Remove an entry from a wheel slot's list.
+         *
+         * @param entry the entry number
+         * @param slot the wheel slot
+         */
+        private void unlink(int entry, int slot) {
+            int before = prev[entry];
+            int after = next[entry];
+            if (before == NONE) {
+                wheel[slot] = after;
+            } else {
+                next[before] = after;
+            } // if
+            if (after != NONE) {
+                prev[after] = before;
+            } // if
+        } // unlink
+
+        /**
+         * Put an entry number in the first empty table slot of its probe sequence.
+         *
+         * @param entry the entry number
+         * @param hash the hash of the entry's id
+         */
+        private void insert(int entry, int hash) {
+            int mask = table.length - 1;
+            int i = hash & mask;
+            while (table[i] != NONE) {
+                i = (i + 1) & mask;
+            } // while
+            table[i] = entry;
+        } // insert
+
+        /**
+         * Double the entry arrays.
+         */
+        private void grow() {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            games = Arrays.copyOf(games, capacity);
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        } // grow
+
+        /**
+         * Rebuild the table with {@code length} slots.
+         *
+         * @param length the new table length, a power of two
+         */
+        private void rehash(int length) {
+            int[] old = table;
+            table = newTable(length);
+            for (int entry : old) {
+                if (entry != NONE) {
+                    insert(entry, (int) mix(keys[entry]));
+                } // if
+            } // for
+        } // rehash
+
+        /**
+         * Return an array of {@code length} {@link #NONE} values.
+         *
+         * @param length the array length
+         * @return the array
+         */
+        private static int[] newTable(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, NONE);
+            return array;
+        } // newTable
+
+    } // Shard
+
+    /**
+     * Register a million idle games, then print how long it took, how much memory the games
+     * and the registry use, how long lookups take, and how long it takes for all of them to
+     * expire.
+     *
+     * <pre>
+     * usage: SessionRegistry [games] [timeoutMillis]
+     * </pre>
+     *
+     * @param args the command-line arguments
+     * @throws InterruptedException if interrupted while waiting for the games to expire
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long timeout = args.length > 1 ? Long.parseLong(args[1]) : 2_000;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        SessionRegistry registry = new SessionRegistry(timeout, TimeUnit.MILLISECONDS);
+        long[] ids = new long[count];
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            ConnectFour game = new ConnectFour(6, 7);
+            game.setPlayerTokens(cs1302.gameutil.Token.RED, cs1302.gameutil.Token.YELLOW);
+            ids[i] = registry.register(game);
+        } // for
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("registered %,d games in %.3f s (%,.0f/s)%n", count, seconds,
+                          count / seconds);
+        System.out.printf("heap %,d bytes/game including the game; registry overhead "
+                          + "%,d bytes/game%n", (after - before - 8L * count) / count,
+                          registry.overheadBytes() / count);
+        start = System.nanoTime();
+        long found = 0;
+        for (long id : ids) {
+            found += registry.get(id) != null ? 1 : 0;
+        } // for
+        seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("looked up %,d games in %.3f s (%.0f ns each)%n", found, seconds,
+                          seconds * 1e9 / count);
+        registry.startExpiry();
+        start = System.nanoTime();
+        while (registry.size() > 0) {
+            Thread.sleep(10);
+        } // while
+        System.out.printf("all games expired %.3f s after their last use (timeout %d ms)%n",
+                          (System.nanoTime() - start) / 1e9, timeout);
+        System.out.println(registry.stats().lines().reduce((first, last) -> last).orElse(""));
+        registry.close();
+    } // main
+
+} // SessionRegistry
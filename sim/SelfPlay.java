@@ -0,0 +1,307 @@
+package cs1302.game.sim;
+
+import cs1302.game.ai.MovePolicy;
+import cs1302.game.ai.Position;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A headless self-play simulator. It plays many games between two {@link MovePolicy move
+ * policies} on every core, without reading input or drawing the grid, and streams one compact
+ * record per game:
+ *
+ * <pre>
+ * &lt;moves&gt; &lt;result&gt;
+ * </pre>
+ *
+ * <p>
+ * where {@code <moves>} is the column of every move in order, one digit per move, and
+ * {@code <result>} is {@code 0} or {@code 1} for the winning player or {@code D} for a draw.
+ * Player {@code 0} always moves first. A summary with games per second and moves per second is
+ * printed to standard error at the end.
+ *
+ * <p>
+ * Thread {@code t} of {@code T} plays games {@code t}, {@code t + T}, {@code t + 2T}, ... with
+ * its own random number generator seeded from the run's seed and {@code t}, so a run with the
+ * same seed and thread count produces the same records (up to the order of the lines).
+ */
+public class SelfPlay {
+
+    /** Records buffered by a thread before they are written out. */
+    private static final int FLUSH_CHARS = 1 << 16;
+
+    private final int rows;
+    private final int cols;
+    private final String[] policies;
+    private final long seed;
+    private final int threads;
+
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLongArray outcomes = new AtomicLongArray(3); // wins 0, 1, draws
+
+    /**
+     * Constructs a simulator.
+     *
+     * @param rows the number of grid rows
+     * @param cols the number of grid columns
+     * @param policy0 the {@linkplain MovePolicy#parse policy description} for player 0
+     * @param policy1 the policy description for player 1
+     * @param seed the base random seed
+     * @param threads the number of threads to play on
+     * @throws IllegalArgumentException if the grid size or a policy description is not
+     *     supported; policies are only built, and book files opened, by {@link #run}
+     */
+    public SelfPlay(int rows, int cols, String policy0, String policy1, long seed, int threads) {
+        // fail fast on bad arguments rather than inside the worker threads
+        new Position(rows, cols);
+        MovePolicy.validate(policy0);
+        MovePolicy.validate(policy1);
+        this.rows = rows;
+        this.cols = cols;
+        this.policies = new String[] {policy0, policy1};
+        this.seed = seed;
+        this.threads = Math.max(1, threads);
+    } // SelfPlay
+
+    /**
+     * Play {@code games} games and write their records to {@code out}, which is flushed but
+     * not closed.
+     *
+     * @param games the number of games to play
+     * @param out where to write the records, or {@code null} to discard them
+     * @throws IOException if the records cannot be written
+     * @throws IllegalArgumentException if a policy names an opening book that cannot be read
+     */
+    public void run(long games, Writer out) throws IOException {
+        Thread[] workers = new Thread[threads];
+        Exception[] failure = new Exception[1];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    play(id, games, out);
+                } catch (UncheckedIOException e) {
+                    synchronized (failure) {
+                        failure[0] = e.getCause();
+                    } // synchronized
+                } catch (RuntimeException re) {
+                    // such as a book file named by a policy that cannot be read
+                    synchronized (failure) {
+                        failure[0] = re;
+                    } // synchronized
+                } // try
+            }, "self-play-" + t);
+            workers[t].start();
+        } // for
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for games to finish.", ie);
+            } // try
+        } // for
+        if (failure[0] instanceof IOException ioe) {
+            throw ioe;
+        } else if (failure[0] != null) {
+            throw (RuntimeException) failure[0];
+        } // if
+        if (out != null) {
+            out.flush();
+        } // if
+    } // run
+
+    /**
+     * Return the number of moves played so far.
+     *
+     * @return the move count
+     */
+    public long getMoves() {
+        return moves.get();
+    } // getMoves
+
+    /**
+     * Return how many games player {@code player} has won so far.
+     *
+     * @param player the player ({@code 0} or {@code 1})
+     * @return the number of wins
+     */
+    public long getWins(int player) {
+        return outcomes.get(player);
+    } // getWins
+
+    /**
+     * Return how many games have ended in a draw so far.
+     *
+     * @return the number of draws
+     */
+    public long getDraws() {
+        return outcomes.get(2);
+    } // getDraws
+
+    /**
+     * Play this thread's share of the games.
+     *
+     * @param id the thread number
+     * @param games the total number of games
+     * @param out where to write the records, or {@code null}
+     */
+    private void play(int id, long games, Writer out) {
+        SimulationEvent event = new SimulationEvent();
+        event.begin();
+        SplittableRandom random = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L * (id + 1));
+        MovePolicy[] players = {MovePolicy.parse(policies[0]), MovePolicy.parse(policies[1])};
+        Position empty = new Position(rows, cols);
+        Position position = new Position(rows, cols);
+        StringBuilder buffer = new StringBuilder(FLUSH_CHARS + 128);
+        long played = 0;
+        long count = 0;
+        long[] results = new long[3];
+        for (long game = id; game < games; game += threads) {
+            position.copyFrom(empty);
+            int result = 2;
+            while (true) {
+                int player = position.getPlayer();
+                int col = players[player].chooseMove(position, random);
+                buffer.append((char) ('0' + col));
+                played++;
+                if (position.isWinningMove(col)) {
+                    result = player;
+                    break;
+                } // if
+                position.play(col);
+                if (position.isFull()) {
+                    break;
+                } // if
+            } // while
+            results[result]++;
+            count++;
+            buffer.append(' ').append(result == 2 ? 'D' : (char) ('0' + result)).append('\n');
+            if (buffer.length() >= FLUSH_CHARS) {
+                write(out, buffer);
+            } // if
+        } // for
+        write(out, buffer);
+        moves.addAndGet(played);
+        for (int i = 0; i < 3; i++) {
+            outcomes.addAndGet(i, results[i]);
+        } // for
+        event.end();
+        if (event.shouldCommit()) {
+            event.thread = id;
+            event.policy0 = policies[0];
+            event.policy1 = policies[1];
+            event.rows = rows;
+            event.columns = cols;
+            event.games = count;
+            event.nodes = played;
+            event.commit();
+        } // if
+    } // play
+
+    /**
+     * Write and clear a thread's buffered records.
+     *
+     * @param out the shared writer, or {@code null}
+     * @param buffer the records to write
+     */
+    private static void write(Writer out, StringBuilder buffer) {
+        if (out != null && buffer.length() > 0) {
+            synchronized (out) {
+                try {
+                    out.append(buffer);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                } // try
+            } // synchronized
+        } // if
+        buffer.setLength(0);
+    } // write
+
+    /**
+     * Run the simulator from the command line.
+     *
+     * <pre>
+     * usage: SelfPlay [--games N] [--rows R] [--cols C] [--p0 POLICY] [--p1 POLICY]
+     *                 [--seed S] [--threads T] [--out FILE | --out -  | --out none]
+     * </pre>
+     *
+     * <p>
+     * Policies are {@code random}, {@code greedy}, {@code solver:<millis>} and
+     * {@code mcts:<playouts>}. The defaults are 1,000,000 random-vs-random games on a 6-by-7
+     * grid, one thread per core, with records written to standard output.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the records cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long games = 1_000_000;
+        int rows = 6;
+        int cols = 7;
+        String p0 = "random";
+        String p1 = "random";
+        long seed = 1302;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outName = "-";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+            case "--games":
+                games = Long.parseLong(value);
+                break;
+            case "--rows":
+                rows = Integer.parseInt(value);
+                break;
+            case "--cols":
+                cols = Integer.parseInt(value);
+                break;
+            case "--p0":
+                p0 = value;
+                break;
+            case "--p1":
+                p1 = value;
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "--out":
+                outName = value;
+                break;
+            default:
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            } // switch
+        } // for
+        SelfPlay sim = new SelfPlay(rows, cols, p0, p1, seed, threads);
+        Writer out = null;
+        if (outName.equals("-")) {
+            out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        } else if (!outName.equals("none")) {
+            out = new BufferedWriter(new FileWriter(outName), 1 << 16);
+        } // if
+        long start = System.nanoTime();
+        sim.run(games, out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (out != null && !outName.equals("-")) {
+            out.close();
+        } // if
+        System.err.printf("%,d games (%s vs %s, %dx%d, %d threads) in %.3f s%n", games, p0, p1,
+                          rows, cols, sim.threads, seconds);
+        System.err.printf("player 0 wins %,d, player 1 wins %,d, draws %,d%n", sim.getWins(0),
+                          sim.getWins(1), sim.getDraws());
+        System.err.printf("%,.0f games/s, %,.0f moves/s%n", games / seconds,
+                          sim.getMoves() / seconds);
+    } // main
+
+} // SelfPlay
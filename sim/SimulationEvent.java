@@ -0,0 +1,44 @@
+package cs1302.game.sim;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one thread's share of a {@link SelfPlay} run. The event's
+ * duration is the time the thread spent playing; its fields say how many games and moves it
+ * played. Like the game's own events, it is disabled by default.
+ */
+@Name("cs1302.game.Simulation")
+@Label("Self-Play Simulation")
+@Category("Connect Four")
+@Description("The games played by one self-play thread")
+@Enabled(false)
+final class SimulationEvent extends Event {
+
+    @Label("Thread Number")
+    int thread;
+
+    @Label("Policy 0")
+    String policy0;
+
+    @Label("Policy 1")
+    String policy1;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Columns")
+    int columns;
+
+    @Label("Games")
+    long games;
+
+    @Label("Nodes")
+    @Description("The moves played")
+    long nodes;
+
+} // SimulationEvent